@@ -4,6 +4,7 @@
 #include <Wire.h>
 #include <Adafruit_MPU6050.h>
 #include <Adafruit_Sensor.h>
+#include <esp_timer.h>
 
 // Bluetooth
 BluetoothSerial SerialBT;
@@ -11,6 +12,9 @@ const char* deviceName = "ESP32_AccidentDetector";
 
 // MPU6050 Sensor
 Adafruit_MPU6050 mpu;
+uint8_t mpuAddress = 0x68;
+// Wire is shared by loop() and the high-rate sampler task
+SemaphoreHandle_t i2cMutex;
 
 // Sensor readings
 float accelX, accelY, accelZ;
@@ -35,6 +39,52 @@ const unsigned long SEND_INTERVAL = 100; // Send every 100ms
 // LED Pin
 const int LED_PIN = 2;
 
+// Binary telemetry, negotiated by the app (frame layout in BinaryProtocol.java)
+const uint8_t FRAME_SYNC_0 = 0xA5;
+const uint8_t FRAME_SYNC_1 = 0x5A;
+const uint8_t PROTOCOL_VERSION = 1;
+const uint8_t FRAME_SAMPLE = 1;
+const uint8_t FRAME_ALERT = 2;
+const uint8_t FRAME_SAMPLE_BATCH = 3;
+const uint8_t FLAG_ALERT = 0x01;
+const size_t FRAME_HEADER_SIZE = 6;
+const size_t FRAME_MAX_PAYLOAD = 1024;
+const float ACCEL_LSB = 0.01;  // m/s² per count
+const float GYRO_LSB = 0.1;    // deg/s per count
+const size_t BATCH_HEADER_SIZE = 10;
+const size_t BATCH_SAMPLE_SIZE = 12;
+const size_t MAX_BATCH_SAMPLES = (FRAME_MAX_PAYLOAD - BATCH_HEADER_SIZE) / BATCH_SAMPLE_SIZE;
+
+bool binaryMode = false;
+uint16_t txSequence = 0;
+uint8_t frameBuffer[FRAME_HEADER_SIZE + FRAME_MAX_PAYLOAD + 2];
+char commandBuffer[32];
+size_t commandLength = 0;
+
+// High-rate sampling: a timer wakes the sampler task, which reads the MPU registers
+// straight into a ring; loop() drains the ring into batch frames. Sample sequence
+// numbers are ring positions, so samples lost to an overrun show up as a gap in the app.
+const uint16_t MIN_SAMPLE_RATE_HZ = 200;
+const uint16_t MAX_SAMPLE_RATE_HZ = 1000;
+const unsigned long BATCH_INTERVAL = 20;           // ms between batch frames
+const float RAW_ACCEL_TO_MS2 = 9.80665 / 2048.0;   // ±16 g range
+const float RAW_GYRO_TO_DPS = 1.0 / 65.5;          // ±500 deg/s range
+
+struct RawSample {
+  uint32_t micros;
+  int16_t axes[6];  // ax ay az gx gy gz, raw sensor counts
+};
+
+const uint32_t SAMPLE_RING_SIZE = 1024;  // power of two; ~1 s at the highest rate
+RawSample sampleRing[SAMPLE_RING_SIZE];
+volatile uint32_t ringHead = 0;  // samples written, only advanced by the sampler task
+uint32_t ringTail = 0;           // next sample to send
+uint32_t detectTail = 0;         // next sample to run detection on
+uint16_t sampleRateHz = 0;       // 0 while high-rate sampling is off
+uint32_t samplePeriodMicros = 0;
+TaskHandle_t samplerTask = NULL;
+esp_timer_handle_t samplerTimer = NULL;
+
 // Baseline calibration
 float baselineAccelZ = 9.81;
 bool isCalibrated = false;
@@ -147,6 +197,7 @@ void setup() {
   if (!mpu.begin(0x68, &Wire)) {
     Serial.println("❌ FAILED!");
     Serial.println("Trying address 0x69...");
+    mpuAddress = 0x69;
     if (!mpu.begin(0x69, &Wire)) {
       Serial.println("❌ FAILED on both addresses!");
       while(1) {
@@ -156,6 +207,7 @@ void setup() {
     }
   }
   Serial.println("✓ SUCCESS");
+  i2cMutex = xSemaphoreCreateMutex();
   
   // Configure sensor
   mpu.setAccelerometerRange(MPU6050_RANGE_16_G);
@@ -184,6 +236,8 @@ void setup() {
   Serial.println("\n⏳ Calibrating... Keep sensor still!");
   delay(1000);
   calibrateSensor();
+
+  startSamplerTask();
   
   Serial.println("\n✓ System Ready!");
   Serial.println("════════════════════════════════════════");
@@ -201,27 +255,29 @@ void setup() {
 }
 
 void loop() {
-  // Read sensor data
-  sensors_event_t accel, gyro, temp;
-  mpu.getEvent(&accel, &gyro, &temp);
-  
-  // Store values
-  accelX = accel.acceleration.x;
-  accelY = accel.acceleration.y;
-  accelZ = accel.acceleration.z;
-  
-  gyroX = gyro.gyro.x * (180.0 / PI);
-  gyroY = gyro.gyro.y * (180.0 / PI);
-  gyroZ = gyro.gyro.z * (180.0 / PI);
-  
-  // Calculate total acceleration (removing gravity)
-  float accelX_adj = accelX;
-  float accelY_adj = accelY;
-  float accelZ_adj = accelZ - baselineAccelZ;
-  totalAccel = sqrt(accelX_adj*accelX_adj + accelY_adj*accelY_adj + accelZ_adj*accelZ_adj);
-  
-  // Calculate total gyro magnitude
-  totalGyro = sqrt(gyroX*gyroX + gyroY*gyroY + gyroZ*gyroZ);
+  pollCommands();
+
+  if (sampleRateHz > 0) {
+    // Strongest sample the sampler took since the last pass
+    detectFromRing();
+  } else {
+    // Read sensor data
+    sensors_event_t accel, gyro, temp;
+    xSemaphoreTake(i2cMutex, portMAX_DELAY);
+    mpu.getEvent(&accel, &gyro, &temp);
+    xSemaphoreGive(i2cMutex);
+    
+    // Store values
+    accelX = accel.acceleration.x;
+    accelY = accel.acceleration.y;
+    accelZ = accel.acceleration.z;
+    
+    gyroX = gyro.gyro.x * (180.0 / PI);
+    gyroY = gyro.gyro.y * (180.0 / PI);
+    gyroZ = gyro.gyro.z * (180.0 / PI);
+    
+    updateTotals();
+  }
   
   // Accident detection
   bool newAccident = false;
@@ -264,7 +320,12 @@ void loop() {
   
   // Send data via Bluetooth (format expected by Android app)
   unsigned long currentTime = millis();
-  if (currentTime - lastSendTime >= SEND_INTERVAL) {
+  if (sampleRateHz > 0) {
+    if (currentTime - lastSendTime >= BATCH_INTERVAL || ringHead - ringTail >= MAX_BATCH_SAMPLES) {
+      sendSampleBatches();
+      lastSendTime = currentTime;
+    }
+  } else if (currentTime - lastSendTime >= SEND_INTERVAL) {
     sendSensorData();
     lastSendTime = currentTime;
   }
@@ -277,6 +338,17 @@ void loop() {
   delay(10);
 }
 
+void updateTotals() {
+  // Calculate total acceleration (removing gravity)
+  float accelX_adj = accelX;
+  float accelY_adj = accelY;
+  float accelZ_adj = accelZ - baselineAccelZ;
+  totalAccel = sqrt(accelX_adj*accelX_adj + accelY_adj*accelY_adj + accelZ_adj*accelZ_adj);
+  
+  // Calculate total gyro magnitude
+  totalGyro = sqrt(gyroX*gyroX + gyroY*gyroY + gyroZ*gyroZ);
+}
+
 void triggerAccidentAlert() {
   Serial.println("\n╔════════════════════════════════════════╗");
   Serial.println("║     ⚠️  ACCIDENT DETECTED! ⚠️          ║");
@@ -289,7 +361,15 @@ void triggerAccidentAlert() {
   Serial.println("════════════════════════════════════════\n");
   
   // Send accident alert to Android app (format it expects)
-  if (SerialBT.hasClient()) {
+  if (SerialBT.hasClient() && binaryMode) {
+    uint8_t* payload = frameBuffer + FRAME_HEADER_SIZE;
+    // In high-rate mode the alert repeats the last sent sample's number instead of taking one
+    putU16(payload, sampleRateHz > 0 ? (uint16_t) (ringTail - 1) : txSequence++);
+    putU32(payload + 2, millis());
+    putI16(payload + 6, totalAccel / ACCEL_LSB);
+    putI16(payload + 8, totalGyro / GYRO_LSB);
+    sendFrame(FRAME_ALERT, 10);
+  } else if (SerialBT.hasClient()) {
     SerialBT.println("ALERT:ACCIDENT_DETECTED");
     SerialBT.println("TIME:" + String(millis()));
     SerialBT.println("ACCEL_TOTAL:" + String(totalAccel, 2));
@@ -301,14 +381,15 @@ void triggerAccidentAlert() {
 }
 
 void sendSensorData() {
-  // Format for MainActivity.parseSensorData()
-  // Your app expects: "ACCEL: X.XX" and "GYRO: Y.YY"
-  String dataString = "ACCEL:" + String(totalAccel, 2) + 
-                     " GYRO:" + String(totalGyro, 2) +
-                     " STATUS:" + String(accidentDetected ? "ALERT" : "OK");
-  
   // Send via Bluetooth
-  if (SerialBT.hasClient()) {
+  if (SerialBT.hasClient() && binaryMode) {
+    sendBinarySample();
+  } else if (SerialBT.hasClient()) {
+    // Format for MainActivity.parseSensorData()
+    // Your app expects: "ACCEL: X.XX" and "GYRO: Y.YY"
+    String dataString = "ACCEL:" + String(totalAccel, 2) +
+                       " GYRO:" + String(totalGyro, 2) +
+                       " STATUS:" + String(accidentDetected ? "ALERT" : "OK");
     SerialBT.println(dataString);
   } else {
     // Periodic connection status
@@ -325,3 +406,238 @@ void sendSensorData() {
     Serial.println("Gyro: " + String(totalGyro, 2) + " °/s");
   }
 }
+
+// ---------------------------------------------------------------------------
+// Binary telemetry
+// ---------------------------------------------------------------------------
+
+// Reads command lines from the app; a new connection always starts in text mode
+void pollCommands() {
+  if (!SerialBT.hasClient()) {
+    binaryMode = false;
+    commandLength = 0;
+    if (sampleRateHz > 0) stopHighRateSampling();
+    return;
+  }
+  while (SerialBT.available()) {
+    char c = SerialBT.read();
+    if (c == '\r') continue;
+    if (c == '\n') {
+      commandBuffer[commandLength] = '\0';
+      handleCommand(commandBuffer);
+      commandLength = 0;
+    } else if (commandLength < sizeof(commandBuffer) - 1) {
+      commandBuffer[commandLength++] = c;
+    }
+  }
+}
+
+// "PROTO:BIN1" switches to one binary frame per sample; "PROTO:BIN1 RATE:<hz>" to batched high-rate sampling
+void handleCommand(const char* command) {
+  if (strncmp(command, "PROTO:BIN1", 10) != 0) return;
+  long requestedRate = 0;
+  if (strncmp(command + 10, " RATE:", 6) == 0) {
+    requestedRate = atol(command + 16);
+  } else if (command[10] != '\0') {
+    return;
+  }
+
+  if (requestedRate > 0) {
+    uint16_t rate = constrain(requestedRate, MIN_SAMPLE_RATE_HZ, MAX_SAMPLE_RATE_HZ);
+    startHighRateSampling(rate);
+    // The reply is the last text line; binary frames start right after it
+    SerialBT.println("PROTO:OK BIN1 RATE:" + String(rate));
+    Serial.println("📦 Binary telemetry enabled, sampling at " + String(rate) + " Hz");
+  } else {
+    if (sampleRateHz > 0) stopHighRateSampling();
+    SerialBT.println("PROTO:OK BIN1");
+    Serial.println("📦 Binary telemetry enabled");
+  }
+  binaryMode = true;
+  txSequence = 0;
+}
+
+// One sample: raw axes, gravity included, so the app gets the full 3-axis signal
+void sendBinarySample() {
+  uint8_t* payload = frameBuffer + FRAME_HEADER_SIZE;
+  putU16(payload, txSequence++);
+  putU32(payload + 2, millis());
+  putI16(payload + 6, accelX / ACCEL_LSB);
+  putI16(payload + 8, accelY / ACCEL_LSB);
+  putI16(payload + 10, accelZ / ACCEL_LSB);
+  putI16(payload + 12, gyroX / GYRO_LSB);
+  putI16(payload + 14, gyroY / GYRO_LSB);
+  putI16(payload + 16, gyroZ / GYRO_LSB);
+  payload[18] = accidentDetected ? FLAG_ALERT : 0;
+  sendFrame(FRAME_SAMPLE, 19);
+}
+
+// Sends everything the sampler has buffered, in frames of up to MAX_BATCH_SAMPLES
+void sendSampleBatches() {
+  if (!SerialBT.hasClient() || !binaryMode) {
+    ringTail = ringHead;
+    return;
+  }
+  uint8_t* payload = frameBuffer + FRAME_HEADER_SIZE;
+  while (true) {
+    uint32_t head = __atomic_load_n(&ringHead, __ATOMIC_ACQUIRE);
+    if (head - ringTail > SAMPLE_RING_SIZE - MAX_BATCH_SAMPLES) {
+      // Overrun: skip to samples the sampler cannot overwrite while this batch is encoded
+      ringTail = head - SAMPLE_RING_SIZE + 2 * MAX_BATCH_SAMPLES;
+    }
+    uint32_t count = min(head - ringTail, (uint32_t) MAX_BATCH_SAMPLES);
+    if (count == 0) return;
+
+    const RawSample& first = sampleRing[ringTail & (SAMPLE_RING_SIZE - 1)];
+    putU16(payload, (uint16_t) ringTail);
+    putU32(payload + 2, first.micros / 1000);
+    putU16(payload + 6, samplePeriodMicros);
+    payload[8] = count;
+    payload[9] = accidentDetected ? FLAG_ALERT : 0;
+    uint8_t* p = payload + BATCH_HEADER_SIZE;
+    for (uint32_t i = 0; i < count; i++, p += BATCH_SAMPLE_SIZE) {
+      const RawSample& sample = sampleRing[(ringTail + i) & (SAMPLE_RING_SIZE - 1)];
+      for (int axis = 0; axis < 3; axis++) {
+        putI16(p + axis * 2, sample.axes[axis] * RAW_ACCEL_TO_MS2 / ACCEL_LSB);
+        putI16(p + 6 + axis * 2, sample.axes[3 + axis] * RAW_GYRO_TO_DPS / GYRO_LSB);
+      }
+    }
+    ringTail += count;
+    sendFrame(FRAME_SAMPLE_BATCH, BATCH_HEADER_SIZE + count * BATCH_SAMPLE_SIZE);
+  }
+}
+
+// Runs detection on the sample with the largest acceleration since the last call,
+// so impulses between two loop() passes are not missed
+void detectFromRing() {
+  uint32_t head = __atomic_load_n(&ringHead, __ATOMIC_ACQUIRE);
+  if (head - detectTail > SAMPLE_RING_SIZE / 2) {
+    detectTail = head - SAMPLE_RING_SIZE / 2;
+  }
+  if (detectTail == head) return;
+  float bestAccel = -1;
+  float bestGyro = 0;
+  for (; detectTail != head; detectTail++) {
+    const RawSample& sample = sampleRing[detectTail & (SAMPLE_RING_SIZE - 1)];
+    float ax = sample.axes[0] * RAW_ACCEL_TO_MS2;
+    float ay = sample.axes[1] * RAW_ACCEL_TO_MS2;
+    float az = sample.axes[2] * RAW_ACCEL_TO_MS2;
+    float gx = sample.axes[3] * RAW_GYRO_TO_DPS;
+    float gy = sample.axes[4] * RAW_GYRO_TO_DPS;
+    float gz = sample.axes[5] * RAW_GYRO_TO_DPS;
+    float azAdj = az - baselineAccelZ;
+    float accel2 = ax*ax + ay*ay + azAdj*azAdj;
+    float gyro2 = gx*gx + gy*gy + gz*gz;
+    if (accel2 > bestAccel) {
+      bestAccel = accel2;
+      accelX = ax; accelY = ay; accelZ = az;
+      gyroX = gx; gyroY = gy; gyroZ = gz;
+    }
+    bestGyro = max(bestGyro, gyro2);
+  }
+  updateTotals();
+  totalGyro = sqrt(bestGyro);
+}
+
+void startSamplerTask() {
+  // Above loop() on the same core, so a sample is never delayed by detection or Bluetooth writes
+  xTaskCreatePinnedToCore(samplerLoop, "sampler", 4096, NULL, 5, &samplerTask, ARDUINO_RUNNING_CORE);
+  esp_timer_create_args_t timerArgs = {};
+  timerArgs.callback = [](void*) { xTaskNotifyGive(samplerTask); };
+  timerArgs.name = "sampler";
+  esp_timer_create(&timerArgs, &samplerTimer);
+}
+
+void startHighRateSampling(uint16_t rateHz) {
+  esp_timer_stop(samplerTimer);
+  xSemaphoreTake(i2cMutex, portMAX_DELAY);
+  // Full bandwidth and 1 kHz output, and a bus fast enough for a 14-byte read per sample
+  Wire.setClock(400000);
+  mpu.setFilterBandwidth(MPU6050_BAND_260_HZ);
+  mpu.setSampleRateDivisor(0);
+  xSemaphoreGive(i2cMutex);
+
+  sampleRateHz = rateHz;
+  samplePeriodMicros = 1000000UL / rateHz;
+  ringTail = ringHead;
+  detectTail = ringHead;
+  esp_timer_start_periodic(samplerTimer, samplePeriodMicros);
+}
+
+void stopHighRateSampling() {
+  esp_timer_stop(samplerTimer);
+  sampleRateHz = 0;
+  xSemaphoreTake(i2cMutex, portMAX_DELAY);
+  mpu.setFilterBandwidth(MPU6050_BAND_21_HZ);
+  xSemaphoreGive(i2cMutex);
+  Serial.println("📦 High-rate sampling stopped");
+}
+
+void samplerLoop(void*) {
+  uint8_t raw[14];
+  while (true) {
+    ulTaskNotifyTake(pdTRUE, portMAX_DELAY);
+    xSemaphoreTake(i2cMutex, portMAX_DELAY);
+    // ACCEL_XOUT_H .. GYRO_ZOUT_L in one burst; bytes 6-7 are the temperature
+    Wire.beginTransmission(mpuAddress);
+    Wire.write(0x3B);
+    bool ok = Wire.endTransmission(false) == 0 && Wire.requestFrom(mpuAddress, (uint8_t) 14) == 14;
+    if (ok) {
+      for (int i = 0; i < 14; i++) raw[i] = Wire.read();
+    }
+    xSemaphoreGive(i2cMutex);
+    if (!ok) continue;
+
+    uint32_t head = ringHead;
+    RawSample& sample = sampleRing[head & (SAMPLE_RING_SIZE - 1)];
+    sample.micros = micros();
+    for (int axis = 0; axis < 3; axis++) {
+      sample.axes[axis] = (int16_t) (raw[axis * 2] << 8 | raw[axis * 2 + 1]);
+      sample.axes[3 + axis] = (int16_t) (raw[8 + axis * 2] << 8 | raw[9 + axis * 2]);
+    }
+    // Publish only once the slot is complete
+    __atomic_store_n(&ringHead, head + 1, __ATOMIC_RELEASE);
+  }
+}
+
+// Wraps the payload already in frameBuffer and sends the frame in a single write
+void sendFrame(uint8_t type, uint16_t payloadLength) {
+  frameBuffer[0] = FRAME_SYNC_0;
+  frameBuffer[1] = FRAME_SYNC_1;
+  frameBuffer[2] = PROTOCOL_VERSION;
+  frameBuffer[3] = type;
+  putU16(frameBuffer + 4, payloadLength);
+  size_t end = FRAME_HEADER_SIZE + payloadLength;
+  putU16(frameBuffer + end, crc16(frameBuffer + 2, end - 2));
+  SerialBT.write(frameBuffer, end + 2);
+}
+
+// CRC-16/CCITT-FALSE
+uint16_t crc16(const uint8_t* data, size_t length) {
+  uint16_t crc = 0xFFFF;
+  for (size_t i = 0; i < length; i++) {
+    crc ^= (uint16_t) data[i] << 8;
+    for (int bit = 0; bit < 8; bit++) {
+      crc = (crc & 0x8000) ? (crc << 1) ^ 0x1021 : crc << 1;
+    }
+  }
+  return crc;
+}
+
+void putU16(uint8_t* p, uint16_t value) {
+  p[0] = value & 0xFF;
+  p[1] = value >> 8;
+}
+
+void putU32(uint8_t* p, uint32_t value) {
+  putU16(p, value & 0xFFFF);
+  putU16(p + 2, value >> 16);
+}
+
+// Rounds to the nearest count and saturates at the int16 range
+void putI16(uint8_t* p, float counts) {
+  long rounded = lroundf(counts);
+  if (rounded > 32767) rounded = 32767;
+  if (rounded < -32768) rounded = -32768;
+  putU16(p, (uint16_t) (int16_t) rounded);
+}
@@ -1,228 +1,311 @@
 package com.example.accidentdetection;
 import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
 import android.util.Log;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.FloatBuffer;
-import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
-import ai.onnxruntime.OnnxTensor;
 import ai.onnxruntime.OrtEnvironment;
 import ai.onnxruntime.OrtException;
 import ai.onnxruntime.OrtSession;
 
-public class AccidentClassifier {
+public class AccidentClassifier implements DetectionModel {
+
+/**
+ * What runs the model once it is loaded.
+ */
+public enum Backend {
+    /** ONNX Runtime, with the INT8 model when it is packaged. */
+    ONNX_RUNTIME,
+    /**
+     * {@link JavaPredictor} on the full-precision model: no native session to start and no JNI
+     * call per prediction. Falls back to ONNX Runtime if the graph uses an unsupported operator.
+     */
+    JAVA
+}
+
 private static final String TAG = "AccidentClassifier";
 private static final String MODEL_FILE = "driver_behavior_model.onnx";
 private static final String MODEL_DATA_FILE = "driver_behavior_model.onnx.data";
+// INT8 build of the same model from training/quantize_model.py; used instead when packaged
+private static final String QUANTIZED_MODEL_FILE = "driver_behavior_model.int8.onnx";
+private static final String MODEL_CACHE_DIR = "models";
+private static final String OPTIMIZED_MODEL_SUFFIX = ".optimized.onnx";
 
-// Threshold fallback values
-private static final float ACCEL_THRESHOLD = 20.0f; // m/s²
-private static final float GYRO_THRESHOLD = 5.0f;   // rad/s
+// Inferences run on the loader thread before ML mode goes live, so the first real
+// prediction does not pay for JIT compilation and ORT's lazy initialisation
+private static final int WARM_UP_RUNS = 3;
 
 private OrtEnvironment env;
 private OrtSession session;
-private boolean mlAvailable = false;
+private OnnxPredictor predictor;
+// Set instead of session and predictor when the Java backend runs the model
+private JavaPredictor javaPredictor;
+// Model input row for feature predictions; any leading columns before the features stay 0
+private float[] modelRow;
+private String modelName;
+// Written last by the loader thread; a true read makes predictor and modelRow visible
+private volatile boolean mlAvailable = false;
+// When the model last produced a probability, rather than the threshold rule; written by the inference worker
+private volatile long lastMlPredictionNanos = 0;
+private boolean closed = false;
+private CompletableFuture<Boolean> ready;
 private Context context;
+private final SessionConfig sessionConfig;
+private final Backend backend;
+private final ThresholdModel fallback = new ThresholdModel();
 
+/**
+ * Creates a classifier in threshold mode; call {@link #loadAsync()} to bring up the model.
+ */
 public AccidentClassifier(Context context) {
-    this.context = context;
-    try {
-        Log.i(TAG, "=== Starting ML Model Load ===");
-        Log.d(TAG, "Attempting to load ONNX model: " + MODEL_FILE);
+    this(context, SessionConfig.lowPower());
+}
 
-        // Check if ONNX Runtime classes are available
-        try {
-            Class.forName("ai.onnxruntime.OrtEnvironment");
-            Log.d(TAG, "✓ ONNX Runtime library is available");
-        } catch (ClassNotFoundException e) {
-            throw new Exception("ONNX Runtime library not found! Did you sync Gradle?", e);
-        }
+public AccidentClassifier(Context context, SessionConfig sessionConfig) {
+    this(context, sessionConfig, Backend.ONNX_RUNTIME);
+}
 
-        // Initialize ONNX Runtime environment
-        Log.d(TAG, "Creating ONNX environment...");
-        env = OrtEnvironment.getEnvironment();
-        Log.d(TAG, "✓ ONNX environment created");
+/**
+ * @param sessionConfig used by the ONNX Runtime backend, and by the Java one if it falls back
+ */
+public AccidentClassifier(Context context, SessionConfig sessionConfig, Backend backend) {
+    this.context = context.getApplicationContext();
+    this.sessionConfig = sessionConfig;
+    this.backend = backend;
+}
 
-        // List all assets to verify they're in the APK
-        try {
-            String[] allAssets = context.getAssets().list("");
-            Log.d(TAG, "All assets in APK: " + String.join(", ", allAssets));
-
-            // Check specifically for our model files
-            boolean hasMainModel = false;
-            boolean hasDataFile = false;
-            for (String asset : allAssets) {
-                if (asset.equals(MODEL_FILE)) hasMainModel = true;
-                if (asset.contains(".data") || asset.contains(".onnx.data")) hasDataFile = true;
+/**
+ * Loads the model and runs a warm-up inference on a background thread. Predictions made in
+ * the meantime use the threshold fallback, so no samples are lost while the model loads.
+ * @return completes with true once ML detection is live, or false if the model could not be loaded;
+ * completes exceptionally if the loader thread died of anything load() does not handle, e.g. a linkage error
+ */
+public synchronized CompletableFuture<Boolean> loadAsync() {
+    if (ready == null) {
+        ready = new CompletableFuture<>();
+        Thread loader = new Thread(() -> {
+            try {
+                ready.complete(load());
+            } catch (Throwable t) {
+                // Never leave the future pending; whatever was created is not published
+                releaseSession();
+                ready.completeExceptionally(t);
             }
-            Log.d(TAG, "Model file present: " + hasMainModel + ", Data file present: " + hasDataFile);
-        } catch (IOException e) {
-            Log.w(TAG, "Could not list assets: " + e.getMessage());
-        }
-
-        // Try loading model directly from assets first (works if data is embedded)
-        Log.d(TAG, "Attempting direct load from assets...");
-        try {
-            byte[] modelBytes = loadAssetAsBytes(MODEL_FILE);
-            Log.d(TAG, "Loaded model bytes: " + modelBytes.length);
-            session = env.createSession(modelBytes);
-            mlAvailable = true;
-            Log.i(TAG, "🎉 ONNX MODEL LOADED SUCCESSFULLY (direct from assets)! 🎉");
-        } catch (Exception directLoadError) {
-            Log.w(TAG, "Direct load failed: " + directLoadError.getMessage());
-            Log.d(TAG, "Trying file-based load for external data support...");
+        }, "ModelLoader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+    return ready;
+}
 
-            // Fall back to file-based loading for external data
-            File modelFile = extractAssetToFile(MODEL_FILE);
+/**
+ * Runs on the loader thread. Nothing it creates is visible to predictions until mlAvailable is set.
+ */
+private boolean load() {
+    boolean loaded = false;
+    try {
+        Log.i(TAG, "=== Starting ML Model Load (" + backend + ") ===");
+        Log.d(TAG, "Attempting to load ONNX model: " + MODEL_FILE);
 
-            // Try to extract data file if it exists
-            File dataFile = null;
+        // Extract once per APK version and load by path, so the model can be mapped and the
+        // external .onnx.data file resolved next to it
+        long loadStart = System.nanoTime();
+        ModelCache cache = new ModelCache(new File(context.getFilesDir(), MODEL_CACHE_DIR),
+                apkVersionKey(context), name -> context.getAssets().open(name));
+        File modelFile = cache.prepare(MODEL_FILE, MODEL_DATA_FILE, QUANTIZED_MODEL_FILE);
+        Log.d(TAG, (cache.wasExtracted() ? "✓ Model extracted to: " : "✓ Reusing cached model: ")
+                + modelFile.getAbsolutePath() + " (" + modelFile.length() + " bytes)");
+        removeLegacyCopies(context);
+
+        if (backend == Backend.JAVA) {
             try {
-                dataFile = extractAssetToFile(MODEL_DATA_FILE);
-                Log.d(TAG, "✓ Data file extracted: " + dataFile.getAbsolutePath() + " (" + dataFile.length() + " bytes)");
-            } catch (IOException dataError) {
-                Log.w(TAG, "Could not extract data file (may not exist): " + dataError.getMessage());
+                javaPredictor = JavaPredictor.load(modelFile);
+                modelName = MODEL_FILE;
+                Log.i(TAG, "✓ Java backend loaded " + MODEL_FILE + " in "
+                        + (System.nanoTime() - loadStart) / 1_000_000 + " ms, input width "
+                        + javaPredictor.getInputWidth());
+            } catch (IOException e) {
+                Log.w(TAG, "Java backend cannot run this model, using ONNX Runtime: " + e.getMessage());
             }
-
-            Log.d(TAG, "✓ Model extracted to: " + modelFile.getAbsolutePath() + " (" + modelFile.length() + " bytes)");
-
-            // Create ONNX session from file path
-            Log.d(TAG, "Creating ONNX session from file...");
-            session = env.createSession(modelFile.getAbsolutePath());
-            mlAvailable = true;
-            Log.i(TAG, "🎉 ONNX MODEL LOADED SUCCESSFULLY (from file)! 🎉");
         }
-        Log.d(TAG, "Model inputs: " + session.getInputNames());
-        Log.d(TAG, "Model outputs: " + session.getOutputNames());
+        if (javaPredictor != null) {
+            if (javaPredictor.getInputWidth() >= FeatureExtractor.FEATURE_COUNT) {
+                modelRow = new float[javaPredictor.getInputWidth()];
+            }
+            warmUp();
+            loaded = true;
+        } else {
+            loaded = loadSession(modelFile, loadStart);
+        }
         Log.i(TAG, "=== ML Model Load Complete ===");
 
     } catch (OrtException e) {
         Log.e(TAG, "❌ ONNX Runtime error: " + e.getMessage(), e);
         Log.e(TAG, "Error code: " + e.getClass().getSimpleName());
-        mlAvailable = false;
     } catch (IOException e) {
         Log.e(TAG, "❌ Failed to load model file from assets: " + e.getMessage(), e);
         Log.e(TAG, "Check that " + MODEL_FILE + " and " + MODEL_DATA_FILE + " exist in app/src/main/assets/");
-        mlAvailable = false;
     } catch (NoClassDefFoundError e) {
         Log.e(TAG, "❌ ONNX Runtime classes not found: " + e.getMessage(), e);
         Log.e(TAG, "SOLUTION: Sync Gradle (File → Sync Project with Gradle Files)");
-        mlAvailable = false;
     } catch (Exception e) {
         Log.e(TAG, "❌ Unexpected error loading model: " + e.getMessage(), e);
         e.printStackTrace();
-        mlAvailable = false;
     }
 
-    if (!mlAvailable) {
+    synchronized (this) {
+        if (loaded && !closed) {
+            mlAvailable = true;
+            return true;
+        }
+    }
+
+    releaseSession();
+    if (loaded) {
+        Log.d(TAG, "Classifier closed while the model was loading");
+    } else {
         Log.w(TAG, "⚠️ ML model not available - using threshold-based fallback detection");
-        Log.w(TAG, "Fallback thresholds: Accel>" + ACCEL_THRESHOLD + " m/s², Gyro>" + GYRO_THRESHOLD + " rad/s");
+        Log.w(TAG, "Fallback thresholds: Accel>" + ThresholdModel.ACCEL_THRESHOLD + " m/s², Gyro>" + ThresholdModel.GYRO_THRESHOLD + " deg/s");
     }
+    return false;
 }
 
 /**
- * Load an asset file as a byte array
+ * The ONNX Runtime part of {@link #load()}: the session, preferring the quantized model, and
+ * its predictor.
  */
-private byte[] loadAssetAsBytes(String assetFileName) throws IOException {
-    InputStream is = null;
+private boolean loadSession(File modelFile, long loadStart) throws Exception {
+    // Check if ONNX Runtime classes are available
     try {
-        is = context.getAssets().open(assetFileName);
-        byte[] buffer = new byte[is.available()];
-        is.read(buffer);
-        return buffer;
-    } finally {
-        if (is != null) {
-            try {
-                is.close();
-            } catch (IOException e) {
-                Log.w(TAG, "Failed to close input stream: " + e.getMessage());
-            }
+        Class.forName("ai.onnxruntime.OrtEnvironment");
+        Log.d(TAG, "✓ ONNX Runtime library is available");
+    } catch (ClassNotFoundException e) {
+        throw new Exception("ONNX Runtime library not found! Did you sync Gradle?", e);
+    }
+
+    // Initialize ONNX Runtime environment
+    Log.d(TAG, "Creating ONNX environment...");
+    env = OrtEnvironment.getEnvironment();
+    Log.d(TAG, "✓ ONNX environment created");
+
+    Log.d(TAG, "Creating ONNX session from file (" + sessionConfig + ")...");
+    File quantizedFile = new File(modelFile.getParentFile(), QUANTIZED_MODEL_FILE);
+    if (quantizedFile.isFile()) {
+        try {
+            session = createSession(quantizedFile);
+            modelName = QUANTIZED_MODEL_FILE;
+        } catch (OrtException e) {
+            Log.w(TAG, "Quantized model failed to load, using full precision: " + e.getMessage());
         }
     }
+    if (session == null) {
+        session = createSession(modelFile);
+        modelName = MODEL_FILE;
+    }
+    Log.d(TAG, "✓ Using " + modelName);
+    Log.i(TAG, "🎉 ONNX MODEL LOADED SUCCESSFULLY in " + (System.nanoTime() - loadStart) / 1_000_000 + " ms! 🎉");
+    Log.d(TAG, "Model inputs: " + session.getInputNames());
+    Log.d(TAG, "Model outputs: " + session.getOutputNames());
+
+    // Allocate the input/output tensors once; every prediction reuses them
+    predictor = new OnnxPredictor(env, session);
+    Log.d(TAG, "Model input '" + predictor.getInputName() + "' expects " + predictor.getInputWidth() + " features");
+    if (predictor.getInputWidth() != 2) {
+        Log.w(TAG, "Model does not take (accel, gyro) pairs; scalar predictions use the threshold fallback");
+    }
+    if (predictor.getInputWidth() >= FeatureExtractor.FEATURE_COUNT) {
+        modelRow = new float[predictor.getInputWidth()];
+    }
+    warmUp();
+    return true;
 }
 
 /**
- * Extract an asset file to internal storage so ONNX Runtime can access it
- * and resolve relative paths to external data files
+ * Loads the graph ONNX Runtime optimised on an earlier start if there is one; otherwise
+ * optimises the original and saves the result next to it, inside the per-version cache.
  */
-private File extractAssetToFile(String assetFileName) throws IOException {
-    File outputFile = new File(context.getFilesDir(), assetFileName);
-
-    // Always re-extract to ensure files are up-to-date and not corrupted
-    // This is important after app updates or if previous extraction failed
-    if (outputFile.exists()) {
-        long existingSize = outputFile.length();
-        Log.d(TAG, "Existing model file found (" + existingSize + " bytes): " + outputFile.getAbsolutePath());
-
-        // Delete and re-extract to ensure fresh copy
-        if (outputFile.delete()) {
-            Log.d(TAG, "Deleted existing file to ensure fresh extraction");
-        } else {
-            Log.w(TAG, "Could not delete existing file, will overwrite");
+private OrtSession createSession(File modelFile) throws OrtException {
+    OrtSession.SessionOptions.OptLevel level = sessionConfig.getOptLevel();
+    if (level == OrtSession.SessionOptions.OptLevel.NO_OPT) {
+        try (OrtSession.SessionOptions options = sessionConfig.toSessionOptions()) {
+            return env.createSession(modelFile.getAbsolutePath(), options);
         }
     }
 
-    InputStream is = null;
-    FileOutputStream fos = null;
-    try {
-        Log.d(TAG, "Extracting asset: " + assetFileName);
-        is = context.getAssets().open(assetFileName);
-        fos = new FileOutputStream(outputFile);
-
-        byte[] buffer = new byte[8192];
-        int bytesRead;
-        int totalBytes = 0;
-        while ((bytesRead = is.read(buffer)) != -1) {
-            fos.write(buffer, 0, bytesRead);
-            totalBytes += bytesRead;
+    String baseName = modelFile.getName().replace(".onnx", "");
+    File optimized = new File(modelFile.getParentFile(),
+            baseName + "." + level.name().toLowerCase(Locale.ROOT) + OPTIMIZED_MODEL_SUFFIX);
+    if (optimized.isFile()) {
+        SessionConfig reuse = sessionConfig.copy()
+                .optLevel(OrtSession.SessionOptions.OptLevel.NO_OPT)
+                .optimizedModelPath(null);
+        try (OrtSession.SessionOptions options = reuse.toSessionOptions()) {
+            OrtSession optimizedSession = env.createSession(optimized.getAbsolutePath(), options);
+            Log.d(TAG, "✓ Loaded pre-optimized model: " + optimized.getName());
+            return optimizedSession;
+        } catch (OrtException e) {
+            Log.w(TAG, "Pre-optimized model unusable, optimizing again: " + e.getMessage());
+            optimized.delete();
         }
-        fos.flush();
-
-        Log.d(TAG, "✓ Extracted " + totalBytes + " bytes to " + outputFile.getAbsolutePath());
-        return outputFile;
+    }
 
-    } catch (IOException e) {
-        Log.e(TAG, "❌ Failed to extract asset: " + assetFileName, e);
+    SessionConfig save = sessionConfig.copy().optimizedModelPath(optimized.getAbsolutePath());
+    try (OrtSession.SessionOptions options = save.toSessionOptions()) {
+        return env.createSession(modelFile.getAbsolutePath(), options);
+    }
+}
 
-        // List available assets to help debug
-        try {
-            String[] assets = context.getAssets().list("");
-            Log.d(TAG, "Available assets in root: " + String.join(", ", assets));
-        } catch (IOException listEx) {
-            Log.e(TAG, "Cannot list assets: " + listEx.getMessage());
+private void warmUp() throws OrtException {
+    long start = System.nanoTime();
+    float[] row = new float[javaPredictor != null ? javaPredictor.getInputWidth() : predictor.getInputWidth()];
+    for (int i = 0; i < WARM_UP_RUNS; i++) {
+        if (javaPredictor != null) {
+            javaPredictor.predict(row, 0);
+        } else {
+            predictor.predict(row, 0);
         }
+    }
+    Log.d(TAG, "✓ Warm-up: " + WARM_UP_RUNS + " inferences in " + (System.nanoTime() - start) / 1000 + " µs");
+}
 
-        throw e;
-    } finally {
-        if (is != null) {
-            try {
-                is.close();
-            } catch (IOException e) {
-                Log.w(TAG, "Failed to close input stream: " + e.getMessage());
-            }
-        }
-        if (fos != null) {
-            try {
-                fos.close();
-            } catch (IOException e) {
-                Log.w(TAG, "Failed to close output stream: " + e.getMessage());
-            }
-        }
+/**
+ * Cache key for the extracted model: changes whenever the APK is updated or reinstalled
+ */
+private static String apkVersionKey(Context context) {
+    try {
+        PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+        long versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                ? info.getLongVersionCode() : info.versionCode;
+        return versionCode + "-" + info.lastUpdateTime;
+    } catch (PackageManager.NameNotFoundException e) {
+        Log.w(TAG, "Could not read package info: " + e.getMessage());
+        return "unknown";
     }
 }
 
+/**
+ * Earlier versions re-extracted the model into the root of the files directory on every launch
+ */
+private static void removeLegacyCopies(Context context) {
+    new File(context.getFilesDir(), MODEL_FILE).delete();
+    new File(context.getFilesDir(), MODEL_DATA_FILE).delete();
+}
+
 /**
  * Predicts accident probability based on sensor values
  * @param accel Acceleration magnitude (m/s²)
- * @param gyro Gyroscope magnitude (rad/s)
+ * @param gyro Gyroscope magnitude (deg/s)
  * @return Probability (0.0 to 1.0)
  */
+@Override
 public float predict(float accel, float gyro) {
-    if (mlAvailable && session != null) {
+    if (mlAvailable && predictor != null && predictor.getInputWidth() == 2) {
         try {
             return predictWithML(accel, gyro);
         } catch (Exception e) {
@@ -235,42 +318,101 @@ public float predict(float accel, float gyro) {
 }
 
 private float predictWithML(float accel, float gyro) throws OrtException {
-    // Prepare input tensor (assuming model expects [1, 2] shape: batch_size=1, features=2)
-    float[] inputData = new float[]{accel, gyro};
-    long[] shape = new long[]{1, 2};
-
-    OnnxTensor inputTensor = OnnxTensor.createTensor(env, FloatBuffer.wrap(inputData), shape);
-
-    try {
-        // Run inference
-        OrtSession.Result results = session.run(
-                Collections.singletonMap(session.getInputNames().iterator().next(), inputTensor)
-        );
-
-        // Get output (assuming single output with probability)
-        float[][] output = (float[][]) results.get(0).getValue();
-        float probability = output[0][0];
+    // Runs on the pre-allocated tensors; nothing is allocated here in the steady state
+    float probability = predictor.predict(accel, gyro);
+    lastMlPredictionNanos = System.nanoTime();
 
+    if (Log.isLoggable(TAG, Log.VERBOSE)) {
         Log.v(TAG, "ML prediction - Accel: " + accel + ", Gyro: " + gyro + " -> Probability: " + probability);
+    }
+    return probability;
+}
 
-        results.close();
-        return probability;
+/**
+ * Predicts accident probability from one window of features produced by {@link FeatureExtractor}.
+ * Must be called from a single thread at a time (the inference worker).
+ * @param features {@link FeatureExtractor#FEATURE_COUNT} values in dataset column order
+ * @return Probability (0.0 to 1.0)
+ */
+@Override
+public float predictFeatures(float[] features) {
+    if (mlAvailable && modelRow != null) {
+        try {
+            // The exported model was trained with the dataset's leading Target column still in
+            // place, so the 60 features sit at the end of its input row
+            System.arraycopy(features, 0, modelRow, modelRow.length - FeatureExtractor.FEATURE_COUNT,
+                    FeatureExtractor.FEATURE_COUNT);
+            float probability = javaPredictor != null
+                    ? javaPredictor.predict(modelRow, 0) : predictor.predict(modelRow, 0);
+            lastMlPredictionNanos = System.nanoTime();
+            if (Log.isLoggable(TAG, Log.VERBOSE)) {
+                Log.v(TAG, "ML window prediction -> Probability: " + probability);
+            }
+            return probability;
+        } catch (Exception e) {
+            Log.e(TAG, "ML prediction failed, falling back to threshold: " + e.getMessage(), e);
+        }
+    }
+    return predictWithThreshold(ThresholdModel.peakAccel(features, 0), ThresholdModel.peakGyro(features, 0));
+}
 
-    } finally {
-        inputTensor.close();
+/**
+ * Scores many feature windows in one call (one session run on ONNX Runtime), amortising the per-call overhead for
+ * replay, backfill and overlapping-window scoring.
+ * Must be called from a single thread at a time (the inference worker).
+ * @param features {@code rowCount} rows of {@link FeatureExtractor#FEATURE_COUNT} values, back to back
+ * @param probabilities receives one probability (0.0 to 1.0) per row
+ */
+@Override
+public void predictBatch(float[] features, int rowCount, float[] probabilities) {
+    if (mlAvailable && modelRow != null) {
+        try {
+            if (javaPredictor != null) {
+                javaPredictor.predictBatch(features, rowCount, FeatureExtractor.FEATURE_COUNT, probabilities);
+            } else {
+                predictor.predictBatch(features, rowCount, FeatureExtractor.FEATURE_COUNT, probabilities);
+            }
+            lastMlPredictionNanos = System.nanoTime();
+            return;
+        } catch (Exception e) {
+            Log.e(TAG, "ML batch prediction failed, falling back to threshold: " + e.getMessage(), e);
+        }
+    }
+    for (int r = 0; r < rowCount; r++) {
+        int base = r * FeatureExtractor.FEATURE_COUNT;
+        probabilities[r] = predictWithThreshold(
+                ThresholdModel.peakAccel(features, base), ThresholdModel.peakGyro(features, base));
     }
 }
 
 private float predictWithThreshold(float accel, float gyro) {
-    float probability = (accel > ACCEL_THRESHOLD || gyro > GYRO_THRESHOLD) ? 0.8f : 0.1f;
+    float probability = fallback.predict(accel, gyro);
 
-    if (probability >= 0.7f) {
+    if (probability >= 0.7f && Log.isLoggable(TAG, Log.DEBUG)) {
         Log.d(TAG, "Threshold detection - Accel: " + accel + ", Gyro: " + gyro + " -> HIGH RISK");
     }
 
     return probability;
 }
 
+/**
+ * @return asset name of the model in use, or null while the threshold fallback is active
+ */
+public String getModelName() {
+    return mlAvailable ? modelName : null;
+}
+
+/**
+ * @return what runs the model, which is ONNX Runtime if the Java backend fell back; null while
+ * the threshold fallback is active
+ */
+public Backend getActiveBackend() {
+    if (!mlAvailable) {
+        return null;
+    }
+    return javaPredictor != null ? Backend.JAVA : Backend.ONNX_RUNTIME;
+}
+
 /**
  * @return true if ML model is loaded and ready
  */
@@ -279,12 +421,39 @@ public boolean isMlAvailable() {
 }
 
 /**
- * Clean up resources
+ * A loaded model only scores what reaches it in its input shape: with a feature-window model,
+ * magnitudes from text telemetry still go to the threshold rule, as does a failed inference.
+ * @return {@link System#nanoTime()} of the last probability the model produced, 0 if none yet
+ */
+public long getLastMlPredictionNanos() {
+    return lastMlPredictionNanos;
+}
+
+/**
+ * Clean up resources. Call after the inference worker has stopped.
  */
 public void close() {
+    synchronized (this) {
+        closed = true;
+        if (!mlAvailable) {
+            // Nothing was published; a loader that is still running releases what it created
+            return;
+        }
+        mlAvailable = false;
+    }
+    releaseSession();
+}
+
+private void releaseSession() {
+    javaPredictor = null;
     try {
+        if (predictor != null) {
+            predictor.close();
+            predictor = null;
+        }
         if (session != null) {
             session.close();
+            session = null;
             Log.d(TAG, "ONNX session closed");
         }
         if (env != null) {
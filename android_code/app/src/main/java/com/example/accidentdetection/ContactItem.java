@@ -1,8 +1,22 @@
 package com.example.accidentdetection;
 
+import android.content.Context;
+import android.util.Log;
 import android.view.View;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
 public class ContactItem {
+    private static final String TAG = "ContactItem";
+    // Saved by MainActivity as a JSON array of {name, phone, type}
+    public static final String PREFS_NAME = "AccidentAlertPrefs";
+    public static final String CONTACTS_KEY = "emergency_contacts";
+
     public String name;
     public String phone;
     public int type; // Spinner position
@@ -13,4 +27,27 @@ public class ContactItem {
         this.phone = phone;
         this.type = type;
     }
+
+    /**
+     * @return the saved contacts, without views; empty when none are saved or they cannot be read
+     */
+    public static List<ContactItem> loadSaved(Context context) {
+        String contactsJson = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getString(CONTACTS_KEY, "[]");
+        List<ContactItem> contacts = new ArrayList<>();
+        try {
+            JSONArray jsonArray = new JSONArray(contactsJson);
+            for (int i = 0; i < jsonArray.length(); i++) {
+                JSONObject obj = jsonArray.getJSONObject(i);
+                contacts.add(new ContactItem(
+                        obj.getString("name"),
+                        obj.getString("phone"),
+                        obj.getInt("type")
+                ));
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to load contacts: " + e.getMessage());
+        }
+        return contacts;
+    }
 }
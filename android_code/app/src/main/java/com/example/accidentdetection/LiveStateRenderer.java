@@ -0,0 +1,70 @@
+package com.example.accidentdetection;
+
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Draws a {@link LiveState} on the main thread at most once per display frame. Telemetry threads
+ * call {@link #invalidate()} after publishing; however fast they publish, only the first call
+ * after a frame schedules work, and the frame callback renders whatever is latest by then.
+ * Nothing runs while no telemetry arrives.
+ *
+ * Create, {@link #start()} and {@link #stop()} on the main thread; {@link #invalidate()} may be
+ * called from any thread.
+ */
+public class LiveStateRenderer implements Choreographer.FrameCallback {
+
+    public interface View {
+        /**
+         * Called on the main thread with the latest published values; update only what changed.
+         */
+        void render(float accel, float gyro);
+    }
+
+    private final LiveState state;
+    private final View view;
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private volatile boolean started = false;
+    // Main thread only
+    private long renderedVersion = -1;
+
+    public LiveStateRenderer(LiveState state, View view) {
+        this.state = state;
+        this.view = view;
+    }
+
+    public void start() {
+        started = true;
+        invalidate();
+    }
+
+    public void stop() {
+        started = false;
+        choreographer.removeFrameCallback(this);
+        scheduled.set(false);
+    }
+
+    public void invalidate() {
+        if (started && scheduled.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        // Cleared first so a publish during render schedules the next frame
+        scheduled.set(false);
+        if (!started) {
+            return;
+        }
+        long version = state.getVersion();
+        if (version == renderedVersion) {
+            return;
+        }
+        renderedVersion = version;
+        long snapshot = state.snapshot();
+        view.render(LiveState.accel(snapshot), LiveState.gyro(snapshot));
+    }
+}
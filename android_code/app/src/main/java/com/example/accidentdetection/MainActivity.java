@@ -4,22 +4,17 @@ import android.Manifest;
 import android.animation.ObjectAnimator;
 import android.app.Dialog;
 import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
-import android.location.Location;
-import android.location.LocationListener;
-import android.location.LocationManager;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
-import android.telephony.SmsManager;
+import android.os.IBinder;
 import android.util.Log; // Added for logging
 import android.view.LayoutInflater;
 import android.view.View;
@@ -45,14 +40,11 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
-import java.util.UUID;
 
-public class MainActivity extends AppCompatActivity implements LocationListener, SmsHelper.SmsCallback {
+public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "MainActivity";
 
@@ -65,24 +57,18 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
     // Contact list
     private List<ContactItem> contactsList = new ArrayList<>();
 
-    // Bluetooth
+    // Bluetooth; the connection itself lives in MonitoringService
     private BluetoothAdapter bluetoothAdapter;
-    private BluetoothSocket bluetoothSocket;
-    private InputStream inputStream;
-    private static final UUID MY_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
-    private static final String ESP32_NAME = "ESP32_AccidentDetector";
-    private boolean isConnected = false;
-    private volatile boolean stopWorker = false;
-
-    // Location
-    private LocationManager locationManager;
-    private double currentLatitude = 0.0;
-    private double currentLongitude = 0.0;
+
+    // The monitoring pipeline; null until bound
+    private MonitoringService monitor = null;
+    private boolean bound = false;
+    // A testing trigger that arrived before the service was bound
+    private boolean triggerWhenBound = false;
+    private LiveStateRenderer liveRenderer = null;
 
     // SharedPreferences
     private SharedPreferences sharedPreferences;
-    private static final String PREFS_NAME = "AccidentAlertPrefs";
-    private static final String CONTACTS_KEY = "emergency_contacts";
 
     // Permissions
     private static final int PERMISSION_REQUEST_CODE = 100;
@@ -92,21 +78,8 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
     private Dialog emergencyDialog;
     private TextView tvSmsStatusInDialog;
 
-    // SMS Helper
-    private SmsHelper smsHelper;
-
-    // --- ML classifier and cooldown ---
-    private AccidentClassifier classifier = null;
-    private long lastAlertTimeMillis = 0L;
-    private static final long ALERT_COOLDOWN_MS = 30_000L; // 30 seconds
     public static final String ACTION_TRIGGER_EMERGENCY_ALERT = "com.example.ad1.TRIGGER_EMERGENCY_ALERT";
 
-    // Single-send guard and reset handler
-    private volatile boolean emergencySent = false;
-    private static final long RESET_TIMEOUT_MS = 5 * 60_000L; // 5 minutes auto-reset
-    private final Handler resetHandler = new Handler(Looper.getMainLooper());
-    private Runnable resetRunnable = null;
-
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -127,34 +100,59 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
             requestEnableBluetooth();
         }
 
-        // Location Setup
-        locationManager = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
-        startLocationUpdates();
-
         // SharedPreferences
-        sharedPreferences = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        sharedPreferences = getSharedPreferences(ContactItem.PREFS_NAME, MODE_PRIVATE);
         loadSavedContacts();
 
         setupButtonListeners();
         startPulseAnimation();
 
-        // ML Classifier
-        classifier = new AccidentClassifier(this);
-        if (classifier.isMlAvailable()) {
-            tvStatus.setText("✓ ML Model Loaded - AI Detection Active");
-            Log.i(TAG, "ML model loaded successfully - using AI-based accident detection.");
-        } else {
-            tvStatus.setText("✓ Threshold Detection Active");
-            Log.w(TAG, "ML model failed to load - using threshold-based fallback detection.");
-        }
-
-        // SMS Helper initialization
-        smsHelper = new SmsHelper(this, this);
+        // The model loads in the service, once; threshold detection covers the gap
+        tvStatus.setText("✓ Threshold Detection Active - Loading ML Model...");
+        updateConnectionStatus(false);
+        bound = bindService(new Intent(this, MonitoringService.class), monitorConnection, Context.BIND_AUTO_CREATE);
 
         // Check if the activity was launched by the testing intent
         handleIntent(getIntent());
     }
 
+    private final ServiceConnection monitorConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            monitor = ((MonitoringService.LocalBinder) service).getService();
+            monitor.addListener(monitorListener);
+            liveRenderer = new LiveStateRenderer(monitor.getLiveState(), MainActivity.this::renderLiveState);
+            monitor.addRenderer(liveRenderer);
+            liveRenderer.start();
+            if (monitor.isModelLoadFinished()) {
+                monitorListener.onModelLoaded(monitor.getClassifier().isMlAvailable());
+            }
+            updateConnectionStatus(monitor.isConnected());
+            updateEmergencyStateUI();
+            if (triggerWhenBound) {
+                triggerWhenBound = false;
+                monitor.triggerEmergency();
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            // Same process; only reached if the service is torn down underneath us
+            releaseMonitor();
+        }
+    };
+
+    private void releaseMonitor() {
+        if (monitor == null) {
+            return;
+        }
+        monitor.removeListener(monitorListener);
+        monitor.removeRenderer(liveRenderer);
+        liveRenderer.stop();
+        liveRenderer = null;
+        monitor = null;
+    }
+
     @Override
     protected void onNewIntent(Intent intent) {
         super.onNewIntent(intent);
@@ -187,8 +185,9 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
 
     private void setupButtonListeners() {
         btnConnectBluetooth.setOnClickListener(v -> {
-            if (!isConnected) connectToESP32();
-            else disconnectBluetooth();
+            if (monitor == null) return;
+            if (!monitor.isConnected()) connectToESP32();
+            else monitor.disconnect();
         });
 
         btnAddContact.setOnClickListener(v -> {
@@ -200,7 +199,9 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
             animateButton(v);
             // Manual alert always bypasses the guard - it's for emergencies!
             Log.d(TAG, "Manual alert button pressed - sending immediately.");
-            sendEmergencyAlert();
+            if (monitor != null) {
+                monitor.sendEmergencyAlert();
+            }
         });
 
         btnTestingMode.setOnClickListener(v -> {
@@ -314,7 +315,7 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
                 jsonObject.put("type", contact.type);
                 jsonArray.put(jsonObject);
             }
-            sharedPreferences.edit().putString(CONTACTS_KEY, jsonArray.toString()).apply();
+            sharedPreferences.edit().putString(ContactItem.CONTACTS_KEY, jsonArray.toString()).apply();
             Log.d(TAG, "Contacts saved successfully.");
         } catch (JSONException e) {
             Log.e(TAG, "Failed to save contacts: " + e.getMessage());
@@ -325,77 +326,15 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
     private void loadSavedContacts() {
         contactsContainer.removeAllViews();
         contactsList.clear();
-        String contactsJson = sharedPreferences.getString(CONTACTS_KEY, "[]");
-
-        try {
-            JSONArray jsonArray = new JSONArray(contactsJson);
-            for (int i = 0; i < jsonArray.length(); i++) {
-                JSONObject obj = jsonArray.getJSONObject(i);
-                ContactItem contact = new ContactItem(
-                        obj.getString("name"),
-                        obj.getString("phone"),
-                        obj.getInt("type")
-                );
-                contactsList.add(contact);
-                addContactView(contact);
-            }
-            Log.d(TAG, "Contacts loaded successfully. Count: " + contactsList.size());
-        } catch (JSONException e) {
-            Log.e(TAG, "Failed to load contacts: " + e.getMessage());
+        for (ContactItem contact : ContactItem.loadSaved(this)) {
+            contactsList.add(contact);
+            addContactView(contact);
         }
+        Log.d(TAG, "Contacts loaded. Count: " + contactsList.size());
         updateContactCount();
     }
 
-    public void sendEmergencyAlert() {
-        Log.d(TAG, "Attempting to send emergency alert...");
-        if (contactsList.isEmpty()) {
-            showModernToast("⚠ No emergency contacts configured");
-            Log.w(TAG, "No emergency contacts configured. Alert not sent.");
-            // Show a more prominent message
-            runOnUiThread(() -> {
-                if (tvStatus != null) {
-                    tvStatus.setText("⚠ Add emergency contacts first!");
-                }
-            });
-            return;
-        }
-
-        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-            showModernToast("Location permission required");
-            Log.w(TAG, "Location permission not granted. Alert not sent.");
-            runOnUiThread(() -> {
-                if (tvStatus != null) {
-                    tvStatus.setText("⚠ Location permission required!");
-                }
-            });
-            return;
-        }
-
-        Location location = null;
-        try {
-            location = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
-        } catch (SecurityException e) {
-            Log.e(TAG, "Location permission denied or manager issue: " + e.getMessage());
-        }
-
-        if (location != null) {
-            currentLatitude = location.getLatitude();
-            currentLongitude = location.getLongitude();
-            Log.d(TAG, "Current location: " + currentLatitude + ", " + currentLongitude);
-        } else {
-            Log.w(TAG, "Last known location is null. Using default 0,0.");
-        }
-
-        String message = "🚨 ACCIDENT DETECTED! 🚨\n\n" +
-                "Emergency assistance needed.\n\n" +
-                "📍 Location: " +
-                "https://maps.google.com/?q=" + currentLatitude + "," + currentLongitude;
-
-        smsHelper.sendEmergencySms(contactsList, message);
-        showEmergencyDialog();
-    }
-
-    private void showEmergencyDialog() {
+    private void showEmergencyDialog(int contacts, double latitude, double longitude) {
         if (emergencyDialog != null && emergencyDialog.isShowing()) {
             emergencyDialog.dismiss();
         }
@@ -411,13 +350,15 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
         MaterialButton btnCloseDialog = emergencyDialog.findViewById(R.id.btnCloseDialog);
         MaterialButton btnCancelAlert = emergencyDialog.findViewById(R.id.btnCancelAlert);
 
-        tvAlertLocation.setText("📍 Location: " + String.format("%.4f, %.4f", currentLatitude, currentLongitude));
-        tvSmsStatusInDialog.setText("✉️ Sending SMS to " + contactsList.size() + " contacts...");
+        tvAlertLocation.setText("📍 Location: " + String.format("%.4f, %.4f", latitude, longitude));
+        tvSmsStatusInDialog.setText("✉️ Sending SMS to " + contacts + " contacts...");
         btnCloseDialog.setVisibility(View.GONE);
 
         // Cancel button - visible by default, hides when SMS is complete
         btnCancelAlert.setOnClickListener(v -> {
-            smsHelper.cancelEmergencySms();
+            if (monitor != null) {
+                monitor.cancelEmergencySms();
+            }
             tvSmsStatusInDialog.setText("⚠️ Emergency alert cancelled");
             btnCancelAlert.setVisibility(View.GONE);
             btnCloseDialog.setVisibility(View.VISIBLE);
@@ -433,20 +374,49 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
         Log.d(TAG, "Emergency dialog shown.");
     }
 
-    @Override
-    public void onAllSmsSent(int total, int sent) {
-        runOnUiThread(() -> {
+    private final MonitoringService.Listener monitorListener = new MonitoringService.Listener() {
+        @Override
+        public void onConnectionChanged(boolean connected) {
+            updateConnectionStatus(connected);
+        }
+
+        @Override
+        public void onModelLoaded(boolean mlLoaded) {
+            tvStatus.setText(mlLoaded ? "✓ ML Model Loaded - AI Detection Active" : "✓ Threshold Detection Active");
+        }
+
+        @Override
+        public void onLocationChanged(double latitude, double longitude) {
+            tvLocation.setText(String.format("GPS: %.4f, %.4f", latitude, longitude));
+        }
+
+        @Override
+        public void onAlertSent(int contacts, double latitude, double longitude) {
+            showEmergencyDialog(contacts, latitude, longitude);
+        }
+
+        @Override
+        public void onAlertNotSent(String reason) {
+            showModernToast("⚠ " + reason);
+            tvStatus.setText("⚠ " + reason + "!");
+        }
+
+        @Override
+        public void onAlertStateChanged() {
+            updateEmergencyStateUI();
+        }
+
+        @Override
+        public void onSmsSent(int total, int sent) {
             if (tvSmsStatusInDialog != null) {
                 String status = String.format("✉️ Sent %d of %d messages.", sent, total);
                 tvSmsStatusInDialog.setText(status);
                 Log.d(TAG, "SMS Sent Callback: " + status);
             }
-        });
-    }
+        }
 
-    @Override
-    public void onAllSmsDelivered(int total, int delivered) {
-        runOnUiThread(() -> {
+        @Override
+        public void onSmsDelivered(int total, int delivered) {
             if (tvSmsStatusInDialog != null) {
                 String status = String.format("✓ Delivered %d of %d messages.", delivered, total);
                 tvSmsStatusInDialog.setText(status);
@@ -462,22 +432,15 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
                 }
                 Log.d(TAG, "SMS Delivered Callback: " + status + ". Close button now visible.");
             }
-        });
-    }
+        }
 
-    @Override
-    public void onSmsCancelled() {
-        runOnUiThread(() -> {
-            Log.d(TAG, "SMS Cancelled Callback received");
+        @Override
+        public void onSmsCancelled() {
             showModernToast("Emergency alert cancelled");
-            // If user cancels SMS sending, allow future alerts
-            resetEmergencyState();
-        });
-    }
+        }
 
-    @Override
-    public void onSmsError(String errorMessage) {
-        runOnUiThread(() -> {
+        @Override
+        public void onSmsError(String errorMessage) {
             if (tvSmsStatusInDialog != null) {
                 String status = "✗ SMS Error: " + errorMessage;
                 tvSmsStatusInDialog.setText(status);
@@ -489,14 +452,16 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
                 }
             }
             showModernToast("SMS Error: " + errorMessage);
-            Log.e(TAG, "SMS Error Callback: " + errorMessage);
-            // Allow retrying after error
-            resetEmergencyState();
-        });
-    }
+        }
+
+        @Override
+        public void onMessage(String message) {
+            showModernToast(message);
+        }
+    };
 
     private void requestPermissions() {
-        String[] permissions = {
+        List<String> wanted = new ArrayList<>(Arrays.asList(
                 Manifest.permission.BLUETOOTH,
                 Manifest.permission.BLUETOOTH_ADMIN,
                 Manifest.permission.BLUETOOTH_CONNECT,
@@ -504,7 +469,12 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
                 Manifest.permission.ACCESS_FINE_LOCATION,
                 Manifest.permission.ACCESS_COARSE_LOCATION,
                 Manifest.permission.SEND_SMS
-        };
+        ));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            // For the monitoring notification
+            wanted.add(Manifest.permission.POST_NOTIFICATIONS);
+        }
+        String[] permissions = wanted.toArray(new String[0]);
 
         for (String permission : permissions) {
             if (ContextCompat.checkSelfPermission(this, permission) != PackageManager.PERMISSION_GRANTED) {
@@ -514,6 +484,15 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
         }
     }
 
+    @Override
+    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if (requestCode == PERMISSION_REQUEST_CODE && monitor != null) {
+            // GPS updates could not start before location was granted
+            monitor.startLocationUpdates();
+        }
+    }
+
     private boolean hasBtConnectPermission() {
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S) return true;
         return ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_CONNECT) == PackageManager.PERMISSION_GRANTED;
@@ -555,103 +534,31 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
     }
 
     private void connectToESP32() {
-        Log.d(TAG, "Attempting to connect to ESP32...");
         if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
             requestEnableBluetooth();
             return;
         }
-
         if (!hasBtConnectPermission()) {
             requestBtConnectPermissionIfNeeded();
             return;
         }
-
-        try {
-            bluetoothAdapter.cancelDiscovery();
-        } catch (SecurityException e) {
-            Log.e(TAG, "Error cancelling discovery: " + e.getMessage());
-        }
-
-        Set<BluetoothDevice> pairedDevices;
-        try {
-            pairedDevices = bluetoothAdapter.getBondedDevices();
-        } catch (SecurityException se) {
-            showModernToast("Missing Bluetooth permission");
-            return;
-        }
-
-        BluetoothDevice esp32Device = null;
-        for (BluetoothDevice device : pairedDevices) {
-            try {
-                if (ESP32_NAME.equals(device.getName())) {
-                    esp32Device = device;
-                    break;
-                }
-            } catch (SecurityException e) {
-                // Ignore devices we can't get a name for
-            }
-        }
-
-        if (esp32Device == null) {
-            showModernToast("ESP32 not paired. Pair it in system Bluetooth settings.");
-            return;
-        }
-
-        final BluetoothDevice target = esp32Device;
-        btnConnectBluetooth.setEnabled(false);
-        tvBluetoothStatus.setText("Connecting...");
-
-        new Thread(() -> {
-            try {
-                bluetoothSocket = target.createRfcommSocketToServiceRecord(MY_UUID);
-                bluetoothSocket.connect();
-                inputStream = bluetoothSocket.getInputStream();
-                isConnected = true;
-                runOnUiThread(() -> {
-                    updateConnectionStatus(true);
-                    showModernToast("✓ Connected to ESP32");
-                    btnConnectBluetooth.setEnabled(true);
-                });
-                beginListenForData();
-            } catch (IOException | SecurityException e) {
-                Log.e(TAG, "Bluetooth connection failed: " + e.getMessage());
-                safeCloseSocket();
-                runOnUiThread(() -> {
-                    updateConnectionStatus(false);
-                    showModernToast("Connection failed");
-                    btnConnectBluetooth.setEnabled(true);
-                });
-            }
-        }).start();
-    }
-
-    private void safeCloseSocket() {
-        try {
-            if (inputStream != null) inputStream.close();
-        } catch (IOException e) {
-            Log.e(TAG, "Error closing inputStream", e);
-        }
-        try {
-            if (bluetoothSocket != null) bluetoothSocket.close();
-        } catch (IOException e) {
-            Log.e(TAG, "Error closing bluetoothSocket", e);
-        }
-        inputStream = null;
-        bluetoothSocket = null;
-        isConnected = false;
-    }
-
-    private void disconnectBluetooth() {
-        stopWorker = true;
-        safeCloseSocket();
-        updateConnectionStatus(false);
-        showModernToast("Disconnected from ESP32");
+        // The service runs the links in the foreground until disconnected, whatever this screen does
+        monitor.connect();
     }
 
     private void updateConnectionStatus(boolean connected) {
-        if (connected) {
-            tvBluetoothStatus.setText("✓ Connected to ESP32");
-            statusIndicator.setBackgroundResource(R.drawable.status_indicator_connected);
+        SensorHub hub = monitor != null ? monitor.getSensorHub() : null;
+        if (connected && hub != null) {
+            int total = hub.getLinks().size();
+            int up = hub.getConnectedCount();
+            if (total == 1) {
+                boolean retrying = hub.getLinks().get(0).getState() == SensorHub.LinkState.BACKOFF;
+                tvBluetoothStatus.setText(up == 1 ? "✓ Connected to ESP32" : retrying ? "Reconnecting..." : "Connecting...");
+            } else {
+                tvBluetoothStatus.setText((up > 0 ? "✓ " : "") + "Connected to " + up + "/" + total + " sensors");
+            }
+            statusIndicator.setBackgroundResource(up > 0 ? R.drawable.status_indicator_connected
+                    : R.drawable.status_indicator_disconnected);
             btnConnectBluetooth.setText("Disconnect");
             btnConnectBluetooth.setBackgroundColor(getColor(R.color.text_secondary));
         } else {
@@ -662,151 +569,49 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
         }
     }
 
-    private void beginListenForData() {
-        stopWorker = false;
-        Thread workerThread = new Thread(() -> {
-            while (!Thread.currentThread().isInterrupted() && !stopWorker) {
-                try {
-                    if (inputStream != null) {
-                        int bytesAvailable = inputStream.available();
-                        if (bytesAvailable > 0) {
-                            byte[] packetBytes = new byte[bytesAvailable];
-                            inputStream.read(packetBytes);
-                            String data = new String(packetBytes, "UTF-8");
-                            Log.v(TAG, "Received Bluetooth data: " + data);
-
-                            if (data.contains("ACCIDENT_DETECTED")) {
-                                Log.i(TAG, "ACCIDENT_DETECTED signal received from ESP32.");
-                                // Use guarded trigger to ensure only one emergency alert is sent per incident
-                                runOnUiThread(this::triggerEmergencyIfNeeded);
-                            }
-
-                            parseSensorData(data);
-                        }
-                    }
-                } catch (IOException e) {
-                    stopWorker = true;
-                    Log.e(TAG, "Error reading Bluetooth data, stopping worker: " + e.getMessage());
-                }
-            }
-            Log.d(TAG, "Bluetooth data listener stopped.");
-        });
-        workerThread.start();
-    }
-
-    private void parseSensorData(String data) {
-        runOnUiThread(() -> {
-            try {
-                float accel = Float.NaN;
-                float gyro = Float.NaN;
-
-                if (data.contains("ACCEL:")) {
-                    String accelValue = data.substring(data.indexOf("ACCEL:") + 6).trim();
-                    accel = Float.parseFloat(accelValue);
-                }
-                if (data.contains("GYRO:")) {
-                    String gyroValue = data.substring(data.indexOf("GYRO:") + 5).trim();
-                    gyro = Float.parseFloat(gyroValue);
-                }
-
-                if (classifier != null) {
-                    if (classifier.isMlAvailable()) {
-                        tvStatus.setText("✓ ML Model Active - Analyzing...");
-                    } else {
-                        tvStatus.setText("✓ Threshold Detection Active");
-                    }
-
-                    if (!Float.isNaN(accel) && !Float.isNaN(gyro)) {
-                        final float fAccel = accel;
-                        final float fGyro = gyro;
-                        new Thread(() -> {
-                            float prob = classifier.predict(fAccel, fGyro);
-                            if (prob >= 0.7f) {
-                                String detectionType = classifier.isMlAvailable() ? "ML" : "Threshold";
-                                Log.i(TAG, detectionType + " detected accident! Accel: " + fAccel + ", Gyro: " + fGyro + ", Probability: " + prob);
-                                // Uses single-send guard to prevent duplicate alerts
-                                runOnUiThread(this::triggerEmergencyIfNeeded);
-                            }
-                        }).start();
-                    }
-                } else {
-                    tvStatus.setText("✓ System Active - Monitoring...");
-                }
-
-            } catch (Exception e) {
-                Log.e(TAG, "Error in parseSensorData: " + e.getMessage());
-            }
-        });
-    }
-
-    private void handleAccidentDetection() {
-        // Backwards compatibility: route to guarded trigger
-        Log.d(TAG, "handleAccidentDetection triggered.");
-        triggerEmergencyIfNeeded();
-    }
-
-    private synchronized void triggerEmergencyIfNeeded() {
-        long now = System.currentTimeMillis();
-        Log.d(TAG, "triggerEmergencyIfNeeded called. emergencySent=" + emergencySent);
-
-        // Only check the guard for automatic triggers (ESP32/ML), not manual button
-        if (emergencySent) {
-            Log.d(TAG, "Emergency already sent from automatic trigger; ignoring subsequent automatic trigger.");
-            return;
+    private void renderLiveState(float accel, float gyro) {
+        String status;
+        AccidentClassifier classifier = monitor != null ? monitor.getClassifier() : null;
+        if (classifier != null) {
+            // A loaded model is not enough: it must be scoring the windows, not the rule standing in for it
+            status = monitor.isMlScoring() ? "✓ ML Model Active - Analyzing..." : "✓ Threshold Detection Active";
+        } else {
+            status = "✓ System Active - Monitoring...";
         }
-
-        // Mark as sent and schedule auto-reset
-        emergencySent = true;
-        lastAlertTimeMillis = now;
-        if (resetRunnable != null) {
-            resetHandler.removeCallbacks(resetRunnable);
+        // setText relayouts even for equal text
+        if (!status.contentEquals(tvStatus.getText())) {
+            tvStatus.setText(status);
         }
-        resetRunnable = () -> {
-            synchronized (MainActivity.this) {
-                emergencySent = false;
-                resetRunnable = null;
-                Log.d(TAG, "Emergency state auto-reset after timeout.");
-                updateEmergencyStateUI();
-            }
-        };
-        resetHandler.postDelayed(resetRunnable, RESET_TIMEOUT_MS);
-
-        Log.i(TAG, "Triggering emergency alert.");
-        updateEmergencyStateUI();
-        sendEmergencyAlert();
     }
 
-    private synchronized void resetEmergencyState() {
-        if (resetRunnable != null) {
-            resetHandler.removeCallbacks(resetRunnable);
-            resetRunnable = null;
+    private void triggerEmergencyIfNeeded() {
+        // Goes through the engine so automatic and testing triggers share one hold
+        if (monitor != null) {
+            monitor.triggerEmergency();
+        } else {
+            triggerWhenBound = true;
         }
-        emergencySent = false;
-        Log.d(TAG, "Emergency state reset.");
-        updateEmergencyStateUI();
     }
 
     private void updateEmergencyStateUI() {
-        runOnUiThread(() -> {
-            if (tvEmergencyState != null) {
-                if (emergencySent) {
-                    long timeRemaining = RESET_TIMEOUT_MS - (System.currentTimeMillis() - lastAlertTimeMillis);
-                    int minutesRemaining = (int) (timeRemaining / 60_000);
-                    tvEmergencyState.setText("⏳ Alert sent — resets in ~" + minutesRemaining + "m");
-                    tvEmergencyState.setAlpha(1.0f);
-                } else {
-                    tvEmergencyState.setText("✓ Ready to send alerts");
-                    tvEmergencyState.setAlpha(0.85f);
-                }
-            }
-        });
-    }
-
-    private void startLocationUpdates() {
-        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+        if (tvEmergencyState == null || monitor == null) {
             return;
         }
-        locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, 5000, 10, this);
+        long timeRemaining = monitor.getAlertHoldRemainingMillis();
+        String failure = monitor.getAlertFailure();
+        if (timeRemaining > 0 && failure != null) {
+            int minutesRemaining = (int) (timeRemaining / 60_000);
+            tvEmergencyState.setText("⚠ Alert failed: " + failure + " — automatic alerts paused ~"
+                    + minutesRemaining + "m, use the alert button to retry");
+            tvEmergencyState.setAlpha(1.0f);
+        } else if (timeRemaining > 0) {
+            int minutesRemaining = (int) (timeRemaining / 60_000);
+            tvEmergencyState.setText("⏳ Alert sent — resets in ~" + minutesRemaining + "m");
+            tvEmergencyState.setAlpha(1.0f);
+        } else {
+            tvEmergencyState.setText("✓ Ready to send alerts");
+            tvEmergencyState.setAlpha(0.85f);
+        }
     }
 
     private void startPulseAnimation() {
@@ -831,43 +636,16 @@ public class MainActivity extends AppCompatActivity implements LocationListener,
         runOnUiThread(() -> Toast.makeText(this, message, Toast.LENGTH_SHORT).show());
     }
 
-    @Override
-    public void onLocationChanged(@NonNull Location location) {
-        currentLatitude = location.getLatitude();
-        currentLongitude = location.getLongitude();
-        tvLocation.setText(String.format("GPS: %.4f, %.4f", currentLatitude, currentLongitude));
-    }
-
-    @Override
-    public void onProviderEnabled(@NonNull String provider) {
-        showModernToast("GPS Enabled");
-    }
-
-    @Override
-    public void onProviderDisabled(@NonNull String provider) {
-        showModernToast("GPS Disabled - Please enable location");
-    }
-
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        disconnectBluetooth();
         if (emergencyDialog != null && emergencyDialog.isShowing()) {
             emergencyDialog.dismiss();
         }
-        if (classifier != null) {
-            classifier.close();
-        }
-        if (locationManager != null) {
-            locationManager.removeUpdates(this);
-        }
-        if (smsHelper != null) {
-            smsHelper.unregisterSmsReceivers();
-        }
-        // Clean up any pending reset callbacks
-        if (resetRunnable != null) {
-            resetHandler.removeCallbacks(resetRunnable);
-            resetRunnable = null;
+        // Monitoring goes on in the service while the sensors are connected
+        releaseMonitor();
+        if (bound) {
+            unbindService(monitorConnection);
         }
     }
 
@@ -0,0 +1,932 @@
+package com.example.accidentdetection;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the monitoring pipeline: the sensor links, the classifier and detection engine, the alert
+ * recorders and the emergency SMS dispatch. Activities bind to it for live state and controls
+ * and may come and go freely; while sensors are connected the service is started and in the
+ * foreground, so the links stay up with the screen off and the model is loaded and warmed once.
+ *
+ * Everything runs on the main thread except the {@link DecisionSink} and {@link SensorHub}
+ * callbacks, which arrive on telemetry threads. {@link Listener}s are called on the main thread.
+ */
+public class MonitoringService extends Service implements DecisionSink, SmsHelper.SmsCallback, LocationListener {
+
+    private static final String TAG = "MonitoringService";
+
+    /**
+     * What bound screens hear about; every call is on the main thread.
+     */
+    public interface Listener {
+        /**
+         * The sensors were connected or disconnected, or a link changed state.
+         */
+        default void onConnectionChanged(boolean connected) {
+        }
+
+        default void onModelLoaded(boolean mlLoaded) {
+        }
+
+        default void onLocationChanged(double latitude, double longitude) {
+        }
+
+        /**
+         * An emergency SMS was handed to the radio for {@code contacts} contacts.
+         */
+        default void onAlertSent(int contacts, double latitude, double longitude) {
+        }
+
+        /**
+         * An alert was raised but could not be sent.
+         */
+        default void onAlertNotSent(String reason) {
+        }
+
+        /**
+         * The single-send hold started, lapsed or was reset.
+         */
+        default void onAlertStateChanged() {
+        }
+
+        default void onSmsSent(int total, int sent) {
+        }
+
+        default void onSmsDelivered(int total, int delivered) {
+        }
+
+        default void onSmsError(String errorMessage) {
+        }
+
+        default void onSmsCancelled() {
+        }
+
+        /**
+         * A short notice for the user, e.g. why connecting failed.
+         */
+        default void onMessage(String message) {
+        }
+    }
+
+    public class LocalBinder extends Binder {
+        public MonitoringService getService() {
+            return MonitoringService.this;
+        }
+    }
+
+    // Bluetooth
+    private static final UUID MY_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
+    // Sensor nodes are named ESP32_AccidentDetector, or ESP32_AccidentDetector_<position> when a vehicle has several
+    private static final String ESP32_NAME = "ESP32_AccidentDetector";
+    // One link per paired node, fused into a single stream for the engine; null while disconnected
+    private static final long FUSION_PERIOD_MS = 20L;
+    private static final long FUSION_MAX_LATENCY_MS = 200L;
+    // A node silent this long is reconnected; dropped nodes retry with backoff between these bounds
+    private static final long LINK_STALL_TIMEOUT_MS = 2000L;
+    private static final long LINK_HEARTBEAT_MS = 1000L;
+    private static final long RECONNECT_MIN_BACKOFF_MS = 500L;
+    private static final long RECONNECT_MAX_BACKOFF_MS = 30_000L;
+    private SensorHub sensorHub = null;
+
+    // Recent telemetry, written only by the listener thread; saved around each alert for later review
+    private static final int HISTORY_CAPACITY = 16384; // ~30 s at 500 Hz
+    private static final long SNAPSHOT_PRE_MS = 10_000L;
+    private static final long SNAPSHOT_POST_MS = 5_000L;
+    private static final int SNAPSHOTS_KEPT = 20;
+    private final SampleHistory sampleHistory = new SampleHistory(HISTORY_CAPACITY);
+    private SnapshotRecorder snapshotRecorder = null;
+
+    // Every frame the engine reads, for replaying trips through the detection path offline
+    private static final long TRIP_SEGMENT_BYTES = 4L * 1024 * 1024;
+    private static final long TRIP_LOG_MAX_BYTES = 256L * 1024 * 1024;
+    private static final int TRIP_BUFFER_BYTES = 64 * 1024;
+    private static final long TRIP_FLUSH_INTERVAL_MS = 2_000L;
+    // Logs the fused stream the engine scores, every node included, so a trip replays as it ran
+    private TripRecorder tripRecorder = null;
+    // The hub's output reaches the engine as frames, so the trip log holds exactly what it read.
+    // Fused buckets and device alerts come from different link threads and take turns here.
+    private final Object engineInputLock = new Object();
+    private final byte[] engineInput = new byte[BinaryProtocol.frameLength(BinaryProtocol.MAX_PAYLOAD)];
+    private long pendingGapMillis = 0;
+
+    // --- ML classifier and the detection engine it runs in ---
+    private AccidentClassifier classifier = null;
+    private boolean modelLoadFinished = false;
+    // JAVA runs the bundled model without ONNX Runtime's native session; see AccidentClassifier.Backend
+    private static final AccidentClassifier.Backend MODEL_BACKEND = AccidentClassifier.Backend.ONNX_RUNTIME;
+    // Sampling rate asked of the ESP32; samples arrive in batches, one per ~20 ms
+    private static final int TELEMETRY_RATE_HZ = 500;
+    // The bundled model scores 14-sample feature windows over the first node's raw samples, as in
+    // its dataset; at 500 Hz a 20 ms bucket brings 10 samples, so each bucket scores one window
+    private static final int FEATURE_WINDOW_STRIDE = 7;
+    // Queued windows, not raw samples: at most one per fused bucket, so ~320 ms of telemetry
+    // (1.6 s of text telemetry at 10 Hz)
+    private static final int INFERENCE_QUEUE_CAPACITY = 16;
+    // The model counts as scoring while it produced a probability this recently; spans two gate audits
+    private static final long ML_SCORING_RECENT_MS = 10_000L;
+    private DetectionEngine engine = null;
+
+    // Latest reading, published by the listener thread; each bound screen draws it once per display frame
+    private final LiveState liveState = new LiveState();
+    private volatile LiveStateRenderer[] renderers = new LiveStateRenderer[0];
+
+    // Single-send guard: the engine holds an alert this long; the handler tells the screens when it lapses
+    private static final long RESET_TIMEOUT_MS = 5 * 60_000L; // 5 minutes auto-reset
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Runnable resetRunnable = null;
+    // Why the held alert failed to send; main thread, cleared with the hold
+    private String alertFailure = null;
+    // Detections repeat at the window rate while an alert is held; the engine counts them all and
+    // the log gets one per interval
+    private static final long SUPPRESSED_LOG_INTERVAL_MS = 10_000L;
+    private volatile long lastSuppressedLogNanos = 0;
+    private volatile long lastInferenceFailureLogNanos = 0;
+
+    // Location
+    private LocationManager locationManager;
+    private double currentLatitude = 0.0;
+    private double currentLongitude = 0.0;
+
+    private SmsHelper smsHelper;
+    // Keeps the alert SMS built for the saved contacts and the latest location, so an alert only
+    // hands it off
+    private AlertDispatcher dispatcher;
+    // Sends the prepared SMS: handing it to the radio is a few binder calls, which should stall
+    // neither detection nor the screens
+    private HandlerThread alertThread;
+    private Handler alertHandler;
+    private SharedPreferences contactPrefs;
+    private final SharedPreferences.OnSharedPreferenceChangeListener contactsListener = (prefs, key) -> {
+        if (ContactItem.CONTACTS_KEY.equals(key)) {
+            refreshContacts();
+        }
+    };
+
+    // Foreground notification
+    private static final String CHANNEL_ID = "monitoring";
+    private static final int NOTIFICATION_ID = 1;
+    private boolean inForeground = false;
+
+    private final IBinder binder = new LocalBinder();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        createNotificationChannel();
+
+        // ML Classifier: loads off the main thread, threshold detection covers the gap
+        classifier = new AccidentClassifier(this, SessionConfig.lowPower(), MODEL_BACKEND);
+        classifier.loadAsync().whenComplete((loaded, error) -> mainHandler.post(() -> {
+            if (engine == null) {
+                // Destroyed while loading
+                return;
+            }
+            modelLoadFinished = true;
+            boolean mlLoaded = error == null && loaded;
+            if (mlLoaded) {
+                Log.i(TAG, "ML model loaded successfully - using AI-based accident detection.");
+            } else if (error != null) {
+                Log.e(TAG, "ML model loader failed - using threshold-based fallback detection.", error);
+            } else {
+                Log.w(TAG, "ML model failed to load - using threshold-based fallback detection.");
+            }
+            for (Listener listener : listeners) {
+                listener.onModelLoaded(mlLoaded);
+            }
+        }));
+
+        snapshotRecorder = new SnapshotRecorder(sampleHistory, new File(getFilesDir(), "snapshots"),
+                SNAPSHOT_PRE_MS, SNAPSHOT_POST_MS, SNAPSHOTS_KEPT, new SnapshotRecorder.Listener() {
+                    @Override
+                    public void onSnapshotSaved(File file, int samples) {
+                        Log.i(TAG, "Saved " + samples + " samples around the alert to " + file);
+                    }
+
+                    @Override
+                    public void onSnapshotFailed(IOException e) {
+                        Log.e(TAG, "Could not save alert snapshot", e);
+                    }
+                });
+        snapshotRecorder.start();
+
+        tripRecorder = new TripRecorder(new File(getFilesDir(), "trips"), TRIP_SEGMENT_BYTES,
+                TRIP_LOG_MAX_BYTES, TRIP_BUFFER_BYTES, TRIP_FLUSH_INTERVAL_MS);
+        tripRecorder.start();
+
+        // Before the engine, whose alerts fire it; startLocationUpdates below adds the location
+        smsHelper = new SmsHelper(this, this);
+        dispatcher = new AlertDispatcher(smsHelper);
+        alertThread = new HandlerThread("AlertDispatch", Process.THREAD_PRIORITY_FOREGROUND);
+        alertThread.start();
+        alertHandler = new Handler(alertThread.getLooper());
+        refreshAlertMessage();
+        contactPrefs = getSharedPreferences(ContactItem.PREFS_NAME, Context.MODE_PRIVATE);
+        contactPrefs.registerOnSharedPreferenceChangeListener(contactsListener);
+        refreshContacts();
+
+        engine = new DetectionEngine(classifier, this, INFERENCE_QUEUE_CAPACITY, RESET_TIMEOUT_MS);
+        engine.setSampleHistory(sampleHistory);
+        engine.setTripRecorder(tripRecorder);
+        engine.setFeatureWindow(FeatureExtractor.DATASET_WINDOW, FEATURE_WINDOW_STRIDE);
+        // The model only scores windows while the drive is eventful, plus an audit every few seconds
+        engine.setGate(new SampleGate());
+        engine.start();
+
+        locationManager = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
+        startLocationUpdates();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // Started only by connect(), which also puts the service in the foreground
+        return START_NOT_STICKY;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Has {@code renderer} draw the live readings; main thread.
+     */
+    public void addRenderer(LiveStateRenderer renderer) {
+        List<LiveStateRenderer> all = new ArrayList<>(Arrays.asList(renderers));
+        all.add(renderer);
+        renderers = all.toArray(new LiveStateRenderer[0]);
+    }
+
+    public void removeRenderer(LiveStateRenderer renderer) {
+        List<LiveStateRenderer> all = new ArrayList<>(Arrays.asList(renderers));
+        all.remove(renderer);
+        renderers = all.toArray(new LiveStateRenderer[0]);
+    }
+
+    public LiveState getLiveState() {
+        return liveState;
+    }
+
+    public AccidentClassifier getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * @return whether the model, rather than the threshold rule, scored telemetry lately; false
+     * while it is loading, while only text telemetry (no axes) arrives, or while it keeps failing
+     */
+    public boolean isMlScoring() {
+        long last = classifier != null ? classifier.getLastMlPredictionNanos() : 0;
+        return last != 0 && System.nanoTime() - last < TimeUnit.MILLISECONDS.toNanos(ML_SCORING_RECENT_MS);
+    }
+
+    /**
+     * @return whether {@link Listener#onModelLoaded} has been called, successful or not
+     */
+    public boolean isModelLoadFinished() {
+        return modelLoadFinished;
+    }
+
+    public boolean isConnected() {
+        return sensorHub != null;
+    }
+
+    /**
+     * @return the connected sensors, or null while disconnected
+     */
+    public SensorHub getSensorHub() {
+        return sensorHub;
+    }
+
+    public double getLatitude() {
+        return currentLatitude;
+    }
+
+    public double getLongitude() {
+        return currentLongitude;
+    }
+
+    /**
+     * Connects to every paired sensor node and keeps the service in the foreground until
+     * {@link #disconnect()}.
+     *
+     * @return false when nothing could be connected; the reason goes to {@link Listener#onMessage}
+     */
+    public boolean connect() {
+        if (sensorHub != null) {
+            return true;
+        }
+        Log.d(TAG, "Attempting to connect to ESP32...");
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
+            message("Please enable Bluetooth");
+            return false;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_CONNECT)
+                != PackageManager.PERMISSION_GRANTED) {
+            message("Bluetooth permission required");
+            return false;
+        }
+
+        try {
+            bluetoothAdapter.cancelDiscovery();
+        } catch (SecurityException e) {
+            Log.e(TAG, "Error cancelling discovery: " + e.getMessage());
+        }
+
+        Set<BluetoothDevice> pairedDevices;
+        try {
+            pairedDevices = bluetoothAdapter.getBondedDevices();
+        } catch (SecurityException se) {
+            message("Missing Bluetooth permission");
+            return false;
+        }
+
+        List<BluetoothDevice> nodes = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (BluetoothDevice device : pairedDevices) {
+            try {
+                String name = device.getName();
+                if (ESP32_NAME.equals(name) || (name != null && name.startsWith(ESP32_NAME + "_"))) {
+                    nodes.add(device);
+                    names.add(name);
+                }
+            } catch (SecurityException e) {
+                // Ignore devices we can't get a name for
+            }
+        }
+
+        if (nodes.isEmpty()) {
+            message("ESP32 not paired. Pair it in system Bluetooth settings.");
+            return false;
+        }
+
+        Log.d(TAG, "Connecting to " + nodes.size() + " sensor node(s): " + names);
+        SensorHub hub = new SensorHub(FUSION_PERIOD_MS, FUSION_MAX_LATENCY_MS, TELEMETRY_RATE_HZ, hubListener);
+        for (int i = 0; i < nodes.size(); i++) {
+            hub.addLink(new RfcommTransport(nodes.get(i), MY_UUID, names.get(i)));
+        }
+        hub.supervise(LINK_STALL_TIMEOUT_MS, LINK_HEARTBEAT_MS, RECONNECT_MIN_BACKOFF_MS, RECONNECT_MAX_BACKOFF_MS);
+        sensorHub = hub;
+        startInForeground();
+        // Link threads only append to the trip, through the engine; it is opened here and closed
+        // after they have stopped
+        tripRecorder.beginTrip(System.currentTimeMillis(), System.nanoTime());
+        hub.start();
+        notifyConnectionChanged();
+        return true;
+    }
+
+    public void disconnect() {
+        SensorHub hub = sensorHub;
+        if (hub == null) {
+            return;
+        }
+        sensorHub = null;
+        // Joins the link threads, so the trip can be closed from here
+        hub.shutdown(500);
+        tripRecorder.endTrip();
+        long now = System.nanoTime();
+        for (SensorHub.Link link : hub.getLinks()) {
+            Log.d(TAG, "Link stats: " + link + " maxRecoveryMs=" + link.getMaxRecoveryMillis()
+                    + " unmonitoredMs=" + link.getUnmonitoredMillis(now));
+        }
+        Log.d(TAG, "Time with no sensor connected: " + hub.getUnmonitoredMillis(now) + " ms");
+        liveState.clear();
+        stopInForeground();
+        notifyConnectionChanged();
+        message("Disconnected from ESP32");
+    }
+
+    private final SensorHub.Listener hubListener = new SensorHub.Listener() {
+        @Override
+        public void onFusedSample(long nanos, float accel, float gyro, float[] axes, int links,
+                                  float[] samples, int sampleCount) {
+            synchronized (engineInputLock) {
+                int length = BinaryProtocol.encodeFused(engineInput, 0, links, pendingGapMillis,
+                        accel, gyro, axes, samples, sampleCount);
+                pendingGapMillis = 0;
+                engine.onFrame(engineInput, 0, length, nanos);
+            }
+        }
+
+        @Override
+        public void onStreamGap(long lostNanos, long resumedNanos) {
+            // Carried by the next bucket, which follows right away
+            synchronized (engineInputLock) {
+                pendingGapMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(resumedNanos - lostNanos));
+            }
+        }
+
+        @Override
+        public void onGap(SensorHub.Link link, long lostNanos, long resumedNanos) {
+            Log.i(TAG, "Sensor link " + link.getName() + " resumed after "
+                    + TimeUnit.NANOSECONDS.toMillis(resumedNanos - lostNanos) + " ms without data");
+        }
+
+        @Override
+        public void onDeviceAlert(SensorHub.Link link, float accel, float gyro, long nanos) {
+            Log.i(TAG, "ACCIDENT_DETECTED signal received from " + link.getName() + ".");
+            synchronized (engineInputLock) {
+                int length = BinaryProtocol.encodeAlert(engineInput, 0, 0, TimeUnit.NANOSECONDS.toMillis(nanos),
+                        accel, gyro);
+                engine.onFrame(engineInput, 0, length, nanos);
+            }
+        }
+
+        @Override
+        public void onLinkStateChanged(SensorHub.Link link) {
+            if (link.getState() == SensorHub.LinkState.CLOSED) {
+                String error = link.getLastError();
+                Log.w(TAG, "Sensor link closed: " + link + (error != null ? " (" + error + ")" : ""));
+            } else {
+                Log.d(TAG, "Sensor link " + link.getName() + ": " + link.getState());
+            }
+            mainHandler.post(MonitoringService.this::notifyConnectionChanged);
+        }
+    };
+
+    private void notifyConnectionChanged() {
+        boolean connected = sensorHub != null;
+        if (connected && inForeground) {
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            manager.notify(NOTIFICATION_ID, buildNotification());
+        }
+        for (Listener listener : listeners) {
+            listener.onConnectionChanged(connected);
+        }
+    }
+
+    private void message(String text) {
+        for (Listener listener : listeners) {
+            listener.onMessage(text);
+        }
+    }
+
+    private void createNotificationChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Accident monitoring",
+                    NotificationManager.IMPORTANCE_LOW);
+            channel.setDescription("Shown while the sensors are being watched");
+            getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+    }
+
+    private Notification buildNotification() {
+        SensorHub hub = sensorHub;
+        String text;
+        if (hub == null) {
+            text = "Connecting...";
+        } else {
+            int total = hub.getLinks().size();
+            int up = hub.getConnectedCount();
+            text = up == 0 ? "Waiting for sensors..."
+                    : total == 1 ? "Connected to ESP32" : "Connected to " + up + "/" + total + " sensors";
+        }
+        Intent open = new Intent(this, MainActivity.class).addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        PendingIntent content = PendingIntent.getActivity(this, 0, open, PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_shield_safety)
+                .setContentTitle("Accident detection active")
+                .setContentText(text)
+                .setContentIntent(content)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .build();
+    }
+
+    private void startInForeground() {
+        if (inForeground) {
+            return;
+        }
+        // Started as well as bound, so the pipeline outlives the screens that bound it
+        ContextCompat.startForegroundService(this, new Intent(this, MonitoringService.class));
+        int type = ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE;
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
+                == PackageManager.PERMISSION_GRANTED) {
+            // Keeps GPS fixes coming for the alert message while no screen is visible
+            type |= ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION;
+        }
+        ServiceCompat.startForeground(this, NOTIFICATION_ID, buildNotification(), type);
+        inForeground = true;
+    }
+
+    private void stopInForeground() {
+        if (!inForeground) {
+            return;
+        }
+        ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+        inForeground = false;
+        // Lives on while screens are bound
+        stopSelf();
+    }
+
+    /**
+     * Runs on the listener thread for every sensor frame; bound screens catch up once per display frame.
+     */
+    @Override
+    public void onSensorData(float accel, float gyro) {
+        liveState.publish(accel, gyro);
+        for (LiveStateRenderer renderer : renderers) {
+            renderer.invalidate();
+        }
+    }
+
+    @Override
+    public void onBinaryTelemetry(int sampleRateHz) {
+        Log.i(TAG, sampleRateHz > 0
+                ? "ESP32 switched to binary telemetry at " + sampleRateHz + " Hz."
+                : "ESP32 switched to binary telemetry.");
+    }
+
+    @Override
+    public void onSamplesLost(int count, int sequence) {
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, count + " telemetry sample(s) lost before #" + sequence);
+        }
+    }
+
+    @Override
+    public void onInferenceFailed(RuntimeException e) {
+        long now = System.nanoTime();
+        // A broken model fails every window; log the first and then at most once per interval
+        if (lastInferenceFailureLogNanos != 0
+                && now - lastInferenceFailureLogNanos < TimeUnit.MILLISECONDS.toNanos(SUPPRESSED_LOG_INTERVAL_MS)) {
+            return;
+        }
+        lastInferenceFailureLogNanos = now;
+        Log.e(TAG, "Inference failed; sample skipped ("
+                + engine.getInferenceExecutor().getFailures() + " failed so far).", e);
+    }
+
+    @Override
+    public void onMalformedFrame(int error, byte[] buffer, int offset, int length) {
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Malformed frame (" + TelemetryParser.describeError(error) + "): "
+                    + new String(buffer, offset, length, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Runs on the engine's listener or inference thread, once per incident; repeats within the
+     * hold are suppressed by the engine. The prepared SMS goes straight to the alert thread, so
+     * the binder calls that hand it to the radio never hold up detection. The handoff latency,
+     * logged per alert, is timed from the decision and so includes that hop.
+     */
+    @Override
+    public void onAlert(DetectionEngine.Decision decision) {
+        alertHandler.post(() -> {
+            int handedOff = dispatcher.fire(decision.nanos);
+            mainHandler.post(() -> onEmergency(handedOff));
+        });
+        switch (decision.cause) {
+            case MODEL:
+                String detectionType = isMlScoring() ? "ML" : "Threshold";
+                Log.i(TAG, detectionType + " detected accident! Accel: " + decision.accel + ", Gyro: "
+                        + decision.gyro + ", Probability: " + decision.probability);
+                break;
+            case DEVICE:
+                Log.i(TAG, "ACCIDENT_DETECTED signal received from ESP32.");
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void onAlertSuppressed(DetectionEngine.Decision decision) {
+        long now = System.nanoTime();
+        // Racing callers may both log once; that is all a lost update costs
+        if (lastSuppressedLogNanos != 0
+                && now - lastSuppressedLogNanos < TimeUnit.MILLISECONDS.toNanos(SUPPRESSED_LOG_INTERVAL_MS)) {
+            return;
+        }
+        lastSuppressedLogNanos = now;
+        Log.d(TAG, "Emergency already sent; ignoring " + decision.cause + " trigger ("
+                + engine.getAlertsSuppressed() + " suppressed so far).");
+    }
+
+    /**
+     * Raises an alert through the engine, so it shares the single-send hold with detected ones.
+     */
+    public void triggerEmergency() {
+        engine.trigger(System.nanoTime());
+    }
+
+    private void onEmergency(int handedOff) {
+        alertFailure = null;
+        // Tell the screens once the engine's hold lapses
+        if (resetRunnable != null) {
+            mainHandler.removeCallbacks(resetRunnable);
+        }
+        resetRunnable = () -> {
+            resetRunnable = null;
+            alertFailure = null;
+            Log.d(TAG, "Emergency state auto-reset after timeout.");
+            notifyAlertStateChanged();
+        };
+        mainHandler.postDelayed(resetRunnable, RESET_TIMEOUT_MS);
+
+        Log.i(TAG, "Triggering emergency alert.");
+        if (snapshotRecorder != null) {
+            snapshotRecorder.trigger("emergency");
+        }
+        notifyAlertStateChanged();
+        reportDispatch(handedOff);
+    }
+
+    /**
+     * Sends the emergency SMS now, bypassing the hold; for the manual alert button.
+     */
+    public void sendEmergencyAlert() {
+        Log.d(TAG, "Attempting to send emergency alert...");
+        long nanos = System.nanoTime();
+        alertHandler.post(() -> {
+            int handedOff = dispatcher.fire(nanos);
+            mainHandler.post(() -> reportDispatch(handedOff));
+        });
+    }
+
+    /**
+     * Tells the screens how {@link AlertDispatcher#fire} went; main thread.
+     */
+    private void reportDispatch(int handedOff) {
+        if (handedOff < 0) {
+            String reason = dispatcher.getDisarmedReason();
+            Log.w(TAG, "Alert not sent: " + reason);
+            for (Listener listener : listeners) {
+                listener.onAlertNotSent(reason);
+            }
+            return;
+        }
+        Log.i(TAG, "Emergency SMS handed off " + TimeUnit.NANOSECONDS.toMicros(dispatcher.getLastHandoffNanos())
+                + " us after the trigger");
+        for (Listener listener : listeners) {
+            listener.onAlertSent(handedOff, currentLatitude, currentLongitude);
+        }
+    }
+
+    private void refreshContacts() {
+        List<String> phones = new ArrayList<>();
+        for (ContactItem contact : ContactItem.loadSaved(this)) {
+            phones.add(contact.phone);
+        }
+        dispatcher.setRecipients(phones);
+    }
+
+    private void refreshAlertMessage() {
+        dispatcher.setMessage("🚨 ACCIDENT DETECTED! 🚨\n\n" +
+                "Emergency assistance needed.\n\n" +
+                "📍 Location: " +
+                "https://maps.google.com/?q=" + currentLatitude + "," + currentLongitude);
+        String error = dispatcher.getPrepareError();
+        if (error != null) {
+            Log.w(TAG, "Alert SMS not rebuilt, the previous one stays armed: " + error);
+        }
+    }
+
+    public void cancelEmergencySms() {
+        smsHelper.cancelEmergencySms();
+    }
+
+    /**
+     * Ends the single-send hold so the next detection sends again.
+     */
+    public void resetEmergencyState() {
+        if (resetRunnable != null) {
+            mainHandler.removeCallbacks(resetRunnable);
+            resetRunnable = null;
+        }
+        alertFailure = null;
+        engine.resetAlert();
+        Log.d(TAG, "Emergency state reset.");
+        notifyAlertStateChanged();
+    }
+
+    /**
+     * @return why the alert that started the current hold failed to send, or null; automatic
+     * alerts stay paused until the hold lapses or is reset
+     */
+    public String getAlertFailure() {
+        return getAlertHoldRemainingMillis() > 0 ? alertFailure : null;
+    }
+
+    public long getAlertHoldRemainingMillis() {
+        return engine.getAlertHoldRemainingMillis(System.nanoTime());
+    }
+
+    private void notifyAlertStateChanged() {
+        for (Listener listener : listeners) {
+            listener.onAlertStateChanged();
+        }
+    }
+
+    @Override
+    public void onAllSmsSent(int total, int sent) {
+        mainHandler.post(() -> {
+            if (alertFailure != null && sent > 0) {
+                // A retry from the alert button got through; the hold itself stays
+                alertFailure = null;
+                notifyAlertStateChanged();
+            }
+            for (Listener listener : listeners) {
+                listener.onSmsSent(total, sent);
+            }
+        });
+    }
+
+    @Override
+    public void onAllSmsDelivered(int total, int delivered) {
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onSmsDelivered(total, delivered);
+            }
+        });
+    }
+
+    @Override
+    public void onSmsCancelled() {
+        mainHandler.post(() -> {
+            Log.d(TAG, "SMS Cancelled Callback received");
+            // If user cancels SMS sending, allow future alerts
+            resetEmergencyState();
+            for (Listener listener : listeners) {
+                listener.onSmsCancelled();
+            }
+        });
+    }
+
+    @Override
+    public void onSmsError(String errorMessage) {
+        mainHandler.post(() -> {
+            Log.e(TAG, "SMS Error Callback: " + errorMessage);
+            // The hold stays: re-arming would let the next detection fail the same way at the
+            // window rate. The screens show that automatic alerts are paused and why; the alert
+            // button sends past the hold.
+            alertFailure = errorMessage;
+            notifyAlertStateChanged();
+            for (Listener listener : listeners) {
+                listener.onSmsError(errorMessage);
+            }
+        });
+    }
+
+    /**
+     * Starts GPS updates if the permission has been granted; safe to call again after it is.
+     */
+    public void startLocationUpdates() {
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            dispatcher.setBlockedReason("Location permission required");
+            return;
+        }
+        Location location = null;
+        try {
+            location = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
+        } catch (SecurityException e) {
+            Log.e(TAG, "Location permission denied or manager issue: " + e.getMessage());
+        }
+        if (location != null) {
+            currentLatitude = location.getLatitude();
+            currentLongitude = location.getLongitude();
+        } else {
+            Log.w(TAG, "Last known location is null. Using default 0,0 until the first fix.");
+        }
+        // Message first, so unblocking prepares the alert once
+        refreshAlertMessage();
+        dispatcher.setBlockedReason(null);
+        locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, 5000, 10, this);
+    }
+
+    @Override
+    public void onLocationChanged(@NonNull Location location) {
+        currentLatitude = location.getLatitude();
+        currentLongitude = location.getLongitude();
+        refreshAlertMessage();
+        for (Listener listener : listeners) {
+            listener.onLocationChanged(currentLatitude, currentLongitude);
+        }
+    }
+
+    @Override
+    public void onProviderEnabled(@NonNull String provider) {
+        message("GPS Enabled");
+    }
+
+    @Override
+    public void onProviderDisabled(@NonNull String provider) {
+        message("GPS Disabled - Please enable location");
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        disconnect();
+        listeners.clear();
+        if (engine != null) {
+            engine.shutdown(500);
+            InferenceExecutor inferenceExecutor = engine.getInferenceExecutor();
+            Log.d(TAG, "Inference stats: submitted=" + inferenceExecutor.getSubmitted()
+                    + ", dropped=" + inferenceExecutor.getDropped()
+                    + ", failures=" + inferenceExecutor.getFailures()
+                    + ", maxQueueDepth=" + inferenceExecutor.getMaxQueueDepth()
+                    + ", meanTaskNs=" + inferenceExecutor.getMeanTaskNanos());
+            Log.d(TAG, "Detection stats: frames=" + engine.getFramesReceived()
+                    + ", scored=" + engine.getSamplesScored()
+                    + ", windows=" + engine.getWindowsScored()
+                    + ", gated=" + engine.getSamplesGated()
+                    + ", auditAlerts=" + engine.getAuditAlerts()
+                    + ", alerts=" + engine.getAlertsRaised()
+                    + ", suppressed=" + engine.getAlertsSuppressed()
+                    + ", gaps=" + engine.getGaps());
+            engine = null;
+        }
+        if (tripRecorder != null) {
+            // disconnect above has stopped the links and closed their trip
+            tripRecorder.close();
+            Log.d(TAG, "Trip log: appended=" + tripRecorder.getRecordsAppended()
+                    + ", dropped=" + tripRecorder.getRecordsDropped()
+                    + ", bytes=" + tripRecorder.getBytesWritten()
+                    + ", writeErrors=" + tripRecorder.getWriteErrors());
+        }
+        if (snapshotRecorder != null) {
+            // Writes a capture still waiting for its post-alert window
+            snapshotRecorder.shutdown(1000);
+        }
+        if (classifier != null) {
+            classifier.close();
+        }
+        if (locationManager != null) {
+            locationManager.removeUpdates(this);
+        }
+        if (contactPrefs != null) {
+            contactPrefs.unregisterOnSharedPreferenceChangeListener(contactsListener);
+        }
+        if (alertThread != null) {
+            // After the engine, so nothing posts to it any more; an alert already queued is still sent
+            alertThread.quitSafely();
+        }
+        if (dispatcher != null) {
+            Log.d(TAG, "Alert dispatch stats: prepared=" + dispatcher.getPreparations()
+                    + ", fired=" + dispatcher.getFired()
+                    + ", notArmed=" + dispatcher.getNotArmed()
+                    + ", meanHandoffUs=" + TimeUnit.NANOSECONDS.toMicros(dispatcher.getMeanHandoffNanos())
+                    + ", maxHandoffUs=" + TimeUnit.NANOSECONDS.toMicros(dispatcher.getMaxHandoffNanos()));
+        }
+        if (smsHelper != null) {
+            smsHelper.unregisterSmsReceivers();
+        }
+        if (resetRunnable != null) {
+            mainHandler.removeCallbacks(resetRunnable);
+            resetRunnable = null;
+        }
+    }
+}
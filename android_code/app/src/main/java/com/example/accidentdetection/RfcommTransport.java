@@ -0,0 +1,97 @@
+package com.example.accidentdetection;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothSocket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+/**
+ * A {@link Transport} over a classic Bluetooth serial (RFCOMM) socket to one paired sensor node.
+ */
+public class RfcommTransport implements Transport {
+
+    private final BluetoothDevice device;
+    private final UUID serviceUuid;
+    private final String name;
+    // The current connection's socket; replaced on every connect()
+    private BluetoothSocket socket;
+    // Set while connect() creates the socket; a close() in that window fails the connect
+    private boolean creating = false;
+    private boolean closePending = false;
+
+    /**
+     * @param name the device's name, looked up by the caller while it holds the Bluetooth permission
+     */
+    public RfcommTransport(BluetoothDevice device, UUID serviceUuid, String name) {
+        this.device = device;
+        this.serviceUuid = serviceUuid;
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public InputStream connect() throws IOException {
+        synchronized (this) {
+            creating = true;
+            closePending = false;
+        }
+        try {
+            BluetoothSocket s;
+            try {
+                s = device.createRfcommSocketToServiceRecord(serviceUuid);
+            } finally {
+                synchronized (this) {
+                    creating = false;
+                }
+            }
+            synchronized (this) {
+                if (closePending) {
+                    // close() ran before the socket existed
+                    s.close();
+                    throw new IOException("closed");
+                }
+                socket = s;
+            }
+            s.connect();
+            return s.getInputStream();
+        } catch (SecurityException e) {
+            throw new IOException("Missing Bluetooth permission", e);
+        }
+    }
+
+    @Override
+    public void send(byte[] data) throws IOException {
+        BluetoothSocket s;
+        synchronized (this) {
+            s = socket;
+        }
+        if (s == null) {
+            throw new IOException("not connected");
+        }
+        s.getOutputStream().write(data);
+    }
+
+    @Override
+    public void close() {
+        BluetoothSocket s;
+        synchronized (this) {
+            s = socket;
+            socket = null;
+            closePending = s == null && creating;
+        }
+        if (s != null) {
+            try {
+                // Also unblocks a connect() or read in progress
+                s.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+}
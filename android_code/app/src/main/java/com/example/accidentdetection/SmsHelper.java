@@ -14,11 +14,18 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public class SmsHelper {
+/**
+ * Sends the emergency SMS and reports what the radio makes of it. As an
+ * {@link AlertDispatcher.Channel} it prepares the split message and its delivery intents ahead
+ * of the alert.
+ */
+public class SmsHelper implements AlertDispatcher.Channel {
 
     private static final String TAG = "SmsHelper";
     private static final String SMS_SENT_ACTION = "SMS_SENT";
     private static final String SMS_DELIVERED_ACTION = "SMS_DELIVERED";
+    // Request codes are allotted this many parts per recipient; longer messages share the last
+    private static final int MAX_PARTS = 16;
 
     private final Context context;
     private final SmsManager smsManager;
@@ -29,8 +36,8 @@ public class SmsHelper {
     private final AtomicInteger deliveredCount = new AtomicInteger(0);
     private final AtomicInteger processedSentCount = new AtomicInteger(0);
     private final AtomicInteger processedDeliveredCount = new AtomicInteger(0);
-    private int totalMessagesToSend = 0;
-    private int requestCodeCounter = 0;
+    // Set by whichever thread sends, read by the receivers on the main thread
+    private volatile int totalMessagesToSend = 0;
     private volatile boolean isCancelled = false;
 
     public interface SmsCallback {
@@ -69,50 +76,81 @@ public class SmsHelper {
             return;
         }
 
-        // Reset counts for a new batch of messages
-        sentCount.set(0);
-        deliveredCount.set(0);
-        totalMessagesToSend = 0;
-
-        ArrayList<String> parts = smsManager.divideMessage(message);
-
+        List<String> phones = new ArrayList<>();
         for (ContactItem contact : contacts) {
             if (contact != null && contact.phone != null && !contact.phone.isEmpty()) {
-                totalMessagesToSend += parts.size(); // Each part is a message
-                Log.d(TAG, "Attempting to send " + parts.size() + " parts to: " + contact.phone);
-
-                ArrayList<PendingIntent> sentPIs = new ArrayList<>();
-                ArrayList<PendingIntent> deliveredPIs = new ArrayList<>();
-
-                for (int i = 0; i < parts.size(); i++) {
-                    Intent sentIntent = new Intent(SMS_SENT_ACTION);
-                    sentIntent.putExtra("phoneNumber", contact.phone);
-                    sentIntent.putExtra("part", i);
-                    sentPIs.add(PendingIntent.getBroadcast(context, 0, sentIntent, PendingIntent.FLAG_IMMUTABLE));
-
-                    Intent deliveredIntent = new Intent(SMS_DELIVERED_ACTION);
-                    deliveredIntent.putExtra("phoneNumber", contact.phone);
-                    deliveredIntent.putExtra("part", i);
-                    deliveredPIs.add(PendingIntent.getBroadcast(context, 0, deliveredIntent, PendingIntent.FLAG_IMMUTABLE));
-                }
-
-                try {
-                    smsManager.sendMultipartTextMessage(contact.phone, null, parts, sentPIs, deliveredPIs);
-                    Log.i(TAG, "SMS sent request handed off for: " + contact.phone + ". Total parts: " + parts.size());
-                } catch (Exception e) {
-                    Log.e(TAG, "Failed to hand off SMS for " + contact.phone + ": " + e.getMessage());
-                    callback.onSmsError("Failed to send SMS to " + contact.phone + ": " + e.getMessage());
-                    // Decrease totalMessagesToSend for failed send off
-                    totalMessagesToSend -= parts.size();
-                }
+                phones.add(contact.phone);
             } else {
                 Log.w(TAG, "Skipping invalid contact for SMS.");
             }
         }
+        prepare(phones, message).send();
+    }
+
+    /**
+     * Splits {@code message} and builds the sent and delivered intents for every part and
+     * recipient, so {@link AlertDispatcher.Prepared#send()} only hands the parts to the radio.
+     * Intents of an earlier preparation for the same recipient and part are updated in place.
+     */
+    @Override
+    public AlertDispatcher.Prepared prepare(List<String> recipients, String message) {
+        ArrayList<String> parts = smsManager.divideMessage(message);
+        List<ArrayList<PendingIntent>> sentIntents = new ArrayList<>();
+        List<ArrayList<PendingIntent>> deliveredIntents = new ArrayList<>();
+        for (int r = 0; r < recipients.size(); r++) {
+            String phone = recipients.get(r);
+            ArrayList<PendingIntent> sentPIs = new ArrayList<>();
+            ArrayList<PendingIntent> deliveredPIs = new ArrayList<>();
+            for (int i = 0; i < parts.size(); i++) {
+                // A request code per recipient and part, so the intents are not merged into one
+                int requestCode = r * MAX_PARTS + Math.min(i, MAX_PARTS - 1);
+                Intent sentIntent = new Intent(SMS_SENT_ACTION);
+                sentIntent.putExtra("phoneNumber", phone);
+                sentIntent.putExtra("part", i);
+                sentPIs.add(PendingIntent.getBroadcast(context, requestCode, sentIntent,
+                        PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT));
+
+                Intent deliveredIntent = new Intent(SMS_DELIVERED_ACTION);
+                deliveredIntent.putExtra("phoneNumber", phone);
+                deliveredIntent.putExtra("part", i);
+                deliveredPIs.add(PendingIntent.getBroadcast(context, requestCode, deliveredIntent,
+                        PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT));
+            }
+            sentIntents.add(sentPIs);
+            deliveredIntents.add(deliveredPIs);
+        }
+        Log.d(TAG, "Prepared " + parts.size() + " part(s) for " + recipients.size() + " contact(s)");
+        List<String> phones = new ArrayList<>(recipients);
+        return () -> send(phones, parts, sentIntents, deliveredIntents);
+    }
 
-        if (totalMessagesToSend == 0) {
+    private int send(List<String> phones, ArrayList<String> parts,
+                     List<ArrayList<PendingIntent>> sentIntents, List<ArrayList<PendingIntent>> deliveredIntents) {
+        isCancelled = false;
+        // Reset counts for a new batch of messages
+        sentCount.set(0);
+        deliveredCount.set(0);
+        int total = 0;
+        int handedOff = 0;
+        for (int r = 0; r < phones.size(); r++) {
+            String phone = phones.get(r);
+            try {
+                smsManager.sendMultipartTextMessage(phone, null, parts, sentIntents.get(r), deliveredIntents.get(r));
+                total += parts.size(); // Each part is a message
+                handedOff++;
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to hand off SMS for " + phone + ": " + e.getMessage());
+                callback.onSmsError("Failed to send SMS to " + phone + ": " + e.getMessage());
+            }
+        }
+        totalMessagesToSend = total;
+        // Logged after the hand-off, to keep it off the alert path
+        Log.i(TAG, "SMS send requests handed off for " + handedOff + "/" + phones.size()
+                + " contact(s), " + parts.size() + " part(s) each");
+        if (total == 0) {
             callback.onSmsError("No valid messages to send after filtering contacts.");
         }
+        return handedOff;
     }
 
     private void registerSmsReceivers() {
@@ -1,38 +1,26 @@
 package com.example.accidentdetection;
 
-import android.Manifest;
-import android.bluetooth.BluetoothAdapter;
-import android.bluetooth.BluetoothDevice;
-import android.bluetooth.BluetoothSocket;
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
-import android.content.pm.PackageManager;
-import android.os.Build;
+import android.content.ServiceConnection;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.IBinder;
 import android.os.Looper;
-import android.util.Log;
 import android.view.View;
 import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.core.app.ActivityCompat;
-import androidx.core.content.ContextCompat;
 
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.textfield.TextInputEditText;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Set;
-import java.util.UUID;
-
 public class TestingActivity extends AppCompatActivity {
 
     private static final String TAG = "TestingActivity";
-    private static final UUID MY_UUID = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
-    private static final String ESP32_NAME = "ESP32_AccidentDetector";
 
     private TextInputEditText etSensorValue;
     private MaterialButton btnSimulateAccident, btnTestLow, btnTestMedium, btnTestHigh, btnBackToMain;
@@ -47,16 +35,21 @@ public class TestingActivity extends AppCompatActivity {
     // Dynamic threshold that can be adjusted via slider
     private double currentThreshold = 6.0; // Default: 6.0 m/s²
 
-    // ESP32 Bluetooth
-    private BluetoothAdapter bluetoothAdapter;
-    private BluetoothSocket bluetoothSocket;
-    private InputStream inputStream;
-    private boolean isConnected = false;
-    private volatile boolean stopWorker = false;
+    // Shares MonitoringService's connection with MainActivity rather than opening a second one
+    private MonitoringService monitor = null;
+    private boolean bound = false;
 
-    // Live sensor data
+    // Live sensor data from the service, drawn at most once per display frame
+    private LiveStateRenderer liveRenderer;
     private float currentAccel = 0.0f;
     private float currentGyro = 0.0f;
+    // What the live fields currently show, main thread only
+    private int shownAccel = Integer.MIN_VALUE;
+    private int shownGyro = Integer.MIN_VALUE;
+    private boolean resultExceeded;
+    private int resultAccel = Integer.MIN_VALUE;
+    private int resultGyro;
+    private double resultThreshold;
 
     private Handler handler;
 
@@ -66,12 +59,53 @@ public class TestingActivity extends AppCompatActivity {
         setContentView(R.layout.activity_testing);
 
         handler = new Handler(Looper.getMainLooper());
-        bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
 
         initViews();
         setupListeners();
         updateThresholdDisplay();
         updateConnectionStatus(false);
+
+        bound = bindService(new Intent(this, MonitoringService.class), monitorConnection, Context.BIND_AUTO_CREATE);
+    }
+
+    private final ServiceConnection monitorConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            monitor = ((MonitoringService.LocalBinder) service).getService();
+            monitor.addListener(monitorListener);
+            liveRenderer = new LiveStateRenderer(monitor.getLiveState(), TestingActivity.this::renderLiveState);
+            monitor.addRenderer(liveRenderer);
+            updateConnectionStatus(monitor.isConnected());
+            liveRenderer.start();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            releaseMonitor();
+        }
+    };
+
+    private final MonitoringService.Listener monitorListener = new MonitoringService.Listener() {
+        @Override
+        public void onConnectionChanged(boolean connected) {
+            updateConnectionStatus(connected);
+        }
+
+        @Override
+        public void onMessage(String message) {
+            Toast.makeText(TestingActivity.this, message, Toast.LENGTH_SHORT).show();
+        }
+    };
+
+    private void releaseMonitor() {
+        if (monitor == null) {
+            return;
+        }
+        monitor.removeListener(monitorListener);
+        monitor.removeRenderer(liveRenderer);
+        liveRenderer.stop();
+        liveRenderer = null;
+        monitor = null;
     }
 
     private void initViews() {
@@ -113,10 +147,13 @@ public class TestingActivity extends AppCompatActivity {
 
         // ESP32 Connection button
         btnConnectESP32.setOnClickListener(v -> {
-            if (!isConnected) {
-                connectToESP32();
+            if (monitor == null) {
+                return;
+            }
+            if (!monitor.isConnected()) {
+                monitor.connect();
             } else {
-                disconnectESP32();
+                monitor.disconnect();
             }
         });
 
@@ -132,112 +169,14 @@ public class TestingActivity extends AppCompatActivity {
         btnBackToMain.setOnClickListener(v -> finish());
     }
 
-    private void connectToESP32() {
-        Log.d(TAG, "Attempting to connect to ESP32...");
-
-        if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
-            Toast.makeText(this, "Please enable Bluetooth", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-            if (ContextCompat.checkSelfPermission(this, Manifest.permission.BLUETOOTH_CONNECT)
-                    != PackageManager.PERMISSION_GRANTED) {
-                Toast.makeText(this, "Bluetooth permission required", Toast.LENGTH_SHORT).show();
-                return;
-            }
-        }
-
-        try {
-            bluetoothAdapter.cancelDiscovery();
-        } catch (SecurityException e) {
-            Log.e(TAG, "Error cancelling discovery: " + e.getMessage());
-        }
-
-        Set<BluetoothDevice> pairedDevices;
-        try {
-            pairedDevices = bluetoothAdapter.getBondedDevices();
-        } catch (SecurityException se) {
-            Toast.makeText(this, "Missing Bluetooth permission", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
-        BluetoothDevice esp32Device = null;
-        for (BluetoothDevice device : pairedDevices) {
-            try {
-                if (ESP32_NAME.equals(device.getName())) {
-                    esp32Device = device;
-                    break;
-                }
-            } catch (SecurityException e) {
-                // Ignore devices we can't get a name for
-            }
-        }
-
-        if (esp32Device == null) {
-            Toast.makeText(this, "ESP32 not paired. Please pair it first.", Toast.LENGTH_LONG).show();
-            return;
-        }
-
-        final BluetoothDevice target = esp32Device;
-        btnConnectESP32.setEnabled(false);
-        tvESP32Status.setText("Connecting...");
-
-        new Thread(() -> {
-            try {
-                bluetoothSocket = target.createRfcommSocketToServiceRecord(MY_UUID);
-                bluetoothSocket.connect();
-                inputStream = bluetoothSocket.getInputStream();
-                isConnected = true;
-
-                runOnUiThread(() -> {
-                    updateConnectionStatus(true);
-                    Toast.makeText(this, "✓ Connected to ESP32", Toast.LENGTH_SHORT).show();
-                    btnConnectESP32.setEnabled(true);
-                });
-
-                beginListenForData();
-            } catch (IOException | SecurityException e) {
-                Log.e(TAG, "Connection failed: " + e.getMessage());
-                safeCloseSocket();
-                runOnUiThread(() -> {
-                    updateConnectionStatus(false);
-                    Toast.makeText(this, "Connection failed", Toast.LENGTH_SHORT).show();
-                    btnConnectESP32.setEnabled(true);
-                });
-            }
-        }).start();
-    }
-
-    private void disconnectESP32() {
-        stopWorker = true;
-        safeCloseSocket();
-        updateConnectionStatus(false);
-        Toast.makeText(this, "Disconnected from ESP32", Toast.LENGTH_SHORT).show();
-    }
-
-    private void safeCloseSocket() {
-        try {
-            if (inputStream != null) inputStream.close();
-        } catch (IOException e) {
-            Log.e(TAG, "Error closing inputStream", e);
-        }
-        try {
-            if (bluetoothSocket != null) bluetoothSocket.close();
-        } catch (IOException e) {
-            Log.e(TAG, "Error closing bluetoothSocket", e);
-        }
-        inputStream = null;
-        bluetoothSocket = null;
-        isConnected = false;
-    }
-
     private void updateConnectionStatus(boolean connected) {
-        if (connected) {
-            tvESP32Status.setText("✓ Connected to ESP32");
+        SensorHub hub = monitor != null ? monitor.getSensorHub() : null;
+        if (connected && hub != null) {
+            tvESP32Status.setText(hub.getConnectedCount() > 0 ? "✓ Connected to ESP32" : "Connecting...");
             btnConnectESP32.setText("Disconnect ESP32");
             tvLiveAccel.setText("Accel: Waiting for data...");
             tvLiveGyro.setText("Gyro: Waiting for data...");
+            forgetRenderedState();
         } else {
             tvESP32Status.setText("✗ Not Connected");
             btnConnectESP32.setText("Connect to ESP32");
@@ -245,87 +184,68 @@ public class TestingActivity extends AppCompatActivity {
             tvLiveGyro.setText("Gyro: -- °/s");
             currentAccel = 0.0f;
             currentGyro = 0.0f;
+            forgetRenderedState();
         }
     }
 
-    private void beginListenForData() {
-        stopWorker = false;
-        Thread workerThread = new Thread(() -> {
-            byte[] buffer = new byte[1024];
-            int bytes;
-
-            while (!Thread.currentThread().isInterrupted() && !stopWorker) {
-                try {
-                    if (inputStream != null) {
-                        bytes = inputStream.read(buffer);
-                        if (bytes > 0) {
-                            String data = new String(buffer, 0, bytes, "UTF-8");
-                            Log.v(TAG, "Received: " + data);
-                            parseSensorData(data);
-                        }
-                    }
-                } catch (IOException e) {
-                    stopWorker = true;
-                    Log.e(TAG, "Error reading data: " + e.getMessage());
-                    runOnUiThread(() -> {
-                        updateConnectionStatus(false);
-                        Toast.makeText(this, "Connection lost", Toast.LENGTH_SHORT).show();
-                    });
-                }
-            }
-            Log.d(TAG, "Bluetooth listener stopped.");
-        });
-        workerThread.start();
+    private void renderLiveState(float accel, float gyro) {
+        currentAccel = accel;
+        currentGyro = gyro;
+        // Compared at display precision so unchanged text is neither formatted nor set
+        int accelHundredths = Math.round(accel * 100);
+        int gyroHundredths = Math.round(gyro * 100);
+        if (accelHundredths != shownAccel) {
+            shownAccel = accelHundredths;
+            tvLiveAccel.setText(String.format("Accel: %.2f m/s²", currentAccel));
+        }
+        if (gyroHundredths != shownGyro) {
+            shownGyro = gyroHundredths;
+            tvLiveGyro.setText(String.format("Gyro: %.2f °/s", currentGyro));
+        }
+        renderLiveResult();
     }
 
-    private void parseSensorData(String data) {
-        runOnUiThread(() -> {
-            try {
-                // Parse acceleration data
-                if (data.contains("ACCEL:")) {
-                    int accelStart = data.indexOf("ACCEL:") + 6;
-                    int accelEnd = data.indexOf(" ", accelStart);
-                    if (accelEnd == -1) accelEnd = data.length();
-                    String accelStr = data.substring(accelStart, accelEnd).trim();
-                    currentAccel = Float.parseFloat(accelStr);
-                    tvLiveAccel.setText(String.format("Accel: %.2f m/s²", currentAccel));
-                }
-
-                // Parse gyroscope data
-                if (data.contains("GYRO:")) {
-                    int gyroStart = data.indexOf("GYRO:") + 5;
-                    int gyroEnd = data.indexOf(" ", gyroStart);
-                    if (gyroEnd == -1) gyroEnd = data.length();
-                    String gyroStr = data.substring(gyroStart, gyroEnd).trim();
-                    currentGyro = Float.parseFloat(gyroStr);
-                    tvLiveGyro.setText(String.format("Gyro: %.2f °/s", currentGyro));
-                }
-
-                // Check if threshold exceeded
-                if (currentAccel >= currentThreshold) {
-                    tvSimulationResult.setText(String.format(
-                        "🚨 THRESHOLD EXCEEDED!\n\n" +
-                        "Live Accel: %.2f m/s²\n" +
-                        "Threshold: %.1f m/s²\n" +
-                        "Status: ACCIDENT DETECTED!\n\n" +
-                        "Ready to trigger emergency alert.",
-                        currentAccel, currentThreshold
-                    ));
-                } else {
-                    tvSimulationResult.setText(String.format(
-                        "📊 Live Monitoring Active\n\n" +
-                        "Accel: %.2f m/s²\n" +
-                        "Gyro: %.2f °/s\n" +
-                        "Threshold: %.1f m/s²\n" +
-                        "Status: Normal",
-                        currentAccel, currentGyro, currentThreshold
-                    ));
-                }
-
-            } catch (Exception e) {
-                Log.e(TAG, "Error parsing sensor data: " + e.getMessage());
-            }
-        });
+    private void renderLiveResult() {
+        // Check if threshold exceeded
+        boolean exceeded = currentAccel >= currentThreshold;
+        // The exceeded text does not show the gyro reading
+        int gyroShown = exceeded ? 0 : shownGyro;
+        if (exceeded == resultExceeded && shownAccel == resultAccel && gyroShown == resultGyro
+                && currentThreshold == resultThreshold) {
+            return;
+        }
+        resultExceeded = exceeded;
+        resultAccel = shownAccel;
+        resultGyro = gyroShown;
+        resultThreshold = currentThreshold;
+        if (exceeded) {
+            tvSimulationResult.setText(String.format(
+                "🚨 THRESHOLD EXCEEDED!\n\n" +
+                "Live Accel: %.2f m/s²\n" +
+                "Threshold: %.1f m/s²\n" +
+                "Status: ACCIDENT DETECTED!\n\n" +
+                "Ready to trigger emergency alert.",
+                currentAccel, currentThreshold
+            ));
+        } else {
+            tvSimulationResult.setText(String.format(
+                "📊 Live Monitoring Active\n\n" +
+                "Accel: %.2f m/s²\n" +
+                "Gyro: %.2f °/s\n" +
+                "Threshold: %.1f m/s²\n" +
+                "Status: Normal",
+                currentAccel, currentGyro, currentThreshold
+            ));
+        }
+    }
+
+    /**
+     * Makes the next render rewrite every field, after something else has set the texts.
+     */
+    private void forgetRenderedState() {
+        shownAccel = Integer.MIN_VALUE;
+        shownGyro = Integer.MIN_VALUE;
+        resultAccel = Integer.MIN_VALUE;
     }
 
     private void updateThresholdDisplay() {
@@ -397,6 +317,10 @@ public class TestingActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        disconnectESP32();
+        // The connection belongs to the service and outlives this screen
+        releaseMonitor();
+        if (bound) {
+            unbindService(monitorConnection);
+        }
     }
 }
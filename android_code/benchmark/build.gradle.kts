@@ -0,0 +1,108 @@
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+// Pure-JVM module: runs :core on a desktop JVM so it can be measured without a device.
+// Run with ./gradlew :benchmark:jmh
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":core"))
+    // Desktop build of the runtime the app uses, with native libraries for the host
+    implementation("com.microsoft.onnxruntime:onnxruntime:1.19.2")
+}
+
+jmh {
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    // Allocation rate per operation is part of what these benchmarks are meant to show
+    profilers.add("gc")
+    jvmArgsAppend.add("-Dmodel.path=" + rootProject.file("app/src/main/assets/driver_behavior_model.onnx").absolutePath)
+    jvmArgsAppend.add("-Ddataset.path=" + rootProject.file("../dataset/features_14.csv").absolutePath)
+}
+
+// Regression gate over the JSON results. Save a baseline on the reference commit, then check a
+// change against it on the same machine:
+// ./gradlew :benchmark:jmh :benchmark:jmhSaveBaseline
+// ./gradlew :benchmark:jmh :benchmark:jmhCheck -PjmhTolerance=0.10
+val jmhBaseline = file(providers.gradleProperty("jmhBaseline").getOrElse("baseline/results.json"))
+
+tasks.register<Copy>("jmhSaveBaseline") {
+    mustRunAfter("jmh")
+    from(jmh.resultsFile)
+    into(jmhBaseline.parentFile)
+    rename { jmhBaseline.name }
+}
+
+tasks.register("jmhCheck") {
+    mustRunAfter("jmh")
+    val results = jmh.resultsFile
+    val tolerance = providers.gradleProperty("jmhTolerance").getOrElse("0.10").toDouble()
+    doLast {
+        if (!jmhBaseline.isFile) {
+            throw GradleException("No baseline at $jmhBaseline; run jmhSaveBaseline on the reference build first")
+        }
+        // Keyed by benchmark and parameters; each value is the primary metric for the mode
+        @Suppress("UNCHECKED_CAST")
+        fun load(file: File): Map<String, Map<String, Any?>> =
+            (groovy.json.JsonSlurper().parse(file) as List<Map<String, Any?>>).associateBy { run ->
+                val params = (run["params"] as Map<String, Any?>?).orEmpty().toSortedMap()
+                "${run["benchmark"]}${if (params.isEmpty()) "" else params.toString()}"
+            }
+        @Suppress("UNCHECKED_CAST")
+        fun metric(run: Map<String, Any?>) = run["primaryMetric"] as Map<String, Any?>
+
+        val baseline = load(jmhBaseline)
+        val current = load(results.get().asFile)
+        val failures = mutableListOf<String>()
+        for ((key, run) in current) {
+            val reference = baseline[key] ?: continue
+            // Throughput regresses downwards; every time-based mode regresses upwards
+            val higherIsBetter = run["mode"] == "thrpt"
+            val checks = mutableListOf("score" to ((metric(run)["score"] as Number).toDouble() to
+                    (metric(reference)["score"] as Number).toDouble()))
+            @Suppress("UNCHECKED_CAST")
+            val percentiles = metric(run)["scorePercentiles"] as Map<String, Number>?
+            @Suppress("UNCHECKED_CAST")
+            val referencePercentiles = metric(reference)["scorePercentiles"] as Map<String, Number>?
+            if (run["mode"] == "sample" && percentiles != null && referencePercentiles != null) {
+                checks += "p99" to (percentiles.getValue("99.0").toDouble() to referencePercentiles.getValue("99.0").toDouble())
+            }
+            for ((name, values) in checks) {
+                val (now, before) = values
+                val change = if (before == 0.0) 0.0 else (now - before) / before
+                val worse = if (higherIsBetter) -change else change
+                val line = String.format(java.util.Locale.ROOT, "%s %s: %.4g -> %.4g %s (%+.1f%%)",
+                    key, name, before, now, metric(run)["scoreUnit"], change * 100)
+                if (worse > tolerance) failures += line else logger.lifecycle(line)
+            }
+        }
+        if (failures.isNotEmpty()) {
+            throw GradleException("Benchmarks regressed by more than ${tolerance * 100}%:\n" + failures.joinToString("\n"))
+        }
+    }
+}
+
+// Writes a synthetic high-rate telemetry stream, e.g.
+// ./gradlew :benchmark:simulateTelemetry --args="build/telemetry.bin 10 1000"
+tasks.register<JavaExec>("simulateTelemetry") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.accidentdetection.TelemetrySimulator")
+}
+
+// Scores the packaged model against the labelled dataset and prints accuracy, ROC and timing, e.g.
+// ./gradlew :benchmark:evaluateModel --args="<dataset.csv> <model.onnx|java:model.onnx|threshold> [batch] [targets] [threshold]"
+tasks.register<JavaExec>("evaluateModel") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.accidentdetection.ModelEvaluator")
+    args(
+        rootProject.file("../dataset/features_14.csv").absolutePath,
+        rootProject.file("app/src/main/assets/driver_behavior_model.onnx").absolutePath
+    )
+}
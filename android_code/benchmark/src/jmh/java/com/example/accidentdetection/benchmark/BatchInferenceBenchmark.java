@@ -0,0 +1,88 @@
+package com.example.accidentdetection.benchmark;
+
+import com.example.accidentdetection.OnnxPredictor;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * Rows scored per second by {@link OnnxPredictor#predictBatch} as the batch grows, against
+ * the same rows scored one at a time. The "rows" counter is the figure to compare across
+ * batch sizes; the primary score counts calls.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class BatchInferenceBenchmark {
+
+    @Param({"1", "8", "32", "128", "512"})
+    public int batchSize;
+
+    private OrtSession session;
+    private OnnxPredictor predictor;
+    private float[] rows;
+    private float[] probabilities;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class RowCounter {
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            rows = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws OrtException {
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        session = env.createSession(System.getProperty("model.path"), new OrtSession.SessionOptions());
+        predictor = new OnnxPredictor(env, session);
+        int width = predictor.getInputWidth();
+        rows = new float[batchSize * width];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = (i % 11) * 0.2f - 1f;
+        }
+        probabilities = new float[batchSize];
+    }
+
+    @TearDown
+    public void tearDown() throws OrtException {
+        predictor.close();
+        session.close();
+    }
+
+    @Benchmark
+    public float batched(RowCounter counter) throws OrtException {
+        predictor.predictBatch(rows, batchSize, predictor.getInputWidth(), probabilities);
+        counter.rows += batchSize;
+        return probabilities[batchSize - 1];
+    }
+
+    @Benchmark
+    public float rowByRow(RowCounter counter) throws OrtException {
+        int width = predictor.getInputWidth();
+        float last = 0f;
+        for (int r = 0; r < batchSize; r++) {
+            last = predictor.predict(rows, r * width);
+        }
+        counter.rows += batchSize;
+        return last;
+    }
+}
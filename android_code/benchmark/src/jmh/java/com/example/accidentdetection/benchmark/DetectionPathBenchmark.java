@@ -0,0 +1,179 @@
+package com.example.accidentdetection.benchmark;
+
+import com.example.accidentdetection.BinaryProtocol;
+import com.example.accidentdetection.DetectionModel;
+import com.example.accidentdetection.FeatureExtractor;
+import com.example.accidentdetection.InferenceExecutor;
+import com.example.accidentdetection.OnnxDetectionModel;
+import com.example.accidentdetection.OnnxPredictor;
+import com.example.accidentdetection.SampleGate;
+import com.example.accidentdetection.TelemetryFrame;
+import com.example.accidentdetection.TelemetryParser;
+import com.example.accidentdetection.ThresholdModel;
+import com.example.accidentdetection.TripReplay;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * The detection hot path, from received bytes to an alert decision, with the classifier in
+ * threshold mode and in ML mode:
+ * <ul>
+ * <li>{@code predictWindow}: one model call on a full feature window</li>
+ * <li>{@code sampleToDecision}: a binary sample frame parsed, added to the window, the window's
+ * features extracted and scored and the result compared with the alert threshold</li>
+ * <li>{@code gatedSampleToDecision}: the same, with a {@link SampleGate} in front of the model;
+ * on this uneventful stream it shows what the gate costs when it lets nothing but audits
+ * through</li>
+ * <li>{@code lineToDecision}: the live text path, a telemetry line parsed and handed to an
+ * {@link InferenceExecutor} worker, timed until the worker has decided</li>
+ * </ul>
+ * The two end-to-end methods sample every op, so the JSON results carry p50 and p99 latency.
+ */
+@State(Scope.Thread)
+public class DetectionPathBenchmark {
+
+    private static final int WINDOW = 50;
+    private static final int FRAMES = 4096;
+
+    @Param({"threshold", "onnx"})
+    public String model;
+
+    private OrtSession session;
+    private OnnxPredictor predictor;
+    private DetectionModel detectionModel;
+
+    private final TelemetryParser parser = new TelemetryParser();
+    private final TelemetryFrame frame = new TelemetryFrame();
+    private FeatureExtractor extractor;
+    private float[] features;
+    private float[] window;
+    private byte[] frames;
+    private int frameLength;
+    private int next;
+    private final SampleGate gate = new SampleGate();
+    private long gateNanos;
+
+    private byte[] line;
+    private final TelemetryParser lineParser = new TelemetryParser();
+    private final TelemetryFrame lineFrame = new TelemetryFrame();
+    private final float[] magnitudes = new float[2];
+    private InferenceExecutor executor;
+    private long submitted;
+    private volatile long decided;
+    private volatile boolean alert;
+
+    @Setup
+    public void setUp() throws OrtException {
+        if ("onnx".equals(model)) {
+            OrtEnvironment env = OrtEnvironment.getEnvironment();
+            session = env.createSession(System.getProperty("model.path"), new OrtSession.SessionOptions());
+            predictor = new OnnxPredictor(env, session);
+            detectionModel = new OnnxDetectionModel(predictor);
+        } else {
+            detectionModel = new ThresholdModel();
+        }
+
+        // Driving noise on a 1 g vertical, as the firmware would send it
+        Random random = new Random(23);
+        frameLength = BinaryProtocol.frameLength(BinaryProtocol.SAMPLE_PAYLOAD);
+        frames = new byte[FRAMES * frameLength];
+        for (int i = 0; i < FRAMES; i++) {
+            BinaryProtocol.encodeSample(frames, i * frameLength, i, i * 2L,
+                    (float) random.nextGaussian() * 0.5f, (float) random.nextGaussian() * 0.5f,
+                    9.81f + (float) random.nextGaussian() * 0.5f,
+                    (float) random.nextGaussian() * 0.5f, (float) random.nextGaussian() * 0.5f,
+                    (float) random.nextGaussian() * 0.5f, 0);
+        }
+        extractor = new FeatureExtractor(WINDOW);
+        features = new float[FeatureExtractor.FEATURE_COUNT];
+        for (int i = 0; i < WINDOW; i++) {
+            addNextFrame();
+        }
+        extractor.extract(features, 0);
+        window = features.clone();
+
+        line = "ACCEL:12.34 GYRO:150.02 STATUS:OK".getBytes(StandardCharsets.US_ASCII);
+        executor = new InferenceExecutor("BenchmarkInference", 64, 2, InferenceExecutor.QueuePolicy.DROP_OLDEST,
+                (sequence, sample) -> {
+                    alert = detectionModel.predict(sample[0], sample[1]) >= TripReplay.ALERT_THRESHOLD;
+                    decided = sequence + 1;
+                });
+        executor.start();
+    }
+
+    @TearDown
+    public void tearDown() throws OrtException {
+        executor.shutdown(1000);
+        if (predictor != null) {
+            predictor.close();
+            session.close();
+        }
+    }
+
+    private void addNextFrame() {
+        parser.parse(frames, next * frameLength, frameLength, frame);
+        next = (next + 1) % FRAMES;
+        extractor.addTelemetry(frame.ax, frame.ay, frame.az, frame.gx, frame.gy, frame.gz);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public float predictWindow() {
+        return detectionModel.predictFeatures(window);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean sampleToDecision() {
+        addNextFrame();
+        extractor.extract(features, 0);
+        return detectionModel.predictFeatures(features) >= TripReplay.ALERT_THRESHOLD;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean gatedSampleToDecision() {
+        addNextFrame();
+        // 500 Hz sample times, so audits come at their real rate
+        gateNanos += 2_000_000L;
+        if (gate.offer(gateNanos, frame.accel, frame.gyro) == SampleGate.CLOSED) {
+            return false;
+        }
+        extractor.extract(features, 0);
+        return detectionModel.predictFeatures(features) >= TripReplay.ALERT_THRESHOLD;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean lineToDecision() {
+        lineParser.parse(line, 0, line.length, lineFrame);
+        magnitudes[0] = lineFrame.accel;
+        magnitudes[1] = lineFrame.gyro;
+        executor.submit(magnitudes);
+        submitted++;
+        while (decided < submitted) {
+            Thread.onSpinWait();
+        }
+        return alert;
+    }
+}
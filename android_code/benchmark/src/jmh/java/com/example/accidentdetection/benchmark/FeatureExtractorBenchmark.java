@@ -0,0 +1,74 @@
+package com.example.accidentdetection.benchmark;
+
+import com.example.accidentdetection.FeatureExtractor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-sample cost of keeping the {@link FeatureExtractor} window current, and of also writing
+ * out all 60 features as a stride-1 scorer would. Both should stay flat as the window grows,
+ * apart from the order statistics' memmove, and allocate nothing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class FeatureExtractorBenchmark {
+
+    private static final int SAMPLES = 4096;
+
+    @Param({"25", "50", "100", "200"})
+    public int windowSize;
+
+    private FeatureExtractor extractor;
+    private float[] samples;
+    private float[] features;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(17);
+        samples = new float[SAMPLES * 6];
+        for (int i = 0; i < samples.length; i += 6) {
+            samples[i] = (float) random.nextGaussian() * 0.3f;
+            samples[i + 1] = (float) random.nextGaussian() * 0.3f;
+            samples[i + 2] = 9.81f + (float) random.nextGaussian() * 0.3f;
+            samples[i + 3] = (float) random.nextGaussian() * 4f;
+            samples[i + 4] = (float) random.nextGaussian() * 4f;
+            samples[i + 5] = (float) random.nextGaussian() * 4f;
+        }
+        extractor = new FeatureExtractor(windowSize);
+        features = new float[FeatureExtractor.FEATURE_COUNT];
+        for (int i = 0; i < windowSize; i++) {
+            add();
+        }
+    }
+
+    private void add() {
+        int s = next;
+        next = (next + 6) % samples.length;
+        extractor.add(samples[s], samples[s + 1], samples[s + 2], samples[s + 3], samples[s + 4], samples[s + 5]);
+    }
+
+    @Benchmark
+    public int addSample() {
+        add();
+        return extractor.getSampleCount();
+    }
+
+    @Benchmark
+    public float addAndExtract() {
+        add();
+        extractor.extract(features, 0);
+        return features[FeatureExtractor.FEATURE_COUNT - 1];
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.accidentdetection.benchmark;
+
+import com.example.accidentdetection.DetectionEngine;
+import com.example.accidentdetection.FeatureDataset;
+import com.example.accidentdetection.FeatureExtractor;
+import com.example.accidentdetection.JavaDetectionModel;
+import com.example.accidentdetection.JavaPredictor;
+import com.example.accidentdetection.ModelEvaluator;
+import com.example.accidentdetection.OnnxDetectionModel;
+import com.example.accidentdetection.OnnxPredictor;
+import com.example.accidentdetection.SessionConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * ONNX Runtime against {@link JavaPredictor} on the bundled model:
+ * <ul>
+ * <li>{@code predictRow}: one dataset row scored, the steady-state cost per window</li>
+ * <li>{@code loadAndPredict}: model file to first probability, the start-up cost</li>
+ * </ul>
+ * At setup each backend also prints the growth in resident memory and in heap caused by loading
+ * it, and the Java backend its parity with ONNX Runtime on every row of dataset/features_14.csv.
+ */
+@State(Scope.Thread)
+public class JavaPredictorBenchmark {
+
+    @Param({"ort", "java"})
+    public String backend;
+
+    private File modelFile;
+    private OrtEnvironment env;
+    private OrtSession session;
+    private OnnxPredictor onnxPredictor;
+    private JavaPredictor javaPredictor;
+    private float[] rows;
+    private int rowCount;
+    private int width;
+    private int row;
+
+    @Setup
+    public void setUp() throws IOException, OrtException {
+        modelFile = new File(System.getProperty("model.path"));
+        env = OrtEnvironment.getEnvironment();
+        FeatureDataset data = FeatureDataset.read(new File(System.getProperty("dataset.path")));
+
+        System.gc();
+        long heapBefore = usedHeap();
+        long rssBefore = residentKilobytes();
+        if ("java".equals(backend)) {
+            javaPredictor = JavaPredictor.load(modelFile);
+            width = javaPredictor.getInputWidth();
+        } else {
+            session = open();
+            onnxPredictor = new OnnxPredictor(env, session);
+            width = onnxPredictor.getInputWidth();
+        }
+        long rssAfter = residentKilobytes();
+        System.gc();
+        long heapAfter = usedHeap();
+        System.out.printf("%n[%s] load: RSS +%d KB, heap +%d KB%n",
+                backend, rssAfter - rssBefore, (heapAfter - heapBefore) / 1024);
+
+        // Model rows as the app builds them: the features at the end, leading columns 0
+        rowCount = data.rows;
+        rows = new float[rowCount * width];
+        for (int r = 0; r < rowCount; r++) {
+            System.arraycopy(data.features, r * FeatureExtractor.FEATURE_COUNT,
+                    rows, (r + 1) * width - FeatureExtractor.FEATURE_COUNT, FeatureExtractor.FEATURE_COUNT);
+        }
+
+        if (javaPredictor != null) {
+            try (OrtSession reference = open();
+                 OnnxPredictor referencePredictor = new OnnxPredictor(env, reference)) {
+                System.out.print("[java] " + ModelEvaluator.compare(new OnnxDetectionModel(referencePredictor),
+                        new JavaDetectionModel(javaPredictor), data, DetectionEngine.ALERT_THRESHOLD));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws OrtException {
+        if (onnxPredictor != null) {
+            onnxPredictor.close();
+            session.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public float predictRow() throws OrtException {
+        int offset = row * width;
+        row = row + 1 == rowCount ? 0 : row + 1;
+        return javaPredictor != null ? javaPredictor.predict(rows, offset) : onnxPredictor.predict(rows, offset);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public float loadAndPredict() throws IOException, OrtException {
+        if ("java".equals(backend)) {
+            return JavaPredictor.load(modelFile).predict(rows, 0);
+        }
+        try (OrtSession fresh = open();
+             OnnxPredictor predictor = new OnnxPredictor(env, fresh)) {
+            return predictor.predict(rows, 0);
+        }
+    }
+
+    private OrtSession open() throws OrtException {
+        try (OrtSession.SessionOptions options = SessionConfig.lowPower().toSessionOptions()) {
+            return env.createSession(modelFile.getAbsolutePath(), options);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Resident set size from /proc (Linux hosts); covers the native memory ONNX Runtime allocates.
+     */
+    private static long residentKilobytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not available on this platform
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.accidentdetection.benchmark;
+
+import com.example.accidentdetection.ModelCache;
+import com.example.accidentdetection.OnnxPredictor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * Time to first prediction: a cold start that has to extract the model out of the assets
+ * against a warm start that finds it in {@link ModelCache}. Each invocation is one start.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 30)
+@State(Scope.Thread)
+public class ModelLoadBenchmark {
+
+    private static final String MODEL_FILE = "driver_behavior_model.onnx";
+    private static final String MODEL_DATA_FILE = "driver_behavior_model.onnx.data";
+
+    private OrtEnvironment env;
+    private File assetDir;
+    private File coldRoot;
+    private File warmRoot;
+    private ModelCache.AssetSource assets;
+    private float[] row;
+
+    @Setup
+    public void setUp() throws IOException {
+        env = OrtEnvironment.getEnvironment();
+        assetDir = new File(System.getProperty("model.path")).getParentFile();
+        assets = name -> new FileInputStream(new File(assetDir, name));
+        warmRoot = Files.createTempDirectory("model-warm").toFile();
+        new ModelCache(warmRoot, "bench", assets).prepare(MODEL_FILE, MODEL_DATA_FILE);
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyColdCache() throws IOException {
+        if (coldRoot != null) {
+            delete(coldRoot);
+        }
+        coldRoot = Files.createTempDirectory("model-cold").toFile();
+    }
+
+    @TearDown
+    public void tearDown() {
+        delete(coldRoot);
+        delete(warmRoot);
+    }
+
+    @Benchmark
+    public float coldStart() throws IOException, OrtException {
+        return loadAndPredict(coldRoot);
+    }
+
+    @Benchmark
+    public float warmStart() throws IOException, OrtException {
+        return loadAndPredict(warmRoot);
+    }
+
+    private float loadAndPredict(File root) throws IOException, OrtException {
+        File model = new ModelCache(root, "bench", assets).prepare(MODEL_FILE, MODEL_DATA_FILE);
+        try (OrtSession session = env.createSession(model.getAbsolutePath(), new OrtSession.SessionOptions());
+             OnnxPredictor predictor = new OnnxPredictor(env, session)) {
+            if (row == null) {
+                row = new float[predictor.getInputWidth()];
+            }
+            return predictor.predict(row, 0);
+        }
+    }
+
+    private static void delete(File file) {
+        if (file == null) {
+            return;
+        }
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
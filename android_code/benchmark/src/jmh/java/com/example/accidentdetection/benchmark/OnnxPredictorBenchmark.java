@@ -0,0 +1,76 @@
+package com.example.accidentdetection.benchmark;
+
+import com.example.accidentdetection.OnnxPredictor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.FloatBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * Per-prediction cost of the bundled model: the old allocate-everything path against
+ * {@link OnnxPredictor}. The gc profiler configured in build.gradle.kts reports bytes per op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class OnnxPredictorBenchmark {
+
+    private OrtEnvironment env;
+    private OrtSession session;
+    private OnnxPredictor predictor;
+    private float[] row;
+
+    @Setup
+    public void setUp() throws OrtException {
+        env = OrtEnvironment.getEnvironment();
+        session = env.createSession(System.getProperty("model.path"), new OrtSession.SessionOptions());
+        predictor = new OnnxPredictor(env, session);
+        row = new float[predictor.getInputWidth()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = (i % 7) * 0.25f - 0.5f;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws OrtException {
+        predictor.close();
+        session.close();
+    }
+
+    /**
+     * What AccidentClassifier.predictWithML did before: new array, buffer, tensor, map and
+     * float[][] result on every call, plus a lookup of the input name.
+     */
+    @Benchmark
+    public float allocatingPerCall() throws OrtException {
+        float[] inputData = row.clone();
+        long[] shape = new long[]{1, inputData.length};
+        OnnxTensor inputTensor = OnnxTensor.createTensor(env, FloatBuffer.wrap(inputData), shape);
+        try (OrtSession.Result results = session.run(
+                Collections.singletonMap(session.getInputNames().iterator().next(), inputTensor))) {
+            float[][] output = (float[][]) results.get(0).getValue();
+            return output[0][0];
+        } finally {
+            inputTensor.close();
+        }
+    }
+
+    @Benchmark
+    public float preallocated() throws OrtException {
+        return predictor.predict(row, 0);
+    }
+}
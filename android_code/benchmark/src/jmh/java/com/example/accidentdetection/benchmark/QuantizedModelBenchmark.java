@@ -0,0 +1,171 @@
+package com.example.accidentdetection.benchmark;
+
+import com.example.accidentdetection.OnnxPredictor;
+import com.example.accidentdetection.SessionConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * Full-precision model against the INT8 variant built by training/quantize_model.py.
+ *
+ * The timed methods give per-row latency; the gc profiler gives heap allocation. At setup
+ * each variant also prints its file size, the growth in resident memory caused by creating
+ * its session, and how far its probabilities are from the full-precision model's on every
+ * row of dataset/features_14.csv.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class QuantizedModelBenchmark {
+
+    private static final String QUANTIZED_FILE = "driver_behavior_model.int8.onnx";
+    private static final float THRESHOLD = 0.7f;
+
+    @Param({"fp32", "int8"})
+    public String variant;
+
+    private OrtEnvironment env;
+    private OrtSession session;
+    private OnnxPredictor predictor;
+    private float[] rows;
+    private int rowCount;
+    private int row;
+
+    @Setup
+    public void setUp() throws IOException, OrtException {
+        env = OrtEnvironment.getEnvironment();
+        File fullModel = new File(System.getProperty("model.path"));
+        File model = "int8".equals(variant) ? new File(fullModel.getParentFile(), QUANTIZED_FILE) : fullModel;
+        if (!model.isFile()) {
+            throw new IllegalStateException(model + " not found; run training/quantize_model.py --install first");
+        }
+
+        long rssBefore = residentKilobytes();
+        session = open(model);
+        predictor = new OnnxPredictor(env, session);
+        long rssAfter = residentKilobytes();
+
+        int width = predictor.getInputWidth();
+        rows = loadDataset(width);
+        rowCount = rows.length / width;
+
+        float[] probabilities = new float[rowCount];
+        predictor.predictBatch(rows, rowCount, width, probabilities);
+        float[] reference = probabilities;
+        if (model != fullModel) {
+            reference = new float[rowCount];
+            try (OrtSession fullSession = open(fullModel);
+                 OnnxPredictor fullPredictor = new OnnxPredictor(env, fullSession)) {
+                fullPredictor.predictBatch(rows, rowCount, width, reference);
+            }
+        }
+
+        double maxDelta = 0;
+        double sumDelta = 0;
+        int flips = 0;
+        for (int i = 0; i < rowCount; i++) {
+            double delta = Math.abs(probabilities[i] - reference[i]);
+            maxDelta = Math.max(maxDelta, delta);
+            sumDelta += delta;
+            if ((probabilities[i] >= THRESHOLD) != (reference[i] >= THRESHOLD)) {
+                flips++;
+            }
+        }
+
+        long bytes = model.length();
+        File data = new File(model.getPath() + ".data");
+        if (data.isFile()) {
+            bytes += data.length();
+        }
+        System.out.printf("%n[%s] model %d bytes, session RSS +%d KB, max |dp| %.6f, mean |dp| %.6f, "
+                        + "%d/%d decisions flipped at %.1f%n",
+                variant, bytes, rssAfter - rssBefore, maxDelta, sumDelta / rowCount, flips, rowCount, THRESHOLD);
+    }
+
+    @TearDown
+    public void tearDown() throws OrtException {
+        predictor.close();
+        session.close();
+    }
+
+    @Benchmark
+    public float predictRow() throws OrtException {
+        int offset = row * predictor.getInputWidth();
+        row = row + 1 == rowCount ? 0 : row + 1;
+        return predictor.predict(rows, offset);
+    }
+
+    private OrtSession open(File model) throws OrtException {
+        try (OrtSession.SessionOptions options = SessionConfig.lowPower().toSessionOptions()) {
+            return env.createSession(model.getAbsolutePath(), options);
+        }
+    }
+
+    /**
+     * Every column of the dataset except a 'label' column, as the training notebook fed it.
+     */
+    private static float[] loadDataset(int width) throws IOException {
+        List<float[]> parsed = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(
+                Paths.get(System.getProperty("dataset.path")), StandardCharsets.UTF_8)) {
+            String[] header = reader.readLine().split(",");
+            int label = -1;
+            for (int i = 0; i < header.length; i++) {
+                if (header[i].trim().equals("label")) label = i;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] cells = line.split(",");
+                float[] values = new float[width];
+                int column = 0;
+                for (int i = 0; i < cells.length && column < width; i++) {
+                    if (i != label) values[column++] = Float.parseFloat(cells[i]);
+                }
+                parsed.add(values);
+            }
+        }
+        float[] rows = new float[parsed.size() * width];
+        for (int i = 0; i < parsed.size(); i++) {
+            System.arraycopy(parsed.get(i), 0, rows, i * width, width);
+        }
+        return rows;
+    }
+
+    /**
+     * Resident set size from /proc (Linux hosts); covers the native memory ONNX Runtime allocates.
+     */
+    private static long residentKilobytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not available on this platform
+        }
+        return 0;
+    }
+}
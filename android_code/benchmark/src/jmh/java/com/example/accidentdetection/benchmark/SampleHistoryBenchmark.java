@@ -0,0 +1,62 @@
+package com.example.accidentdetection.benchmark;
+
+import com.example.accidentdetection.SampleHistory;
+import com.example.accidentdetection.TelemetryFrame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost {@link SampleHistory} adds to the Bluetooth listener thread per decoded frame.
+ * The gc profiler should report no allocation for either method.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SampleHistoryBenchmark {
+
+    private SampleHistory history;
+    private TelemetryFrame sample;
+    private TelemetryFrame batch;
+    private long now;
+
+    @Setup
+    public void setUp() {
+        history = new SampleHistory(16384);
+        sample = new TelemetryFrame();
+        sample.type = TelemetryFrame.TYPE_SENSOR;
+        sample.sequence = 1;
+        sample.az = 9.81f;
+        batch = new TelemetryFrame();
+        batch.type = TelemetryFrame.TYPE_SAMPLE_BATCH;
+        batch.batchCount = 10;
+        batch.batchIntervalMicros = 2000;
+        for (int i = 0; i < batch.batchCount; i++) {
+            batch.batchAxes[i * 6 + 2] = 9.81f;
+        }
+    }
+
+    @Benchmark
+    public long recordSample() {
+        now += 2_000_000L;
+        history.record(sample, now, 9.81f);
+        return history.getWritten();
+    }
+
+    /**
+     * One 20 ms batch at 500 Hz.
+     */
+    @Benchmark
+    public long recordBatch() {
+        now += 20_000_000L;
+        history.record(batch, now, 9.81f);
+        return history.getWritten();
+    }
+}
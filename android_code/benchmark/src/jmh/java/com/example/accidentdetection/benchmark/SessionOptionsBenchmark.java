@@ -0,0 +1,93 @@
+package com.example.accidentdetection.benchmark;
+
+import com.example.accidentdetection.OnnxPredictor;
+import com.example.accidentdetection.SessionConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * Single-row and batched latency of the bundled model across session settings. The full
+ * grid is large; narrow it from the command line, e.g.
+ * {@code ./gradlew :benchmark:jmh -Pjmh.includes=SessionOptions} with {@code -p intraOpThreads=1}.
+ * Compare the gc profiler's allocation figures as well as the time: the arena and memory
+ * pattern settings trade native memory for speed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SessionOptionsBenchmark {
+
+    private static final int BATCH_ROWS = 64;
+
+    @Param({"1", "2", "4"})
+    public int intraOpThreads;
+
+    @Param({"NO_OPT", "BASIC_OPT", "EXTENDED_OPT", "ALL_OPT"})
+    public String optLevel;
+
+    @Param({"SEQUENTIAL", "PARALLEL"})
+    public String executionMode;
+
+    @Param({"true", "false"})
+    public boolean memoryPattern;
+
+    @Param({"true", "false"})
+    public boolean cpuArena;
+
+    private OrtSession session;
+    private OnnxPredictor predictor;
+    private float[] rows;
+    private float[] probabilities;
+
+    @Setup
+    public void setUp() throws OrtException {
+        SessionConfig config = SessionConfig.lowPower()
+                .intraOpThreads(intraOpThreads)
+                .interOpThreads(intraOpThreads)
+                .optLevel(OrtSession.SessionOptions.OptLevel.valueOf(optLevel))
+                .executionMode(OrtSession.SessionOptions.ExecutionMode.valueOf(executionMode))
+                .memoryPattern(memoryPattern)
+                .cpuArena(cpuArena);
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        try (OrtSession.SessionOptions options = config.toSessionOptions()) {
+            session = env.createSession(System.getProperty("model.path"), options);
+        }
+        predictor = new OnnxPredictor(env, session);
+        rows = new float[BATCH_ROWS * predictor.getInputWidth()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = (i % 13) * 0.15f - 1f;
+        }
+        probabilities = new float[BATCH_ROWS];
+    }
+
+    @TearDown
+    public void tearDown() throws OrtException {
+        predictor.close();
+        session.close();
+    }
+
+    @Benchmark
+    public float singleRow() throws OrtException {
+        return predictor.predict(rows, 0);
+    }
+
+    @Benchmark
+    public float batch64() throws OrtException {
+        predictor.predictBatch(rows, BATCH_ROWS, predictor.getInputWidth(), probabilities);
+        return probabilities[BATCH_ROWS - 1];
+    }
+}
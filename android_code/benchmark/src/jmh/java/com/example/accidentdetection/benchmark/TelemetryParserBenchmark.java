@@ -0,0 +1,68 @@
+package com.example.accidentdetection.benchmark;
+
+import com.example.accidentdetection.TelemetryFrame;
+import com.example.accidentdetection.TelemetryParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link TelemetryParser} with the String/substring parsing the activities used before.
+ * Run with -prof gc to see the allocation difference.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class TelemetryParserBenchmark {
+
+    private byte[] line;
+    private TelemetryParser parser;
+    private TelemetryFrame frame;
+
+    @Setup
+    public void setUp() {
+        line = "ACCEL:12.34 GYRO:150.02 STATUS:OK".getBytes(StandardCharsets.US_ASCII);
+        parser = new TelemetryParser();
+        frame = new TelemetryFrame();
+    }
+
+    @Benchmark
+    public void zeroCopy(Blackhole bh) {
+        parser.parse(line, 0, line.length, frame);
+        bh.consume(frame.accel);
+        bh.consume(frame.gyro);
+    }
+
+    /**
+     * The previous TestingActivity.parseSensorData approach, minus the UI updates.
+     */
+    @Benchmark
+    public void substring(Blackhole bh) {
+        String data = new String(line, 0, line.length, StandardCharsets.UTF_8);
+        float accel = Float.NaN;
+        float gyro = Float.NaN;
+        if (data.contains("ACCEL:")) {
+            int accelStart = data.indexOf("ACCEL:") + 6;
+            int accelEnd = data.indexOf(" ", accelStart);
+            if (accelEnd == -1) accelEnd = data.length();
+            accel = Float.parseFloat(data.substring(accelStart, accelEnd).trim());
+        }
+        if (data.contains("GYRO:")) {
+            int gyroStart = data.indexOf("GYRO:") + 5;
+            int gyroEnd = data.indexOf(" ", gyroStart);
+            if (gyroEnd == -1) gyroEnd = data.length();
+            gyro = Float.parseFloat(data.substring(gyroStart, gyroEnd).trim());
+        }
+        bh.consume(accel);
+        bh.consume(gyro);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.accidentdetection.benchmark;
+
+import com.example.accidentdetection.BluetoothFrameReader;
+import com.example.accidentdetection.DetectionModel;
+import com.example.accidentdetection.OnnxDetectionModel;
+import com.example.accidentdetection.OnnxPredictor;
+import com.example.accidentdetection.SampleGate;
+import com.example.accidentdetection.TelemetryFrame;
+import com.example.accidentdetection.TelemetryParser;
+import com.example.accidentdetection.TelemetrySimulator;
+import com.example.accidentdetection.ThresholdModel;
+import com.example.accidentdetection.TripRecorder;
+import com.example.accidentdetection.TripReplay;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * Replays an hour of simulated 500 Hz driving, recorded with {@link TripRecorder}, through
+ * {@link TripReplay}. One op is the whole trip, so the score is the time an hour of telemetry
+ * takes to check; each run also prints the speedup over real time. With {@code gated} the
+ * replayed engine runs a {@link SampleGate}, once per batch as in the app, and the run prints its
+ * skip ratio, missed detections and latency against a second engine scoring every window.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TripReplayBenchmark {
+
+    private static final int RATE_HZ = 500;
+    private static final long TRIP_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int WINDOW = 50;
+    private static final int STRIDE = 25;
+
+    @Param({"threshold", "onnx"})
+    public String model;
+
+    @Param({"false", "true"})
+    public boolean gated;
+
+    private File root;
+    private File trip;
+    private OrtSession session;
+    private OnnxPredictor predictor;
+    private DetectionModel detectionModel;
+
+    @Setup
+    public void setUp() throws IOException, OrtException {
+        TelemetrySimulator simulator = new TelemetrySimulator(RATE_HZ, RATE_HZ / 50, 5L);
+        for (long at = 60_000; at < TRIP_MILLIS; at += 600_000) {
+            simulator.addImpulse(at, 30, 70f, 200f);
+        }
+        byte[] stream = simulator.render(TRIP_MILLIS);
+
+        root = Files.createTempDirectory("trip-replay").toFile();
+        TripRecorder recorder = new TripRecorder(root, 4L * 1024 * 1024, Long.MAX_VALUE, 64 * 1024, 2000);
+        recorder.start();
+        long start = System.nanoTime();
+        recorder.beginTrip(System.currentTimeMillis(), start);
+        BluetoothFrameReader reader = new BluetoothFrameReader(new ByteArrayInputStream(stream));
+        TelemetryParser parser = new TelemetryParser();
+        TelemetryFrame frame = new TelemetryFrame();
+        long[] frames = {0};
+        BluetoothFrameReader.FrameListener listener = (buffer, offset, length) -> {
+            if (parser.parse(buffer, offset, length, frame) == TelemetryFrame.TYPE_PROTOCOL_ACK) {
+                reader.setFraming(BluetoothFrameReader.Framing.BINARY);
+            }
+            long at = start + frames[0]++ * TimeUnit.MILLISECONDS.toNanos(20);
+            while (!recorder.append(buffer, offset, length, at)) {
+                Thread.yield();
+            }
+        };
+        while (reader.readFrames(listener)) {
+            // drain
+        }
+        recorder.close();
+        trip = TripRecorder.listTrips(root)[0];
+
+        if ("onnx".equals(model)) {
+            OrtEnvironment env = OrtEnvironment.getEnvironment();
+            session = env.createSession(System.getProperty("model.path"), new OrtSession.SessionOptions());
+            predictor = new OnnxPredictor(env, session);
+            detectionModel = new OnnxDetectionModel(predictor);
+        } else {
+            detectionModel = new ThresholdModel();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws OrtException {
+        if (predictor != null) {
+            predictor.close();
+            session.close();
+        }
+        for (File segment : TripRecorder.listSegments(trip)) {
+            segment.delete();
+        }
+        trip.delete();
+        root.delete();
+    }
+
+    @Benchmark
+    public TripReplay.Result replayHour() throws IOException {
+        TripReplay replay = new TripReplay(detectionModel, WINDOW, STRIDE, 30_000);
+        if (gated) {
+            replay.setGate(new SampleGate());
+        }
+        TripReplay.Result result = replay.replay(trip, null);
+        System.out.printf("%n[%s%s] %s%n", model, gated ? " gated" : "", result);
+        return result;
+    }
+}
@@ -0,0 +1,18 @@
+plugins {
+    `java-library`
+}
+
+// Android-free detection code shared by the app, the benchmarks and the JVM tools:
+// telemetry decoding, feature extraction, models, recording and replay
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    // Same API in both builds: the app brings onnxruntime-android, JVM users the desktop runtime
+    compileOnly("com.microsoft.onnxruntime:onnxruntime:1.19.2")
+
+    testImplementation(libs.junit)
+    testImplementation("com.microsoft.onnxruntime:onnxruntime:1.19.2")
+}
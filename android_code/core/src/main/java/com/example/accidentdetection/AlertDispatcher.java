@@ -0,0 +1,216 @@
+package com.example.accidentdetection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps an emergency alert ready to send, so firing it is a hand-off rather than a build.
+ *
+ * Everything an alert needs that is known in advance (recipients, the message with the latest
+ * location, and whatever the {@link Channel} builds from them, such as split SMS parts and their
+ * delivery callbacks) is prepared whenever one of them changes and published as one immutable
+ * {@link Prepared}. {@link #fire(long)} only reads it and sends, and times the trigger-to-handoff
+ * latency.
+ *
+ * A rebuild replaces the alert only once the new one is ready, so a fire during it sends the
+ * previous alert (e.g. with the last known location) rather than nothing. Only a block or running
+ * out of recipients disarms; a failed rebuild keeps the previous alert and reports the failure.
+ *
+ * The setters are meant for one thread (the main thread in the app); {@link #fire(long)} and the
+ * getters are safe from any.
+ */
+public class AlertDispatcher {
+
+    /**
+     * A ready-to-send alert; immutable once built, may be sent more than once.
+     */
+    public interface Prepared {
+        /**
+         * Hands the alert to the transport.
+         *
+         * @return the number of recipients it was handed off for
+         */
+        int send();
+    }
+
+    public interface Channel {
+        /**
+         * Builds everything sending to {@code recipients} needs. Called off the alert path, on the
+         * thread that calls the dispatcher's setters.
+         *
+         * @throws RuntimeException if it cannot be prepared; the dispatcher is left disarmed with
+         *                          the message as the reason
+         */
+        Prepared prepare(List<String> recipients, String message);
+    }
+
+    public static final String NO_RECIPIENTS = "No emergency contacts configured";
+
+    private final Channel channel;
+
+    // Owned by the setter thread
+    private List<String> recipients = Collections.emptyList();
+    private String message = "";
+    private String blockedReason = null;
+
+    private volatile Prepared prepared = null;
+    private volatile String disarmedReason = NO_RECIPIENTS;
+    private volatile String prepareError = null;
+    private volatile long preparations = 0;
+
+    // Written under the dispatcher's lock, since the engine and the alert button can both fire
+    private volatile long fired = 0;
+    private volatile long notArmed = 0;
+    private volatile long lastHandoffNanos = 0;
+    private volatile long maxHandoffNanos = 0;
+    private volatile long totalHandoffNanos = 0;
+
+    public AlertDispatcher(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Sets who the alert goes to; blank numbers are left out. Prepares again if they changed.
+     */
+    public void setRecipients(List<String> phones) {
+        List<String> valid = new ArrayList<>();
+        for (String phone : phones) {
+            if (phone != null && !phone.trim().isEmpty()) {
+                valid.add(phone);
+            }
+        }
+        if (!valid.equals(recipients)) {
+            recipients = Collections.unmodifiableList(valid);
+            prepare();
+        }
+    }
+
+    /**
+     * Sets the alert text, e.g. as the location changes. Prepares again if it changed.
+     */
+    public void setMessage(String message) {
+        if (!message.equals(this.message)) {
+            this.message = message;
+            prepare();
+        }
+    }
+
+    /**
+     * Keeps the dispatcher disarmed for {@code reason}, e.g. a missing permission; null lifts it.
+     */
+    public void setBlockedReason(String reason) {
+        if (reason == null ? blockedReason != null : !reason.equals(blockedReason)) {
+            blockedReason = reason;
+            prepare();
+        }
+    }
+
+    private void prepare() {
+        if (blockedReason != null) {
+            prepared = null;
+            disarmedReason = blockedReason;
+            return;
+        }
+        if (recipients.isEmpty()) {
+            prepared = null;
+            disarmedReason = NO_RECIPIENTS;
+            return;
+        }
+        Prepared next;
+        try {
+            // The previous alert stays armed until this one is complete
+            next = channel.prepare(recipients, message);
+        } catch (RuntimeException e) {
+            prepareError = e.getMessage() != null ? e.getMessage() : e.toString();
+            if (prepared == null) {
+                disarmedReason = prepareError;
+            }
+            return;
+        }
+        prepared = next;
+        disarmedReason = null;
+        prepareError = null;
+        preparations++;
+    }
+
+    /**
+     * Sends the prepared alert. Safe from any thread.
+     *
+     * @param triggerNanos {@link System#nanoTime()} of what triggered it, e.g. the detection's
+     *                     {@link DetectionEngine.Decision#nanos}; the handoff latency is timed from it
+     * @return the number of recipients the alert was handed off for, or -1 if not armed (see
+     * {@link #getDisarmedReason()})
+     */
+    public int fire(long triggerNanos) {
+        Prepared current = prepared;
+        if (current == null) {
+            synchronized (this) {
+                notArmed++;
+            }
+            return -1;
+        }
+        int handedOff = current.send();
+        long latency = System.nanoTime() - triggerNanos;
+        synchronized (this) {
+            fired++;
+            lastHandoffNanos = latency;
+            maxHandoffNanos = Math.max(maxHandoffNanos, latency);
+            totalHandoffNanos += latency;
+        }
+        return handedOff;
+    }
+
+    public boolean isArmed() {
+        return prepared != null;
+    }
+
+    /**
+     * @return why {@link #fire(long)} would not send, or null when armed
+     */
+    public String getDisarmedReason() {
+        return disarmedReason;
+    }
+
+    /**
+     * @return why the last rebuild failed, while the alert it would have replaced is still the
+     * one armed; null once a rebuild succeeds
+     */
+    public String getPrepareError() {
+        return prepareError;
+    }
+
+    /**
+     * @return how many times the alert has been prepared
+     */
+    public long getPreparations() {
+        return preparations;
+    }
+
+    public long getFired() {
+        return fired;
+    }
+
+    /**
+     * @return fires that found nothing prepared
+     */
+    public long getNotArmed() {
+        return notArmed;
+    }
+
+    /**
+     * @return trigger-to-handoff time of the last alert sent, 0 before the first
+     */
+    public long getLastHandoffNanos() {
+        return lastHandoffNanos;
+    }
+
+    public long getMaxHandoffNanos() {
+        return maxHandoffNanos;
+    }
+
+    public long getMeanHandoffNanos() {
+        long count = fired;
+        return count == 0 ? 0 : totalHandoffNanos / count;
+    }
+}
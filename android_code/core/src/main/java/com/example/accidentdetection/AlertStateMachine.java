@@ -0,0 +1,165 @@
+package com.example.accidentdetection;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which of any number of concurrent alerts is sent, without a lock:
+ * <pre>
+ *   IDLE --arm--> ARMED --tryDispatch--> DISPATCHING --dispatched--> COOLDOWN
+ *                   ^                                                   |
+ *                   +------------- cooldown elapsed, or reset ----------+
+ * </pre>
+ * The state and the monotonic time it was entered share one {@link AtomicLong}, so every
+ * transition is a single compare-and-set: of a burst of alerts exactly one wins ARMED to
+ * DISPATCHING, the others see the new state and are counted as suppressed, and no thread
+ * waits on another. Because the time is part of the word, a transition based on a stale read
+ * (say, of a cooldown that has since been reset and entered again) fails rather than acting
+ * on the newer state.
+ *
+ * Times are {@link System#nanoTime()} values or anything else monotonic, such as the receive
+ * times of a replayed trip; they are kept relative to when the machine was created and must be
+ * within about 70 years of it.
+ */
+public final class AlertStateMachine {
+
+    /** Alerts are ignored until {@link #arm()}. */
+    public static final int IDLE = 0;
+    /** The next alert is dispatched. */
+    public static final int ARMED = 1;
+    /** An alert won and is being handed off; later ones are suppressed. */
+    public static final int DISPATCHING = 2;
+    /** An alert was sent; later ones are suppressed until the cooldown has passed. */
+    public static final int COOLDOWN = 3;
+
+    private static final int STATE_BITS = 2;
+    private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+
+    private final long cooldownNanos;
+    private final long originNanos = System.nanoTime();
+    // The state in the low bits, the time it was entered (from originNanos) above them; IDLE
+    // and ARMED carry no time
+    private final AtomicLong word = new AtomicLong(IDLE);
+    private final LongAdder dispatches = new LongAdder();
+    // An adder rather than an atomic, so a burst of losers does not contend on the count either
+    private final LongAdder suppressed = new LongAdder();
+
+    /**
+     * Starts {@link #IDLE}.
+     *
+     * @param cooldownMillis how long a sent alert suppresses later ones
+     */
+    public AlertStateMachine(long cooldownMillis) {
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMillis);
+    }
+
+    private long pack(int state, long nanos) {
+        return (nanos - originNanos) << STATE_BITS | state;
+    }
+
+    private static int stateOf(long word) {
+        return (int) (word & STATE_MASK);
+    }
+
+    private long nanosOf(long word) {
+        // Arithmetic shift, so times before the origin survive the round trip
+        return (word >> STATE_BITS) + originNanos;
+    }
+
+    /**
+     * IDLE to ARMED.
+     *
+     * @return false if it was not idle
+     */
+    public boolean arm() {
+        return word.compareAndSet(IDLE, ARMED);
+    }
+
+    /**
+     * Back to IDLE from any state; an alert being dispatched still completes.
+     */
+    public void disarm() {
+        word.set(IDLE);
+    }
+
+    /**
+     * Claims the right to send an alert raised at {@code nowNanos}. Safe from any thread; of
+     * concurrent callers at most one gets true. The winner must call {@link #dispatched(long)}
+     * with the same time once the alert is handed off.
+     *
+     * @return whether the caller should send the alert
+     */
+    public boolean tryDispatch(long nowNanos) {
+        while (true) {
+            long current = word.get();
+            int state = stateOf(current);
+            boolean open = state == ARMED
+                    || (state == COOLDOWN && nowNanos - nanosOf(current) >= cooldownNanos);
+            if (!open) {
+                suppressed.increment();
+                return false;
+            }
+            if (word.compareAndSet(current, pack(DISPATCHING, nowNanos))) {
+                dispatches.increment();
+                return true;
+            }
+            // Lost to another transition; decide again on what it left
+        }
+    }
+
+    /**
+     * DISPATCHING to COOLDOWN, timed from the alert. Does nothing if the dispatch was reset or
+     * disarmed meanwhile.
+     *
+     * @param dispatchNanos the time passed to the {@link #tryDispatch(long)} that won
+     */
+    public void dispatched(long dispatchNanos) {
+        word.compareAndSet(pack(DISPATCHING, dispatchNanos), pack(COOLDOWN, dispatchNanos));
+    }
+
+    /**
+     * Ends a dispatch or cooldown early, e.g. when the user cancels the alert, so the next one
+     * is sent. Leaves IDLE and ARMED as they are.
+     */
+    public void reset() {
+        while (true) {
+            long current = word.get();
+            int state = stateOf(current);
+            if (state != DISPATCHING && state != COOLDOWN) {
+                return;
+            }
+            if (word.compareAndSet(current, ARMED)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return {@link #IDLE}, {@link #ARMED}, {@link #DISPATCHING} or {@link #COOLDOWN}; a
+     * cooldown that has passed is still reported until the next alert or reset
+     */
+    public int getState() {
+        return stateOf(word.get());
+    }
+
+    /**
+     * @return time left before an alert would be sent again, 0 unless dispatching or cooling down
+     */
+    public long getRemainingNanos(long nowNanos) {
+        long current = word.get();
+        int state = stateOf(current);
+        if (state != DISPATCHING && state != COOLDOWN) {
+            return 0;
+        }
+        return Math.max(0, cooldownNanos - (nowNanos - nanosOf(current)));
+    }
+
+    public long getDispatches() {
+        return dispatches.sum();
+    }
+
+    public long getSuppressed() {
+        return suppressed.sum();
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.accidentdetection;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of the binary telemetry frames AD.ino sends once binary mode has been negotiated.
+ *
+ * <pre>
+ * offset  size  field
+ *      0     2  sync 0xA5 0x5A
+ *      2     1  protocol version ({@link #VERSION})
+ *      3     1  frame type ({@code TYPE_*})
+ *      4     2  payload length, little-endian
+ *      6     n  payload
+ *    6+n     2  CRC-16/CCITT-FALSE of bytes 2 .. 6+n, little-endian
+ * </pre>
+ *
+ * All multi-byte fields are little-endian, as the ESP32 stores them. Axis values are signed
+ * 16-bit fixed point: {@link #ACCEL_LSB} m/s² and {@link #GYRO_LSB} deg/s per count, which covers
+ * the ±16 g and ±500 deg/s ranges AD.ino configures.
+ *
+ * Negotiation: after connecting, the app sends {@link #COMMAND_BINARY} as a text line, optionally
+ * followed by " RATE:&lt;hz&gt;" to ask for high-rate sampling. Firmware that understands it answers
+ * {@link #REPLY_BINARY} (plus " RATE:&lt;hz&gt;" if it honoured the rate) as a text line and sends
+ * binary frames from the next byte on; older firmware ignores the command and keeps sending text.
+ * In high-rate mode samples arrive in {@link #TYPE_SAMPLE_BATCH} frames instead of one per frame.
+ *
+ * {@link #TYPE_FUSED} never comes from AD.ino: the app writes one per bucket of a
+ * {@link SensorHub}'s fused stream and hands it to the {@link DetectionEngine}, so the trip log
+ * holds exactly what the engine read, from every node.
+ */
+public final class BinaryProtocol {
+
+    public static final byte SYNC_0 = (byte) 0xA5;
+    public static final byte SYNC_1 = (byte) 0x5A;
+    public static final int VERSION = 1;
+
+    public static final int TYPE_SAMPLE = 1;
+    public static final int TYPE_ALERT = 2;
+    public static final int TYPE_SAMPLE_BATCH = 3;
+    public static final int TYPE_FUSED = 4;
+
+    public static final int HEADER_SIZE = 6;
+    public static final int CRC_SIZE = 2;
+    public static final int MAX_PAYLOAD = 1024;
+
+    // seq u16, timestamp u32 (ms), ax ay az gx gy gz i16, flags u8
+    public static final int SAMPLE_PAYLOAD = 19;
+    // seq u16, timestamp u32 (ms), accel total i16, gyro total i16
+    public static final int ALERT_PAYLOAD = 10;
+    // seq u16 of the first sample, timestamp u32 (ms) of the first sample, sample interval u16 (µs),
+    // count u8, flags u8, then count x (ax ay az gx gy gz i16). Samples are numbered consecutively.
+    public static final int BATCH_HEADER = 10;
+    public static final int BATCH_SAMPLE_SIZE = 12;
+    public static final int MAX_BATCH_SAMPLES = (MAX_PAYLOAD - BATCH_HEADER) / BATCH_SAMPLE_SIZE;
+    // links u32, gap u32 (ms no node reported before this bucket, 0 for none), flags u8,
+    // accel total i16, gyro total i16, peak ax ay az gx gy gz i16, count u8, then count x
+    // (ax ay az gx gy gz i16) of the window node's samples
+    public static final int FUSED_HEADER = 26;
+    public static final int MAX_FUSED_SAMPLES = (MAX_PAYLOAD - FUSED_HEADER) / BATCH_SAMPLE_SIZE;
+
+    public static final float ACCEL_LSB = 0.01f;
+    public static final float GYRO_LSB = 0.1f;
+
+    public static final int FLAG_ALERT = 0x01;
+    // Fused frames: the peak axes are known
+    public static final int FUSED_FLAG_AXES = 0x01;
+
+    public static final String COMMAND_BINARY = "PROTO:BIN1";
+    public static final String REPLY_BINARY = "PROTO:OK BIN1";
+    public static final String RATE_SUFFIX = " RATE:";
+    // Not a command: AD.ino drops lines it does not know, the write only has to reach the socket
+    public static final String HEARTBEAT = "PING";
+
+    private BinaryProtocol() {
+    }
+
+    public static int frameLength(int payloadLength) {
+        return HEADER_SIZE + payloadLength + CRC_SIZE;
+    }
+
+    /**
+     * @return the negotiation command as the bytes to write to the socket, newline included
+     */
+    public static byte[] commandBytes() {
+        return (COMMAND_BINARY + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @param sampleRateHz requested sampling rate for batched high-rate mode
+     */
+    public static byte[] commandBytes(int sampleRateHz) {
+        return (COMMAND_BINARY + RATE_SUFFIX + sampleRateHz + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return a line the app writes periodically so that a dead link fails on write rather than
+     *         leaving a read blocked
+     */
+    public static byte[] heartbeatBytes() {
+        return (HEARTBEAT + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public static int crc16(byte[] buf, int offset, int length) {
+        int crc = 0xFFFF;
+        for (int i = offset; i < offset + length; i++) {
+            crc = crc16Update(crc, buf[i]);
+        }
+        return crc;
+    }
+
+    public static int crc16Update(int crc, byte b) {
+        crc ^= (b & 0xFF) << 8;
+        for (int bit = 0; bit < 8; bit++) {
+            crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+        }
+        return crc & 0xFFFF;
+    }
+
+    /**
+     * Writes a complete sample frame at {@code offset}; the encoder used by tests and the simulator.
+     *
+     * @return the frame length
+     */
+    public static int encodeSample(byte[] out, int offset, int sequence, long timestampMillis,
+                                   float ax, float ay, float az, float gx, float gy, float gz, int flags) {
+        int p = writeHeader(out, offset, TYPE_SAMPLE, SAMPLE_PAYLOAD);
+        p = putU16(out, p, sequence);
+        p = putU32(out, p, timestampMillis);
+        p = putU16(out, p, fixed(ax, ACCEL_LSB));
+        p = putU16(out, p, fixed(ay, ACCEL_LSB));
+        p = putU16(out, p, fixed(az, ACCEL_LSB));
+        p = putU16(out, p, fixed(gx, GYRO_LSB));
+        p = putU16(out, p, fixed(gy, GYRO_LSB));
+        p = putU16(out, p, fixed(gz, GYRO_LSB));
+        out[p++] = (byte) flags;
+        return writeCrc(out, offset, p);
+    }
+
+    /**
+     * @return the frame length
+     */
+    public static int encodeAlert(byte[] out, int offset, int sequence, long timestampMillis,
+                                  float accelTotal, float gyroTotal) {
+        int p = writeHeader(out, offset, TYPE_ALERT, ALERT_PAYLOAD);
+        p = putU16(out, p, sequence);
+        p = putU32(out, p, timestampMillis);
+        p = putU16(out, p, fixed(accelTotal, ACCEL_LSB));
+        p = putU16(out, p, fixed(gyroTotal, GYRO_LSB));
+        return writeCrc(out, offset, p);
+    }
+
+    /**
+     * Writes a batch of {@code count} samples taken from {@code axes} (six values per sample,
+     * starting at {@code axesOffset}).
+     *
+     * @return the frame length
+     */
+    public static int encodeBatch(byte[] out, int offset, int firstSequence, long firstTimestampMillis,
+                                  int intervalMicros, float[] axes, int axesOffset, int count, int flags) {
+        if (count < 1 || count > MAX_BATCH_SAMPLES) {
+            throw new IllegalArgumentException("count must be 1.." + MAX_BATCH_SAMPLES);
+        }
+        int p = writeHeader(out, offset, TYPE_SAMPLE_BATCH, BATCH_HEADER + count * BATCH_SAMPLE_SIZE);
+        p = putU16(out, p, firstSequence);
+        p = putU32(out, p, firstTimestampMillis);
+        p = putU16(out, p, intervalMicros);
+        out[p++] = (byte) count;
+        out[p++] = (byte) flags;
+        for (int i = 0; i < count; i++) {
+            p = putAxes(out, p, axes, axesOffset + i * 6);
+        }
+        return writeCrc(out, offset, p);
+    }
+
+    /**
+     * Writes one bucket of a fused stream, see {@link SampleFuser.Output#onFusedSample}.
+     *
+     * @param gapMillis how long no node reported before this bucket; 0 when the stream did not stop
+     * @param axes      peak ax ay az gx gy gz; NaN when unknown
+     * @param samples   {@code count} samples, six values each, for the feature window
+     * @return the frame length
+     */
+    public static int encodeFused(byte[] out, int offset, int links, long gapMillis, float accelTotal,
+                                  float gyroTotal, float[] axes, float[] samples, int count) {
+        if (count < 0 || count > MAX_FUSED_SAMPLES) {
+            throw new IllegalArgumentException("count must be 0.." + MAX_FUSED_SAMPLES);
+        }
+        int p = writeHeader(out, offset, TYPE_FUSED, FUSED_HEADER + count * BATCH_SAMPLE_SIZE);
+        p = putU32(out, p, links & 0xFFFFFFFFL);
+        p = putU32(out, p, Math.min(gapMillis, 0xFFFFFFFFL));
+        out[p++] = (byte) (Float.isNaN(axes[0]) ? 0 : FUSED_FLAG_AXES);
+        p = putU16(out, p, fixed(accelTotal, ACCEL_LSB));
+        p = putU16(out, p, fixed(gyroTotal, GYRO_LSB));
+        p = putAxes(out, p, axes, 0);
+        out[p++] = (byte) count;
+        for (int i = 0; i < count; i++) {
+            p = putAxes(out, p, samples, i * 6);
+        }
+        return writeCrc(out, offset, p);
+    }
+
+    private static int putAxes(byte[] out, int p, float[] axes, int a) {
+        p = putU16(out, p, fixed(axes[a], ACCEL_LSB));
+        p = putU16(out, p, fixed(axes[a + 1], ACCEL_LSB));
+        p = putU16(out, p, fixed(axes[a + 2], ACCEL_LSB));
+        p = putU16(out, p, fixed(axes[a + 3], GYRO_LSB));
+        p = putU16(out, p, fixed(axes[a + 4], GYRO_LSB));
+        return putU16(out, p, fixed(axes[a + 5], GYRO_LSB));
+    }
+
+    static int writeHeader(byte[] out, int offset, int type, int payloadLength) {
+        out[offset] = SYNC_0;
+        out[offset + 1] = SYNC_1;
+        out[offset + 2] = (byte) VERSION;
+        out[offset + 3] = (byte) type;
+        return putU16(out, offset + 4, payloadLength);
+    }
+
+    /**
+     * Appends the CRC of everything after the sync word up to {@code end}.
+     *
+     * @return the frame length
+     */
+    static int writeCrc(byte[] out, int offset, int end) {
+        int crc = crc16(out, offset + 2, end - offset - 2);
+        putU16(out, end, crc);
+        return end + CRC_SIZE - offset;
+    }
+
+    static int putU16(byte[] out, int p, int value) {
+        out[p] = (byte) value;
+        out[p + 1] = (byte) (value >>> 8);
+        return p + 2;
+    }
+
+    static int putU32(byte[] out, int p, long value) {
+        out[p] = (byte) value;
+        out[p + 1] = (byte) (value >>> 8);
+        out[p + 2] = (byte) (value >>> 16);
+        out[p + 3] = (byte) (value >>> 24);
+        return p + 4;
+    }
+
+    static int u16(byte[] buf, int p) {
+        return (buf[p] & 0xFF) | (buf[p + 1] & 0xFF) << 8;
+    }
+
+    static int i16(byte[] buf, int p) {
+        return (short) u16(buf, p);
+    }
+
+    static long u32(byte[] buf, int p) {
+        return (u16(buf, p) | (long) u16(buf, p + 2) << 16) & 0xFFFFFFFFL;
+    }
+
+    private static int fixed(float value, float lsb) {
+        long counts = Math.round(value / lsb);
+        return (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, counts));
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.accidentdetection;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Blocking reader that splits the ESP32 byte stream into frames.
+ *
+ * Bytes are read straight into a fixed ring buffer and complete frames are handed to a
+ * {@link FrameListener} as (buffer, offset, length) views, so the steady state allocates
+ * nothing per frame. Frames that arrive split across several socket reads are reassembled.
+ * The views are only valid for the duration of the callback.
+ *
+ * The stream starts out as newline-terminated text. After binary mode has been negotiated,
+ * {@link #setFraming} switches to the length-prefixed frames of {@link BinaryProtocol}; frames
+ * with a bad CRC are dropped and the reader resynchronises on the next sync word.
+ */
+public class BluetoothFrameReader {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    public enum Framing {
+        TEXT,
+        BINARY
+    }
+
+    public interface FrameListener {
+        /**
+         * Called on the reader thread for every complete frame: a text line without the
+         * trailing "\r\n", or a whole binary frame from sync word to CRC.
+         */
+        void onFrame(byte[] buffer, int offset, int length);
+    }
+
+    private final InputStream inputStream;
+    private final byte[] ring;
+    private final int mask;
+
+    // Scratch copy for frames that wrap around the end of the ring
+    private final byte[] wrapBuffer;
+
+    // Monotonic positions; index into the ring with (position & mask)
+    private long readPos = 0;
+    private long writePos = 0;
+    // Bytes between readPos and scanPos are known to contain no newline
+    private long scanPos = 0;
+
+    private Framing framing = Framing.TEXT;
+    private boolean discarding = false;
+    private long framesRead = 0;
+    private long bytesRead = 0;
+    private long oversizedFrames = 0;
+    private long crcErrors = 0;
+    private long skippedBytes = 0;
+
+    public BluetoothFrameReader(InputStream inputStream) {
+        this(inputStream, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity ring size in bytes, rounded up to a power of two. Also the longest frame
+     *                 accepted; binary frames longer than the ring are treated as corrupt.
+     */
+    public BluetoothFrameReader(InputStream inputStream, int capacity) {
+        if (inputStream == null) {
+            throw new IllegalArgumentException("inputStream == null");
+        }
+        if (capacity < 16) {
+            throw new IllegalArgumentException("capacity must be at least 16 bytes");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.inputStream = inputStream;
+        this.ring = new byte[size];
+        this.wrapBuffer = new byte[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Blocks for one read from the stream and dispatches every frame it completes.
+     * Closing the stream from another thread is the way to unblock a pending read.
+     *
+     * @return false once the stream reports end of input
+     */
+    public boolean readFrames(FrameListener listener) throws IOException {
+        int writeIndex = (int) (writePos & mask);
+        int free = ring.length - (int) (writePos - readPos);
+        int contiguous = Math.min(free, ring.length - writeIndex);
+
+        int n = inputStream.read(ring, writeIndex, contiguous);
+        if (n < 0) {
+            return false;
+        }
+        writePos += n;
+        bytesRead += n;
+        dispatchFrames(listener);
+        return true;
+    }
+
+    /**
+     * Changes how the bytes after the current frame are split. Meant to be called from
+     * {@link FrameListener#onFrame} when the negotiation reply arrives, so the switch happens
+     * exactly at the frame boundary.
+     */
+    public void setFraming(Framing framing) {
+        this.framing = framing;
+        discarding = false;
+    }
+
+    public Framing getFraming() {
+        return framing;
+    }
+
+    private void dispatchFrames(FrameListener listener) {
+        if (framing == Framing.BINARY) {
+            dispatchBinaryFrames(listener);
+            return;
+        }
+        while (scanPos < writePos) {
+            if (ring[(int) (scanPos & mask)] != '\n') {
+                scanPos++;
+                continue;
+            }
+
+            long frameEnd = scanPos;
+            scanPos++;
+            if (discarding) {
+                // Tail of an oversized frame; drop it and resync on the next line
+                discarding = false;
+            } else {
+                emitLine(listener, readPos, frameEnd);
+            }
+            readPos = scanPos;
+            if (framing == Framing.BINARY) {
+                // The listener switched modes; the rest of the buffer is binary
+                dispatchBinaryFrames(listener);
+                return;
+            }
+        }
+
+        if (writePos - readPos == ring.length) {
+            // A full ring without a newline can never become a valid frame
+            if (!discarding) {
+                oversizedFrames++;
+                discarding = true;
+            }
+            readPos = writePos;
+            scanPos = writePos;
+        }
+    }
+
+    private void dispatchBinaryFrames(FrameListener listener) {
+        while (writePos - readPos >= BinaryProtocol.HEADER_SIZE) {
+            if (at(readPos) != BinaryProtocol.SYNC_0 || at(readPos + 1) != BinaryProtocol.SYNC_1) {
+                readPos++;
+                skippedBytes++;
+                continue;
+            }
+            int payloadLength = (at(readPos + 4) & 0xFF) | (at(readPos + 5) & 0xFF) << 8;
+            int frameLength = BinaryProtocol.frameLength(payloadLength);
+            if (payloadLength > BinaryProtocol.MAX_PAYLOAD || frameLength > ring.length) {
+                // Not a real header; look for the next sync word
+                readPos++;
+                skippedBytes++;
+                continue;
+            }
+            if (writePos - readPos < frameLength) {
+                break;
+            }
+
+            long crcPos = readPos + frameLength - BinaryProtocol.CRC_SIZE;
+            int crc = 0xFFFF;
+            for (long p = readPos + 2; p < crcPos; p++) {
+                crc = BinaryProtocol.crc16Update(crc, at(p));
+            }
+            int expected = (at(crcPos) & 0xFF) | (at(crcPos + 1) & 0xFF) << 8;
+            if (crc != expected) {
+                crcErrors++;
+                readPos++;
+                skippedBytes++;
+                continue;
+            }
+
+            long start = readPos;
+            readPos += frameLength;
+            emit(listener, start, start + frameLength);
+            if (framing == Framing.TEXT) {
+                break;
+            }
+        }
+        scanPos = readPos;
+        if (framing == Framing.TEXT && readPos < writePos) {
+            dispatchFrames(listener);
+        }
+    }
+
+    private byte at(long position) {
+        return ring[(int) (position & mask)];
+    }
+
+    private void emitLine(FrameListener listener, long start, long end) {
+        if (end > start && ring[(int) ((end - 1) & mask)] == '\r') {
+            end--;
+        }
+        if (end > start) {
+            emit(listener, start, end);
+        }
+    }
+
+    private void emit(FrameListener listener, long start, long end) {
+        int length = (int) (end - start);
+        framesRead++;
+        int startIndex = (int) (start & mask);
+        if (startIndex + length <= ring.length) {
+            listener.onFrame(ring, startIndex, length);
+        } else {
+            int head = ring.length - startIndex;
+            System.arraycopy(ring, startIndex, wrapBuffer, 0, head);
+            System.arraycopy(ring, 0, wrapBuffer, head, length - head);
+            listener.onFrame(wrapBuffer, 0, length);
+        }
+    }
+
+    public long getFramesRead() {
+        return framesRead;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return number of lines dropped because they did not fit in the ring
+     */
+    public long getOversizedFrames() {
+        return oversizedFrames;
+    }
+
+    /**
+     * @return number of binary frames dropped because their CRC did not match
+     */
+    public long getCrcErrors() {
+        return crcErrors;
+    }
+
+    /**
+     * @return bytes discarded while searching for a binary sync word
+     */
+    public long getSkippedBytes() {
+        return skippedBytes;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.accidentdetection;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The telemetry around one alert, as saved by {@link SnapshotRecorder}.
+ *
+ * <pre>
+ * magic "ADS1", version u16, width u16, wall clock u64 (ms), sample count u32,
+ * trigger index u32, reason (u16 length + UTF-8)
+ * per sample: offset from the trigger i32 (µs), width x i16
+ * </pre>
+ *
+ * Big-endian throughout. Values are stored in the {@link BinaryProtocol} fixed-point units
+ * (accelerations in {@link BinaryProtocol#ACCEL_LSB}, rotations in {@link BinaryProtocol#GYRO_LSB});
+ * {@link #MISSING} marks a value the firmware did not send.
+ */
+public final class CrashSnapshot {
+
+    public static final int MAGIC = 0x41445331; // "ADS1"
+    public static final int VERSION = 1;
+    public static final short MISSING = Short.MIN_VALUE;
+
+    public final String reason;
+    public final long wallClockMillis;
+    // Index of the first sample at or after the trigger
+    public final int triggerIndex;
+    public final int sampleCount;
+    public final int[] offsetMicros;
+    // SampleHistory.WIDTH values per sample, in SampleHistory's order
+    public final float[] values;
+
+    public CrashSnapshot(String reason, long wallClockMillis, int triggerIndex, int sampleCount,
+                         int[] offsetMicros, float[] values) {
+        this.reason = reason;
+        this.wallClockMillis = wallClockMillis;
+        this.triggerIndex = triggerIndex;
+        this.sampleCount = sampleCount;
+        this.offsetMicros = offsetMicros;
+        this.values = values;
+    }
+
+    public float value(int sample, int field) {
+        return values[sample * SampleHistory.WIDTH + field];
+    }
+
+    /**
+     * Writes samples {@code [0, count)} of {@code times}/{@code values} as a snapshot file.
+     */
+    static void write(OutputStream stream, String reason, long wallClockMillis, long triggerNanos,
+                      long[] times, float[] values, int start, int count) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        int triggerIndex = count;
+        for (int i = 0; i < count; i++) {
+            if (times[start + i] >= triggerNanos) {
+                triggerIndex = i;
+                break;
+            }
+        }
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(SampleHistory.WIDTH);
+        out.writeLong(wallClockMillis);
+        out.writeInt(count);
+        out.writeInt(triggerIndex);
+        out.writeUTF(reason);
+        for (int i = start; i < start + count; i++) {
+            out.writeInt((int) ((times[i] - triggerNanos) / 1000));
+            int v = i * SampleHistory.WIDTH;
+            for (int field = 0; field < SampleHistory.WIDTH; field++) {
+                out.writeShort(toFixed(values[v + field], lsb(field)));
+            }
+        }
+        out.flush();
+    }
+
+    public static CrashSnapshot read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a crash snapshot");
+        }
+        int version = in.readUnsignedShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int width = in.readUnsignedShort();
+        if (width != SampleHistory.WIDTH) {
+            throw new IOException("Unexpected sample width " + width);
+        }
+        long wallClockMillis = in.readLong();
+        int count = in.readInt();
+        int triggerIndex = in.readInt();
+        String reason = in.readUTF();
+        if (count < 0 || triggerIndex < 0 || triggerIndex > count) {
+            throw new IOException("Corrupt snapshot header");
+        }
+        int[] offsets = new int[count];
+        float[] values = new float[count * width];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = in.readInt();
+            for (int field = 0; field < width; field++) {
+                short fixed = in.readShort();
+                values[i * width + field] = fixed == MISSING ? Float.NaN : fixed * lsb(field);
+            }
+        }
+        return new CrashSnapshot(reason, wallClockMillis, triggerIndex, count, offsets, values);
+    }
+
+    private static float lsb(int field) {
+        boolean rotation = (field >= 3 && field < 6) || field == SampleHistory.GYRO;
+        return rotation ? BinaryProtocol.GYRO_LSB : BinaryProtocol.ACCEL_LSB;
+    }
+
+    private static short toFixed(float value, float lsb) {
+        if (Float.isNaN(value)) {
+            return MISSING;
+        }
+        long counts = Math.round(value / lsb);
+        // MISSING is reserved, so saturate one above it
+        return (short) Math.max(Short.MIN_VALUE + 1, Math.min(Short.MAX_VALUE, counts));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.accidentdetection;
+
+/**
+ * Receives what a {@link DetectionEngine} decides. Methods are called on the engine's reading or
+ * inference thread and should hand anything slow, such as UI work, to another thread.
+ */
+public interface DecisionSink {
+
+    /**
+     * An alert was raised and is now held for the engine's hold time.
+     */
+    void onAlert(DetectionEngine.Decision decision);
+
+    /**
+     * An alert would have been raised but one is already held.
+     */
+    default void onAlertSuppressed(DetectionEngine.Decision decision) {
+    }
+
+    /**
+     * Latest magnitudes, once per sensor frame; for batches, the batch's peaks.
+     */
+    default void onSensorData(float accel, float gyro) {
+    }
+
+    /**
+     * @param sampleRateHz 0 when the firmware did not switch to high-rate sampling
+     */
+    default void onBinaryTelemetry(int sampleRateHz) {
+    }
+
+    default void onSamplesLost(int count, int sequence) {
+    }
+
+    /**
+     * Scoring a sample threw on the inference thread; the sample was skipped and scoring goes on.
+     */
+    default void onInferenceFailed(RuntimeException e) {
+    }
+
+    /**
+     * @param error  one of the {@code TelemetryParser.ERROR_*} codes
+     * @param buffer only valid for the duration of the call
+     */
+    default void onMalformedFrame(int error, byte[] buffer, int offset, int length) {
+    }
+}
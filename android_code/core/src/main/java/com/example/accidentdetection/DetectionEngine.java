@@ -0,0 +1,540 @@
+package com.example.accidentdetection;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The detection path with no platform code in it: frames from a {@link SampleSource} are logged,
+ * parsed, kept in the pre-alert history and scored by a {@link DetectionModel}, and alerts go to
+ * a {@link DecisionSink}. The app drives it with the {@link BinaryProtocol#TYPE_FUSED} frames of
+ * its {@link SensorHub}, so the trip log keeps every node; tests, replays and the benchmarks drive
+ * the same object from streams and recorded trips on a desktop JVM.
+ *
+ * Once an alert is raised it is held: later alerts are suppressed until the hold time has passed
+ * or {@link #resetAlert()} is called, so one incident sends one message. The hold is an
+ * {@link AlertStateMachine}, so alerts from the inference worker, the sensor links and the UI
+ * never wait on each other to find out which one is sent.
+ *
+ * With a feature window ({@link #setFeatureWindow}), samples that carry their axes are scored as
+ * {@link FeatureExtractor} windows through {@link DetectionModel#predictFeatures}, as the bundled
+ * model was trained; text telemetry, which has only the magnitudes, is scored on those. A window
+ * is always a run of one sensor's consecutive raw samples, never fused peaks.
+ *
+ * With an inference queue, frames are scored on a worker thread and the reading thread never
+ * waits on the model; the hold is then timed on {@link System#nanoTime()}. Without one, frames are
+ * scored inline on the reading thread and timed by their receive times, which lets a recorded
+ * trip replay many times faster than real time and still hold alerts as it did on the road.
+ */
+public class DetectionEngine {
+
+    public static final float ALERT_THRESHOLD = 0.7f;
+
+    // Layout of what goes to the model: a window's features first, so predictFeatures reads them
+    // in place, then the magnitudes and what kind of sample it is
+    private static final int SLOT_ACCEL = FeatureExtractor.FEATURE_COUNT;
+    private static final int SLOT_GYRO = SLOT_ACCEL + 1;
+    private static final int SLOT_FLAGS = SLOT_ACCEL + 2;
+    private static final int SAMPLE_WIDTH = SLOT_ACCEL + 3;
+    private static final int FLAG_AUDIT = 1;
+    private static final int FLAG_WINDOW = 2;
+
+    public static final class Decision {
+
+        public enum Cause {
+            /** The model scored a sample or window at or above {@link #ALERT_THRESHOLD}. */
+            MODEL,
+            /** The sensor's own threshold check sent an alert frame. */
+            DEVICE,
+            /** {@link #trigger(long)} was called, e.g. from a test screen. */
+            REQUESTED
+        }
+
+        public final Cause cause;
+        // NaN unless the model decided
+        public final float probability;
+        // NaN when the cause carries no reading; for a window, the sample that completed it
+        public final float accel;
+        public final float gyro;
+        public final long nanos;
+
+        Decision(Cause cause, float probability, float accel, float gyro, long nanos) {
+            this.cause = cause;
+            this.probability = probability;
+            this.accel = accel;
+            this.gyro = gyro;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String toString() {
+            return cause + " p=" + probability + " accel=" + accel + " gyro=" + gyro;
+        }
+    }
+
+    private final DetectionModel model;
+    private final DecisionSink sink;
+    private final InferenceExecutor inferenceExecutor;
+
+    // Owned by the reading thread
+    private final TelemetryParser parser = new TelemetryParser();
+    private final TelemetryFrame frame = new TelemetryFrame();
+    private final float[] sample = new float[SAMPLE_WIDTH];
+    private final SampleSource.FrameListener frameListener = this::onFrame;
+    private SampleSource source;
+    private TripRecorder tripRecorder;
+    private SampleHistory sampleHistory;
+    private SampleGate gate;
+    private FeatureExtractor extractor;
+    private int windowStride;
+    private int sinceLastWindow;
+    // Whether the gate passed (or audited) a sample since the last window
+    private boolean windowOpen;
+    private boolean windowAudit;
+
+    private final AlertStateMachine alerts;
+
+    // Single writer each: the reading thread, or the inference worker for the scored counts
+    private volatile long framesReceived;
+    private volatile long samplesReceived;
+    private volatile long samplesScored;
+    private volatile long windowsScored;
+    private volatile long gaps;
+    private volatile long samplesGated;
+    private volatile long auditAlerts;
+
+    /**
+     * @param inferenceQueueCapacity samples or windows that may wait for the inference worker; 0 scores
+     *                               inline on the reading thread
+     * @param alertHoldMillis        how long a raised alert suppresses later ones
+     */
+    public DetectionEngine(DetectionModel model, DecisionSink sink, int inferenceQueueCapacity, long alertHoldMillis) {
+        if (inferenceQueueCapacity < 0) {
+            throw new IllegalArgumentException("inferenceQueueCapacity must not be negative");
+        }
+        this.model = model;
+        this.sink = sink;
+        this.alerts = new AlertStateMachine(alertHoldMillis);
+        this.alerts.arm();
+        // One long-lived worker for all predictions; keeps results ordered and bounded under bursts
+        this.inferenceExecutor = inferenceQueueCapacity == 0 ? null
+                : new InferenceExecutor("AccidentInference", inferenceQueueCapacity, SAMPLE_WIDTH,
+                InferenceExecutor.QueuePolicy.DROP_OLDEST,
+                (sequence, s) -> score(s, System.nanoTime()));
+        if (inferenceExecutor != null) {
+            inferenceExecutor.setFailureListener((sequence, e) -> sink.onInferenceFailed(e));
+        }
+    }
+
+    /**
+     * @param tripRecorder logs every frame, one trip per {@link #run(SampleSource)}; may be null
+     */
+    public void setTripRecorder(TripRecorder tripRecorder) {
+        this.tripRecorder = tripRecorder;
+    }
+
+    /**
+     * @param sampleHistory receives every sample; may be null
+     */
+    public void setSampleHistory(SampleHistory sampleHistory) {
+        this.sampleHistory = sampleHistory;
+    }
+
+    /**
+     * @param gate decides which samples (with a feature window, which windows) the model scores,
+     *             on the reading thread; null scores every one. Set before the first frame.
+     */
+    public void setGate(SampleGate gate) {
+        this.gate = gate;
+    }
+
+    /**
+     * Scores windows of features over the raw axes instead of each sample's magnitudes, for a
+     * model trained on dataset/features_14.csv. Acceleration goes to the window in g, as there.
+     * Set before the first frame.
+     *
+     * @param windowSize   samples per window; {@link FeatureExtractor#DATASET_WINDOW} for the
+     *                     bundled model
+     * @param windowStride samples between scored windows
+     */
+    public void setFeatureWindow(int windowSize, int windowStride) {
+        if (windowStride < 1) {
+            throw new IllegalArgumentException("windowStride must be positive");
+        }
+        this.extractor = new FeatureExtractor(windowSize);
+        this.windowStride = windowStride;
+        resetWindow();
+    }
+
+    public void start() {
+        if (inferenceExecutor != null) {
+            inferenceExecutor.start();
+        }
+    }
+
+    public void shutdown(long timeoutMillis) {
+        if (inferenceExecutor != null) {
+            inferenceExecutor.shutdown(timeoutMillis);
+        }
+    }
+
+    /**
+     * Reads {@code source} on the calling thread until it ends or the thread is interrupted, as
+     * one trip in the trip log.
+     *
+     * @throws IOException from the source; the trip is closed either way
+     */
+    public void run(SampleSource source) throws IOException {
+        this.source = source;
+        parser.resetSequence();
+        resetWindow();
+        if (gate != null) {
+            gate.reset();
+        }
+        TripRecorder recorder = tripRecorder;
+        if (recorder != null) {
+            recorder.beginTrip(System.currentTimeMillis(), System.nanoTime());
+        }
+        try {
+            while (!Thread.currentThread().isInterrupted() && source.read(frameListener)) {
+                // frames are handled in onFrame
+            }
+        } finally {
+            if (recorder != null) {
+                recorder.endTrip();
+            }
+            this.source = null;
+        }
+    }
+
+    /**
+     * Handles one frame; {@link #run(SampleSource)} calls this for every frame it reads. Must be
+     * called from one thread at a time.
+     */
+    public void onFrame(byte[] buffer, int offset, int length, long receivedNanos) {
+        framesReceived++;
+        TripRecorder recorder = tripRecorder;
+        if (recorder != null) {
+            recorder.append(buffer, offset, length, receivedNanos);
+        }
+        switch (parser.parse(buffer, offset, length, frame)) {
+            case TelemetryFrame.TYPE_SENSOR:
+            case TelemetryFrame.TYPE_SAMPLE_BATCH:
+                onSample(receivedNanos);
+                break;
+            case TelemetryFrame.TYPE_FUSED:
+                onFused(receivedNanos);
+                break;
+            case TelemetryFrame.TYPE_PROTOCOL_ACK:
+                // The rate changes with the protocol, so the window starts over
+                resetWindow();
+                if (source != null) {
+                    source.onBinaryNegotiated();
+                }
+                sink.onBinaryTelemetry(frame.sampleRateHz);
+                break;
+            case TelemetryFrame.TYPE_ALERT:
+                onDeviceAlert(frame.alertAccelTotal, frame.alertGyroTotal, receivedNanos);
+                break;
+            case TelemetryParser.RESULT_MALFORMED:
+                sink.onMalformedFrame(parser.getLastError(), buffer, offset, length);
+                break;
+            default:
+                // Remaining lines of the alert block are informational
+                break;
+        }
+    }
+
+    private void onSample(long receivedNanos) {
+        samplesReceived += frame.type == TelemetryFrame.TYPE_SAMPLE_BATCH ? frame.batchCount : 1;
+        SampleHistory history = sampleHistory;
+        if (history != null) {
+            history.record(frame, receivedNanos, parser.getBaselineAccelZ());
+        }
+        if (frame.droppedBefore > 0) {
+            sink.onSamplesLost(frame.droppedBefore, frame.sequence);
+        }
+        sink.onSensorData(frame.accel, frame.gyro);
+        if (extractor == null || (frame.type == TelemetryFrame.TYPE_SENSOR && frame.sequence < 0)) {
+            // One decision per batch, on the batch's peak magnitudes
+            submit(frame.accel, frame.gyro, receivedNanos);
+            return;
+        }
+        if (frame.droppedBefore > 0) {
+            // A window spanning the loss would mix unrelated samples
+            resetWindow();
+        }
+        boolean due;
+        if (frame.type == TelemetryFrame.TYPE_SAMPLE_BATCH) {
+            // Every sample goes into the window; at most one window per batch is scored
+            due = false;
+            float[] axes = frame.batchAxes;
+            for (int i = 0, a = 0; i < frame.batchCount; i++, a += 6) {
+                due |= addToWindow(axes[a], axes[a + 1], axes[a + 2], axes[a + 3], axes[a + 4], axes[a + 5]);
+            }
+        } else {
+            due = addToWindow(frame.ax, frame.ay, frame.az, frame.gx, frame.gy, frame.gz);
+        }
+        submitWindow(frame.accel, frame.gyro, due, receivedNanos);
+    }
+
+    /**
+     * A bucket of a {@link SensorHub}'s fused stream, as {@link BinaryProtocol#encodeFused} writes
+     * it: the magnitudes go to the gate and the history, the window node's raw samples to the
+     * feature window. Like a batch, it is gated once and scores at most one window.
+     */
+    private void onFused(long nanos) {
+        if (frame.fusedGapMillis > 0) {
+            onGap(nanos - TimeUnit.MILLISECONDS.toNanos(frame.fusedGapMillis), nanos);
+        }
+        samplesReceived += frame.batchCount;
+        SampleHistory history = sampleHistory;
+        if (history != null) {
+            history.record(nanos, frame.ax, frame.ay, frame.az, frame.gx, frame.gy, frame.gz,
+                    frame.accel, frame.gyro);
+        }
+        sink.onSensorData(frame.accel, frame.gyro);
+        if (extractor == null) {
+            submit(frame.accel, frame.gyro, nanos);
+            return;
+        }
+        if (frame.batchCount == 0) {
+            // The window's sensor left a hole; joining its two sides would mix unrelated samples
+            resetWindow();
+            submit(frame.accel, frame.gyro, nanos);
+            return;
+        }
+        boolean due = false;
+        float[] axes = frame.batchAxes;
+        for (int i = 0, a = 0; i < frame.batchCount; i++, a += 6) {
+            due |= addToWindow(axes[a], axes[a + 1], axes[a + 2], axes[a + 3], axes[a + 4], axes[a + 5]);
+        }
+        submitWindow(frame.accel, frame.gyro, due, nanos);
+    }
+
+    /**
+     * The magnitude stream stopped between the two times and has resumed, e.g. after a
+     * {@link SensorHub} reconnect. Leaves a row of missing values in the history so a snapshot
+     * shows the hole rather than joining the two sides. Same threading rules as {@link #onFrame}.
+     */
+    public void onGap(long lostNanos, long resumedNanos) {
+        gaps++;
+        SampleHistory history = sampleHistory;
+        if (history != null) {
+            history.record(resumedNanos, Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN,
+                    Float.NaN, Float.NaN);
+        }
+        resetWindow();
+        if (gate != null) {
+            // The baseline from before the gap says nothing about the new stream
+            gate.reset();
+        }
+    }
+
+    /**
+     * A sensor's own threshold check fired outside {@link #onFrame}, e.g. on one of a
+     * {@link SensorHub}'s links. Safe from any thread.
+     */
+    public void onDeviceAlert(float accel, float gyro, long nanos) {
+        raise(new Decision(Decision.Cause.DEVICE, Float.NaN, accel, gyro, nanos));
+    }
+
+    private void resetWindow() {
+        if (extractor != null) {
+            extractor.reset();
+        }
+        sinceLastWindow = 0;
+        windowOpen = false;
+        windowAudit = false;
+    }
+
+    /**
+     * @return whether a window is due to be scored
+     */
+    private boolean addToWindow(float ax, float ay, float az, float gx, float gy, float gz) {
+        extractor.addTelemetry(ax, ay, az, gx, gy, gz);
+        if (!extractor.isWindowFull() || ++sinceLastWindow < windowStride) {
+            return false;
+        }
+        sinceLastWindow = 0;
+        return true;
+    }
+
+    private void submit(float accel, float gyro, long nanos) {
+        int pass = gate == null ? SampleGate.OPEN : gate.offer(nanos, accel, gyro);
+        if (pass == SampleGate.CLOSED) {
+            samplesGated++;
+            return;
+        }
+        sample[SLOT_ACCEL] = accel;
+        sample[SLOT_GYRO] = gyro;
+        sample[SLOT_FLAGS] = pass == SampleGate.AUDIT ? FLAG_AUDIT : 0;
+        dispatch(nanos);
+    }
+
+    /**
+     * Offers the sample to the gate and, when {@code due}, scores the window if the gate passed
+     * any sample since the last one.
+     */
+    private void submitWindow(float accel, float gyro, boolean due, long nanos) {
+        int pass = gate == null ? SampleGate.OPEN : gate.offer(nanos, accel, gyro);
+        if (pass == SampleGate.OPEN) {
+            windowOpen = true;
+        } else if (pass == SampleGate.AUDIT) {
+            windowAudit = true;
+        }
+        if (!due) {
+            return;
+        }
+        boolean open = windowOpen;
+        boolean audit = windowAudit;
+        windowOpen = false;
+        windowAudit = false;
+        if (!open && !audit) {
+            samplesGated++;
+            return;
+        }
+        extractor.extract(sample, 0);
+        sample[SLOT_ACCEL] = accel;
+        sample[SLOT_GYRO] = gyro;
+        sample[SLOT_FLAGS] = open ? FLAG_WINDOW : FLAG_WINDOW | FLAG_AUDIT;
+        dispatch(nanos);
+    }
+
+    private void dispatch(long nanos) {
+        if (inferenceExecutor != null) {
+            inferenceExecutor.submit(sample);
+        } else {
+            score(sample, nanos);
+        }
+    }
+
+    private void score(float[] s, long nowNanos) {
+        int flags = (int) s[SLOT_FLAGS];
+        float probability;
+        if ((flags & FLAG_WINDOW) != 0) {
+            probability = model.predictFeatures(s);
+            windowsScored++;
+        } else {
+            probability = model.predict(s[SLOT_ACCEL], s[SLOT_GYRO]);
+        }
+        samplesScored++;
+        if (probability >= ALERT_THRESHOLD) {
+            if ((flags & FLAG_AUDIT) != 0) {
+                // The gate would have skipped this one; alert anyway and count the miss
+                auditAlerts++;
+            }
+            raise(new Decision(Decision.Cause.MODEL, probability, s[SLOT_ACCEL], s[SLOT_GYRO], nowNanos));
+        }
+    }
+
+    /**
+     * Raises an alert on request, subject to the same hold as detected ones.
+     *
+     * @return whether the alert was raised rather than suppressed
+     */
+    public boolean trigger(long nowNanos) {
+        return raise(new Decision(Decision.Cause.REQUESTED, Float.NaN, Float.NaN, Float.NaN, nowNanos));
+    }
+
+    private boolean raise(Decision decision) {
+        if (!alerts.tryDispatch(decision.nanos)) {
+            sink.onAlertSuppressed(decision);
+            return false;
+        }
+        try {
+            sink.onAlert(decision);
+        } finally {
+            // The hold runs from the alert; a resetAlert from the sink has already ended it
+            alerts.dispatched(decision.nanos);
+        }
+        return true;
+    }
+
+    /**
+     * Ends the hold early, e.g. when the user cancels the alert, so the next detection alerts again.
+     */
+    public void resetAlert() {
+        alerts.reset();
+    }
+
+    public boolean isAlertHeld(long nowNanos) {
+        return getAlertHoldRemainingMillis(nowNanos) > 0;
+    }
+
+    /**
+     * @return 0 when no alert is held
+     */
+    public long getAlertHoldRemainingMillis(long nowNanos) {
+        long remaining = alerts.getRemainingNanos(nowNanos);
+        return remaining > 0 ? TimeUnit.NANOSECONDS.toMillis(remaining + 999_999) : 0;
+    }
+
+    public long getFramesReceived() {
+        return framesReceived;
+    }
+
+    /**
+     * @return sensor samples read: one per sample frame or text line, every sample of a batch and
+     *         the window samples of a fused bucket
+     */
+    public long getSamplesReceived() {
+        return samplesReceived;
+    }
+
+    /**
+     * @return samples and windows the model scored
+     */
+    public long getSamplesScored() {
+        return samplesScored;
+    }
+
+    /**
+     * @return feature windows the model scored, a part of {@link #getSamplesScored()}
+     */
+    public long getWindowsScored() {
+        return windowsScored;
+    }
+
+    public long getAlertsRaised() {
+        return alerts.getDispatches();
+    }
+
+    public long getAlertsSuppressed() {
+        return alerts.getSuppressed();
+    }
+
+    /**
+     * @return the hold, for its state
+     */
+    public AlertStateMachine getAlertStateMachine() {
+        return alerts;
+    }
+
+    /**
+     * @return interruptions reported through {@link #onGap}
+     */
+    public long getGaps() {
+        return gaps;
+    }
+
+    /**
+     * @return samples (or, with a feature window, windows) the gate kept from the model
+     */
+    public long getSamplesGated() {
+        return samplesGated;
+    }
+
+    /**
+     * @return model alerts on audit samples, i.e. detections the gate alone would have missed
+     */
+    public long getAuditAlerts() {
+        return auditAlerts;
+    }
+
+    /**
+     * @return the inference worker, for its queue statistics; null when scoring inline
+     */
+    public InferenceExecutor getInferenceExecutor() {
+        return inferenceExecutor;
+    }
+}
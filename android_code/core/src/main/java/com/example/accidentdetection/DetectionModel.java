@@ -0,0 +1,34 @@
+package com.example.accidentdetection;
+
+/**
+ * What the detection path needs from a classifier. {@link AccidentClassifier} implements it on
+ * the device; replay and benchmarks on the JVM plug in their own.
+ */
+public interface DetectionModel {
+
+    /**
+     * @return accident probability (0.0 to 1.0) from the magnitudes text telemetry carries
+     */
+    float predict(float accel, float gyro);
+
+    /**
+     * @param features {@link FeatureExtractor#FEATURE_COUNT} values in dataset column order, at
+     *                 its start; anything after them is not read
+     * @return accident probability (0.0 to 1.0)
+     */
+    float predictFeatures(float[] features);
+
+    /**
+     * Scores {@code rowCount} windows stored back to back. Models that can run a whole batch in
+     * one call override this; the default scores the rows one at a time.
+     *
+     * @param probabilities receives one probability (0.0 to 1.0) per row
+     */
+    default void predictBatch(float[] features, int rowCount, float[] probabilities) {
+        float[] row = new float[FeatureExtractor.FEATURE_COUNT];
+        for (int r = 0; r < rowCount; r++) {
+            System.arraycopy(features, r * FeatureExtractor.FEATURE_COUNT, row, 0, FeatureExtractor.FEATURE_COUNT);
+            probabilities[r] = predictFeatures(row);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.accidentdetection;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * A labelled feature table in the dataset/features_14.csv layout: a {@code Target} column
+ * followed by the {@link FeatureExtractor#FEATURE_NAMES} columns.
+ *
+ * The file is parsed straight from its bytes into one row-major float array, without a String
+ * or boxed value per cell, so the evaluation harness spends its time in the model rather
+ * than in the CSV reader.
+ */
+public final class FeatureDataset {
+
+    public static final String LABEL_COLUMN = "Target";
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    public final int rows;
+    // The Target value of each row
+    public final int[] labels;
+    // rows x FeatureExtractor.FEATURE_COUNT values, back to back
+    public final float[] features;
+
+    private FeatureDataset(int rows, int[] labels, float[] features) {
+        this.rows = rows;
+        this.labels = labels;
+        this.features = features;
+    }
+
+    public static FeatureDataset read(File file) throws IOException {
+        return parse(Files.readAllBytes(file.toPath()));
+    }
+
+    /**
+     * @throws IOException if the header does not match the dataset layout or a cell is not a number
+     */
+    public static FeatureDataset parse(byte[] data) throws IOException {
+        int pos = checkHeader(data);
+        int capacity = 0;
+        for (int i = pos; i < data.length; i++) {
+            if (data[i] == '\n') {
+                capacity++;
+            }
+        }
+        capacity++;
+        int[] labels = new int[capacity];
+        float[] features = new float[capacity * FeatureExtractor.FEATURE_COUNT];
+
+        Cursor cursor = new Cursor(data, pos);
+        int rows = 0;
+        while (cursor.pos < data.length) {
+            if (cursor.skipBlankLine()) {
+                continue;
+            }
+            labels[rows] = (int) cursor.number();
+            int base = rows * FeatureExtractor.FEATURE_COUNT;
+            for (int c = 0; c < FeatureExtractor.FEATURE_COUNT; c++) {
+                cursor.expect(',');
+                features[base + c] = (float) cursor.number();
+            }
+            cursor.endOfLine();
+            rows++;
+        }
+        return new FeatureDataset(rows, labels, features);
+    }
+
+    /**
+     * @return offset of the first data line
+     */
+    private static int checkHeader(byte[] data) throws IOException {
+        int end = 0;
+        while (end < data.length && data[end] != '\n') {
+            end++;
+        }
+        String header = new String(data, 0, end, StandardCharsets.UTF_8).trim();
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        String[] columns = header.split(",", -1);
+        if (columns.length != FeatureExtractor.FEATURE_COUNT + 1 || !LABEL_COLUMN.equals(columns[0])) {
+            throw new IOException("Expected " + LABEL_COLUMN + " and " + FeatureExtractor.FEATURE_COUNT
+                    + " feature columns, found " + columns.length + " columns");
+        }
+        for (int c = 0; c < FeatureExtractor.FEATURE_COUNT; c++) {
+            if (!FeatureExtractor.FEATURE_NAMES[c].equals(columns[c + 1])) {
+                throw new IOException("Column " + (c + 1) + " is " + columns[c + 1]
+                        + ", expected " + FeatureExtractor.FEATURE_NAMES[c]);
+            }
+        }
+        return Math.min(end + 1, data.length);
+    }
+
+    private static final class Cursor {
+        final byte[] data;
+        int pos;
+        // Header is line 1
+        int line = 2;
+
+        Cursor(byte[] data, int pos) {
+            this.data = data;
+            this.pos = pos;
+        }
+
+        boolean skipBlankLine() {
+            int p = pos;
+            while (p < data.length && (data[p] == ' ' || data[p] == '\r')) {
+                p++;
+            }
+            if (p < data.length && data[p] != '\n') {
+                return false;
+            }
+            pos = p + 1;
+            line++;
+            return true;
+        }
+
+        void expect(char c) throws IOException {
+            if (pos >= data.length || data[pos] != c) {
+                throw error("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        void endOfLine() throws IOException {
+            if (pos < data.length && data[pos] == '\r') {
+                pos++;
+            }
+            if (pos < data.length && data[pos] != '\n') {
+                throw error("expected end of line");
+            }
+            pos++;
+            line++;
+        }
+
+        /**
+         * Parses a decimal number with an optional sign, fraction and exponent. Up to 18
+         * significant digits are kept and scaled by one power of ten, which lands within an
+         * ulp of {@link Float#parseFloat} once narrowed.
+         */
+        double number() throws IOException {
+            int start = pos;
+            boolean negative = false;
+            if (pos < data.length && (data[pos] == '-' || data[pos] == '+')) {
+                negative = data[pos] == '-';
+                pos++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int exponent = 0;
+            boolean any = false;
+            boolean fraction = false;
+            for (; pos < data.length; pos++) {
+                int b = data[pos];
+                if (b >= '0' && b <= '9') {
+                    any = true;
+                    if (digits < 18) {
+                        if (mantissa != 0 || b != '0') {
+                            digits++;
+                        }
+                        mantissa = mantissa * 10 + (b - '0');
+                        if (fraction) {
+                            exponent--;
+                        }
+                    } else if (!fraction) {
+                        exponent++;
+                    }
+                } else if (b == '.' && !fraction) {
+                    fraction = true;
+                } else {
+                    break;
+                }
+            }
+            if (!any) {
+                pos = start;
+                throw error("expected a number");
+            }
+            if (pos < data.length && (data[pos] == 'e' || data[pos] == 'E')) {
+                pos++;
+                boolean negativeExponent = false;
+                if (pos < data.length && (data[pos] == '-' || data[pos] == '+')) {
+                    negativeExponent = data[pos] == '-';
+                    pos++;
+                }
+                int value = 0;
+                int expStart = pos;
+                while (pos < data.length && data[pos] >= '0' && data[pos] <= '9' && value < 10_000) {
+                    value = value * 10 + (data[pos++] - '0');
+                }
+                if (pos == expStart) {
+                    throw error("malformed exponent");
+                }
+                exponent += negativeExponent ? -value : value;
+            }
+            double result;
+            if (mantissa == 0) {
+                result = 0;
+            } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+                result = mantissa * POWERS_OF_TEN[exponent];
+            } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+                result = mantissa / POWERS_OF_TEN[-exponent];
+            } else {
+                return Double.parseDouble(new String(data, start, pos - start, StandardCharsets.US_ASCII));
+            }
+            return negative ? -result : result;
+        }
+
+        IOException error(String message) {
+            return new IOException("Line " + line + ", byte " + pos + ": " + message);
+        }
+    }
+}
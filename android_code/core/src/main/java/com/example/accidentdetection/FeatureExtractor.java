@@ -0,0 +1,287 @@
+package com.example.accidentdetection;
+
+/**
+ * Incremental sliding-window features matching dataset/features_14.csv.
+ *
+ * Keeps the last {@code windowSize} 3-axis accelerometer and gyroscope samples and updates
+ * every statistic in O(1) (moments) or O(log n + memmove) (order statistics) per sample,
+ * instead of recomputing the window. {@link #extract} writes the 60 features in the CSV's
+ * column order. Statistics follow the pandas conventions the dataset was built with: sample
+ * variance (ddof=1) and bias-corrected skewness and excess kurtosis.
+ *
+ * The dataset has acceleration in g and rotation in deg/s, from windows of
+ * {@link #DATASET_WINDOW} samples. {@link #add} takes whatever it is given; telemetry (m/s²)
+ * goes through {@link #addTelemetry} so a model trained on the dataset sees its own units.
+ */
+public class FeatureExtractor {
+
+    public static final int FEATURE_COUNT = 60;
+
+    /** Samples per window in features_14.csv. */
+    public static final int DATASET_WINDOW = 14;
+
+    /** m/s² per g, to bring telemetry to the dataset's acceleration unit. */
+    public static final float STANDARD_GRAVITY = 9.80665f;
+
+    /** Column names in the order {@link #extract} writes them, as in features_14.csv. */
+    public static final String[] FEATURE_NAMES = {
+            "AccMeanX", "AccMeanY", "AccMeanZ", "AccCovX", "AccCovY", "AccCovZ",
+            "AccSkewX", "AccSkewY", "AccSkewZ", "AccKurtX", "AccKurtY", "AccKurtZ",
+            "AccSumX", "AccSumY", "AccSumZ", "AccMinX", "AccMinY", "AccMinZ",
+            "AccMaxX", "AccMaxY", "AccMaxZ", "AccVarX", "AccVarY", "AccVarZ",
+            "AccMedianX", "AccMedianY", "AccMedianZ", "AccStdX", "AccStdY", "AccStdZ",
+            "GyroMeanX", "GyroMeanY", "GyroMeanZ", "GyroCovX", "GyroCovY", "GyroCovZ",
+            "GyroSkewX", "GyroSkewY", "GyroSkewZ", "GyroSumX", "GyroSumY", "GyroSumZ",
+            "GyroKurtX", "GyroKurtY", "GyroKurtZ", "GyroMinX", "GyroMinY", "GyroMinZ",
+            "GyroMaxX", "GyroMaxY", "GyroMaxZ", "GyroVarX", "GyroVarY", "GyroVarZ",
+            "GyroMedianX", "GyroMedianY", "GyroMedianZ", "GyroStdX", "GyroStdY", "GyroStdZ"
+    };
+
+    private static final int STAT_MEAN = 0;
+    private static final int STAT_COV = 1;
+    private static final int STAT_SKEW = 2;
+    private static final int STAT_KURT = 3;
+    private static final int STAT_SUM = 4;
+    private static final int STAT_MIN = 5;
+    private static final int STAT_MAX = 6;
+    private static final int STAT_VAR = 7;
+    private static final int STAT_MEDIAN = 8;
+    private static final int STAT_STD = 9;
+
+    // The dataset lists Sum before Kurt for the gyroscope but after it for the accelerometer
+    private static final int[] ACC_ORDER = {
+            STAT_MEAN, STAT_COV, STAT_SKEW, STAT_KURT, STAT_SUM, STAT_MIN, STAT_MAX, STAT_VAR, STAT_MEDIAN, STAT_STD
+    };
+    private static final int[] GYRO_ORDER = {
+            STAT_MEAN, STAT_COV, STAT_SKEW, STAT_SUM, STAT_KURT, STAT_MIN, STAT_MAX, STAT_VAR, STAT_MEDIAN, STAT_STD
+    };
+
+    // Recompute moments from the raw window this often to stop floating-point drift accumulating
+    private static final int RESYNC_INTERVAL = 4096;
+
+    private final int windowSize;
+    private final Channel[] channels = new Channel[6];
+
+    public FeatureExtractor(int windowSize) {
+        if (windowSize < 4) {
+            throw new IllegalArgumentException("windowSize must be at least 4 for kurtosis");
+        }
+        this.windowSize = windowSize;
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = new Channel(windowSize);
+        }
+    }
+
+    /**
+     * Pushes one sample; once the window is full the oldest sample is evicted.
+     */
+    public void add(float ax, float ay, float az, float gx, float gy, float gz) {
+        channels[0].add(ax);
+        channels[1].add(ay);
+        channels[2].add(az);
+        channels[3].add(gx);
+        channels[4].add(gy);
+        channels[5].add(gz);
+    }
+
+    /**
+     * Pushes one sample in telemetry units, acceleration in m/s² (gravity included) and rotation
+     * in deg/s, as the dataset's g and deg/s.
+     */
+    public void addTelemetry(float ax, float ay, float az, float gx, float gy, float gz) {
+        add(ax / STANDARD_GRAVITY, ay / STANDARD_GRAVITY, az / STANDARD_GRAVITY, gx, gy, gz);
+    }
+
+    /**
+     * Empties the window, e.g. after a gap in the sample stream.
+     */
+    public void reset() {
+        for (Channel channel : channels) {
+            channel.reset();
+        }
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getSampleCount() {
+        return channels[0].count;
+    }
+
+    public boolean isWindowFull() {
+        return channels[0].count == windowSize;
+    }
+
+    /**
+     * Writes {@link #FEATURE_COUNT} values into {@code out} starting at {@code offset}.
+     * Statistics that are undefined for the current sample count are written as 0.
+     */
+    public void extract(float[] out, int offset) {
+        int pos = offset;
+        for (int stat : ACC_ORDER) {
+            for (int axis = 0; axis < 3; axis++) {
+                out[pos++] = (float) channels[axis].stat(stat);
+            }
+        }
+        for (int stat : GYRO_ORDER) {
+            for (int axis = 3; axis < 6; axis++) {
+                out[pos++] = (float) channels[axis].stat(stat);
+            }
+        }
+    }
+
+    /**
+     * One axis: a ring of raw values, running central moments and a sorted copy of the window.
+     */
+    private static final class Channel {
+        private final double[] ring;
+        private final double[] sorted;
+        private int head = 0;
+        private int count = 0;
+        private int updatesSinceResync = 0;
+
+        // Running count-weighted central moments (Welford / Terriberry)
+        private double mean;
+        private double m2;
+        private double m3;
+        private double m4;
+
+        Channel(int windowSize) {
+            ring = new double[windowSize];
+            sorted = new double[windowSize];
+        }
+
+        void reset() {
+            head = 0;
+            count = 0;
+            updatesSinceResync = 0;
+            mean = m2 = m3 = m4 = 0.0;
+        }
+
+        void add(double x) {
+            if (count == ring.length) {
+                double evicted = ring[head];
+                removeMoment(evicted);
+                removeSorted(evicted);
+                count--;
+            }
+            ring[head] = x;
+            head = (head + 1) % ring.length;
+            addMoment(x);
+            insertSorted(x);
+            count++;
+
+            if (++updatesSinceResync >= RESYNC_INTERVAL) {
+                resync();
+            }
+        }
+
+        private void addMoment(double x) {
+            double n1 = count;
+            double n = count + 1;
+            double delta = x - mean;
+            double deltaN = delta / n;
+            double deltaN2 = deltaN * deltaN;
+            double term1 = delta * deltaN * n1;
+            mean += deltaN;
+            m4 += term1 * deltaN2 * (n * n - 3 * n + 3) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+            m3 += term1 * deltaN * (n - 2) - 3 * deltaN * m2;
+            m2 += term1;
+        }
+
+        /** Exact inverse of {@link #addMoment} for a value currently in the window. */
+        private void removeMoment(double x) {
+            double n = count;
+            double n1 = count - 1;
+            if (n1 == 0) {
+                mean = m2 = m3 = m4 = 0.0;
+                return;
+            }
+            double previousMean = (n * mean - x) / n1;
+            double delta = x - previousMean;
+            double deltaN = delta / n;
+            double deltaN2 = deltaN * deltaN;
+            double term1 = delta * deltaN * n1;
+            mean = previousMean;
+            m2 -= term1;
+            m3 -= term1 * deltaN * (n - 2) - 3 * deltaN * m2;
+            m4 -= term1 * deltaN2 * (n * n - 3 * n + 3) + 6 * deltaN2 * m2 - 4 * deltaN * m3;
+            if (m2 < 0) m2 = 0;
+        }
+
+        private void insertSorted(double x) {
+            int index = lowerBound(x);
+            System.arraycopy(sorted, index, sorted, index + 1, count - index);
+            sorted[index] = x;
+        }
+
+        private void removeSorted(double x) {
+            int index = lowerBound(x);
+            System.arraycopy(sorted, index + 1, sorted, index, count - index - 1);
+        }
+
+        private int lowerBound(double x) {
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sorted[mid] < x) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        private void resync() {
+            updatesSinceResync = 0;
+            int start = (head - count + ring.length) % ring.length;
+            double sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += ring[(start + i) % ring.length];
+            }
+            mean = count == 0 ? 0 : sum / count;
+            m2 = m3 = m4 = 0;
+            for (int i = 0; i < count; i++) {
+                double d = ring[(start + i) % ring.length] - mean;
+                double d2 = d * d;
+                m2 += d2;
+                m3 += d2 * d;
+                m4 += d2 * d2;
+            }
+        }
+
+        double stat(int stat) {
+            int n = count;
+            if (n == 0) return 0;
+            switch (stat) {
+                case STAT_MEAN:
+                    return mean;
+                case STAT_SUM:
+                    return mean * n;
+                case STAT_MIN:
+                    return sorted[0];
+                case STAT_MAX:
+                    return sorted[n - 1];
+                case STAT_MEDIAN:
+                    return (n & 1) == 1 ? sorted[n / 2] : 0.5 * (sorted[n / 2 - 1] + sorted[n / 2]);
+                case STAT_COV:
+                case STAT_VAR:
+                    return n < 2 ? 0 : m2 / (n - 1);
+                case STAT_STD:
+                    return n < 2 ? 0 : Math.sqrt(m2 / (n - 1));
+                case STAT_SKEW: {
+                    if (n < 3 || m2 <= 0) return 0;
+                    double g1 = Math.sqrt(n) * m3 / Math.pow(m2, 1.5);
+                    return Math.sqrt((double) n * (n - 1)) / (n - 2) * g1;
+                }
+                case STAT_KURT: {
+                    if (n < 4 || m2 <= 0) return 0;
+                    double g2 = n * m4 / (m2 * m2) - 3;
+                    return ((n + 1) * g2 + 6) * (n - 1) / ((double) (n - 2) * (n - 3));
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown statistic " + stat);
+            }
+        }
+    }
+}
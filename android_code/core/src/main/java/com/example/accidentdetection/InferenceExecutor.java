@@ -0,0 +1,226 @@
+package com.example.accidentdetection;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs inference on one long-lived worker thread, fed by a bounded queue of primitive samples.
+ *
+ * Samples are copied into pre-allocated slots, so submitting does not allocate. When the worker
+ * falls behind, the queue policy decides what is given up: {@link QueuePolicy#DROP_OLDEST} keeps
+ * the most recent {@code capacity} samples, {@link QueuePolicy#COALESCE} keeps only the newest one.
+ * Samples are processed strictly in submission order.
+ */
+public class InferenceExecutor {
+
+    public enum QueuePolicy {
+        DROP_OLDEST,
+        COALESCE
+    }
+
+    public interface Task {
+        /**
+         * Called on the worker thread. {@code sample} is only valid for the duration of the call.
+         */
+        void run(long sequence, float[] sample);
+    }
+
+    public interface FailureListener {
+        /**
+         * Called on the worker thread when a task throws; the worker carries on with the next sample.
+         */
+        void onTaskFailed(long sequence, RuntimeException e);
+    }
+
+    private final int capacity;
+    private final int width;
+    private final QueuePolicy policy;
+    private final Task task;
+    private final Thread worker;
+    private volatile FailureListener failureListener = null;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    // Guarded by lock
+    private final float[] slots;
+    private final long[] sequences;
+    private int head = 0;
+    private int count = 0;
+    private long nextSequence = 0;
+    private boolean shutdown = false;
+
+    // Single-writer counters, readable from any thread for metrics
+    private volatile long submitted = 0;
+    private volatile long dropped = 0;
+    private volatile long completed = 0;
+    private volatile long failures = 0;
+    private volatile int maxQueueDepth = 0;
+    private volatile long busyNanos = 0;
+
+    /**
+     * @param capacity maximum number of queued samples (forced to 1 for {@link QueuePolicy#COALESCE})
+     * @param width    number of floats per sample
+     */
+    public InferenceExecutor(String name, int capacity, int width, QueuePolicy policy, Task task) {
+        if (capacity < 1 || width < 1) {
+            throw new IllegalArgumentException("capacity and width must be positive");
+        }
+        this.capacity = policy == QueuePolicy.COALESCE ? 1 : capacity;
+        this.width = width;
+        this.policy = policy;
+        this.task = task;
+        this.slots = new float[this.capacity * width];
+        this.sequences = new long[this.capacity];
+        this.worker = new Thread(this::workLoop, name);
+        this.worker.setDaemon(true);
+    }
+
+    /**
+     * @param failureListener told about each task that throws; may be null
+     */
+    public void setFailureListener(FailureListener failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    public void start() {
+        worker.start();
+    }
+
+    /**
+     * Queues a copy of the first {@code width} values of {@code sample}.
+     *
+     * @return false if a queued sample had to be dropped or replaced to make room
+     */
+    public boolean submit(float[] sample) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                return false;
+            }
+            boolean accepted = true;
+            if (count == capacity) {
+                // Back-pressure: give up the oldest pending sample
+                head = (head + 1) % capacity;
+                count--;
+                dropped++;
+                accepted = false;
+            }
+            int slot = (head + count) % capacity;
+            System.arraycopy(sample, 0, slots, slot * width, width);
+            sequences[slot] = nextSequence++;
+            count++;
+            submitted++;
+            if (count > maxQueueDepth) {
+                maxQueueDepth = count;
+            }
+            notEmpty.signal();
+            return accepted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void workLoop() {
+        float[] sample = new float[width];
+        while (true) {
+            long sequence;
+            lock.lock();
+            try {
+                while (count == 0 && !shutdown) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (count == 0) {
+                    return;
+                }
+                System.arraycopy(slots, head * width, sample, 0, width);
+                sequence = sequences[head];
+                head = (head + 1) % capacity;
+                count--;
+            } finally {
+                lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            try {
+                task.run(sequence, sample);
+            } catch (RuntimeException e) {
+                // Keep the worker alive; one bad sample must not stop detection
+                failures++;
+                FailureListener listener = failureListener;
+                if (listener != null) {
+                    listener.onTaskFailed(sequence, e);
+                }
+            }
+            busyNanos += System.nanoTime() - start;
+            completed++;
+        }
+    }
+
+    /**
+     * Stops accepting samples, lets the worker drain what is queued and waits for it to finish.
+     */
+    public void shutdown(long timeoutMillis) {
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (Thread.currentThread() != worker) {
+            try {
+                worker.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public QueuePolicy getPolicy() {
+        return policy;
+    }
+
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * @return samples discarded (or, when coalescing, superseded) before the worker reached them
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return samples whose task threw; they also count as completed
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * @return mean time the task took per sample, in nanoseconds
+     */
+    public long getMeanTaskNanos() {
+        long done = completed;
+        return done == 0 ? 0 : busyNanos / done;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.accidentdetection;
+
+/**
+ * Scores with a {@link JavaPredictor} the way {@link OnnxDetectionModel} does with ONNX Runtime:
+ * feature windows fill the end of the model's input row with any leading columns at 0, and
+ * magnitudes from text telemetry go to the threshold rule.
+ */
+public class JavaDetectionModel implements DetectionModel {
+
+    private final JavaPredictor predictor;
+    private final ThresholdModel fallback = new ThresholdModel();
+    private final float[] row;
+
+    public JavaDetectionModel(JavaPredictor predictor) {
+        if (predictor.getInputWidth() < FeatureExtractor.FEATURE_COUNT) {
+            throw new IllegalArgumentException("Model takes " + predictor.getInputWidth()
+                    + " values, fewer than the " + FeatureExtractor.FEATURE_COUNT + " features");
+        }
+        this.predictor = predictor;
+        this.row = new float[predictor.getInputWidth()];
+    }
+
+    @Override
+    public float predict(float accel, float gyro) {
+        return fallback.predict(accel, gyro);
+    }
+
+    @Override
+    public float predictFeatures(float[] features) {
+        System.arraycopy(features, 0, row, row.length - FeatureExtractor.FEATURE_COUNT, FeatureExtractor.FEATURE_COUNT);
+        return predictor.predict(row, 0);
+    }
+
+    @Override
+    public void predictBatch(float[] features, int rowCount, float[] probabilities) {
+        predictor.predictBatch(features, rowCount, FeatureExtractor.FEATURE_COUNT, probabilities);
+    }
+}
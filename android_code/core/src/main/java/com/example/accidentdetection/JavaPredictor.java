@@ -0,0 +1,278 @@
+package com.example.accidentdetection;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs a small feed-forward ONNX model in plain Java, as an alternative to {@link OnnxPredictor}
+ * that needs no native library, no JNI call per prediction and no session start-up.
+ *
+ * Loading reads the graph and its weights, inline or from the external .onnx.data file, into
+ * flat float arrays, one per layer with alpha, beta and any transpose already applied. Supported
+ * are chains of Gemm, MatMul and Add with constant weights, Relu, Sigmoid and Tanh, ending in one
+ * value per row: what {@code driver_behavior_model.onnx} is made of. Anything else fails the
+ * load with an IOException, so the caller can fall back to ONNX Runtime.
+ *
+ * Predictions run on two scratch vectors sized at load and allocate nothing. Not thread-safe;
+ * use one instance per inference thread.
+ */
+public class JavaPredictor {
+
+    private static final int DENSE = 0;
+    private static final int ADD = 1;
+    private static final int RELU = 2;
+    private static final int SIGMOID = 3;
+    private static final int TANH = 4;
+
+    private final int inputWidth;
+    // One entry per step: operator, output width, and for DENSE an [out][in] weight matrix and
+    // optional bias, for ADD the bias
+    private final int[] ops;
+    private final int[] widths;
+    private final float[][] weights;
+    private final float[][] biases;
+    // Scratch vectors the layers ping-pong between; the input row is copied into the first
+    private final float[] current;
+    private final float[] next;
+
+    private JavaPredictor(int inputWidth, int[] ops, int[] widths, float[][] weights, float[][] biases) {
+        this.inputWidth = inputWidth;
+        this.ops = ops;
+        this.widths = widths;
+        this.weights = weights;
+        this.biases = biases;
+        int widest = inputWidth;
+        for (int width : widths) {
+            widest = Math.max(widest, width);
+        }
+        this.current = new float[widest];
+        this.next = new float[widest];
+    }
+
+    /**
+     * @param modelFile an .onnx file; external data is looked up next to it
+     * @throws IOException if the file cannot be read or uses anything this class does not run
+     */
+    public static JavaPredictor load(File modelFile) throws IOException {
+        OnnxGraph graph = OnnxGraph.read(modelFile);
+        if (graph.inputWidth <= 0) {
+            throw new IOException("Expected a [batch, features] model input with a fixed width");
+        }
+        List<Integer> ops = new ArrayList<>();
+        List<Integer> widths = new ArrayList<>();
+        List<float[]> weights = new ArrayList<>();
+        List<float[]> biases = new ArrayList<>();
+
+        String value = graph.input;
+        int width = graph.inputWidth;
+        for (OnnxGraph.Node node : graph.nodes) {
+            if (node.inputs.isEmpty() || !node.inputs.get(0).equals(value) || node.outputs.size() != 1) {
+                throw new IOException(node.opType + " node is not part of a single chain from the input");
+            }
+            switch (node.opType) {
+                case "Gemm": {
+                    if (node.intAttribute("transA", 0) != 0) {
+                        throw new IOException("Gemm with transA is not supported");
+                    }
+                    OnnxGraph.Tensor b = constant(graph, node, 1);
+                    boolean transB = node.intAttribute("transB", 0) != 0;
+                    float alpha = node.floatAttribute("alpha", 1f);
+                    int out = denseWidth(b, width, transB, node.opType);
+                    weights.add(rowMajor(b, width, out, transB, alpha));
+                    float[] bias = null;
+                    if (node.inputs.size() > 2 && !node.inputs.get(2).isEmpty()) {
+                        bias = broadcast(constant(graph, node, 2), out, node.floatAttribute("beta", 1f));
+                    }
+                    biases.add(bias);
+                    ops.add(DENSE);
+                    width = out;
+                    break;
+                }
+                case "MatMul": {
+                    OnnxGraph.Tensor b = constant(graph, node, 1);
+                    int out = denseWidth(b, width, false, node.opType);
+                    weights.add(rowMajor(b, width, out, false, 1f));
+                    biases.add(null);
+                    ops.add(DENSE);
+                    width = out;
+                    break;
+                }
+                case "Add":
+                    weights.add(null);
+                    biases.add(broadcast(constant(graph, node, 1), width, 1f));
+                    ops.add(ADD);
+                    break;
+                case "Relu":
+                    addActivation(ops, weights, biases, RELU);
+                    break;
+                case "Sigmoid":
+                    addActivation(ops, weights, biases, SIGMOID);
+                    break;
+                case "Tanh":
+                    addActivation(ops, weights, biases, TANH);
+                    break;
+                default:
+                    throw new IOException("Operator " + node.opType + " is not supported");
+            }
+            widths.add(width);
+            value = node.outputs.get(0);
+        }
+        if (!value.equals(graph.output)) {
+            throw new IOException("The chain ends in " + value + ", not the graph output " + graph.output);
+        }
+        if (width != 1) {
+            throw new IOException("Expected one output value per row, got " + width);
+        }
+
+        int[] opArray = new int[ops.size()];
+        int[] widthArray = new int[ops.size()];
+        for (int i = 0; i < opArray.length; i++) {
+            opArray[i] = ops.get(i);
+            widthArray[i] = widths.get(i);
+        }
+        return new JavaPredictor(graph.inputWidth, opArray, widthArray,
+                weights.toArray(new float[0][]), biases.toArray(new float[0][]));
+    }
+
+    private static void addActivation(List<Integer> ops, List<float[]> weights, List<float[]> biases, int op) {
+        ops.add(op);
+        weights.add(null);
+        biases.add(null);
+    }
+
+    private static OnnxGraph.Tensor constant(OnnxGraph graph, OnnxGraph.Node node, int input) throws IOException {
+        OnnxGraph.Tensor tensor = input < node.inputs.size() ? graph.initializers.get(node.inputs.get(input)) : null;
+        if (tensor == null) {
+            throw new IOException(node.opType + " input " + input + " must be a constant initializer");
+        }
+        return tensor;
+    }
+
+    private static int denseWidth(OnnxGraph.Tensor b, int in, boolean transB, String opType) throws IOException {
+        if (b.dims.length != 2 || b.dims[transB ? 1 : 0] != in) {
+            throw new IOException(opType + " weights of shape " + Arrays.toString(b.dims)
+                    + " do not take " + in + " inputs");
+        }
+        return (int) b.dims[transB ? 0 : 1];
+    }
+
+    /**
+     * @return alpha * B as [out][in], whichever way round B is stored
+     */
+    private static float[] rowMajor(OnnxGraph.Tensor b, int in, int out, boolean transB, float alpha) {
+        float[] matrix = new float[out * in];
+        for (int o = 0; o < out; o++) {
+            for (int i = 0; i < in; i++) {
+                matrix[o * in + i] = alpha * (transB ? b.values[o * in + i] : b.values[i * out + o]);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * @return {@code scale} * the tensor broadcast to a row of {@code width}
+     */
+    private static float[] broadcast(OnnxGraph.Tensor tensor, int width, float scale) throws IOException {
+        float[] row = new float[width];
+        if (tensor.values.length == width) {
+            for (int i = 0; i < width; i++) {
+                row[i] = scale * tensor.values[i];
+            }
+        } else if (tensor.values.length == 1) {
+            Arrays.fill(row, scale * tensor.values[0]);
+        } else {
+            throw new IOException("Cannot broadcast " + tensor.values.length + " values to a row of " + width);
+        }
+        return row;
+    }
+
+    /**
+     * @return number of features the model expects per row
+     */
+    public int getInputWidth() {
+        return inputWidth;
+    }
+
+    /**
+     * Scores one row of {@link #getInputWidth()} features starting at {@code offset}.
+     */
+    public float predict(float[] features, int offset) {
+        System.arraycopy(features, offset, current, 0, inputWidth);
+        return run();
+    }
+
+    /**
+     * Scores {@code rowCount} rows, one after another.
+     *
+     * @param rows          row-major features, {@code rowWidth} values per row
+     * @param rowWidth      values per row; rows narrower than the model input fill its trailing
+     *                      columns and the leading ones are left at 0, as with {@link OnnxPredictor}
+     * @param probabilities receives one probability per row
+     */
+    public void predictBatch(float[] rows, int rowCount, int rowWidth, float[] probabilities) {
+        if (rowWidth > inputWidth) {
+            throw new IllegalArgumentException("Rows have " + rowWidth + " values but the model takes " + inputWidth);
+        }
+        int leading = inputWidth - rowWidth;
+        for (int r = 0; r < rowCount; r++) {
+            Arrays.fill(current, 0, leading, 0f);
+            System.arraycopy(rows, r * rowWidth, current, leading, rowWidth);
+            probabilities[r] = run();
+        }
+    }
+
+    private float run() {
+        float[] x = current;
+        float[] y = next;
+        int width = inputWidth;
+        for (int step = 0; step < ops.length; step++) {
+            int out = widths[step];
+            switch (ops[step]) {
+                case DENSE: {
+                    float[] w = weights[step];
+                    float[] bias = biases[step];
+                    for (int o = 0, row = 0; o < out; o++, row += width) {
+                        float sum = 0f;
+                        for (int i = 0; i < width; i++) {
+                            sum += w[row + i] * x[i];
+                        }
+                        y[o] = bias == null ? sum : sum + bias[o];
+                    }
+                    float[] swap = x;
+                    x = y;
+                    y = swap;
+                    break;
+                }
+                case ADD: {
+                    float[] bias = biases[step];
+                    for (int i = 0; i < out; i++) {
+                        x[i] += bias[i];
+                    }
+                    break;
+                }
+                case RELU:
+                    for (int i = 0; i < out; i++) {
+                        if (x[i] < 0f) {
+                            x[i] = 0f;
+                        }
+                    }
+                    break;
+                case SIGMOID:
+                    for (int i = 0; i < out; i++) {
+                        x[i] = (float) (1.0 / (1.0 + Math.exp(-x[i])));
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < out; i++) {
+                        x[i] = (float) Math.tanh(x[i]);
+                    }
+                    break;
+            }
+            width = out;
+        }
+        return x[0];
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.accidentdetection;
+
+/**
+ * The latest sensor reading, published by the telemetry thread and read by whatever displays it.
+ * Both magnitudes are packed into one volatile long, so a reader always sees a pair that was
+ * published together without taking a lock, and publishing costs one volatile write per frame
+ * however rarely the display looks.
+ *
+ * One writer at a time; any number of readers.
+ */
+public class LiveState {
+
+    private volatile long snapshot = pack(0f, 0f);
+    // Bumped after each publish; readers compare it to skip work when nothing new arrived
+    private volatile long version = 0;
+
+    public void publish(float accel, float gyro) {
+        snapshot = pack(accel, gyro);
+        version = version + 1;
+    }
+
+    /**
+     * Back to zero, e.g. on disconnect; counts as an update.
+     */
+    public void clear() {
+        publish(0f, 0f);
+    }
+
+    /**
+     * @return an opaque value for {@link #accel(long)} and {@link #gyro(long)}
+     */
+    public long snapshot() {
+        return snapshot;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public static float accel(long snapshot) {
+        return Float.intBitsToFloat((int) (snapshot >>> 32));
+    }
+
+    public static float gyro(long snapshot) {
+        return Float.intBitsToFloat((int) snapshot);
+    }
+
+    private static long pack(float accel, float gyro) {
+        return ((long) Float.floatToRawIntBits(accel) << 32) | (Float.floatToRawIntBits(gyro) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.accidentdetection;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Extracts the model and its external-data file from the APK once per app version, so later
+ * starts can hand ONNX Runtime a file path instead of copying assets again.
+ *
+ * Files live in {@code <root>/<versionKey>/}. Each file is written to a temporary name and
+ * renamed into place, and a stamp recording the version key, length and SHA-256 of every file
+ * is written last. A start with a matching stamp and file lengths reuses the cache without
+ * reading the assets; a missing or mismatched stamp (new APK, interrupted extraction) causes
+ * a fresh extraction. The first time a process reuses a file it is also hashed against the
+ * stamp, so a corrupted or partly rewritten file of the right length is extracted again too;
+ * later checks in the same process compare lengths only. Directories left by earlier versions
+ * are removed.
+ */
+public class ModelCache {
+
+    public interface AssetSource {
+        /**
+         * @throws FileNotFoundException if the asset is not packaged
+         */
+        InputStream open(String name) throws IOException;
+    }
+
+    private static final String STAMP_FILE = "model.stamp";
+    private static final String STAMP_VERSION = "version";
+    private static final String MISSING = "missing";
+
+    // "path=length sha256" of every file hashed or written by this process
+    private static final Set<String> VERIFIED = ConcurrentHashMap.newKeySet();
+
+    private final File root;
+    private final String versionKey;
+    private final AssetSource assets;
+
+    private boolean lastPrepareExtracted = false;
+
+    /**
+     * @param versionKey identifies the APK build, e.g. versionCode and lastUpdateTime
+     */
+    public ModelCache(File root, String versionKey, AssetSource assets) {
+        this.root = root;
+        this.versionKey = versionKey;
+        this.assets = assets;
+    }
+
+    /**
+     * Makes sure {@code modelAsset} and any packaged {@code optionalAssets} are extracted for
+     * the current version.
+     *
+     * @return the cached model file; optional assets sit next to it under their own names
+     */
+    public File prepare(String modelAsset, String... optionalAssets) throws IOException {
+        File dir = new File(root, sanitize(versionKey));
+        File stamp = new File(dir, STAMP_FILE);
+
+        String[] names = new String[optionalAssets.length + 1];
+        names[0] = modelAsset;
+        System.arraycopy(optionalAssets, 0, names, 1, optionalAssets.length);
+
+        if (isValid(dir, stamp, names)) {
+            lastPrepareExtracted = false;
+            return new File(dir, modelAsset);
+        }
+
+        removeStale(root, dir);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create model cache directory " + dir);
+        }
+
+        Map<String, String> entries = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            String entry = extract(names[i], dir, i > 0);
+            if (entry == null) {
+                if (i == 0) {
+                    throw new FileNotFoundException(modelAsset);
+                }
+                entry = MISSING;
+            }
+            entries.put(names[i], entry);
+        }
+        writeStamp(stamp, entries);
+        lastPrepareExtracted = true;
+        return new File(dir, modelAsset);
+    }
+
+    /**
+     * @return true if the most recent {@link #prepare} had to copy assets out of the APK
+     */
+    public boolean wasExtracted() {
+        return lastPrepareExtracted;
+    }
+
+    private boolean isValid(File dir, File stamp, String[] names) {
+        Map<String, String> entries = readStamp(stamp);
+        if (entries == null || !versionKey.equals(entries.get(STAMP_VERSION))) {
+            return false;
+        }
+        for (String name : names) {
+            String entry = entries.get(name);
+            if (entry == null) {
+                return false;
+            }
+            if (MISSING.equals(entry)) {
+                continue;
+            }
+            int space = entry.indexOf(' ');
+            long length;
+            try {
+                length = Long.parseLong(space < 0 ? entry : entry.substring(0, space));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            File file = new File(dir, name);
+            if (file.length() != length) {
+                return false;
+            }
+            if (space >= 0 && !isVerified(file, entry)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether {@code file} hashes to the stamp's {@code entry}, hashing it at most once
+     * per process
+     */
+    private static boolean isVerified(File file, String entry) {
+        String key = file.getAbsolutePath() + "=" + entry;
+        if (VERIFIED.contains(key)) {
+            return true;
+        }
+        MessageDigest digest = sha256();
+        long total = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                total += read;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        if (!entry.equals(total + " " + hex(digest.digest()))) {
+            return false;
+        }
+        VERIFIED.add(key);
+        return true;
+    }
+
+    /**
+     * Forgets which files were hashed, as if the process had restarted; for tests.
+     */
+    static void forgetVerified() {
+        VERIFIED.clear();
+    }
+
+    /**
+     * Copies one asset into {@code dir}.
+     *
+     * @return "length sha256" for the stamp, or null if an optional asset is not packaged
+     */
+    private String extract(String name, File dir, boolean optional) throws IOException {
+        InputStream in;
+        try {
+            in = assets.open(name);
+        } catch (FileNotFoundException e) {
+            if (optional) {
+                return null;
+            }
+            throw e;
+        }
+
+        MessageDigest digest = sha256();
+        File target = new File(dir, name);
+        File temp = new File(dir, name + ".tmp");
+        long total = 0;
+        try (InputStream source = in; FileOutputStream out = new FileOutputStream(temp)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                digest.update(buffer, 0, read);
+                total += read;
+            }
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Cannot move " + temp + " to " + target);
+        }
+        String entry = total + " " + hex(digest.digest());
+        VERIFIED.add(target.getAbsolutePath() + "=" + entry);
+        return entry;
+    }
+
+    private void writeStamp(File stamp, Map<String, String> entries) throws IOException {
+        File temp = new File(stamp.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            writer.write(STAMP_VERSION + "=" + versionKey + "\n");
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+            }
+        }
+        if (!temp.renameTo(stamp)) {
+            temp.delete();
+            throw new IOException("Cannot write " + stamp);
+        }
+    }
+
+    private static Map<String, String> readStamp(File stamp) {
+        if (!stamp.isFile()) {
+            return null;
+        }
+        Map<String, String> entries = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(stamp), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int eq = line.indexOf('=');
+                if (eq > 0) {
+                    entries.put(line.substring(0, eq), line.substring(eq + 1));
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return entries;
+    }
+
+    /**
+     * Removes everything under {@code root} except {@code keep} itself, whose stale files
+     * are overwritten by the extraction that follows.
+     */
+    private static void removeStale(File root, File keep) {
+        File[] children = root.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.equals(keep)) {
+                new File(keep, STAMP_FILE).delete();
+            } else {
+                delete(child);
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static String sanitize(String key) {
+        StringBuilder sb = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) || c == '.' || c == '-' ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
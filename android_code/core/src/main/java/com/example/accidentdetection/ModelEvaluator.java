@@ -0,0 +1,421 @@
+package com.example.accidentdetection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * Scores a {@link DetectionModel} against a labelled {@link FeatureDataset} and reports how well
+ * and how fast it separates the positive rows: a confusion matrix at the alert threshold, the ROC
+ * curve and its area, and rows per second with batch latency percentiles.
+ *
+ * Rows are scored in file order, in fixed-size batches, over a fixed number of warm-up and timed
+ * passes, so two runs on the same model and dataset give the same scores; a report flags any
+ * pass whose scores differed from the first. Only the model call is timed.
+ */
+public class ModelEvaluator {
+
+    // ROC points are reported at these steps; the area is computed over every distinct score
+    private static final int ROC_STEPS = 20;
+
+    public static final class Report {
+        public String model;
+        public int rows;
+        public int positives;
+        public float threshold;
+        public int truePositives;
+        public int falsePositives;
+        public int trueNegatives;
+        public int falseNegatives;
+        public double auc;
+        public float[] rocThresholds;
+        public double[] rocTruePositiveRate;
+        public double[] rocFalsePositiveRate;
+        // Per Target value: rows, rows scored at or above the threshold, mean score
+        public int[] targets;
+        public int[] targetRows;
+        public int[] targetFlagged;
+        public double[] targetMeanScore;
+        public int batchSize;
+        public int timedPasses;
+        public double rowsPerSecond;
+        public long batchP50Nanos;
+        public long batchP99Nanos;
+        // False if any pass scored a row differently from the first
+        public boolean repeatable;
+
+        public double accuracy() {
+            return ratio(truePositives + trueNegatives, rows);
+        }
+
+        public double precision() {
+            return ratio(truePositives, truePositives + falsePositives);
+        }
+
+        public double recall() {
+            return ratio(truePositives, truePositives + falseNegatives);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format(Locale.ROOT, "model %s: %d rows, %d positive, threshold %.2f%n",
+                    model, rows, positives, threshold));
+            out.append(String.format(Locale.ROOT, "accuracy %.4f  precision %.4f  recall %.4f  AUC %.4f%n",
+                    accuracy(), precision(), recall(), auc));
+            out.append(String.format(Locale.ROOT, "confusion    predicted+  predicted-%n"));
+            out.append(String.format(Locale.ROOT, "  actual+    %10d  %10d%n", truePositives, falseNegatives));
+            out.append(String.format(Locale.ROOT, "  actual-    %10d  %10d%n", falsePositives, trueNegatives));
+            out.append(String.format(Locale.ROOT, "target   rows  flagged  mean score%n"));
+            for (int i = 0; i < targets.length; i++) {
+                out.append(String.format(Locale.ROOT, "%6d %6d %8d  %10.4f%n",
+                        targets[i], targetRows[i], targetFlagged[i], targetMeanScore[i]));
+            }
+            out.append(String.format(Locale.ROOT, "threshold     TPR     FPR%n"));
+            for (int i = 0; i < rocThresholds.length; i++) {
+                out.append(String.format(Locale.ROOT, "%9.2f  %6.4f  %6.4f%n",
+                        rocThresholds[i], rocTruePositiveRate[i], rocFalsePositiveRate[i]));
+            }
+            out.append(String.format(Locale.ROOT,
+                    "batch %d x %d passes: %.0f rows/s, batch latency p50 %.1f us p99 %.1f us, repeatable %s%n",
+                    batchSize, timedPasses, rowsPerSecond, batchP50Nanos / 1e3, batchP99Nanos / 1e3,
+                    repeatable ? "yes" : "NO"));
+            return out.toString();
+        }
+    }
+
+    /**
+     * How far a second implementation of a model is from the first over a dataset.
+     */
+    public static final class Parity {
+        public int rows;
+        public double maxDelta;
+        public double meanDelta;
+        // Rows scored on different sides of the threshold
+        public int flips;
+        public float threshold;
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "parity over %d rows: max |dp| %.3g, mean |dp| %.3g, "
+                    + "%d decisions flipped at %.2f%n", rows, maxDelta, meanDelta, flips, threshold);
+        }
+    }
+
+    private final DetectionModel model;
+    private final int batchSize;
+
+    public ModelEvaluator(DetectionModel model, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.model = model;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param positiveTargets Target values that should raise an alert; every other row should not
+     * @param threshold       probability at or above which a row counts as an alert
+     */
+    public Report evaluate(FeatureDataset data, int[] positiveTargets, float threshold,
+                           int warmUpPasses, int timedPasses) {
+        if (timedPasses < 1 || warmUpPasses < 0) {
+            throw new IllegalArgumentException("need at least one timed pass");
+        }
+        int rows = data.rows;
+        int batches = (rows + batchSize - 1) / batchSize;
+        float[] batchFeatures = new float[batchSize * FeatureExtractor.FEATURE_COUNT];
+        float[] batchScores = new float[batchSize];
+        float[] scores = new float[rows];
+        float[] reference = null;
+        long[] latencies = new long[batches * timedPasses];
+        long modelNanos = 0;
+        boolean repeatable = true;
+
+        for (int pass = 0; pass < warmUpPasses + timedPasses; pass++) {
+            boolean timed = pass >= warmUpPasses;
+            for (int b = 0; b < batches; b++) {
+                int first = b * batchSize;
+                int count = Math.min(batchSize, rows - first);
+                System.arraycopy(data.features, first * FeatureExtractor.FEATURE_COUNT, batchFeatures, 0,
+                        count * FeatureExtractor.FEATURE_COUNT);
+                long start = System.nanoTime();
+                model.predictBatch(batchFeatures, count, batchScores);
+                long elapsed = System.nanoTime() - start;
+                if (timed) {
+                    latencies[(pass - warmUpPasses) * batches + b] = elapsed;
+                    modelNanos += elapsed;
+                }
+                System.arraycopy(batchScores, 0, scores, first, count);
+            }
+            if (reference == null) {
+                reference = scores.clone();
+            } else if (!Arrays.equals(reference, scores)) {
+                repeatable = false;
+            }
+        }
+
+        boolean[] positive = new boolean[rows];
+        for (int r = 0; r < rows; r++) {
+            for (int target : positiveTargets) {
+                if (data.labels[r] == target) {
+                    positive[r] = true;
+                    break;
+                }
+            }
+        }
+
+        Report report = new Report();
+        report.model = model.getClass().getSimpleName();
+        report.rows = rows;
+        report.threshold = threshold;
+        for (int r = 0; r < rows; r++) {
+            boolean flagged = scores[r] >= threshold;
+            if (positive[r]) {
+                report.positives++;
+                if (flagged) {
+                    report.truePositives++;
+                } else {
+                    report.falseNegatives++;
+                }
+            } else if (flagged) {
+                report.falsePositives++;
+            } else {
+                report.trueNegatives++;
+            }
+        }
+        report.auc = auc(scores, positive, rows);
+        rocTable(report, scores, positive);
+        targetTable(report, scores, data.labels);
+
+        Arrays.sort(latencies);
+        report.batchSize = batchSize;
+        report.timedPasses = timedPasses;
+        report.rowsPerSecond = modelNanos == 0 ? 0 : (double) rows * timedPasses * 1e9 / modelNanos;
+        report.batchP50Nanos = percentile(latencies, 0.50);
+        report.batchP99Nanos = percentile(latencies, 0.99);
+        report.repeatable = repeatable;
+        return report;
+    }
+
+    /**
+     * Area under the ROC curve as the Mann-Whitney statistic: the chance a random positive row
+     * scores above a random negative one, with ties counting half.
+     *
+     * @return NaN unless there are both positive and negative rows
+     */
+    static double auc(float[] scores, boolean[] positive, int count) {
+        // Sort by score with the row index packed into the low half of the key
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) sortableBits(scores[i]) << 32) | i;
+        }
+        Arrays.sort(keys);
+        double rankSum = 0;
+        long positives = 0;
+        int i = 0;
+        while (i < count) {
+            int j = i;
+            int bits = (int) (keys[i] >> 32);
+            while (j < count && (int) (keys[j] >> 32) == bits) {
+                j++;
+            }
+            // Tied rows share the average of ranks i+1..j
+            double rank = (i + 1 + j) / 2.0;
+            for (int k = i; k < j; k++) {
+                if (positive[(int) keys[k]]) {
+                    rankSum += rank;
+                    positives++;
+                }
+            }
+            i = j;
+        }
+        long negatives = count - positives;
+        if (positives == 0 || negatives == 0) {
+            return Double.NaN;
+        }
+        return (rankSum - positives * (positives + 1) / 2.0) / ((double) positives * negatives);
+    }
+
+    /**
+     * Float bits reordered so that signed int comparison matches float comparison.
+     */
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+
+    private static void rocTable(Report report, float[] scores, boolean[] positive) {
+        int negatives = report.rows - report.positives;
+        report.rocThresholds = new float[ROC_STEPS + 1];
+        report.rocTruePositiveRate = new double[ROC_STEPS + 1];
+        report.rocFalsePositiveRate = new double[ROC_STEPS + 1];
+        for (int s = 0; s <= ROC_STEPS; s++) {
+            float threshold = (float) s / ROC_STEPS;
+            int truePositives = 0;
+            int falsePositives = 0;
+            for (int r = 0; r < scores.length; r++) {
+                if (scores[r] >= threshold) {
+                    if (positive[r]) {
+                        truePositives++;
+                    } else {
+                        falsePositives++;
+                    }
+                }
+            }
+            report.rocThresholds[s] = threshold;
+            report.rocTruePositiveRate[s] = ratio(truePositives, report.positives);
+            report.rocFalsePositiveRate[s] = ratio(falsePositives, negatives);
+        }
+    }
+
+    private static void targetTable(Report report, float[] scores, int[] labels) {
+        int[] sorted = Arrays.copyOf(labels, scores.length);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        report.targets = Arrays.copyOf(sorted, distinct);
+        report.targetRows = new int[distinct];
+        report.targetFlagged = new int[distinct];
+        report.targetMeanScore = new double[distinct];
+        for (int r = 0; r < scores.length; r++) {
+            int t = Arrays.binarySearch(report.targets, labels[r]);
+            report.targetRows[t]++;
+            report.targetMeanScore[t] += scores[r];
+            if (scores[r] >= report.threshold) {
+                report.targetFlagged[t]++;
+            }
+        }
+        for (int t = 0; t < distinct; t++) {
+            report.targetMeanScore[t] /= report.targetRows[t];
+        }
+    }
+
+    /**
+     * Scores every row with both models, e.g. ONNX Runtime and {@link JavaPredictor} on the same
+     * model file, and compares the probabilities.
+     */
+    public static Parity compare(DetectionModel reference, DetectionModel candidate, FeatureDataset data,
+                                 float threshold) {
+        float[] expected = new float[data.rows];
+        float[] actual = new float[data.rows];
+        reference.predictBatch(data.features, data.rows, expected);
+        candidate.predictBatch(data.features, data.rows, actual);
+        Parity parity = new Parity();
+        parity.rows = data.rows;
+        parity.threshold = threshold;
+        double sum = 0;
+        for (int r = 0; r < data.rows; r++) {
+            double delta = Math.abs(actual[r] - expected[r]);
+            parity.maxDelta = Math.max(parity.maxDelta, delta);
+            sum += delta;
+            if ((actual[r] >= threshold) != (expected[r] >= threshold)) {
+                parity.flips++;
+            }
+        }
+        parity.meanDelta = data.rows == 0 ? 0 : sum / data.rows;
+        return parity;
+    }
+
+    static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double ratio(long part, long whole) {
+        return whole == 0 ? Double.NaN : (double) part / whole;
+    }
+
+    /**
+     * Prints a report, e.g.
+     * {@code ModelEvaluator dataset/features_14.csv models/driver_behavior_model.onnx 32 4 0.7}.
+     * The dataset's Target values are driving manoeuvres (1 acceleration, 2 right turn, 3 left
+     * turn, 4 braking) rather than accidents, so which ones count as positive is an argument;
+     * sudden braking, the closest to a collision, is the default. A model given as
+     * {@code java:models/driver_behavior_model.onnx} runs on {@link JavaPredictor} instead, and the
+     * report adds its parity with ONNX Runtime on the same file.
+     */
+    public static void main(String[] args) throws IOException, OrtException {
+        if (args.length < 1) {
+            System.err.println("usage: ModelEvaluator <dataset.csv> [model.onnx|java:model.onnx|threshold] [batchSize]"
+                    + " [positiveTargets, e.g. 3,4] [alertThreshold] [timedPasses]");
+            System.exit(2);
+        }
+        File datasetFile = new File(args[0]);
+        String modelArg = args.length > 1 ? args[1] : "threshold";
+        int batch = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        String[] targetArgs = (args.length > 3 ? args[3] : "4").split(",");
+        int[] positiveTargets = new int[targetArgs.length];
+        for (int i = 0; i < targetArgs.length; i++) {
+            positiveTargets[i] = Integer.parseInt(targetArgs[i].trim());
+        }
+        float threshold = args.length > 4 ? Float.parseFloat(args[4]) : TripReplay.ALERT_THRESHOLD;
+        int passes = args.length > 5 ? Integer.parseInt(args[5]) : 20;
+
+        long start = System.nanoTime();
+        FeatureDataset data = FeatureDataset.read(datasetFile);
+        System.out.printf(Locale.ROOT, "dataset %s (sha256 %s): %d rows parsed in %.1f ms%n",
+                datasetFile, digest(datasetFile), data.rows, (System.nanoTime() - start) / 1e6);
+
+        if ("threshold".equals(modelArg)) {
+            System.out.print(new ModelEvaluator(new ThresholdModel(), batch)
+                    .evaluate(data, positiveTargets, threshold, 3, passes));
+            return;
+        }
+        boolean java = modelArg.startsWith("java:");
+        File modelFile = new File(java ? modelArg.substring("java:".length()) : modelArg);
+        System.out.printf(Locale.ROOT, "model %s (sha256 %s)%n", modelFile, digest(modelFile));
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        try (OrtSession session = env.createSession(modelFile.getPath(), new OrtSession.SessionOptions());
+             OnnxPredictor predictor = new OnnxPredictor(env, session)) {
+            DetectionModel onnx = new OnnxDetectionModel(predictor);
+            if (!java) {
+                System.out.print(new ModelEvaluator(onnx, batch).evaluate(data, positiveTargets, threshold, 3, passes));
+                return;
+            }
+            start = System.nanoTime();
+            DetectionModel javaModel = new JavaDetectionModel(JavaPredictor.load(modelFile));
+            System.out.printf(Locale.ROOT, "java backend loaded in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+            System.out.print(new ModelEvaluator(javaModel, batch).evaluate(data, positiveTargets, threshold, 3, passes));
+            System.out.print(compare(onnx, javaModel, data, threshold));
+        }
+    }
+
+    /**
+     * @return leading hex digits of the file's SHA-256, enough to tell runs on different files apart
+     */
+    private static String digest(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                sha.update(buffer, 0, n);
+            }
+            StringBuilder hex = new StringBuilder();
+            byte[] hash = sha.digest();
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format(Locale.ROOT, "%02x", hash[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
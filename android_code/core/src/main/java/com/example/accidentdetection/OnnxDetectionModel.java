@@ -0,0 +1,52 @@
+package com.example.accidentdetection;
+
+import ai.onnxruntime.OrtException;
+
+/**
+ * Scores with an {@link OnnxPredictor} the way {@link AccidentClassifier} does once its model
+ * is live, for tools that run on the JVM. Feature windows fill the end of the model's input row
+ * and any leading columns stay 0, as on the device; magnitudes from text telemetry go to the
+ * threshold rule, as they do there with a feature-window model.
+ *
+ * Inference errors are rethrown unchecked, since an offline run should stop rather than
+ * quietly fall back.
+ */
+public class OnnxDetectionModel implements DetectionModel {
+
+    private final OnnxPredictor predictor;
+    private final ThresholdModel fallback = new ThresholdModel();
+    private final float[] row;
+
+    public OnnxDetectionModel(OnnxPredictor predictor) {
+        if (predictor.getInputWidth() < FeatureExtractor.FEATURE_COUNT) {
+            throw new IllegalArgumentException("Model takes " + predictor.getInputWidth()
+                    + " values, fewer than the " + FeatureExtractor.FEATURE_COUNT + " features");
+        }
+        this.predictor = predictor;
+        this.row = new float[predictor.getInputWidth()];
+    }
+
+    @Override
+    public float predict(float accel, float gyro) {
+        return fallback.predict(accel, gyro);
+    }
+
+    @Override
+    public float predictFeatures(float[] features) {
+        System.arraycopy(features, 0, row, row.length - FeatureExtractor.FEATURE_COUNT, FeatureExtractor.FEATURE_COUNT);
+        try {
+            return predictor.predict(row, 0);
+        } catch (OrtException e) {
+            throw new IllegalStateException("Inference failed", e);
+        }
+    }
+
+    @Override
+    public void predictBatch(float[] features, int rowCount, float[] probabilities) {
+        try {
+            predictor.predictBatch(features, rowCount, FeatureExtractor.FEATURE_COUNT, probabilities);
+        } catch (OrtException e) {
+            throw new IllegalStateException("Inference failed", e);
+        }
+    }
+}
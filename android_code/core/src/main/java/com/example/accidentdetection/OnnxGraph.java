@@ -0,0 +1,508 @@
+package com.example.accidentdetection;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of an ONNX model file that {@link JavaPredictor} runs: the node list, float
+ * initializers (inline or in an external .onnx.data file) and the input and output names.
+ *
+ * Reads the protobuf wire format directly for the few ModelProto fields it needs, so no
+ * protobuf or ONNX library is required; everything else in the file is skipped.
+ */
+final class OnnxGraph {
+
+    static final class Node {
+        final String opType;
+        final List<String> inputs = new ArrayList<>();
+        final List<String> outputs = new ArrayList<>();
+        final Map<String, Float> floatAttributes = new HashMap<>();
+        final Map<String, Long> intAttributes = new HashMap<>();
+
+        Node(String opType) {
+            this.opType = opType;
+        }
+
+        float floatAttribute(String name, float fallback) {
+            Float value = floatAttributes.get(name);
+            return value == null ? fallback : value;
+        }
+
+        long intAttribute(String name, long fallback) {
+            Long value = intAttributes.get(name);
+            return value == null ? fallback : value;
+        }
+    }
+
+    static final class Tensor {
+        final long[] dims;
+        final float[] values;
+
+        Tensor(long[] dims, float[] values) {
+            this.dims = dims;
+            this.values = values;
+        }
+    }
+
+    // TensorProto.DataType.FLOAT
+    private static final int FLOAT = 1;
+
+    final List<Node> nodes = new ArrayList<>();
+    final Map<String, Tensor> initializers = new HashMap<>();
+    String input;
+    // Last dimension of the input, or -1 when the file leaves it symbolic
+    int inputWidth = -1;
+    String output;
+
+    private final File directory;
+    // Graph inputs with their widths; initializers may be listed here too in older exports
+    private final Map<String, Integer> graphInputs = new HashMap<>();
+    private final List<String> inputOrder = new ArrayList<>();
+
+    private OnnxGraph(File directory) {
+        this.directory = directory;
+    }
+
+    // Not Files.readAllBytes, which needs API 26; the app runs from API 24
+    private static byte[] readFile(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            long length = file.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too large to read at once");
+            }
+            byte[] bytes = new byte[(int) length];
+            in.readFully(bytes);
+            return bytes;
+        }
+    }
+
+    static OnnxGraph read(File modelFile) throws IOException {
+        OnnxGraph graph = new OnnxGraph(modelFile.getAbsoluteFile().getParentFile());
+        Reader model = new Reader(readFile(modelFile));
+        boolean found = false;
+        while (model.hasMore()) {
+            int tag = model.tag();
+            if (tag >>> 3 == 7) {
+                graph.readGraph(model.message());
+                found = true;
+            } else {
+                model.skip(tag);
+            }
+        }
+        if (!found) {
+            throw new IOException(modelFile + " has no graph");
+        }
+        for (String name : graph.inputOrder) {
+            if (!graph.initializers.containsKey(name)) {
+                graph.input = name;
+                graph.inputWidth = graph.graphInputs.get(name);
+                break;
+            }
+        }
+        if (graph.input == null || graph.output == null) {
+            throw new IOException(modelFile + " has no input or no output");
+        }
+        return graph;
+    }
+
+    private void readGraph(Reader graph) throws IOException {
+        while (graph.hasMore()) {
+            int tag = graph.tag();
+            switch (tag >>> 3) {
+                case 1:
+                    nodes.add(readNode(graph.message()));
+                    break;
+                case 5:
+                    readInitializer(graph.message());
+                    break;
+                case 11:
+                    readInput(graph.message());
+                    break;
+                case 12:
+                    if (output == null) {
+                        output = readValueName(graph.message());
+                    } else {
+                        throw new IOException("Only single-output graphs are supported");
+                    }
+                    break;
+                default:
+                    graph.skip(tag);
+            }
+        }
+    }
+
+    private static Node readNode(Reader in) throws IOException {
+        List<String> inputs = new ArrayList<>();
+        List<String> outputs = new ArrayList<>();
+        List<Reader> attributes = new ArrayList<>();
+        String opType = null;
+        while (in.hasMore()) {
+            int tag = in.tag();
+            switch (tag >>> 3) {
+                case 1:
+                    inputs.add(in.string());
+                    break;
+                case 2:
+                    outputs.add(in.string());
+                    break;
+                case 4:
+                    opType = in.string();
+                    break;
+                case 5:
+                    attributes.add(in.message());
+                    break;
+                default:
+                    in.skip(tag);
+            }
+        }
+        if (opType == null) {
+            throw new IOException("Node without an operator");
+        }
+        Node node = new Node(opType);
+        node.inputs.addAll(inputs);
+        node.outputs.addAll(outputs);
+        for (Reader attribute : attributes) {
+            String name = null;
+            Float f = null;
+            Long i = null;
+            while (attribute.hasMore()) {
+                int tag = attribute.tag();
+                switch (tag >>> 3) {
+                    case 1:
+                        name = attribute.string();
+                        break;
+                    case 2:
+                        f = Float.intBitsToFloat(attribute.fixed32());
+                        break;
+                    case 3:
+                        i = attribute.varint();
+                        break;
+                    default:
+                        attribute.skip(tag);
+                }
+            }
+            if (name != null && f != null) {
+                node.floatAttributes.put(name, f);
+            }
+            if (name != null && i != null) {
+                node.intAttributes.put(name, i);
+            }
+        }
+        return node;
+    }
+
+    private void readInitializer(Reader in) throws IOException {
+        List<Long> dims = new ArrayList<>();
+        int dataType = 0;
+        String name = null;
+        byte[] raw = null;
+        List<Float> floatData = new ArrayList<>();
+        Map<String, String> external = new HashMap<>();
+        boolean externalData = false;
+        while (in.hasMore()) {
+            int tag = in.tag();
+            switch (tag >>> 3) {
+                case 1:
+                    if ((tag & 7) == 2) {
+                        Reader packed = in.message();
+                        while (packed.hasMore()) {
+                            dims.add(packed.varint());
+                        }
+                    } else {
+                        dims.add(in.varint());
+                    }
+                    break;
+                case 2:
+                    dataType = (int) in.varint();
+                    break;
+                case 4:
+                    if ((tag & 7) == 2) {
+                        Reader packed = in.message();
+                        while (packed.hasMore()) {
+                            floatData.add(Float.intBitsToFloat(packed.fixed32()));
+                        }
+                    } else {
+                        floatData.add(Float.intBitsToFloat(in.fixed32()));
+                    }
+                    break;
+                case 8:
+                    name = in.string();
+                    break;
+                case 9:
+                    raw = in.bytes();
+                    break;
+                case 13: {
+                    Reader entry = in.message();
+                    String key = null;
+                    String value = null;
+                    while (entry.hasMore()) {
+                        int entryTag = entry.tag();
+                        if (entryTag >>> 3 == 1) {
+                            key = entry.string();
+                        } else if (entryTag >>> 3 == 2) {
+                            value = entry.string();
+                        } else {
+                            entry.skip(entryTag);
+                        }
+                    }
+                    external.put(key, value);
+                    break;
+                }
+                case 14:
+                    externalData = in.varint() == 1;
+                    break;
+                default:
+                    in.skip(tag);
+            }
+        }
+        if (dataType != FLOAT) {
+            throw new IOException("Initializer " + name + " has data type " + dataType + "; only float is supported");
+        }
+        long[] shape = new long[dims.size()];
+        long count = 1;
+        for (int i = 0; i < shape.length; i++) {
+            shape[i] = dims.get(i);
+            count *= shape[i];
+        }
+        if (count > Integer.MAX_VALUE / 4) {
+            throw new IOException("Initializer " + name + " is too large");
+        }
+        float[] values;
+        if (externalData) {
+            values = readExternal(name, external, (int) count);
+        } else if (raw != null) {
+            values = floats(ByteBuffer.wrap(raw), name, (int) count);
+        } else {
+            values = new float[floatData.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = floatData.get(i);
+            }
+        }
+        if (values.length != count) {
+            throw new IOException("Initializer " + name + " holds " + values.length + " values, expected " + count);
+        }
+        initializers.put(name, new Tensor(shape, values));
+    }
+
+    private float[] readExternal(String name, Map<String, String> external, int count) throws IOException {
+        String location = external.get("location");
+        if (location == null) {
+            throw new IOException("Initializer " + name + " has no external data location");
+        }
+        File file = new File(directory, location);
+        long offset = external.containsKey("offset") ? Long.parseLong(external.get("offset")) : 0;
+        long length = external.containsKey("length") ? Long.parseLong(external.get("length")) : count * 4L;
+        if (length != count * 4L) {
+            throw new IOException("Initializer " + name + " has " + length + " bytes in " + location
+                    + ", expected " + count * 4L);
+        }
+        byte[] bytes = new byte[(int) length];
+        try (RandomAccessFile data = new RandomAccessFile(file, "r")) {
+            data.seek(offset);
+            data.readFully(bytes);
+        }
+        return floats(ByteBuffer.wrap(bytes), name, count);
+    }
+
+    private static float[] floats(ByteBuffer bytes, String name, int count) throws IOException {
+        if (bytes.remaining() != count * 4) {
+            throw new IOException("Initializer " + name + " has " + bytes.remaining() + " bytes, expected " + count * 4);
+        }
+        float[] values = new float[count];
+        // ONNX stores raw tensor data little-endian
+        bytes.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(values);
+        return values;
+    }
+
+    private void readInput(Reader in) throws IOException {
+        String name = null;
+        int width = -1;
+        while (in.hasMore()) {
+            int tag = in.tag();
+            switch (tag >>> 3) {
+                case 1:
+                    name = in.string();
+                    break;
+                case 2:
+                    width = lastDimension(in.message());
+                    break;
+                default:
+                    in.skip(tag);
+            }
+        }
+        graphInputs.put(name, width);
+        inputOrder.add(name);
+    }
+
+    private static String readValueName(Reader in) throws IOException {
+        String name = null;
+        while (in.hasMore()) {
+            int tag = in.tag();
+            if (tag >>> 3 == 1) {
+                name = in.string();
+            } else {
+                in.skip(tag);
+            }
+        }
+        return name;
+    }
+
+    /**
+     * TypeProto.tensor_type.shape.dim[last].dim_value, or -1 when missing or symbolic.
+     */
+    private static int lastDimension(Reader type) throws IOException {
+        Reader tensor = field(type, 1);
+        Reader shape = tensor == null ? null : field(tensor, 2);
+        if (shape == null) {
+            return -1;
+        }
+        int width = -1;
+        while (shape.hasMore()) {
+            int tag = shape.tag();
+            if (tag >>> 3 != 1) {
+                shape.skip(tag);
+                continue;
+            }
+            Reader dim = shape.message();
+            width = -1;
+            while (dim.hasMore()) {
+                int dimTag = dim.tag();
+                if (dimTag >>> 3 == 1) {
+                    width = (int) dim.varint();
+                } else {
+                    dim.skip(dimTag);
+                }
+            }
+        }
+        return width;
+    }
+
+    private static Reader field(Reader in, int number) throws IOException {
+        while (in.hasMore()) {
+            int tag = in.tag();
+            if (tag >>> 3 == number) {
+                return in.message();
+            }
+            in.skip(tag);
+        }
+        return null;
+    }
+
+    /**
+     * Protobuf wire format over a slice of a byte array.
+     */
+    private static final class Reader {
+        private final byte[] data;
+        private int position;
+        private final int end;
+
+        Reader(byte[] data) {
+            this(data, 0, data.length);
+        }
+
+        private Reader(byte[] data, int position, int end) {
+            this.data = data;
+            this.position = position;
+            this.end = end;
+        }
+
+        boolean hasMore() {
+            return position < end;
+        }
+
+        int tag() throws IOException {
+            return (int) varint();
+        }
+
+        long varint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= end) {
+                    throw new IOException("Truncated varint");
+                }
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int fixed32() throws IOException {
+            if (end - position < 4) {
+                throw new IOException("Truncated fixed32");
+            }
+            int value = (data[position] & 0xFF) | (data[position + 1] & 0xFF) << 8
+                    | (data[position + 2] & 0xFF) << 16 | (data[position + 3] & 0xFF) << 24;
+            position += 4;
+            return value;
+        }
+
+        Reader message() throws IOException {
+            int length = length();
+            Reader message = new Reader(data, position, position + length);
+            position += length;
+            return message;
+        }
+
+        byte[] bytes() throws IOException {
+            int length = length();
+            byte[] bytes = new byte[length];
+            System.arraycopy(data, position, bytes, 0, length);
+            position += length;
+            return bytes;
+        }
+
+        String string() throws IOException {
+            int length = length();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        void skip(int tag) throws IOException {
+            switch (tag & 7) {
+                case 0:
+                    varint();
+                    break;
+                case 1:
+                    advance(8);
+                    break;
+                case 2:
+                    advance(length());
+                    break;
+                case 5:
+                    advance(4);
+                    break;
+                default:
+                    throw new IOException("Unsupported wire type " + (tag & 7));
+            }
+        }
+
+        private int length() throws IOException {
+            long length = varint();
+            if (length < 0 || length > end - position) {
+                throw new IOException("Length " + length + " runs past the end of the message");
+            }
+            return (int) length;
+        }
+
+        private void advance(int count) throws IOException {
+            if (count > end - position) {
+                throw new IOException("Truncated field");
+            }
+            position += count;
+        }
+    }
+}
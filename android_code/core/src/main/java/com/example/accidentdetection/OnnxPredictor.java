@@ -0,0 +1,226 @@
+package com.example.accidentdetection;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+
+/**
+ * Single-row inference on an ONNX session with everything allocated up front.
+ *
+ * The input tensor is backed by a direct FloatBuffer that is rewritten in place for every
+ * prediction, the input name and input map are cached, and the output is written into a
+ * pinned tensor so no float[][] has to be materialised. {@link #predictBatch} does the same
+ * for [N, width] inputs, reusing its tensors as long as N is unchanged. Not thread-safe; use
+ * one instance per inference thread. Closing it releases the tensors but not the session.
+ */
+public class OnnxPredictor implements AutoCloseable {
+
+    private final OrtEnvironment env;
+    private final OrtSession session;
+    private final String inputName;
+    private final String outputName;
+    private final int inputWidth;
+
+    private final FloatBuffer inputBuffer;
+    private final OnnxTensor inputTensor;
+    private final Map<String, OnnxTensor> inputs;
+
+    private final FloatBuffer outputBuffer;
+    private final OnnxTensor outputTensor;
+    private final Map<String, OnnxValue> pinnedOutputs;
+    private final Set<String> requestedOutputs = Collections.emptySet();
+
+    // Cleared if the ONNX Runtime in use predates pinned outputs (added in 1.16)
+    private boolean pinnedOutputsSupported = true;
+
+    // Batch buffers grow to the largest batch seen; tensors are rebuilt only when the row count changes
+    private FloatBuffer batchInputBuffer;
+    private FloatBuffer batchOutputBuffer;
+    private OnnxTensor batchInputTensor;
+    private OnnxTensor batchOutputTensor;
+    private Map<String, OnnxTensor> batchInputs;
+    private Map<String, OnnxValue> batchPinnedOutputs;
+    private int batchRows = 0;
+
+    public OnnxPredictor(OrtEnvironment env, OrtSession session) throws OrtException {
+        this.env = env;
+        this.session = session;
+        this.inputName = session.getInputNames().iterator().next();
+        this.outputName = session.getOutputNames().iterator().next();
+        this.inputWidth = featureWidth(session.getInputInfo().get(inputName));
+
+        inputBuffer = directFloats(inputWidth);
+        inputTensor = OnnxTensor.createTensor(env, inputBuffer, new long[]{1, inputWidth});
+        inputs = Collections.singletonMap(inputName, inputTensor);
+
+        outputBuffer = directFloats(1);
+        outputTensor = OnnxTensor.createTensor(env, outputBuffer, new long[]{1, 1});
+        pinnedOutputs = Collections.<String, OnnxValue>singletonMap(outputName, outputTensor);
+    }
+
+    /**
+     * @return number of features the model expects per row
+     */
+    public int getInputWidth() {
+        return inputWidth;
+    }
+
+    public String getInputName() {
+        return inputName;
+    }
+
+    /**
+     * Scores one row of {@link #getInputWidth()} features starting at {@code offset}.
+     */
+    public float predict(float[] features, int offset) throws OrtException {
+        for (int i = 0; i < inputWidth; i++) {
+            inputBuffer.put(i, features[offset + i]);
+        }
+        return run();
+    }
+
+    /**
+     * Scores a two-feature row; only valid for models with an input width of 2.
+     */
+    public float predict(float first, float second) throws OrtException {
+        if (inputWidth != 2) {
+            throw new IllegalStateException("Model expects " + inputWidth + " features, not 2");
+        }
+        inputBuffer.put(0, first);
+        inputBuffer.put(1, second);
+        return run();
+    }
+
+    /**
+     * Scores {@code rowCount} rows in a single session run with input shape [rowCount, width].
+     *
+     * @param rows          row-major features, {@code rowWidth} values per row
+     * @param rowWidth      values per row; rows narrower than the model input fill its trailing
+     *                      columns and the leading ones are left at 0
+     * @param probabilities receives one probability per row
+     */
+    public void predictBatch(float[] rows, int rowCount, int rowWidth, float[] probabilities) throws OrtException {
+        if (rowWidth > inputWidth) {
+            throw new IllegalArgumentException("Rows have " + rowWidth + " values but the model takes " + inputWidth);
+        }
+        if (rowCount <= 0) {
+            return;
+        }
+        prepareBatch(rowCount);
+
+        int leading = inputWidth - rowWidth;
+        for (int r = 0; r < rowCount; r++) {
+            int base = r * inputWidth;
+            for (int c = 0; c < leading; c++) {
+                batchInputBuffer.put(base + c, 0f);
+            }
+            int src = r * rowWidth;
+            for (int c = 0; c < rowWidth; c++) {
+                batchInputBuffer.put(base + leading + c, rows[src + c]);
+            }
+        }
+
+        if (pinnedOutputsSupported) {
+            try {
+                // The result only wraps the pinned output, which stays open and readable
+                session.run(batchInputs, requestedOutputs, batchPinnedOutputs).close();
+                for (int r = 0; r < rowCount; r++) {
+                    probabilities[r] = batchOutputBuffer.get(r);
+                }
+                return;
+            } catch (NoSuchMethodError e) {
+                pinnedOutputsSupported = false;
+            }
+        }
+
+        try (OrtSession.Result results = session.run(batchInputs)) {
+            float[][] output = (float[][]) results.get(0).getValue();
+            for (int r = 0; r < rowCount; r++) {
+                probabilities[r] = output[r][0];
+            }
+        }
+    }
+
+    private void prepareBatch(int rowCount) throws OrtException {
+        if (rowCount == batchRows) {
+            return;
+        }
+        closeBatchTensors();
+
+        int floats = rowCount * inputWidth;
+        if (batchInputBuffer == null || batchInputBuffer.capacity() < floats) {
+            batchInputBuffer = directFloats(floats);
+            batchOutputBuffer = directFloats(rowCount);
+        }
+        batchInputTensor = OnnxTensor.createTensor(env, slice(batchInputBuffer, floats), new long[]{rowCount, inputWidth});
+        batchOutputTensor = OnnxTensor.createTensor(env, slice(batchOutputBuffer, rowCount), new long[]{rowCount, 1});
+        batchInputs = Collections.singletonMap(inputName, batchInputTensor);
+        batchPinnedOutputs = Collections.<String, OnnxValue>singletonMap(outputName, batchOutputTensor);
+        batchRows = rowCount;
+    }
+
+    private void closeBatchTensors() {
+        if (batchInputTensor != null) {
+            batchInputTensor.close();
+            batchOutputTensor.close();
+            batchInputTensor = null;
+            batchOutputTensor = null;
+        }
+        batchRows = 0;
+    }
+
+    private static FloatBuffer slice(FloatBuffer buffer, int length) {
+        FloatBuffer view = buffer.duplicate();
+        view.position(0);
+        view.limit(length);
+        return view.slice();
+    }
+
+    private float run() throws OrtException {
+        if (pinnedOutputsSupported) {
+            try {
+                session.run(inputs, requestedOutputs, pinnedOutputs).close();
+                return outputBuffer.get(0);
+            } catch (NoSuchMethodError e) {
+                pinnedOutputsSupported = false;
+            }
+        }
+
+        try (OrtSession.Result results = session.run(inputs)) {
+            float[][] output = (float[][]) results.get(0).getValue();
+            return output[0][0];
+        }
+    }
+
+    @Override
+    public void close() {
+        inputTensor.close();
+        outputTensor.close();
+        closeBatchTensors();
+    }
+
+    static FloatBuffer directFloats(int count) {
+        return ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    private static int featureWidth(NodeInfo info) {
+        if (info != null && info.getInfo() instanceof TensorInfo) {
+            long[] shape = ((TensorInfo) info.getInfo()).getShape();
+            if (shape.length == 2 && shape[1] > 0) {
+                return (int) shape[1];
+            }
+        }
+        throw new IllegalArgumentException("Expected a [batch, features] model input, got " + info);
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.accidentdetection;
+
+import java.util.Arrays;
+
+/**
+ * Merges time-aligned samples from several sensor nodes into one stream: time is cut into
+ * fixed buckets and each bucket emits the peak accel and gyro magnitudes any node saw in it,
+ * so an impact picked up by one corner of the vehicle is not averaged away by the others. The
+ * bucket also carries the six axes of its highest-accel sample that had axes, for the sample
+ * history.
+ *
+ * Peaks are no input for a feature window: the model was trained on consecutive samples of one
+ * sensor. So each bucket also carries, in arrival order, the raw samples {@link #WINDOW_LINK}
+ * added to it. A bucket the window node did not fill cleanly (it was silent, overflowed
+ * {@link #WINDOW_SAMPLES} or sent a sample late) carries none, so a window built from them never
+ * spans a hole in that node's stream.
+ *
+ * A bucket is emitted once every active node has reported past its end, or once it is older
+ * than the latency bound behind the newest sample, so a stalled node delays the stream by at
+ * most that bound. A sample for a bucket already emitted is folded into the oldest pending one
+ * rather than dropped, and counted as late.
+ *
+ * When the last active node drops out everything pending is emitted; the next sample restarts
+ * the stream where it lands and is preceded by {@link Output#onGap}.
+ *
+ * Thread-safe; {@link Output} is called with the fuser's lock held, in time order.
+ */
+public class SampleFuser {
+
+    public interface Output {
+        /**
+         * @param nanos end of the bucket, on the nodes' aligned time scale
+         * @param axes        ax ay az gx gy gz of the bucket's peak sample, NaN when no contributor
+         *                    sent axes; only valid for the duration of the call
+         * @param links       bit i set when node i contributed
+         * @param samples     ax ay az gx gy gz of each of the window node's samples in the bucket,
+         *                    in order; only valid for the duration of the call
+         * @param sampleCount samples in {@code samples}; 0 when the bucket has none usable
+         */
+        void onFusedSample(long nanos, float accel, float gyro, float[] axes, int links,
+                           float[] samples, int sampleCount);
+
+        /**
+         * No node was reporting between the newest sample before the gap and the first after it.
+         */
+        default void onGap(long lostNanos, long resumedNanos) {
+        }
+    }
+
+    public static final int MAX_LINKS = 32;
+    // The node whose raw samples feed the feature window: the first one
+    public static final int WINDOW_LINK = 0;
+    // Raw window samples one bucket holds; 20 ms at 500 Hz takes 10
+    public static final int WINDOW_SAMPLES = 32;
+    private static final int RING = 64;
+
+    private final long periodNanos;
+    private final long maxLatencyNanos;
+    private final Output output;
+
+    private final float[] accel = new float[RING];
+    private final float[] gyro = new float[RING];
+    private final int[] links = new int[RING];
+    // Six per slot, and the accel of the sample they came from; -1 while the slot has none
+    private final float[] axes = new float[RING * 6];
+    private final float[] axesAccel = new float[RING];
+    private final float[] emittedAxes = new float[6];
+    // WINDOW_SAMPLES * 6 per slot; count -1 once the slot's run is broken
+    private final float[] windowSamples = new float[RING * WINDOW_SAMPLES * 6];
+    private final int[] windowCounts = new int[RING];
+    private final float[] emittedSamples = new float[WINDOW_SAMPLES * 6];
+    private int filled = 0;
+
+    // Index of the oldest bucket not yet emitted; unset until the first sample
+    private long next = Long.MIN_VALUE;
+    private long newestNanos = Long.MIN_VALUE;
+    private final long[] latestNanos = new long[MAX_LINKS];
+    private int active = 0;
+    // Every node dropped out after the stream started; the next sample resumes it
+    private boolean interrupted = false;
+
+    private long emitted;
+    private long lateSamples;
+    private long brokenWindowBuckets;
+
+    /**
+     * @param maxLatencyNanos how far behind the newest sample a bucket may wait for slow nodes;
+     *                        at most {@code periodNanos * 63}
+     */
+    public SampleFuser(long periodNanos, long maxLatencyNanos, Output output) {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("periodNanos must be positive");
+        }
+        if (maxLatencyNanos < 0 || maxLatencyNanos > periodNanos * (RING - 1)) {
+            throw new IllegalArgumentException("maxLatencyNanos must be 0.." + periodNanos * (RING - 1));
+        }
+        this.periodNanos = periodNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.output = output;
+    }
+
+    /**
+     * Marks a node as reporting; the stream waits for active nodes. Inactive nodes may still add.
+     */
+    public synchronized void setActive(int link, boolean isActive) {
+        checkLink(link);
+        if (isActive) {
+            active |= 1 << link;
+            latestNanos[link] = Long.MIN_VALUE;
+        } else {
+            active &= ~(1 << link);
+            if (active == 0 && next != Long.MIN_VALUE) {
+                flush();
+                interrupted = true;
+            } else {
+                drain();
+            }
+        }
+    }
+
+    /**
+     * Adds a sample that carries only magnitudes, such as a text telemetry line.
+     *
+     * @return false when the sample arrived after its bucket was emitted
+     */
+    public boolean add(int link, long nanos, float sampleAccel, float sampleGyro) {
+        return add(link, nanos, sampleAccel, sampleGyro,
+                Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN);
+    }
+
+    /**
+     * @return false when the sample arrived after its bucket was emitted
+     */
+    public synchronized boolean add(int link, long nanos, float sampleAccel, float sampleGyro,
+                                    float ax, float ay, float az, float gx, float gy, float gz) {
+        checkLink(link);
+        long bucket = Math.floorDiv(nanos, periodNanos);
+        if (interrupted) {
+            interrupted = false;
+            output.onGap(newestNanos, nanos);
+            next = Long.MIN_VALUE;
+            newestNanos = Long.MIN_VALUE;
+        }
+        if (next == Long.MIN_VALUE) {
+            next = bucket;
+        }
+        boolean onTime = bucket >= next;
+        if (!onTime) {
+            bucket = next;
+            lateSamples++;
+        }
+        while (bucket >= next + RING) {
+            // Too far ahead for the ring: emit regardless of slow nodes
+            emitNext();
+        }
+        int slot = (int) Math.floorMod(bucket, (long) RING);
+        if (links[slot] == 0) {
+            accel[slot] = sampleAccel;
+            gyro[slot] = sampleGyro;
+            axesAccel[slot] = -1f;
+            windowCounts[slot] = 0;
+            filled++;
+        } else {
+            accel[slot] = Math.max(accel[slot], sampleAccel);
+            gyro[slot] = Math.max(gyro[slot], sampleGyro);
+        }
+        if (!Float.isNaN(ax) && sampleAccel > axesAccel[slot]) {
+            int a = slot * 6;
+            axes[a] = ax;
+            axes[a + 1] = ay;
+            axes[a + 2] = az;
+            axes[a + 3] = gx;
+            axes[a + 4] = gy;
+            axes[a + 5] = gz;
+            axesAccel[slot] = sampleAccel;
+        }
+        if (link == WINDOW_LINK && !Float.isNaN(ax)) {
+            addWindowSample(slot, onTime, ax, ay, az, gx, gy, gz);
+        }
+        links[slot] |= 1 << link;
+        if (nanos > latestNanos[link]) {
+            latestNanos[link] = nanos;
+        }
+        if (nanos > newestNanos) {
+            newestNanos = nanos;
+        }
+        drain();
+        return onTime;
+    }
+
+    private void addWindowSample(int slot, boolean onTime, float ax, float ay, float az,
+                                 float gx, float gy, float gz) {
+        int count = windowCounts[slot];
+        if (count < 0) {
+            return;
+        }
+        if (!onTime || count == WINDOW_SAMPLES) {
+            // Out of order or too many to keep: the bucket cannot continue a window
+            windowCounts[slot] = -1;
+            brokenWindowBuckets++;
+            return;
+        }
+        int w = (slot * WINDOW_SAMPLES + count) * 6;
+        windowSamples[w] = ax;
+        windowSamples[w + 1] = ay;
+        windowSamples[w + 2] = az;
+        windowSamples[w + 3] = gx;
+        windowSamples[w + 4] = gy;
+        windowSamples[w + 5] = gz;
+        windowCounts[slot] = count + 1;
+    }
+
+    /**
+     * Emits every pending bucket, e.g. when the stream ends.
+     */
+    public synchronized void flush() {
+        while (filled > 0) {
+            emitNext();
+        }
+    }
+
+    private void drain() {
+        if (next == Long.MIN_VALUE) {
+            return;
+        }
+        long watermark = Long.MAX_VALUE;
+        for (int mask = active; mask != 0; mask &= mask - 1) {
+            watermark = Math.min(watermark, latestNanos[Integer.numberOfTrailingZeros(mask)]);
+        }
+        if (watermark == Long.MAX_VALUE) {
+            // No node to wait for
+            watermark = newestNanos;
+        }
+        long limit = Math.max(watermark, newestNanos - maxLatencyNanos);
+        while ((next + 1) * periodNanos <= limit) {
+            if (filled == 0) {
+                // Nothing pending: skip the empty stretch in one step
+                next = Math.max(next + 1, Math.floorDiv(limit, periodNanos));
+                return;
+            }
+            emitNext();
+        }
+    }
+
+    private void emitNext() {
+        int slot = (int) Math.floorMod(next, (long) RING);
+        int contributors = links[slot];
+        long end = (next + 1) * periodNanos;
+        next++;
+        if (contributors == 0) {
+            return;
+        }
+        links[slot] = 0;
+        filled--;
+        emitted++;
+        if (axesAccel[slot] < 0f) {
+            Arrays.fill(emittedAxes, Float.NaN);
+        } else {
+            System.arraycopy(axes, slot * 6, emittedAxes, 0, 6);
+        }
+        int windowCount = Math.max(windowCounts[slot], 0);
+        if (windowCount > 0) {
+            System.arraycopy(windowSamples, slot * WINDOW_SAMPLES * 6, emittedSamples, 0, windowCount * 6);
+        }
+        output.onFusedSample(end, accel[slot], gyro[slot], emittedAxes, contributors, emittedSamples, windowCount);
+    }
+
+    private static void checkLink(int link) {
+        if (link < 0 || link >= MAX_LINKS) {
+            throw new IllegalArgumentException("link must be 0.." + (MAX_LINKS - 1));
+        }
+    }
+
+    public synchronized long getEmitted() {
+        return emitted;
+    }
+
+    public synchronized long getLateSamples() {
+        return lateSamples;
+    }
+
+    /**
+     * @return buckets whose window samples were dropped for arriving late or overflowing
+     */
+    public synchronized long getBrokenWindowBuckets() {
+        return brokenWindowBuckets;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.accidentdetection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cheap first stage in front of the model: decides per sample whether the model needs to see
+ * it, so inference runs while something is happening rather than at the sample rate.
+ *
+ * The gate opens on any of three triggers and stays open for a while after the last one:
+ * <ul>
+ * <li>a two-sided CUSUM of the accel magnitude around a slow moving baseline, which catches a
+ * sustained change such as hard braking;</li>
+ * <li>jerk, taken as the accel change between consecutive samples, which catches an impact
+ * before its peak;</li>
+ * <li>plain levels, below the {@link ThresholdModel} thresholds, so nothing the fallback model
+ * would alert on is ever gated out.</li>
+ * </ul>
+ * While closed it still passes one sample per audit interval, so a model that disagrees with the
+ * gate shows up in the statistics instead of going unnoticed.
+ *
+ * It sees what the detection path carries: the gravity-removed accel magnitude in m/s² and the
+ * gyro magnitude in deg/s, as AD.ino sends them. What it gates depends on the engine: with a
+ * feature window, a window is scored if the gate passed any of its samples since the last one,
+ * so the saving is in model runs; without one it gates the magnitude samples, which only the
+ * threshold rule scores. {@link TripReplay} measures the skip ratio and the detections lost on a
+ * recorded trip.
+ *
+ * Allocation-free and not thread-safe: call it from the thread that reads the samples. Setters
+ * return {@code this} so settings can be chained; change them before the first sample.
+ */
+public class SampleGate {
+
+    /** The sample can be skipped. */
+    public static final int CLOSED = 0;
+    /** Something is happening; score the sample. */
+    public static final int OPEN = 1;
+    /** Nothing is happening, but this sample is due for an audit. */
+    public static final int AUDIT = 2;
+
+    // Below the threshold rule's 20 m/s² and 150 deg/s, in about the same proportion
+    private float accelLevel = 12f; // m/s²
+    private float gyroLevel = 90f; // deg/s
+    private float stepLimit = 4f; // m/s² per sample
+    private float baselineAlpha = 0.02f;
+    private float cusumDrift = 1f; // m/s² per sample
+    private float cusumThreshold = 8f; // m/s², summed over samples
+    private long holdNanos = TimeUnit.SECONDS.toNanos(2);
+    private long auditIntervalNanos = TimeUnit.SECONDS.toNanos(5);
+
+    private float baseline;
+    private float cusumHigh;
+    private float cusumLow;
+    private float lastAccel;
+    private boolean primed;
+    private long openUntilNanos;
+    private long lastAuditNanos;
+
+    // Written by the reading thread only
+    private volatile long offered;
+    private volatile long opened;
+    private volatile long audits;
+    private volatile long openings;
+
+    public SampleGate() {
+        reset();
+    }
+
+    /**
+     * @param accel gravity-removed accel magnitude, m/s^2, that opens the gate by itself
+     * @param gyro  gyro magnitude, deg/s, that opens the gate by itself
+     */
+    public SampleGate levels(float accel, float gyro) {
+        this.accelLevel = accel;
+        this.gyroLevel = gyro;
+        return this;
+    }
+
+    /**
+     * @param accel change in accel magnitude, m/s^2, from one sample to the next that opens the
+     *              gate. Per sample rather than per second: receive times bunch up over
+     *              Bluetooth, so dividing by them would see jerk where there is none.
+     */
+    public SampleGate stepLimit(float accel) {
+        this.stepLimit = accel;
+        return this;
+    }
+
+    /**
+     * @param alpha     weight of each sample in the moving baseline
+     * @param drift     deviation from the baseline, m/s^2, that the CUSUM tolerates per sample
+     * @param threshold accumulated deviation beyond the drift, m/s^2 summed over samples, that
+     *                  opens the gate
+     */
+    public SampleGate cusum(float alpha, float drift, float threshold) {
+        this.baselineAlpha = alpha;
+        this.cusumDrift = drift;
+        this.cusumThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * @param millis how long the gate stays open after the last trigger
+     */
+    public SampleGate holdMillis(long millis) {
+        this.holdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        return this;
+    }
+
+    /**
+     * @param millis time between audit samples while closed; 0 turns audits off
+     */
+    public SampleGate auditIntervalMillis(long millis) {
+        this.auditIntervalNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        return this;
+    }
+
+    /**
+     * Forgets the stream, e.g. after a gap; the next sample starts a new baseline. Counters
+     * are kept.
+     */
+    public void reset() {
+        primed = false;
+        cusumHigh = 0;
+        cusumLow = 0;
+        openUntilNanos = Long.MIN_VALUE;
+        lastAuditNanos = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return {@link #CLOSED}, {@link #OPEN} or {@link #AUDIT}
+     */
+    public int offer(long nanos, float accel, float gyro) {
+        offered++;
+        boolean triggered = accel >= accelLevel || gyro >= gyroLevel;
+        if (!primed) {
+            primed = true;
+            baseline = accel;
+        } else {
+            if (Math.abs(accel - lastAccel) >= stepLimit) {
+                triggered = true;
+            }
+            float deviation = accel - baseline;
+            cusumHigh = Math.max(0f, cusumHigh + deviation - cusumDrift);
+            cusumLow = Math.max(0f, cusumLow - deviation - cusumDrift);
+            if (cusumHigh >= cusumThreshold || cusumLow >= cusumThreshold) {
+                triggered = true;
+                cusumHigh = 0;
+                cusumLow = 0;
+            }
+            baseline += baselineAlpha * deviation;
+        }
+        lastAccel = accel;
+
+        if (triggered) {
+            if (!isOpen(nanos)) {
+                openings++;
+            }
+            openUntilNanos = nanos + holdNanos;
+        }
+        if (isOpen(nanos)) {
+            opened++;
+            return OPEN;
+        }
+        if (auditIntervalNanos > 0
+                && (lastAuditNanos == Long.MIN_VALUE || nanos - lastAuditNanos >= auditIntervalNanos)) {
+            lastAuditNanos = nanos;
+            audits++;
+            return AUDIT;
+        }
+        return CLOSED;
+    }
+
+    private boolean isOpen(long nanos) {
+        return openUntilNanos != Long.MIN_VALUE && nanos - openUntilNanos <= 0;
+    }
+
+    public long getOffered() {
+        return offered;
+    }
+
+    /**
+     * @return samples passed because the gate was open, audits not included
+     */
+    public long getOpened() {
+        return opened;
+    }
+
+    public long getAudits() {
+        return audits;
+    }
+
+    /**
+     * @return times the gate went from closed to open
+     */
+    public long getOpenings() {
+        return openings;
+    }
+
+    /**
+     * @return share of offered samples the model did not have to see; NaN before the first
+     */
+    public double getSkipRatio() {
+        return offered == 0 ? Double.NaN : 1.0 - (double) (opened + audits) / offered;
+    }
+}
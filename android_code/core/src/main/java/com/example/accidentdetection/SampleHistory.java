@@ -0,0 +1,138 @@
+package com.example.accidentdetection;
+
+/**
+ * The most recent telemetry samples in a fixed-size ring of primitive arrays, kept so the
+ * lead-up to an alert can be saved (see {@link SnapshotRecorder}).
+ *
+ * There is exactly one writer, the Bluetooth reader thread, and recording neither allocates
+ * nor locks. The writer publishes each sample by advancing a volatile count; readers on other
+ * threads copy a range and then check the writer has not lapped it in the meantime.
+ *
+ * Each sample is a monotonic timestamp plus {@link #WIDTH} floats: the six axes (NaN when the
+ * firmware only sends magnitudes) followed by the accel and gyro magnitudes.
+ */
+public class SampleHistory {
+
+    public static final int WIDTH = 8;
+    public static final int ACCEL = 6;
+    public static final int GYRO = 7;
+
+    private final int capacity;
+    private final int mask;
+    private final long[] times;
+    private final float[] values;
+
+    // Samples recorded so far; sample n lives in slot (n & mask) until sample n + capacity replaces it
+    private volatile long written = 0;
+
+    /**
+     * @param capacity number of samples kept, rounded up to a power of two
+     */
+    public SampleHistory(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.times = new long[size];
+        this.values = new float[size * WIDTH];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of samples recorded since creation; the next sample gets this index
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    public void record(long timeNanos, float ax, float ay, float az, float gx, float gy, float gz,
+                       float accel, float gyro) {
+        long n = written;
+        int slot = (int) (n & mask);
+        int v = slot * WIDTH;
+        times[slot] = timeNanos;
+        values[v] = ax;
+        values[v + 1] = ay;
+        values[v + 2] = az;
+        values[v + 3] = gx;
+        values[v + 4] = gy;
+        values[v + 5] = gz;
+        values[v + ACCEL] = accel;
+        values[v + GYRO] = gyro;
+        written = n + 1;
+    }
+
+    /**
+     * Records a decoded sensor or batch frame. A batch is spread back in time from
+     * {@code receivedNanos}, its last sample, at the batch's sample interval.
+     *
+     * @param baselineAccelZ resting Z acceleration, removed from the accel magnitude of batch samples
+     */
+    public void record(TelemetryFrame frame, long receivedNanos, float baselineAccelZ) {
+        if (frame.type == TelemetryFrame.TYPE_SAMPLE_BATCH) {
+            float[] axes = frame.batchAxes;
+            long intervalNanos = frame.batchIntervalMicros * 1000L;
+            int last = frame.batchCount - 1;
+            for (int i = 0, a = 0; i <= last; i++, a += 6) {
+                float ax = axes[a];
+                float ay = axes[a + 1];
+                float az = axes[a + 2];
+                float gx = axes[a + 3];
+                float gy = axes[a + 4];
+                float gz = axes[a + 5];
+                float azAdjusted = az - baselineAccelZ;
+                record(receivedNanos - (last - i) * intervalNanos, ax, ay, az, gx, gy, gz,
+                        (float) Math.sqrt(ax * ax + ay * ay + azAdjusted * azAdjusted),
+                        (float) Math.sqrt(gx * gx + gy * gy + gz * gz));
+            }
+        } else if (frame.sequence >= 0) {
+            // Binary sample: all six axes are known
+            record(receivedNanos, frame.ax, frame.ay, frame.az, frame.gx, frame.gy, frame.gz,
+                    frame.accel, frame.gyro);
+        } else {
+            record(receivedNanos, Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN,
+                    frame.accel, frame.gyro);
+        }
+    }
+
+    /**
+     * Copies samples {@code from} (inclusive) to {@code to} (exclusive) into the start of
+     * {@code timesOut} and {@code valuesOut}. Safe to call from any thread.
+     *
+     * @return the number of samples copied, or -1 if part of the range was already overwritten
+     */
+    public int copy(long from, long to, long[] timesOut, float[] valuesOut) {
+        if (from < 0 || to < from || to > written) {
+            throw new IllegalArgumentException("range " + from + ".." + to + " not recorded");
+        }
+        int count = (int) (to - from);
+        if (!retained(from) || timesOut.length < count || valuesOut.length < count * WIDTH) {
+            return count == 0 ? 0 : -1;
+        }
+        int first = (int) (from & mask);
+        int head = Math.min(count, capacity - first);
+        System.arraycopy(times, first, timesOut, 0, head);
+        System.arraycopy(values, first * WIDTH, valuesOut, 0, head * WIDTH);
+        System.arraycopy(times, 0, timesOut, head, count - head);
+        System.arraycopy(values, 0, valuesOut, head * WIDTH, (count - head) * WIDTH);
+        // The writer may have wrapped onto the range while it was being copied
+        return retained(from) ? count : -1;
+    }
+
+    /**
+     * @return the index of the oldest sample that is safe to copy
+     */
+    public long oldestRetained() {
+        return Math.max(0, written - capacity + 1);
+    }
+
+    private boolean retained(long index) {
+        // Sample index + capacity may already be half written once written reaches it
+        return written - index < capacity;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.accidentdetection;
+
+import java.io.IOException;
+
+/**
+ * Where a {@link DetectionEngine} gets its telemetry from: the Bluetooth link on the device, or
+ * a stream, recorded trip or simulator on the JVM.
+ */
+public interface SampleSource {
+
+    interface FrameListener {
+        /**
+         * @param buffer        only valid for the duration of the call
+         * @param receivedNanos when the frame arrived, on the {@link System#nanoTime()} scale for
+         *                      live links; replays may use any monotonic scale
+         */
+        void onFrame(byte[] buffer, int offset, int length, long receivedNanos);
+    }
+
+    /**
+     * Blocks until at least one frame is available and hands every complete frame to
+     * {@code listener}, on the calling thread.
+     *
+     * @return false once the source has ended
+     */
+    boolean read(FrameListener listener) throws IOException;
+
+    /**
+     * Called once the sensor has acknowledged binary telemetry; sources that frame the byte
+     * stream themselves switch to binary framing here.
+     */
+    default void onBinaryNegotiated() {
+    }
+}
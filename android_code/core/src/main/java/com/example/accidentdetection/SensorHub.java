@@ -0,0 +1,673 @@
+package com.example.accidentdetection;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps several sensor nodes connected at once (front, rear, cabin) and fuses their telemetry
+ * into one stream for the classifier. Each node gets a {@link Link} with its own thread, frame
+ * reader and parser; its samples are moved from the node's clock onto {@link System#nanoTime()}
+ * and merged by a {@link SampleFuser}.
+ *
+ * Clock alignment uses the node's sample timestamps: the smallest observed gap between a
+ * sample's arrival and its device time is the node's clock offset plus the minimum link delay.
+ * The estimate drops at once and rises slowly, which follows drift without chasing jitter, and
+ * restarts when the node's clock jumps (a reboot). Text telemetry carries no usable timestamp
+ * and is placed at its arrival time.
+ *
+ * By default a link that ends stays ended. After {@link #supervise} the hub keeps every node
+ * connected: a watchdog closes a link that has gone silent for the stall timeout and writes a
+ * heartbeat to the others, so a half-dead socket fails fast instead of blocking a read forever,
+ * and a link that drops retries with jittered exponential backoff. Each reconnect starts a new
+ * session (frame reader, parser sequence, clock offset), and the first frame after it reports
+ * the hole to {@link Listener#onGap} so consumers do not stitch the two sides together.
+ */
+public class SensorHub {
+
+    public interface Listener {
+        /**
+         * A fused bucket; called on a link thread, one call at a time, in time order.
+         *
+         * @param axes        ax ay az gx gy gz of the bucket's peak sample, NaN from text telemetry;
+         *                    only valid for the duration of the call
+         * @param links       bit {@link Link#getIndex()} set for each node that contributed
+         * @param samples     the first link's raw samples in the bucket, six axes each, for a
+         *                    feature window; see {@link SampleFuser}
+         * @param sampleCount samples in {@code samples}
+         */
+        void onFusedSample(long nanos, float accel, float gyro, float[] axes, int links,
+                           float[] samples, int sampleCount);
+
+        /**
+         * A node's own threshold check fired. Called on that node's link thread.
+         */
+        default void onDeviceAlert(Link link, float accel, float gyro, long nanos) {
+        }
+
+        default void onLinkStateChanged(Link link) {
+        }
+
+        /**
+         * Every frame as received, before parsing, e.g. for a trip log. Called on the link's thread.
+         *
+         * @param buffer only valid for the duration of the call
+         */
+        default void onFrame(Link link, byte[] buffer, int offset, int length, long receivedNanos) {
+        }
+
+        /**
+         * No node at all was reporting between the two times, on the fused stream's time scale.
+         * Called like {@link #onFusedSample}, just before the first fused sample after the gap.
+         */
+        default void onStreamGap(long lostNanos, long resumedNanos) {
+        }
+
+        /**
+         * A dropped link is delivering again; nothing was received from the node between the two
+         * times. Called on the link's thread before the first frame of the new session.
+         */
+        default void onGap(Link link, long lostNanos, long resumedNanos) {
+        }
+    }
+
+    public enum LinkState { IDLE, CONNECTING, CONNECTED, BACKOFF, CLOSED }
+
+    // Offsets further apart than this are a clock restart, not drift
+    private static final long CLOCK_JUMP_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int OFFSET_RISE_SHIFT = 10;
+
+    private final Listener listener;
+    private final byte[] telemetryRequest;
+    private final SampleFuser fuser;
+    private final List<Link> links = new ArrayList<>();
+    private volatile boolean started = false;
+    private volatile boolean running = false;
+
+    // Reconnect policy, set before start
+    private boolean supervised = false;
+    private long stallTimeoutNanos;
+    private long heartbeatNanos;
+    private long minBackoffMillis;
+    private long maxBackoffMillis;
+    private Thread watchdog;
+
+    // Time with no node connected, guarded by coverageLock
+    private final Object coverageLock = new Object();
+    private int linksUp = 0;
+    private long outageStartNanos;
+    private long unmonitoredNanos;
+
+    /**
+     * @param fusionPeriodMillis bucket length of the fused stream
+     * @param maxLatencyMillis   how long the fused stream waits for a slow node
+     * @param requestRateHz      sampling rate asked of each node; 0 for the firmware default
+     */
+    public SensorHub(long fusionPeriodMillis, long maxLatencyMillis, int requestRateHz, Listener listener) {
+        this.listener = listener;
+        this.telemetryRequest = requestRateHz > 0 ? BinaryProtocol.commandBytes(requestRateHz)
+                : BinaryProtocol.commandBytes();
+        this.fuser = new SampleFuser(TimeUnit.MILLISECONDS.toNanos(fusionPeriodMillis),
+                TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis), new SampleFuser.Output() {
+                    @Override
+                    public void onFusedSample(long nanos, float accel, float gyro, float[] axes, int contributors,
+                                              float[] samples, int sampleCount) {
+                        listener.onFusedSample(nanos, accel, gyro, axes, contributors, samples, sampleCount);
+                    }
+
+                    @Override
+                    public void onGap(long lostNanos, long resumedNanos) {
+                        listener.onStreamGap(lostNanos, resumedNanos);
+                    }
+                });
+    }
+
+    /**
+     * Adds a node; all nodes are added before {@link #start()}.
+     */
+    public synchronized Link addLink(Transport transport) {
+        if (started) {
+            throw new IllegalStateException("addLink after start");
+        }
+        if (links.size() == SampleFuser.MAX_LINKS) {
+            throw new IllegalStateException("at most " + SampleFuser.MAX_LINKS + " links");
+        }
+        Link link = new Link(links.size(), transport);
+        links.add(link);
+        return link;
+    }
+
+    /**
+     * Keeps the links connected; call before {@link #start()}.
+     *
+     * @param stallTimeoutMillis a connected link that delivers no frame for this long is closed
+     *                           and reconnected
+     * @param heartbeatMillis    interval of the heartbeat written to each connected node; 0 for none
+     * @param minBackoffMillis   first retry delay; doubles per failed attempt
+     * @param maxBackoffMillis   retry delay cap
+     */
+    public synchronized void supervise(long stallTimeoutMillis, long heartbeatMillis,
+                                       long minBackoffMillis, long maxBackoffMillis) {
+        if (started) {
+            throw new IllegalStateException("supervise after start");
+        }
+        if (stallTimeoutMillis <= 0 || heartbeatMillis < 0 || minBackoffMillis <= 0
+                || maxBackoffMillis < minBackoffMillis) {
+            throw new IllegalArgumentException("bad supervision settings");
+        }
+        this.supervised = true;
+        this.stallTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(stallTimeoutMillis);
+        this.heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(heartbeatMillis);
+        this.minBackoffMillis = minBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        running = true;
+        synchronized (coverageLock) {
+            outageStartNanos = System.nanoTime();
+        }
+        for (Link link : links) {
+            link.thread.start();
+        }
+        if (supervised) {
+            watchdog = new Thread(this::watch, "SensorWatchdog");
+            watchdog.setDaemon(true);
+            watchdog.start();
+        }
+    }
+
+    /**
+     * Closes every link and waits up to {@code timeoutMillis} in total for their threads, then
+     * emits what the fuser still holds.
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        Thread dog;
+        synchronized (this) {
+            dog = watchdog;
+        }
+        if (dog != null) {
+            dog.interrupt();
+        }
+        List<Link> all = getLinks();
+        for (Link link : all) {
+            link.transport.close();
+            link.thread.interrupt();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Link link : all) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedJoin(link.thread, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        fuser.flush();
+    }
+
+    private void watch() {
+        long checkNanos = heartbeatNanos > 0 ? Math.min(stallTimeoutNanos, heartbeatNanos) : stallTimeoutNanos;
+        long periodMillis = Math.max(10, TimeUnit.NANOSECONDS.toMillis(checkNanos) / 4);
+        while (running) {
+            try {
+                Thread.sleep(periodMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            for (Link link : getLinks()) {
+                link.check(now);
+            }
+        }
+    }
+
+    /**
+     * Equal jitter: half of the capped exponential delay is fixed, the other half random, so
+     * nodes that dropped together do not retry in lockstep.
+     *
+     * @param random uniform in [0, 1)
+     */
+    static long backoffMillis(int attempt, long minMillis, long maxMillis, double random) {
+        long ceiling = maxMillis;
+        if (attempt < 62 && minMillis <= maxMillis >> attempt) {
+            ceiling = minMillis << attempt;
+        }
+        long half = ceiling / 2;
+        return half + (long) (random * (ceiling - half));
+    }
+
+    private void coverageChanged(boolean up) {
+        synchronized (coverageLock) {
+            long now = System.nanoTime();
+            if (up) {
+                if (linksUp++ == 0) {
+                    unmonitoredNanos += now - outageStartNanos;
+                }
+            } else if (--linksUp == 0) {
+                outageStartNanos = now;
+            }
+        }
+    }
+
+    public synchronized List<Link> getLinks() {
+        return Collections.unmodifiableList(new ArrayList<>(links));
+    }
+
+    /**
+     * @return links currently {@link LinkState#CONNECTED}
+     */
+    public int getConnectedCount() {
+        int connected = 0;
+        for (Link link : getLinks()) {
+            if (link.state == LinkState.CONNECTED) {
+                connected++;
+            }
+        }
+        return connected;
+    }
+
+    public long getFusedSamples() {
+        return fuser.getEmitted();
+    }
+
+    /**
+     * @return time since {@link #start()} with no node connected, including an outage in progress
+     */
+    public long getUnmonitoredMillis(long nowNanos) {
+        synchronized (coverageLock) {
+            long total = unmonitoredNanos;
+            if (started && linksUp == 0) {
+                total += nowNanos - outageStartNanos;
+            }
+            return TimeUnit.NANOSECONDS.toMillis(total);
+        }
+    }
+
+    /**
+     * One node. Counters are written by the link's thread only and may be read from any thread;
+     * stall counting and heartbeats belong to the watchdog.
+     */
+    public final class Link {
+
+        private final int index;
+        private final Transport transport;
+        private final Thread thread;
+
+        // Owned by the link thread; reader and clock are replaced per session
+        private volatile BluetoothFrameReader reader;
+        private final TelemetryParser parser = new TelemetryParser();
+        private final TelemetryFrame frame = new TelemetryFrame();
+        private volatile ClockOffset clock = new ClockOffset();
+        private final Random jitter = new Random();
+        private volatile long crcErrorsBefore;
+
+        private volatile LinkState state = LinkState.IDLE;
+        private volatile String lastError;
+        private volatile long firstConnectedNanos;
+        private volatile long connectedNanos;
+        private volatile long lastFrameNanos;
+        private volatile int sampleRateHz;
+        private volatile long framesReceived;
+        private volatile long samplesReceived;
+        private volatile long samplesLost;
+        private volatile long malformedFrames;
+        private volatile long lateSamples;
+
+        // Supervision
+        private volatile long gapStartNanos;
+        private volatile boolean stalled;
+        private volatile long lastHeartbeatNanos;
+        private volatile long reconnects;
+        private volatile long stalls;
+        private volatile long lastRecoveryNanos;
+        private volatile long maxRecoveryNanos;
+        private volatile long gapNanos;
+
+        Link(int index, Transport transport) {
+            this.index = index;
+            this.transport = transport;
+            this.thread = new Thread(this::run, "SensorLink-" + transport.getName());
+            this.thread.setDaemon(true);
+        }
+
+        private void run() {
+            int attempt = 0;
+            try {
+                while (running) {
+                    long framesBefore = framesReceived;
+                    session();
+                    if (!supervised || !running) {
+                        break;
+                    }
+                    if (framesReceived != framesBefore) {
+                        // The session delivered: retry quickly, and report the hole once data is back
+                        attempt = 0;
+                        gapStartNanos = lastFrameNanos;
+                    }
+                    setState(LinkState.BACKOFF);
+                    Thread.sleep(backoffMillis(attempt++, minBackoffMillis, maxBackoffMillis, jitter.nextDouble()));
+                }
+            } catch (InterruptedException e) {
+                // shutdown
+            } finally {
+                setState(LinkState.CLOSED);
+            }
+        }
+
+        private void session() {
+            stalled = false;
+            setState(LinkState.CONNECTING);
+            boolean up = false;
+            try {
+                InputStream in = transport.connect();
+                BluetoothFrameReader previous = reader;
+                if (previous != null) {
+                    crcErrorsBefore += previous.getCrcErrors();
+                }
+                reader = new BluetoothFrameReader(in);
+                parser.resetSequence();
+                clock = new ClockOffset();
+                connectedNanos = System.nanoTime();
+                if (firstConnectedNanos == 0) {
+                    firstConnectedNanos = connectedNanos;
+                }
+                lastHeartbeatNanos = connectedNanos;
+                fuser.setActive(index, true);
+                up = true;
+                setState(LinkState.CONNECTED);
+                send(telemetryRequest);
+                BluetoothFrameReader.FrameListener frames = this::onFrame;
+                while (!Thread.currentThread().isInterrupted() && reader.readFrames(frames)) {
+                    // frames are handled in onFrame
+                }
+                if (stalled) {
+                    lastError = "stalled";
+                }
+            } catch (IOException e) {
+                lastError = stalled ? "stalled" : e.getMessage();
+            } finally {
+                if (up) {
+                    fuser.setActive(index, false);
+                }
+                transport.close();
+            }
+        }
+
+        private synchronized void send(byte[] data) throws IOException {
+            transport.send(data);
+        }
+
+        /**
+         * Watchdog pass: closes a silent link so its read fails, otherwise keeps the heartbeat going.
+         */
+        private void check(long nowNanos) {
+            if (state != LinkState.CONNECTED || stalled) {
+                return;
+            }
+            if (nowNanos - Math.max(lastFrameNanos, connectedNanos) > stallTimeoutNanos) {
+                stalls++;
+                stalled = true;
+                transport.close();
+                return;
+            }
+            if (heartbeatNanos > 0 && nowNanos - lastHeartbeatNanos >= heartbeatNanos) {
+                lastHeartbeatNanos = nowNanos;
+                try {
+                    send(BinaryProtocol.heartbeatBytes());
+                } catch (IOException e) {
+                    // The read will fail too; closing makes sure it does now
+                    transport.close();
+                }
+            }
+        }
+
+        private void setState(LinkState newState) {
+            LinkState old = state;
+            state = newState;
+            if ((old == LinkState.CONNECTED) != (newState == LinkState.CONNECTED)) {
+                coverageChanged(newState == LinkState.CONNECTED);
+            }
+            listener.onLinkStateChanged(this);
+        }
+
+        private void onFrame(byte[] buffer, int offset, int length) {
+            long receivedNanos = System.nanoTime();
+            long lost = gapStartNanos;
+            if (lost != 0) {
+                gapStartNanos = 0;
+                long recovery = receivedNanos - lost;
+                reconnects++;
+                gapNanos += recovery;
+                lastRecoveryNanos = recovery;
+                maxRecoveryNanos = Math.max(maxRecoveryNanos, recovery);
+                listener.onGap(this, lost, receivedNanos);
+            }
+            framesReceived++;
+            lastFrameNanos = receivedNanos;
+            listener.onFrame(this, buffer, offset, length, receivedNanos);
+            switch (parser.parse(buffer, offset, length, frame)) {
+                case TelemetryFrame.TYPE_SENSOR:
+                    samplesReceived++;
+                    samplesLost += frame.droppedBefore;
+                    if (frame.sequence >= 0) {
+                        // Binary sample: all six axes are known
+                        addSample(clock.align(frame.timestampMillis * 1_000_000L, receivedNanos),
+                                frame.accel, frame.gyro, frame.ax, frame.ay, frame.az, frame.gx, frame.gy, frame.gz);
+                    } else if (!fuser.add(index, receivedNanos, frame.accel, frame.gyro)) {
+                        lateSamples++;
+                    }
+                    break;
+                case TelemetryFrame.TYPE_SAMPLE_BATCH:
+                    onBatch(receivedNanos);
+                    break;
+                case TelemetryFrame.TYPE_PROTOCOL_ACK:
+                    reader.setFraming(BluetoothFrameReader.Framing.BINARY);
+                    sampleRateHz = frame.sampleRateHz;
+                    break;
+                case TelemetryFrame.TYPE_ALERT:
+                    listener.onDeviceAlert(this, frame.alertAccelTotal, frame.alertGyroTotal, receivedNanos);
+                    break;
+                case TelemetryParser.RESULT_MALFORMED:
+                    malformedFrames++;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void onBatch(long receivedNanos) {
+            int count = frame.batchCount;
+            samplesReceived += count;
+            samplesLost += frame.droppedBefore;
+            long intervalNanos = frame.batchIntervalMicros * 1000L;
+            long firstDeviceNanos = frame.timestampMillis * 1_000_000L;
+            // Align on the last sample, the one that just arrived
+            long lastAligned = clock.align(firstDeviceNanos + (count - 1) * intervalNanos, receivedNanos);
+            float baselineZ = parser.getBaselineAccelZ();
+            float[] axes = frame.batchAxes;
+            for (int i = 0, a = 0; i < count; i++, a += 6) {
+                float ax = axes[a];
+                float ay = axes[a + 1];
+                float az = axes[a + 2];
+                float gx = axes[a + 3];
+                float gy = axes[a + 4];
+                float gz = axes[a + 5];
+                float azAdjusted = az - baselineZ;
+                addSample(lastAligned - (count - 1 - i) * intervalNanos,
+                        (float) Math.sqrt(ax * ax + ay * ay + azAdjusted * azAdjusted),
+                        (float) Math.sqrt(gx * gx + gy * gy + gz * gz),
+                        ax, ay, az, gx, gy, gz);
+            }
+        }
+
+        private void addSample(long alignedNanos, float accel, float gyro,
+                               float ax, float ay, float az, float gx, float gy, float gz) {
+            if (!fuser.add(index, alignedNanos, accel, gyro, ax, ay, az, gx, gy, gz)) {
+                lateSamples++;
+            }
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getName() {
+            return transport.getName();
+        }
+
+        public LinkState getState() {
+            return state;
+        }
+
+        /**
+         * @return why the link ended, or null
+         */
+        public String getLastError() {
+            return lastError;
+        }
+
+        /**
+         * @return 0 when the firmware did not report a rate
+         */
+        public int getSampleRateHz() {
+            return sampleRateHz;
+        }
+
+        public long getFramesReceived() {
+            return framesReceived;
+        }
+
+        public long getSamplesReceived() {
+            return samplesReceived;
+        }
+
+        public long getSamplesLost() {
+            return samplesLost;
+        }
+
+        public long getMalformedFrames() {
+            return malformedFrames;
+        }
+
+        public long getCrcErrors() {
+            BluetoothFrameReader r = reader;
+            return crcErrorsBefore + (r == null ? 0 : r.getCrcErrors());
+        }
+
+        /**
+         * @return samples that reached the fuser after their bucket had been emitted
+         */
+        public long getLateSamples() {
+            return lateSamples;
+        }
+
+        /**
+         * @return the node's clock offset onto {@link System#nanoTime()}, including the minimum link delay
+         */
+        public long getClockOffsetNanos() {
+            return clock.offsetNanos;
+        }
+
+        /**
+         * @return milliseconds since the last frame, or -1 before the first
+         */
+        public long getSilenceMillis(long nowNanos) {
+            long last = lastFrameNanos;
+            return last == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nowNanos - last);
+        }
+
+        /**
+         * @return mean samples per second since the link first connected
+         */
+        public double getSamplesPerSecond(long nowNanos) {
+            long since = firstConnectedNanos;
+            long elapsed = nowNanos - since;
+            return since == 0 || elapsed <= 0 ? 0 : samplesReceived * 1e9 / elapsed;
+        }
+
+        /**
+         * @return sessions that resumed delivering after the link dropped
+         */
+        public long getReconnects() {
+            return reconnects;
+        }
+
+        /**
+         * @return links closed by the watchdog for silence
+         */
+        public long getStalls() {
+            return stalls;
+        }
+
+        /**
+         * @return time from the last frame before the latest drop to the first frame after it
+         */
+        public long getLastRecoveryMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(lastRecoveryNanos);
+        }
+
+        public long getMaxRecoveryMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxRecoveryNanos);
+        }
+
+        /**
+         * @return total time lost to drops, including one in progress
+         */
+        public long getUnmonitoredMillis(long nowNanos) {
+            long total = gapNanos;
+            long lost = gapStartNanos;
+            if (lost != 0) {
+                total += nowNanos - lost;
+            }
+            return TimeUnit.NANOSECONDS.toMillis(total);
+        }
+
+        @Override
+        public String toString() {
+            return getName() + " " + state
+                    + " frames=" + framesReceived
+                    + " samples=" + samplesReceived
+                    + " lost=" + samplesLost
+                    + " late=" + lateSamples
+                    + " malformed=" + malformedFrames
+                    + " crcErrors=" + getCrcErrors()
+                    + " reconnects=" + reconnects
+                    + " stalls=" + stalls;
+        }
+    }
+
+    /**
+     * Maps one node's device time onto the receiver's clock. Single-threaded.
+     */
+    static final class ClockOffset {
+
+        volatile long offsetNanos;
+        private boolean known = false;
+
+        long align(long deviceNanos, long receivedNanos) {
+            long candidate = receivedNanos - deviceNanos;
+            if (!known || Math.abs(candidate - offsetNanos) > CLOCK_JUMP_NANOS) {
+                offsetNanos = candidate;
+                known = true;
+            } else if (candidate < offsetNanos) {
+                offsetNanos = candidate;
+            } else {
+                offsetNanos += (candidate - offsetNanos) >> OFFSET_RISE_SHIFT;
+            }
+            return deviceNanos + offsetNanos;
+        }
+    }
+}
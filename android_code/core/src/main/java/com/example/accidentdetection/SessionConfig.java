@@ -0,0 +1,145 @@
+package com.example.accidentdetection;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+/**
+ * ONNX Runtime session settings for the detection model.
+ *
+ * The runtime's defaults size the intra-op pool to every core and let idle workers spin,
+ * which is wasted power for a model this small on a phone that monitors all day.
+ * {@link #lowPower()} is what the app uses; the setters exist for tuning and for the
+ * benchmark sweep. Setters return {@code this} so settings can be chained.
+ */
+public class SessionConfig {
+
+    private int intraOpThreads = 1;
+    private int interOpThreads = 1;
+    private OrtSession.SessionOptions.OptLevel optLevel = OrtSession.SessionOptions.OptLevel.EXTENDED_OPT;
+    private OrtSession.SessionOptions.ExecutionMode executionMode = OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL;
+    private boolean memoryPattern = true;
+    private boolean cpuArena = true;
+    private boolean allowSpinning = false;
+    private String optimizedModelPath = null;
+
+    /**
+     * One thread, sequential execution, no spin-waiting.
+     */
+    public static SessionConfig lowPower() {
+        return new SessionConfig();
+    }
+
+    /**
+     * @param threads intra-op thread count; 0 lets ONNX Runtime use one per core
+     */
+    public SessionConfig intraOpThreads(int threads) {
+        this.intraOpThreads = threads;
+        return this;
+    }
+
+    /**
+     * @param threads inter-op thread count; only used with parallel execution
+     */
+    public SessionConfig interOpThreads(int threads) {
+        this.interOpThreads = threads;
+        return this;
+    }
+
+    public SessionConfig optLevel(OrtSession.SessionOptions.OptLevel level) {
+        this.optLevel = level;
+        return this;
+    }
+
+    public SessionConfig executionMode(OrtSession.SessionOptions.ExecutionMode mode) {
+        this.executionMode = mode;
+        return this;
+    }
+
+    public SessionConfig memoryPattern(boolean enabled) {
+        this.memoryPattern = enabled;
+        return this;
+    }
+
+    public SessionConfig cpuArena(boolean enabled) {
+        this.cpuArena = enabled;
+        return this;
+    }
+
+    /**
+     * Lets idle intra-op workers busy-wait for the next run. Lowers latency slightly
+     * with more than one thread, at the cost of burning CPU between samples.
+     */
+    public SessionConfig allowSpinning(boolean enabled) {
+        this.allowSpinning = enabled;
+        return this;
+    }
+
+    /**
+     * Saves the graph after optimization to {@code path}, so later starts can load it with
+     * optimization turned off. Null disables saving.
+     */
+    public SessionConfig optimizedModelPath(String path) {
+        this.optimizedModelPath = path;
+        return this;
+    }
+
+    public int getIntraOpThreads() {
+        return intraOpThreads;
+    }
+
+    public OrtSession.SessionOptions.OptLevel getOptLevel() {
+        return optLevel;
+    }
+
+    public String getOptimizedModelPath() {
+        return optimizedModelPath;
+    }
+
+    public SessionConfig copy() {
+        SessionConfig copy = new SessionConfig();
+        copy.intraOpThreads = intraOpThreads;
+        copy.interOpThreads = interOpThreads;
+        copy.optLevel = optLevel;
+        copy.executionMode = executionMode;
+        copy.memoryPattern = memoryPattern;
+        copy.cpuArena = cpuArena;
+        copy.allowSpinning = allowSpinning;
+        copy.optimizedModelPath = optimizedModelPath;
+        return copy;
+    }
+
+    /**
+     * Builds a new options object; the caller closes it once the session has been created.
+     */
+    public OrtSession.SessionOptions toSessionOptions() throws OrtException {
+        OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+        try {
+            options.setIntraOpNumThreads(intraOpThreads);
+            options.setInterOpNumThreads(interOpThreads);
+            options.setOptimizationLevel(optLevel);
+            options.setExecutionMode(executionMode);
+            options.setMemoryPatternOptimization(memoryPattern);
+            options.setCPUArenaAllocator(cpuArena);
+            options.addConfigEntry("session.intra_op.allow_spinning", allowSpinning ? "1" : "0");
+            if (optimizedModelPath != null) {
+                options.setOptimizedModelFilePath(optimizedModelPath);
+            }
+            return options;
+        } catch (OrtException e) {
+            options.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "intraOp=" + intraOpThreads
+                + " interOp=" + interOpThreads
+                + " opt=" + optLevel
+                + " mode=" + executionMode
+                + " memPattern=" + memoryPattern
+                + " arena=" + cpuArena
+                + " spinning=" + allowSpinning
+                + (optimizedModelPath != null ? " saveTo=" + optimizedModelPath : "");
+    }
+}
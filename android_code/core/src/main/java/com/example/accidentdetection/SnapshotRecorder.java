@@ -0,0 +1,241 @@
+package com.example.accidentdetection;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Saves the telemetry around an alert from a {@link SampleHistory} to a {@link CrashSnapshot} file.
+ *
+ * {@link #trigger} only notes the time; a worker thread waits until the post-trigger window has
+ * been recorded, copies the window out of the ring and writes it, so neither the caller nor the
+ * thread recording samples does any I/O. One capture runs at a time and triggers during it are
+ * ignored. Only the newest {@code maxFiles} snapshots are kept.
+ */
+public class SnapshotRecorder {
+
+    public static final String FILE_PREFIX = "snapshot-";
+    public static final String FILE_SUFFIX = ".bin";
+
+    public interface Listener {
+        /**
+         * Called on the worker thread.
+         */
+        void onSnapshotSaved(File file, int samples);
+
+        void onSnapshotFailed(IOException e);
+    }
+
+    private final SampleHistory history;
+    private final File directory;
+    private final long preNanos;
+    private final long postNanos;
+    private final int maxFiles;
+    private final Listener listener;
+    private final Thread worker;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // Guarded by lock
+    private boolean pending = false;
+    private boolean shutdown = false;
+    private String reason;
+    private long triggerNanos;
+    private long triggerWallClockMillis;
+
+    private volatile long saved = 0;
+    private volatile long failed = 0;
+
+    /**
+     * @param preMillis  history kept from before the trigger; should stay well inside the ring
+     * @param postMillis history kept from after the trigger
+     * @param listener   may be null
+     */
+    public SnapshotRecorder(SampleHistory history, File directory, long preMillis, long postMillis,
+                            int maxFiles, Listener listener) {
+        if (preMillis < 0 || postMillis < 0 || maxFiles < 1) {
+            throw new IllegalArgumentException("windows must be >= 0 and maxFiles >= 1");
+        }
+        this.history = history;
+        this.directory = directory;
+        this.preNanos = TimeUnit.MILLISECONDS.toNanos(preMillis);
+        this.postNanos = TimeUnit.MILLISECONDS.toNanos(postMillis);
+        this.maxFiles = maxFiles;
+        this.listener = listener;
+        this.worker = new Thread(this::workLoop, "SnapshotWriter");
+        this.worker.setDaemon(true);
+    }
+
+    public void start() {
+        worker.start();
+    }
+
+    /**
+     * Marks now as the moment of an alert. Timestamps in the history must come from
+     * {@link System#nanoTime()} for the windows to line up.
+     *
+     * @return false if a capture is already in progress or the recorder was shut down
+     */
+    public boolean trigger(String reason) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            if (pending || shutdown) {
+                return false;
+            }
+            this.pending = true;
+            this.reason = reason;
+            this.triggerNanos = now;
+            this.triggerWallClockMillis = System.currentTimeMillis();
+            changed.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the worker. A capture still waiting for its post-trigger window is written
+     * right away with what has been recorded so far.
+     */
+    public void shutdown(long timeoutMillis) {
+        lock.lock();
+        try {
+            shutdown = true;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            worker.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getSaved() {
+        return saved;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    private void workLoop() {
+        // Scratch space for the whole ring, allocated once
+        long[] times = new long[history.getCapacity()];
+        float[] values = new float[history.getCapacity() * SampleHistory.WIDTH];
+        while (true) {
+            String captureReason;
+            long captureNanos;
+            long captureWallClock;
+            lock.lock();
+            try {
+                while (!pending && !shutdown) {
+                    changed.awaitUninterruptibly();
+                }
+                if (!pending) {
+                    return;
+                }
+                // Let the post-trigger window fill up
+                long remaining;
+                while (!shutdown && (remaining = triggerNanos + postNanos - System.nanoTime()) > 0) {
+                    changed.awaitNanos(remaining);
+                }
+                captureReason = reason;
+                captureNanos = triggerNanos;
+                captureWallClock = triggerWallClockMillis;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                int samples = capture(captureReason, captureNanos, captureWallClock, times, values);
+                saved++;
+                if (listener != null) {
+                    listener.onSnapshotSaved(new File(directory, fileName(captureWallClock)), samples);
+                }
+            } catch (IOException e) {
+                failed++;
+                if (listener != null) {
+                    listener.onSnapshotFailed(e);
+                }
+            }
+
+            lock.lock();
+            try {
+                pending = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private int capture(String reason, long triggerNanos, long wallClockMillis,
+                        long[] times, float[] values) throws IOException {
+        int count = -1;
+        // Stay a little behind the writer so it cannot lap the range while it is copied
+        int margin = history.getCapacity() / 8;
+        for (int attempt = 0; attempt < 3 && count < 0; attempt++) {
+            long end = history.getWritten();
+            long start = Math.max(0, end - history.getCapacity() + margin);
+            count = history.copy(start, end, times, values);
+        }
+        if (count < 0) {
+            throw new IOException("History overwritten while copying");
+        }
+
+        int from = 0;
+        while (from < count && times[from] < triggerNanos - preNanos) {
+            from++;
+        }
+        int to = count;
+        while (to > from && times[to - 1] > triggerNanos + postNanos) {
+            to--;
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File target = new File(directory, fileName(wallClockMillis));
+        File tmp = new File(directory, target.getName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+            CrashSnapshot.write(out, reason, wallClockMillis, triggerNanos, times, values, from, to - from);
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("Cannot rename " + tmp + " to " + target);
+        }
+        pruneOldSnapshots();
+        return to - from;
+    }
+
+    private void pruneOldSnapshots() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (files == null || files.length <= maxFiles) {
+            return;
+        }
+        // Names embed a fixed-width timestamp, so name order is age order
+        Arrays.sort(files);
+        for (int i = 0; i < files.length - maxFiles; i++) {
+            files[i].delete();
+        }
+    }
+
+    static String fileName(long wallClockMillis) {
+        return FILE_PREFIX + String.format(Locale.ROOT, "%013d", wallClockMillis) + FILE_SUFFIX;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.accidentdetection;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A {@link SampleSource} over a raw telemetry byte stream, such as a Bluetooth socket or a file
+ * written by {@link TelemetrySimulator}. Frames are split by a {@link BluetoothFrameReader} and
+ * stamped with {@link System#nanoTime()} as they are read.
+ */
+public class StreamSampleSource implements SampleSource {
+
+    private final BluetoothFrameReader reader;
+    private FrameListener listener;
+    private final BluetoothFrameReader.FrameListener stamper = this::stamp;
+
+    public StreamSampleSource(InputStream in) {
+        this.reader = new BluetoothFrameReader(in);
+    }
+
+    @Override
+    public boolean read(FrameListener listener) throws IOException {
+        this.listener = listener;
+        return reader.readFrames(stamper);
+    }
+
+    @Override
+    public void onBinaryNegotiated() {
+        reader.setFraming(BluetoothFrameReader.Framing.BINARY);
+    }
+
+    private void stamp(byte[] buffer, int offset, int length) {
+        listener.onFrame(buffer, offset, length, System.nanoTime());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.accidentdetection;
+
+/**
+ * Mutable holder for one decoded telemetry line or binary frame from the ESP32.
+ *
+ * A single instance is reused for every line so the parse path stays allocation-free;
+ * copy the fields out if they need to outlive the next call to the parser.
+ */
+public class TelemetryFrame {
+
+    // Line types, matching what AD.ino sends
+    public static final int TYPE_NONE = 0;
+    public static final int TYPE_SENSOR = 1;             // ACCEL:x GYRO:y STATUS:OK|ALERT
+    public static final int TYPE_ALERT = 2;              // ALERT:ACCIDENT_DETECTED
+    public static final int TYPE_ALERT_TIME = 3;         // TIME:millis
+    public static final int TYPE_ALERT_ACCEL_TOTAL = 4;  // ACCEL_TOTAL:x
+    public static final int TYPE_ALERT_GYRO_TOTAL = 5;   // GYRO_TOTAL:y
+    public static final int TYPE_ALERT_END = 6;          // ---
+    public static final int TYPE_PROTOCOL_ACK = 7;       // PROTO:OK BIN1, binary frames follow
+    public static final int TYPE_SAMPLE_BATCH = 8;       // binary batch of high-rate samples
+    public static final int TYPE_FUSED = 9;              // one fused bucket, as the app logs it
+
+    public int type = TYPE_NONE;
+
+    // Latest sensor line
+    public float accel;          // m/s², gravity removed
+    public float gyro;           // deg/s
+    public boolean statusAlert;  // STATUS:ALERT
+
+    // Binary frames only: raw axes and sequencing, set alongside accel and gyro
+    public int sequence = -1;
+    public long timestampMillis;             // ESP32 millis() at sampling time
+    public float ax, ay, az;                 // m/s², gravity included
+    public float gx, gy, gz;                 // deg/s
+    public int droppedBefore;                // samples missing between this frame and the previous
+    public int sampleRateHz;                 // from PROTO:OK; 0 when the firmware did not switch to high rate
+
+    // Sample batches: ax ay az gx gy gz per sample, same units as above. accel and gyro hold the
+    // peak magnitudes across the batch and the axis fields above hold its last sample.
+    public final float[] batchAxes = new float[BinaryProtocol.MAX_BATCH_SAMPLES * 6];
+    public int batchCount;
+    public int batchIntervalMicros;
+
+    // Fused buckets: accel and gyro hold the bucket's peaks, the axis fields the peak sample's axes
+    // (NaN when unknown) and the batch fields the window node's samples, possibly none
+    public int fusedLinks;
+    public long fusedGapMillis;
+
+    // Alert block from triggerAccidentAlert(); fields are filled in as the lines arrive
+    public long alertTimeMillis;
+    public float alertAccelTotal = Float.NaN;
+    public float alertGyroTotal = Float.NaN;
+
+    public void clearAlert() {
+        alertTimeMillis = 0L;
+        alertAccelTotal = Float.NaN;
+        alertGyroTotal = Float.NaN;
+    }
+}
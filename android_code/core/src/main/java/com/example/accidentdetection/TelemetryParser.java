@@ -0,0 +1,498 @@
+package com.example.accidentdetection;
+
+/**
+ * Parses the ESP32 telemetry straight from bytes into a reusable {@link TelemetryFrame}.
+ *
+ * Understands the lines sent by sendSensorData() and triggerAccidentAlert() in AD.ino, and
+ * the {@link BinaryProtocol} frames it sends instead once binary mode is negotiated; a frame
+ * starting with the sync word is decoded as binary. Numbers are decoded in place, so no
+ * intermediate Strings are created. A malformed frame returns {@link #RESULT_MALFORMED} and
+ * leaves the reason in {@link #getLastError()}.
+ */
+public class TelemetryParser {
+
+    public static final int RESULT_MALFORMED = -1;
+
+    public static final int ERROR_NONE = 0;
+    public static final int ERROR_UNKNOWN_KEY = 1;
+    public static final int ERROR_BAD_NUMBER = 2;
+    public static final int ERROR_MISSING_FIELD = 3;
+    public static final int ERROR_BAD_STATUS = 4;
+    public static final int ERROR_EMPTY = 5;
+    public static final int ERROR_BAD_FRAME = 6;
+    public static final int ERROR_UNSUPPORTED_VERSION = 7;
+
+    // Gravity removed from the Z axis of binary samples, as sendSensorData() does with its calibrated baseline
+    public static final float DEFAULT_BASELINE_ACCEL_Z = 9.81f;
+
+    private static final byte[] KEY_ACCEL = ascii("ACCEL");
+    private static final byte[] KEY_GYRO = ascii("GYRO");
+    private static final byte[] KEY_STATUS = ascii("STATUS");
+    private static final byte[] KEY_ALERT = ascii("ALERT");
+    private static final byte[] KEY_TIME = ascii("TIME");
+    private static final byte[] KEY_ACCEL_TOTAL = ascii("ACCEL_TOTAL");
+    private static final byte[] KEY_GYRO_TOTAL = ascii("GYRO_TOTAL");
+    private static final byte[] KEY_PROTO = ascii("PROTO");
+    private static final byte[] VALUE_PROTO_OK = ascii(BinaryProtocol.REPLY_BINARY.substring(KEY_PROTO.length + 1));
+    private static final byte[] VALUE_RATE = ascii(BinaryProtocol.RATE_SUFFIX);
+    private static final byte[] VALUE_OK = ascii("OK");
+    private static final byte[] VALUE_ALERT = ascii("ALERT");
+    private static final byte[] ALERT_END = ascii("---");
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+    };
+
+    private int lastError = ERROR_NONE;
+    private int errorOffset = -1;
+    private long malformedCount = 0;
+    private float baselineAccelZ = DEFAULT_BASELINE_ACCEL_Z;
+
+    // Binary frame sequencing
+    private int lastSequence = -1;
+    private long droppedFrames = 0;
+
+    // Scratch results of the number decoders
+    private float parsedFloat;
+    private long parsedLong;
+
+    /**
+     * Parses one line (without its newline) into {@code out}.
+     *
+     * @return one of the {@code TelemetryFrame.TYPE_*} constants, or {@link #RESULT_MALFORMED}
+     */
+    public int parse(byte[] buf, int offset, int length, TelemetryFrame out) {
+        if (length >= 2 && buf[offset] == BinaryProtocol.SYNC_0 && buf[offset + 1] == BinaryProtocol.SYNC_1) {
+            return parseBinary(buf, offset, length, out);
+        }
+        int end = offset + length;
+        int pos = skipSpaces(buf, offset, end);
+        while (end > pos && buf[end - 1] == ' ') end--;
+        if (pos == end) {
+            return fail(ERROR_EMPTY, pos);
+        }
+
+        if (regionEquals(buf, pos, end, ALERT_END)) {
+            out.type = TelemetryFrame.TYPE_ALERT_END;
+            return out.type;
+        }
+
+        int colon = indexOf(buf, pos, end, (byte) ':');
+        if (colon < 0) {
+            return fail(ERROR_UNKNOWN_KEY, pos);
+        }
+
+        if (regionEquals(buf, pos, colon, KEY_ACCEL) || regionEquals(buf, pos, colon, KEY_GYRO)) {
+            return parseSensorLine(buf, pos, end, out);
+        }
+        if (regionEquals(buf, pos, colon, KEY_ALERT)) {
+            // The value is informational ("ACCIDENT_DETECTED"); the key alone marks the block
+            out.clearAlert();
+            out.type = TelemetryFrame.TYPE_ALERT;
+            return out.type;
+        }
+        if (regionEquals(buf, pos, colon, KEY_TIME)) {
+            if (!parseLong(buf, colon + 1, end)) return fail(ERROR_BAD_NUMBER, colon + 1);
+            out.alertTimeMillis = parsedLong;
+            out.type = TelemetryFrame.TYPE_ALERT_TIME;
+            return out.type;
+        }
+        if (regionEquals(buf, pos, colon, KEY_ACCEL_TOTAL)) {
+            if (!parseFloat(buf, colon + 1, end)) return fail(ERROR_BAD_NUMBER, colon + 1);
+            out.alertAccelTotal = parsedFloat;
+            out.type = TelemetryFrame.TYPE_ALERT_ACCEL_TOTAL;
+            return out.type;
+        }
+        if (regionEquals(buf, pos, colon, KEY_GYRO_TOTAL)) {
+            if (!parseFloat(buf, colon + 1, end)) return fail(ERROR_BAD_NUMBER, colon + 1);
+            out.alertGyroTotal = parsedFloat;
+            out.type = TelemetryFrame.TYPE_ALERT_GYRO_TOTAL;
+            return out.type;
+        }
+        if (regionEquals(buf, pos, colon, KEY_PROTO)) {
+            int valueEnd = colon + 1 + VALUE_PROTO_OK.length;
+            if (valueEnd > end || !regionEquals(buf, colon + 1, valueEnd, VALUE_PROTO_OK)) {
+                return fail(ERROR_UNSUPPORTED_VERSION, colon + 1);
+            }
+            int rate = 0;
+            if (valueEnd < end) {
+                int rateStart = valueEnd + VALUE_RATE.length;
+                if (rateStart > end || !regionEquals(buf, valueEnd, rateStart, VALUE_RATE)) {
+                    return fail(ERROR_UNKNOWN_KEY, valueEnd);
+                }
+                if (!parseLong(buf, rateStart, end)) return fail(ERROR_BAD_NUMBER, rateStart);
+                rate = (int) parsedLong;
+            }
+            // The firmware restarts its sequence numbers when it switches
+            lastSequence = -1;
+            out.sampleRateHz = rate;
+            out.type = TelemetryFrame.TYPE_PROTOCOL_ACK;
+            return out.type;
+        }
+        return fail(ERROR_UNKNOWN_KEY, pos);
+    }
+
+    /**
+     * "ACCEL:1.23 GYRO:4.56 STATUS:OK". Fields are space separated and may come in any order;
+     * ACCEL and GYRO are required.
+     */
+    private int parseSensorLine(byte[] buf, int pos, int end, TelemetryFrame out) {
+        boolean hasAccel = false;
+        boolean hasGyro = false;
+        boolean alert = false;
+        float accel = 0f;
+        float gyro = 0f;
+
+        while (pos < end) {
+            int tokenEnd = indexOf(buf, pos, end, (byte) ' ');
+            if (tokenEnd < 0) tokenEnd = end;
+            int colon = indexOf(buf, pos, tokenEnd, (byte) ':');
+            if (colon < 0) {
+                return fail(ERROR_UNKNOWN_KEY, pos);
+            }
+
+            if (regionEquals(buf, pos, colon, KEY_ACCEL)) {
+                if (!parseFloat(buf, colon + 1, tokenEnd)) return fail(ERROR_BAD_NUMBER, colon + 1);
+                accel = parsedFloat;
+                hasAccel = true;
+            } else if (regionEquals(buf, pos, colon, KEY_GYRO)) {
+                if (!parseFloat(buf, colon + 1, tokenEnd)) return fail(ERROR_BAD_NUMBER, colon + 1);
+                gyro = parsedFloat;
+                hasGyro = true;
+            } else if (regionEquals(buf, pos, colon, KEY_STATUS)) {
+                if (regionEquals(buf, colon + 1, tokenEnd, VALUE_ALERT)) {
+                    alert = true;
+                } else if (!regionEquals(buf, colon + 1, tokenEnd, VALUE_OK)) {
+                    return fail(ERROR_BAD_STATUS, colon + 1);
+                }
+            } else {
+                return fail(ERROR_UNKNOWN_KEY, pos);
+            }
+            pos = skipSpaces(buf, tokenEnd, end);
+        }
+
+        if (!hasAccel || !hasGyro) {
+            return fail(ERROR_MISSING_FIELD, end);
+        }
+        out.accel = accel;
+        out.gyro = gyro;
+        out.statusAlert = alert;
+        // Text lines carry no sequence number, and so no axes
+        out.sequence = -1;
+        out.type = TelemetryFrame.TYPE_SENSOR;
+        return out.type;
+    }
+
+    /**
+     * One complete {@link BinaryProtocol} frame, already length- and CRC-checked by the reader.
+     */
+    private int parseBinary(byte[] buf, int offset, int length, TelemetryFrame out) {
+        if (length < BinaryProtocol.HEADER_SIZE + BinaryProtocol.CRC_SIZE) {
+            return fail(ERROR_BAD_FRAME, offset);
+        }
+        if ((buf[offset + 2] & 0xFF) != BinaryProtocol.VERSION) {
+            return fail(ERROR_UNSUPPORTED_VERSION, offset + 2);
+        }
+        int type = buf[offset + 3] & 0xFF;
+        int payloadLength = BinaryProtocol.u16(buf, offset + 4);
+        if (BinaryProtocol.frameLength(payloadLength) != length) {
+            return fail(ERROR_BAD_FRAME, offset + 4);
+        }
+        int p = offset + BinaryProtocol.HEADER_SIZE;
+
+        switch (type) {
+            case BinaryProtocol.TYPE_SAMPLE: {
+                if (payloadLength != BinaryProtocol.SAMPLE_PAYLOAD) return fail(ERROR_BAD_FRAME, p);
+                readSequence(buf, p, out);
+                out.timestampMillis = BinaryProtocol.u32(buf, p + 2);
+                out.ax = BinaryProtocol.i16(buf, p + 6) * BinaryProtocol.ACCEL_LSB;
+                out.ay = BinaryProtocol.i16(buf, p + 8) * BinaryProtocol.ACCEL_LSB;
+                out.az = BinaryProtocol.i16(buf, p + 10) * BinaryProtocol.ACCEL_LSB;
+                out.gx = BinaryProtocol.i16(buf, p + 12) * BinaryProtocol.GYRO_LSB;
+                out.gy = BinaryProtocol.i16(buf, p + 14) * BinaryProtocol.GYRO_LSB;
+                out.gz = BinaryProtocol.i16(buf, p + 16) * BinaryProtocol.GYRO_LSB;
+                out.statusAlert = (buf[p + 18] & BinaryProtocol.FLAG_ALERT) != 0;
+                float azAdjusted = out.az - baselineAccelZ;
+                out.accel = (float) Math.sqrt(out.ax * out.ax + out.ay * out.ay + azAdjusted * azAdjusted);
+                out.gyro = (float) Math.sqrt(out.gx * out.gx + out.gy * out.gy + out.gz * out.gz);
+                out.type = TelemetryFrame.TYPE_SENSOR;
+                return out.type;
+            }
+            case BinaryProtocol.TYPE_SAMPLE_BATCH:
+                return parseBatch(buf, p, payloadLength, out);
+            case BinaryProtocol.TYPE_FUSED:
+                return parseFused(buf, p, payloadLength, out);
+            case BinaryProtocol.TYPE_ALERT: {
+                if (payloadLength != BinaryProtocol.ALERT_PAYLOAD) return fail(ERROR_BAD_FRAME, p);
+                readSequence(buf, p, out);
+                out.clearAlert();
+                out.alertTimeMillis = BinaryProtocol.u32(buf, p + 2);
+                out.timestampMillis = out.alertTimeMillis;
+                out.alertAccelTotal = BinaryProtocol.i16(buf, p + 6) * BinaryProtocol.ACCEL_LSB;
+                out.alertGyroTotal = BinaryProtocol.i16(buf, p + 8) * BinaryProtocol.GYRO_LSB;
+                out.type = TelemetryFrame.TYPE_ALERT;
+                return out.type;
+            }
+            default:
+                return fail(ERROR_UNKNOWN_KEY, offset + 3);
+        }
+    }
+
+    private int parseBatch(byte[] buf, int p, int payloadLength, TelemetryFrame out) {
+        if (payloadLength < BinaryProtocol.BATCH_HEADER) return fail(ERROR_BAD_FRAME, p);
+        int count = buf[p + 8] & 0xFF;
+        if (count < 1 || count > BinaryProtocol.MAX_BATCH_SAMPLES
+                || payloadLength != BinaryProtocol.BATCH_HEADER + count * BinaryProtocol.BATCH_SAMPLE_SIZE) {
+            return fail(ERROR_BAD_FRAME, p + 8);
+        }
+        readSequence(buf, p, count, out);
+        out.timestampMillis = BinaryProtocol.u32(buf, p + 2);
+        out.batchIntervalMicros = BinaryProtocol.u16(buf, p + 6);
+        out.statusAlert = (buf[p + 9] & BinaryProtocol.FLAG_ALERT) != 0;
+        out.batchCount = count;
+
+        float[] axes = out.batchAxes;
+        float peakAccel2 = 0f;
+        float peakGyro2 = 0f;
+        int q = p + BinaryProtocol.BATCH_HEADER;
+        for (int i = 0, a = 0; i < count; i++, a += 6, q += BinaryProtocol.BATCH_SAMPLE_SIZE) {
+            float ax = BinaryProtocol.i16(buf, q) * BinaryProtocol.ACCEL_LSB;
+            float ay = BinaryProtocol.i16(buf, q + 2) * BinaryProtocol.ACCEL_LSB;
+            float az = BinaryProtocol.i16(buf, q + 4) * BinaryProtocol.ACCEL_LSB;
+            float gx = BinaryProtocol.i16(buf, q + 6) * BinaryProtocol.GYRO_LSB;
+            float gy = BinaryProtocol.i16(buf, q + 8) * BinaryProtocol.GYRO_LSB;
+            float gz = BinaryProtocol.i16(buf, q + 10) * BinaryProtocol.GYRO_LSB;
+            axes[a] = ax;
+            axes[a + 1] = ay;
+            axes[a + 2] = az;
+            axes[a + 3] = gx;
+            axes[a + 4] = gy;
+            axes[a + 5] = gz;
+            float azAdjusted = az - baselineAccelZ;
+            peakAccel2 = Math.max(peakAccel2, ax * ax + ay * ay + azAdjusted * azAdjusted);
+            peakGyro2 = Math.max(peakGyro2, gx * gx + gy * gy + gz * gz);
+        }
+        int last = (count - 1) * 6;
+        out.ax = axes[last];
+        out.ay = axes[last + 1];
+        out.az = axes[last + 2];
+        out.gx = axes[last + 3];
+        out.gy = axes[last + 4];
+        out.gz = axes[last + 5];
+        // Peaks, so a crash impulse shorter than the batch still reaches the detector
+        out.accel = (float) Math.sqrt(peakAccel2);
+        out.gyro = (float) Math.sqrt(peakGyro2);
+        out.type = TelemetryFrame.TYPE_SAMPLE_BATCH;
+        return out.type;
+    }
+
+    /**
+     * Fused frames are written by the app and carry no sequence number of their own.
+     */
+    private int parseFused(byte[] buf, int p, int payloadLength, TelemetryFrame out) {
+        if (payloadLength < BinaryProtocol.FUSED_HEADER) return fail(ERROR_BAD_FRAME, p);
+        int count = buf[p + 25] & 0xFF;
+        if (count > BinaryProtocol.MAX_FUSED_SAMPLES
+                || payloadLength != BinaryProtocol.FUSED_HEADER + count * BinaryProtocol.BATCH_SAMPLE_SIZE) {
+            return fail(ERROR_BAD_FRAME, p + 25);
+        }
+        out.sequence = -1;
+        out.droppedBefore = 0;
+        out.statusAlert = false;
+        out.fusedLinks = (int) BinaryProtocol.u32(buf, p);
+        out.fusedGapMillis = BinaryProtocol.u32(buf, p + 4);
+        out.accel = BinaryProtocol.i16(buf, p + 9) * BinaryProtocol.ACCEL_LSB;
+        out.gyro = BinaryProtocol.i16(buf, p + 11) * BinaryProtocol.GYRO_LSB;
+        if ((buf[p + 8] & BinaryProtocol.FUSED_FLAG_AXES) != 0) {
+            out.ax = BinaryProtocol.i16(buf, p + 13) * BinaryProtocol.ACCEL_LSB;
+            out.ay = BinaryProtocol.i16(buf, p + 15) * BinaryProtocol.ACCEL_LSB;
+            out.az = BinaryProtocol.i16(buf, p + 17) * BinaryProtocol.ACCEL_LSB;
+            out.gx = BinaryProtocol.i16(buf, p + 19) * BinaryProtocol.GYRO_LSB;
+            out.gy = BinaryProtocol.i16(buf, p + 21) * BinaryProtocol.GYRO_LSB;
+            out.gz = BinaryProtocol.i16(buf, p + 23) * BinaryProtocol.GYRO_LSB;
+        } else {
+            out.ax = out.ay = out.az = out.gx = out.gy = out.gz = Float.NaN;
+        }
+        float[] axes = out.batchAxes;
+        int q = p + BinaryProtocol.FUSED_HEADER;
+        for (int a = 0; a < count * 6; a += 6, q += BinaryProtocol.BATCH_SAMPLE_SIZE) {
+            axes[a] = BinaryProtocol.i16(buf, q) * BinaryProtocol.ACCEL_LSB;
+            axes[a + 1] = BinaryProtocol.i16(buf, q + 2) * BinaryProtocol.ACCEL_LSB;
+            axes[a + 2] = BinaryProtocol.i16(buf, q + 4) * BinaryProtocol.ACCEL_LSB;
+            axes[a + 3] = BinaryProtocol.i16(buf, q + 6) * BinaryProtocol.GYRO_LSB;
+            axes[a + 4] = BinaryProtocol.i16(buf, q + 8) * BinaryProtocol.GYRO_LSB;
+            axes[a + 5] = BinaryProtocol.i16(buf, q + 10) * BinaryProtocol.GYRO_LSB;
+        }
+        out.batchCount = count;
+        out.type = TelemetryFrame.TYPE_FUSED;
+        return out.type;
+    }
+
+    private void readSequence(byte[] buf, int p, TelemetryFrame out) {
+        readSequence(buf, p, 1, out);
+    }
+
+    /**
+     * A frame that repeats the last sequence number (alerts in high-rate mode are stamped with
+     * the last sample sent) is not a gap.
+     *
+     * @param count samples covered by the frame, numbered consecutively from its sequence number
+     */
+    private void readSequence(byte[] buf, int p, int count, TelemetryFrame out) {
+        int sequence = BinaryProtocol.u16(buf, p);
+        int dropped = lastSequence < 0 || sequence == lastSequence ? 0 : (sequence - lastSequence - 1) & 0xFFFF;
+        droppedFrames += dropped;
+        lastSequence = (sequence + count - 1) & 0xFFFF;
+        out.sequence = sequence;
+        out.droppedBefore = dropped;
+    }
+
+    /**
+     * Forgets the last binary sequence number, e.g. after reconnecting, so the next frame
+     * is not counted as a gap.
+     */
+    public void resetSequence() {
+        lastSequence = -1;
+    }
+
+    /**
+     * @param baselineAccelZ resting Z acceleration to remove before computing the accel magnitude of binary samples
+     */
+    public void setBaselineAccelZ(float baselineAccelZ) {
+        this.baselineAccelZ = baselineAccelZ;
+    }
+
+    public float getBaselineAccelZ() {
+        return baselineAccelZ;
+    }
+
+    /**
+     * @return binary samples missing from the stream, judged by gaps in their sequence numbers
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Decodes [-]digits[.digits] as printed by Arduino's String(float, decimals).
+     * Anything else ("nan", "inf", "ovf", exponents) is rejected.
+     */
+    private boolean parseFloat(byte[] buf, int pos, int end) {
+        if (pos < end && buf[pos] == '+') pos++;
+        boolean negative = false;
+        if (pos < end && buf[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        for (; pos < end; pos++) {
+            int c = buf[pos];
+            if (c >= '0' && c <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                    if (seenPoint) fractionDigits++;
+                } else if (!seenPoint) {
+                    return false; // too large for a sensor reading
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                return false;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+
+        double value = mantissa / POW10[fractionDigits];
+        parsedFloat = (float) (negative ? -value : value);
+        return true;
+    }
+
+    private boolean parseLong(byte[] buf, int pos, int end) {
+        if (pos >= end || end - pos > 18) {
+            return false;
+        }
+        long value = 0;
+        for (; pos < end; pos++) {
+            int c = buf[pos];
+            if (c < '0' || c > '9') return false;
+            value = value * 10 + (c - '0');
+        }
+        parsedLong = value;
+        return true;
+    }
+
+    private int fail(int error, int offset) {
+        lastError = error;
+        errorOffset = offset;
+        malformedCount++;
+        return RESULT_MALFORMED;
+    }
+
+    private static int skipSpaces(byte[] buf, int pos, int end) {
+        while (pos < end && buf[pos] == ' ') pos++;
+        return pos;
+    }
+
+    private static int indexOf(byte[] buf, int pos, int end, byte b) {
+        for (int i = pos; i < end; i++) {
+            if (buf[i] == b) return i;
+        }
+        return -1;
+    }
+
+    private static boolean regionEquals(byte[] buf, int start, int end, byte[] expected) {
+        if (end - start != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (buf[start + i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] b = new byte[s.length()];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (byte) s.charAt(i);
+        }
+        return b;
+    }
+
+    /**
+     * @return the {@code ERROR_*} code of the most recent malformed line
+     */
+    public int getLastError() {
+        return lastError;
+    }
+
+    /**
+     * @return absolute buffer offset at which the most recent malformed line was rejected
+     */
+    public int getErrorOffset() {
+        return errorOffset;
+    }
+
+    public long getMalformedCount() {
+        return malformedCount;
+    }
+
+    public static String describeError(int error) {
+        switch (error) {
+            case ERROR_NONE: return "none";
+            case ERROR_UNKNOWN_KEY: return "unknown key";
+            case ERROR_BAD_NUMBER: return "bad number";
+            case ERROR_MISSING_FIELD: return "missing ACCEL or GYRO";
+            case ERROR_BAD_STATUS: return "bad STATUS value";
+            case ERROR_EMPTY: return "empty line";
+            case ERROR_BAD_FRAME: return "bad binary frame";
+            case ERROR_UNSUPPORTED_VERSION: return "unsupported protocol version";
+            default: return "error " + error;
+        }
+    }
+}
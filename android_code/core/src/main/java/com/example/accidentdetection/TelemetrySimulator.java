@@ -0,0 +1,170 @@
+package com.example.accidentdetection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the byte stream high-rate firmware would send, so the Bluetooth reader, parser
+ * and detection path can be exercised without an ESP32.
+ *
+ * The stream starts with the negotiation reply and continues with {@link BinaryProtocol}
+ * sample batches: a vehicle at rest (gravity on Z plus Gaussian noise) with any number of
+ * crash impulses added. An impulse is a half-sine pulse on the X axis and Z rotation.
+ * Whole batches can be dropped at random to exercise gap handling. Deterministic for a given seed.
+ *
+ * From the command line: {@code TelemetrySimulator <out-file> [seconds] [rateHz]} writes a
+ * stream with one 8 g impulse in the middle.
+ */
+public class TelemetrySimulator {
+
+    private static final float GRAVITY = 9.81f;
+
+    private static final class Impulse {
+        final long startMicros;
+        final long durationMicros;
+        final float peakAccel;
+        final float peakGyro;
+
+        Impulse(long startMicros, long durationMicros, float peakAccel, float peakGyro) {
+            this.startMicros = startMicros;
+            this.durationMicros = durationMicros;
+            this.peakAccel = peakAccel;
+            this.peakGyro = peakGyro;
+        }
+    }
+
+    private final int sampleRateHz;
+    private final int batchSize;
+    private final Random random;
+    private final List<Impulse> impulses = new ArrayList<>();
+    private float accelNoise = 0.05f;
+    private float gyroNoise = 0.5f;
+    private double dropRate = 0.0;
+
+    /**
+     * @param batchSize samples per batch frame, at most {@link BinaryProtocol#MAX_BATCH_SAMPLES}
+     */
+    public TelemetrySimulator(int sampleRateHz, int batchSize, long seed) {
+        if (sampleRateHz < 1 || sampleRateHz > 1_000_000) {
+            throw new IllegalArgumentException("sampleRateHz out of range");
+        }
+        if (batchSize < 1 || batchSize > BinaryProtocol.MAX_BATCH_SAMPLES) {
+            throw new IllegalArgumentException("batchSize must be 1.." + BinaryProtocol.MAX_BATCH_SAMPLES);
+        }
+        this.sampleRateHz = sampleRateHz;
+        this.batchSize = batchSize;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Adds a crash-like impulse.
+     *
+     * @param peakAccel peak acceleration in m/s² on top of the resting signal
+     * @param peakGyro  peak rotation rate in deg/s
+     */
+    public TelemetrySimulator addImpulse(long atMillis, long durationMillis, float peakAccel, float peakGyro) {
+        impulses.add(new Impulse(atMillis * 1000, Math.max(1, durationMillis) * 1000, peakAccel, peakGyro));
+        return this;
+    }
+
+    /**
+     * Standard deviation of the noise on every axis, in m/s² and deg/s.
+     */
+    public TelemetrySimulator setNoise(float accelNoise, float gyroNoise) {
+        this.accelNoise = accelNoise;
+        this.gyroNoise = gyroNoise;
+        return this;
+    }
+
+    /**
+     * @param dropRate probability that a batch is lost in transit; its sequence numbers are still used up
+     */
+    public TelemetrySimulator setDropRate(double dropRate) {
+        this.dropRate = dropRate;
+        return this;
+    }
+
+    public int getSampleRateHz() {
+        return sampleRateHz;
+    }
+
+    /**
+     * @return the negotiation reply followed by {@code durationMillis} worth of batches
+     */
+    public byte[] render(long durationMillis) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            render(durationMillis, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public void render(long durationMillis, OutputStream out) throws IOException {
+        String reply = BinaryProtocol.REPLY_BINARY + BinaryProtocol.RATE_SUFFIX + sampleRateHz + "\r\n";
+        out.write(reply.getBytes(StandardCharsets.US_ASCII));
+
+        long totalSamples = durationMillis * sampleRateHz / 1000;
+        int intervalMicros = 1_000_000 / sampleRateHz;
+        float[] axes = new float[batchSize * 6];
+        byte[] frame = new byte[BinaryProtocol.frameLength(BinaryProtocol.MAX_PAYLOAD)];
+
+        for (long first = 0; first < totalSamples; first += batchSize) {
+            int count = (int) Math.min(batchSize, totalSamples - first);
+            for (int i = 0; i < count; i++) {
+                sample((first + i) * 1_000_000 / sampleRateHz, axes, i * 6);
+            }
+            if (dropRate > 0 && random.nextDouble() < dropRate) {
+                continue;
+            }
+            long timestampMillis = first * 1000 / sampleRateHz;
+            int length = BinaryProtocol.encodeBatch(frame, 0, (int) (first & 0xFFFF), timestampMillis,
+                    intervalMicros, axes, 0, count, 0);
+            out.write(frame, 0, length);
+        }
+    }
+
+    private void sample(long timeMicros, float[] axes, int a) {
+        float pulseAccel = 0f;
+        float pulseGyro = 0f;
+        for (Impulse impulse : impulses) {
+            long t = timeMicros - impulse.startMicros;
+            if (t >= 0 && t < impulse.durationMicros) {
+                float shape = (float) Math.sin(Math.PI * t / impulse.durationMicros);
+                pulseAccel += impulse.peakAccel * shape;
+                pulseGyro += impulse.peakGyro * shape;
+            }
+        }
+        axes[a] = pulseAccel + noise(accelNoise);
+        axes[a + 1] = noise(accelNoise);
+        axes[a + 2] = GRAVITY + noise(accelNoise);
+        axes[a + 3] = noise(gyroNoise);
+        axes[a + 4] = noise(gyroNoise);
+        axes[a + 5] = pulseGyro + noise(gyroNoise);
+    }
+
+    private float noise(float sigma) {
+        return sigma == 0f ? 0f : (float) random.nextGaussian() * sigma;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: TelemetrySimulator <out-file> [seconds] [rateHz]");
+            System.exit(2);
+        }
+        long seconds = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        int rate = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        TelemetrySimulator simulator = new TelemetrySimulator(rate, Math.max(1, rate / 50), 1L)
+                .addImpulse(seconds * 500, 40, 8 * GRAVITY, 300f);
+        try (OutputStream out = new FileOutputStream(args[0])) {
+            simulator.render(seconds * 1000, out);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.accidentdetection;
+
+/**
+ * The rule {@link AccidentClassifier} falls back to while no model is loaded: a fixed high
+ * probability once either peak magnitude crosses its threshold. Kept free of Android so the JVM
+ * tools score exactly what the device does.
+ */
+public final class ThresholdModel implements DetectionModel {
+
+    public static final float ACCEL_THRESHOLD = 20.0f; // m/s²
+    public static final float GYRO_THRESHOLD = 150.0f; // deg/s, as AD.ino
+
+    public static final float HIGH_RISK = 0.8f;
+    public static final float LOW_RISK = 0.1f;
+
+    // Positions of the AccMaxX and GyroMaxX columns in the feature vector
+    private static final int FEATURE_ACC_MAX_X = 18;
+    private static final int FEATURE_GYRO_MAX_X = 48;
+
+    @Override
+    public float predict(float accel, float gyro) {
+        return (accel > ACCEL_THRESHOLD || gyro > GYRO_THRESHOLD) ? HIGH_RISK : LOW_RISK;
+    }
+
+    @Override
+    public float predictFeatures(float[] features) {
+        return predict(peakAccel(features, 0), peakGyro(features, 0));
+    }
+
+    @Override
+    public void predictBatch(float[] features, int rowCount, float[] probabilities) {
+        for (int r = 0; r < rowCount; r++) {
+            int base = r * FeatureExtractor.FEATURE_COUNT;
+            probabilities[r] = predict(peakAccel(features, base), peakGyro(features, base));
+        }
+    }
+
+    /**
+     * @return magnitude of the window's per-axis acceleration maxima in m/s², for the row at
+     * {@code offset}; the features hold g, as the dataset does
+     */
+    public static float peakAccel(float[] features, int offset) {
+        return magnitude(features, offset + FEATURE_ACC_MAX_X) * FeatureExtractor.STANDARD_GRAVITY;
+    }
+
+    /**
+     * @return magnitude of the window's per-axis rotation maxima, for the row at {@code offset}
+     */
+    public static float peakGyro(float[] features, int offset) {
+        return magnitude(features, offset + FEATURE_GYRO_MAX_X);
+    }
+
+    private static float magnitude(float[] features, int index) {
+        float x = features[index];
+        float y = features[index + 1];
+        float z = features[index + 2];
+        return (float) Math.sqrt(x * x + y * y + z * z);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.accidentdetection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A byte link to one sensor node: an RFCOMM socket on the device, an in-memory pipe in tests.
+ * A {@link SensorHub} connects, sends the telemetry request and reads, all on the link's own
+ * thread; {@link #close()} may come from any thread and must unblock both connect and read.
+ * A supervised hub calls {@link #connect()} again after a close to reconnect.
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * @return a stable name for logs and metrics, e.g. the node's Bluetooth name
+     */
+    String getName();
+
+    /**
+     * Blocks until the link is up, replacing any earlier connection.
+     *
+     * @return the stream of bytes from the node; ends when the node goes away
+     */
+    InputStream connect() throws IOException;
+
+    void send(byte[] data) throws IOException;
+
+    /**
+     * Ends the current connection, if any. Idempotent; never throws.
+     */
+    @Override
+    void close();
+}
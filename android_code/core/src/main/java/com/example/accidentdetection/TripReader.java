@@ -0,0 +1,101 @@
+package com.example.accidentdetection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a trip written by {@link TripRecorder}, segment by segment through read-only memory
+ * maps, and hands every frame to a listener with its receive time.
+ *
+ * A segment cut short by a crash ends at its last complete record. Each frame is copied into
+ * one reused buffer, so replaying does not allocate per record.
+ */
+public class TripReader {
+
+    public interface RecordListener {
+        /**
+         * @param tripNanos receive time, in nanoseconds since the trip started
+         * @param buffer    only valid for the duration of the call
+         */
+        void onRecord(long tripNanos, byte[] buffer, int offset, int length);
+    }
+
+    private final byte[] frame = new byte[0x10000];
+    private long tripStartMillis = -1;
+    private long records = 0;
+    private long truncatedSegments = 0;
+
+    /**
+     * Replays every segment of {@code tripDir} in order.
+     *
+     * @return number of records delivered
+     */
+    public long read(File tripDir, RecordListener listener) throws IOException {
+        long before = records;
+        for (File segment : TripRecorder.listSegments(tripDir)) {
+            readSegment(segment, listener);
+        }
+        return records - before;
+    }
+
+    public void readSegment(File segment, RecordListener listener) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment, "r");
+             FileChannel channel = file.getChannel()) {
+            long size = channel.size();
+            if (size < TripRecorder.SEGMENT_HEADER_SIZE) {
+                // Created but never written to
+                truncatedSegments++;
+                return;
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.getInt() != TripRecorder.MAGIC) {
+                throw new IOException(segment + " is not a trip segment");
+            }
+            int version = map.getShort() & 0xFFFF;
+            if (version != TripRecorder.VERSION) {
+                throw new IOException(segment + ": unsupported version " + version);
+            }
+            map.getShort();
+            tripStartMillis = map.getLong();
+            long baseNanos = map.getLong();
+
+            while (map.remaining() >= TripRecorder.RECORD_HEADER_SIZE) {
+                int length = map.getShort() & 0xFFFF;
+                long offsetMicros = map.getInt() & 0xFFFFFFFFL;
+                if (length > map.remaining()) {
+                    truncatedSegments++;
+                    return;
+                }
+                map.get(frame, 0, length);
+                records++;
+                listener.onRecord(baseNanos + offsetMicros * 1000, frame, 0, length);
+            }
+            if (map.hasRemaining()) {
+                truncatedSegments++;
+            }
+        }
+    }
+
+    /**
+     * @return wall clock time the trip started, from the last segment header read; -1 before any
+     */
+    public long getTripStartMillis() {
+        return tripStartMillis;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return segments that ended in a partial record, e.g. because the app was killed mid-write
+     */
+    public long getTruncatedSegments() {
+        return truncatedSegments;
+    }
+}
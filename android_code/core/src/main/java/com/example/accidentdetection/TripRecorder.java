@@ -0,0 +1,395 @@
+package com.example.accidentdetection;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Appends every telemetry frame, exactly as received, to an on-disk trip log that
+ * {@link TripReader} can later replay through the same parser and detection path.
+ *
+ * A trip is a directory of numbered segment files:
+ * <pre>
+ * segment header: magic "ADT1", version u16, reserved u16, trip start wall clock u64 (ms),
+ *                 segment base time u64 (ns since the trip started)
+ * record:         frame length u16, receive time u32 (µs after the segment base), frame bytes
+ * </pre>
+ * Little-endian, like {@link BinaryProtocol}. A segment is closed once it reaches
+ * {@code maxSegmentBytes} or its time offsets would overflow, and the oldest segments of any
+ * trip are deleted to keep the whole log under {@code maxTotalBytes}.
+ *
+ * {@link #append} runs on the Bluetooth reader thread and only copies into one of two
+ * pre-allocated buffers. A worker thread writes a buffer to disk once it is full, or once an
+ * append finds it older than {@code flushIntervalMillis}. If both buffers are waiting for the
+ * disk the frame is dropped and counted rather than stalling the reader.
+ */
+public class TripRecorder implements Closeable {
+
+    public static final int MAGIC = 0x31544441; // "ADT1" in little-endian byte order
+    public static final int VERSION = 1;
+    public static final int SEGMENT_HEADER_SIZE = 24;
+    public static final int RECORD_HEADER_SIZE = 6;
+    public static final String TRIP_PREFIX = "trip-";
+    public static final String SEGMENT_PREFIX = "seg-";
+    public static final String SEGMENT_SUFFIX = ".bin";
+
+    private static final long MAX_SEGMENT_SPAN_MICROS = 0xFFFFFFFFL;
+
+    private static final class Chunk {
+        final byte[] data;
+        int length;
+        File tripDir;
+        long tripStartMillis;
+        int segment;
+        long segmentBaseNanos;
+        boolean endsSegment;
+
+        Chunk(int size) {
+            data = new byte[size];
+        }
+    }
+
+    private final File root;
+    private final long maxSegmentBytes;
+    private final long maxTotalBytes;
+    private final long flushIntervalNanos;
+    private final Thread worker;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // Owned by the appending thread
+    private Chunk active;
+    private File tripDir;
+    private long tripStartMillis;
+    private long tripStartNanos;
+    private int segment;
+    private long segmentBaseNanos;
+    private long segmentBytes;
+    private long activeSinceNanos;
+
+    // Guarded by lock
+    private Chunk spare;
+    private Chunk full;
+    private boolean closed = false;
+
+    // Single-writer counters, readable from any thread for metrics
+    private volatile long recordsAppended = 0;
+    private volatile long recordsDropped = 0;
+    private volatile long bytesWritten = 0;
+    private volatile long writeErrors = 0;
+
+    /**
+     * @param bufferSize size of each of the two write buffers; also bounds the largest frame recorded
+     */
+    public TripRecorder(File root, long maxSegmentBytes, long maxTotalBytes, int bufferSize, long flushIntervalMillis) {
+        if (bufferSize < RECORD_HEADER_SIZE + 64 || maxSegmentBytes < SEGMENT_HEADER_SIZE + bufferSize
+                || maxTotalBytes < maxSegmentBytes) {
+            throw new IllegalArgumentException("bufferSize <= maxSegmentBytes <= maxTotalBytes required");
+        }
+        this.root = root;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxTotalBytes = maxTotalBytes;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.active = new Chunk(bufferSize);
+        this.spare = new Chunk(bufferSize);
+        this.worker = new Thread(this::workLoop, "TripWriter");
+        this.worker.setDaemon(true);
+    }
+
+    public void start() {
+        worker.start();
+    }
+
+    /**
+     * Starts a new trip directory; frames appended before this are ignored. Call from the
+     * appending thread, e.g. when a connection comes up.
+     */
+    public void beginTrip(long wallClockMillis, long nowNanos) {
+        endTrip();
+        tripStartMillis = wallClockMillis;
+        tripStartNanos = nowNanos;
+        tripDir = new File(root, TRIP_PREFIX + String.format(Locale.ROOT, "%013d", wallClockMillis));
+        segment = -1;
+        startSegment(nowNanos);
+    }
+
+    /**
+     * Hands the frames recorded so far to the writer and closes the trip's last segment.
+     */
+    public void endTrip() {
+        if (tripDir == null) {
+            return;
+        }
+        active.endsSegment = true;
+        handOff(true);
+        tripDir = null;
+    }
+
+    /**
+     * Records one frame; called on the thread that receives telemetry.
+     *
+     * @return false if the frame was dropped because the writer is behind or no trip is open
+     */
+    public boolean append(byte[] buffer, int offset, int length, long receivedNanos) {
+        if (tripDir == null) {
+            return false;
+        }
+        int recordSize = RECORD_HEADER_SIZE + length;
+        if (recordSize > active.data.length || length > 0xFFFF) {
+            recordsDropped++;
+            return false;
+        }
+        long offsetMicros = (receivedNanos - segmentBaseNanos) / 1000;
+        if (segmentBytes + recordSize > maxSegmentBytes || offsetMicros > MAX_SEGMENT_SPAN_MICROS || offsetMicros < 0) {
+            active.endsSegment = true;
+            if (!handOff(false)) {
+                recordsDropped++;
+                return false;
+            }
+            startSegment(receivedNanos);
+            offsetMicros = 0;
+        } else if (active.length + recordSize > active.data.length
+                || (active.length > 0 && receivedNanos - activeSinceNanos > flushIntervalNanos)) {
+            if (!handOff(false)) {
+                recordsDropped++;
+                return false;
+            }
+        }
+        if (active.length == 0) {
+            activeSinceNanos = receivedNanos;
+        }
+        byte[] data = active.data;
+        int p = BinaryProtocol.putU16(data, active.length, length);
+        p = BinaryProtocol.putU32(data, p, offsetMicros);
+        System.arraycopy(buffer, offset, data, p, length);
+        active.length = p + length;
+        segmentBytes += recordSize;
+        recordsAppended++;
+        return true;
+    }
+
+    /**
+     * Writes out everything appended so far and stops the writer thread. Call from the
+     * appending thread, or once it has stopped.
+     */
+    @Override
+    public void close() {
+        endTrip();
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            worker.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getRecordsAppended() {
+        return recordsAppended;
+    }
+
+    public long getRecordsDropped() {
+        return recordsDropped;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getWriteErrors() {
+        return writeErrors;
+    }
+
+    private void startSegment(long nowNanos) {
+        segment++;
+        segmentBaseNanos = nowNanos;
+        segmentBytes = SEGMENT_HEADER_SIZE;
+        stamp(active);
+    }
+
+    private void stamp(Chunk chunk) {
+        chunk.tripDir = tripDir;
+        chunk.tripStartMillis = tripStartMillis;
+        chunk.segment = segment;
+        chunk.segmentBaseNanos = segmentBaseNanos - tripStartNanos;
+        chunk.endsSegment = false;
+    }
+
+    /**
+     * Passes the active buffer to the writer and takes the spare one.
+     *
+     * @param wait block until the spare buffer is free instead of giving up
+     * @return false if the spare buffer is still being written
+     */
+    private boolean handOff(boolean wait) {
+        lock.lock();
+        try {
+            while (wait && spare == null && !closed) {
+                changed.awaitUninterruptibly();
+            }
+            if (spare == null || closed) {
+                return false;
+            }
+            full = active;
+            active = spare;
+            spare = null;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        active.length = 0;
+        stamp(active);
+        return true;
+    }
+
+    private void workLoop() {
+        FileOutputStream out = null;
+        File outTrip = null;
+        int outSegment = -1;
+        byte[] header = new byte[SEGMENT_HEADER_SIZE];
+        while (true) {
+            Chunk chunk;
+            lock.lock();
+            try {
+                while (full == null && !closed) {
+                    changed.awaitUninterruptibly();
+                }
+                if (full == null) {
+                    break;
+                }
+                chunk = full;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                if (out == null || chunk.tripDir != outTrip || chunk.segment != outSegment) {
+                    closeQuietly(out);
+                    out = null;
+                    File file = segmentFile(chunk.tripDir, chunk.segment);
+                    enforceRetention(file);
+                    if (!chunk.tripDir.isDirectory() && !chunk.tripDir.mkdirs()) {
+                        throw new IOException("Cannot create " + chunk.tripDir);
+                    }
+                    out = new FileOutputStream(file);
+                    outTrip = chunk.tripDir;
+                    outSegment = chunk.segment;
+                    writeHeader(header, chunk);
+                    out.write(header);
+                    bytesWritten += header.length;
+                }
+                out.write(chunk.data, 0, chunk.length);
+                bytesWritten += chunk.length;
+                if (chunk.endsSegment) {
+                    out.getFD().sync();
+                    closeQuietly(out);
+                    out = null;
+                }
+            } catch (IOException e) {
+                writeErrors++;
+                closeQuietly(out);
+                out = null;
+            }
+
+            lock.lock();
+            try {
+                full = null;
+                spare = chunk;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        closeQuietly(out);
+    }
+
+    private static void writeHeader(byte[] header, Chunk chunk) {
+        int p = BinaryProtocol.putU32(header, 0, MAGIC & 0xFFFFFFFFL);
+        p = BinaryProtocol.putU16(header, p, VERSION);
+        p = BinaryProtocol.putU16(header, p, 0);
+        p = BinaryProtocol.putU32(header, p, chunk.tripStartMillis);
+        p = BinaryProtocol.putU32(header, p, chunk.tripStartMillis >>> 32);
+        p = BinaryProtocol.putU32(header, p, chunk.segmentBaseNanos);
+        BinaryProtocol.putU32(header, p, chunk.segmentBaseNanos >>> 32);
+    }
+
+    /**
+     * Deletes the oldest segments, across all trips, until a new segment fits under the limit.
+     */
+    private void enforceRetention(File current) {
+        File[] trips = listTrips(root);
+        long total = maxSegmentBytes;
+        for (File trip : trips) {
+            for (File segmentFile : listSegments(trip)) {
+                total += segmentFile.length();
+            }
+        }
+        for (File trip : trips) {
+            for (File segmentFile : listSegments(trip)) {
+                if (total <= maxTotalBytes) {
+                    return;
+                }
+                if (!segmentFile.equals(current)) {
+                    total -= segmentFile.length();
+                    segmentFile.delete();
+                }
+            }
+            String[] left = trip.list();
+            if (left != null && left.length == 0 && !trip.equals(current.getParentFile())) {
+                trip.delete();
+            }
+        }
+    }
+
+    static File segmentFile(File tripDir, int segment) {
+        return new File(tripDir, SEGMENT_PREFIX + String.format(Locale.ROOT, "%06d", segment) + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * @return trip directories under {@code root}, oldest first
+     */
+    public static File[] listTrips(File root) {
+        File[] trips = root.listFiles(file -> file.isDirectory() && file.getName().startsWith(TRIP_PREFIX));
+        if (trips == null) {
+            return new File[0];
+        }
+        // Names embed a fixed-width timestamp, so name order is age order
+        Arrays.sort(trips);
+        return trips;
+    }
+
+    /**
+     * @return the trip's segment files in recording order
+     */
+    public static File[] listSegments(File tripDir) {
+        File[] segments = tripDir.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Nothing more to lose
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.accidentdetection;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams a recorded trip through a {@link DetectionEngine}, frame by frame, as the app fed it
+ * live: the same parser, feature windows, gate and alert hold, scored inline and timed by the
+ * recorded receive times. Nothing of the detection path is reimplemented here, so a replay cannot
+ * drift from what runs on the phone. Runs as fast as the disk and model allow, so hours of
+ * driving can be checked against a detection change in seconds.
+ *
+ * With a {@link SampleGate} set, the replayed engine gates as the app's does: once per frame, on
+ * its peak magnitudes, deciding whether that frame's window is scored. A second, ungated engine
+ * reads the same frames as the reference. The result then tells how much inference the gate
+ * saves, in the engine's own counts, which reference detections it lost and how late it let the
+ * rest through.
+ */
+public class TripReplay {
+
+    public static final float ALERT_THRESHOLD = DetectionEngine.ALERT_THRESHOLD;
+
+    public interface DetectionListener {
+        /**
+         * @param tripNanos receive time of the frame that completed the detecting window
+         */
+        void onDetection(long tripNanos, float probability);
+    }
+
+    public static final class Result {
+        public long frames;
+        public long malformedFrames;
+        public long samples;
+        public long droppedSamples;
+        public long windowsScored;
+        public long magnitudesScored;
+        // Model alerts the engine raised; repeats within the hold are suppressed, as live
+        public long detections;
+        // Alert frames sent by the firmware's own threshold check
+        public long firmwareAlerts;
+        public long tripNanos;
+        public long wallNanos;
+        // Only with a gate, counted by the engine as the app's stats count them: windows (or
+        // magnitudes) the gate passed and kept from the model, and model alerts on audits
+        public long windowsPassed;
+        public long windowsGated;
+        public long auditAlerts;
+        // Only with a gate: detections of the ungated reference engine (-1 without a gate), those
+        // the gated engine never matched, and how late it matched the others
+        public long referenceDetections;
+        public long missedDetections;
+        public long gateLatencyTotalNanos;
+        public long gateLatencyMaxNanos;
+
+        /**
+         * @return how many times faster than real time the trip was replayed
+         */
+        public double speedup() {
+            return wallNanos == 0 ? 0 : (double) tripNanos / wallNanos;
+        }
+
+        /**
+         * @return share of due windows the gate kept from the model; NaN without a gate
+         */
+        public double skipRatio() {
+            long due = windowsPassed + windowsGated;
+            return referenceDetections < 0 || due == 0 ? Double.NaN : (double) windowsGated / due;
+        }
+
+        /**
+         * @return share of reference detections the gated path missed; NaN when there were none
+         */
+        public double missRate() {
+            return referenceDetections <= 0 ? Double.NaN : (double) missedDetections / referenceDetections;
+        }
+
+        public double meanGateLatencyMillis() {
+            long matched = referenceDetections - missedDetections;
+            return matched <= 0 ? Double.NaN : gateLatencyTotalNanos / 1e6 / matched;
+        }
+
+        @Override
+        public String toString() {
+            return "frames=" + frames
+                    + " malformed=" + malformedFrames
+                    + " samples=" + samples
+                    + " dropped=" + droppedSamples
+                    + " windows=" + windowsScored
+                    + " magnitudes=" + magnitudesScored
+                    + " detections=" + detections
+                    + " firmwareAlerts=" + firmwareAlerts
+                    + String.format(Locale.ROOT, " trip=%.1fs speedup=%.0fx",
+                    tripNanos / 1e9, speedup())
+                    + (referenceDetections < 0 ? "" : String.format(Locale.ROOT,
+                    " passed=%d gated=%d skip=%.3f audits=%d reference=%d missed=%d gateLatency=%.0f/%.0fms",
+                    windowsPassed, windowsGated, skipRatio(), auditAlerts, referenceDetections,
+                    missedDetections, meanGateLatencyMillis(), gateLatencyMaxNanos / 1e6));
+        }
+    }
+
+    /**
+     * What one engine decided during a replay.
+     */
+    private static final class Decisions implements DecisionSink {
+        long modelAlerts;
+        long deviceAlerts;
+        long malformed;
+        long dropped;
+        // Trip time of the newest model alert, until the replay takes it
+        long newAlertNanos = Long.MIN_VALUE;
+        float newAlertProbability;
+
+        @Override
+        public void onAlert(DetectionEngine.Decision decision) {
+            count(decision);
+            if (decision.cause == DetectionEngine.Decision.Cause.MODEL) {
+                modelAlerts++;
+                newAlertNanos = decision.nanos;
+                newAlertProbability = decision.probability;
+            }
+        }
+
+        @Override
+        public void onAlertSuppressed(DetectionEngine.Decision decision) {
+            count(decision);
+        }
+
+        private void count(DetectionEngine.Decision decision) {
+            if (decision.cause == DetectionEngine.Decision.Cause.DEVICE) {
+                deviceAlerts++;
+            }
+        }
+
+        @Override
+        public void onSamplesLost(int count, int sequence) {
+            dropped += count;
+        }
+
+        @Override
+        public void onMalformedFrame(int error, byte[] buffer, int offset, int length) {
+            malformed++;
+        }
+    }
+
+    private final DetectionModel model;
+    private final int windowSize;
+    private final int windowStride;
+    private final long cooldownMillis;
+    private final long cooldownNanos;
+
+    private SampleGate gate;
+
+    /**
+     * @param windowSize     samples per feature window
+     * @param windowStride   samples between scored windows
+     * @param cooldownMillis the engine's alert hold: detections closer together than this count
+     *                       once, like repeated alerts do live
+     */
+    public TripReplay(DetectionModel model, int windowSize, int windowStride, long cooldownMillis) {
+        if (windowStride < 1) {
+            throw new IllegalArgumentException("windowStride must be positive");
+        }
+        this.model = model;
+        this.windowSize = windowSize;
+        this.windowStride = windowStride;
+        this.cooldownMillis = cooldownMillis;
+        this.cooldownNanos = TimeUnit.MILLISECONDS.toNanos(cooldownMillis);
+    }
+
+    /**
+     * @param gate set on the replayed engine, as the app sets its own; null scores every window
+     */
+    public void setGate(SampleGate gate) {
+        this.gate = gate;
+    }
+
+    /**
+     * @param listener may be null; hears the gated engine's detections when there is a gate
+     */
+    public Result replay(File tripDir, DetectionListener listener) throws IOException {
+        Result result = new Result();
+        Decisions decisions = new Decisions();
+        DetectionEngine engine = newEngine(decisions, gate);
+        Decisions referenceDecisions = gate == null ? null : new Decisions();
+        DetectionEngine reference = gate == null ? null : newEngine(referenceDecisions, null);
+        if (gate != null) {
+            gate.reset();
+        } else {
+            result.referenceDetections = -1;
+        }
+        // With a gate: the reference detection the gated engine has yet to match
+        long[] pendingReferenceNanos = {Long.MIN_VALUE};
+
+        long start = System.nanoTime();
+        new TripReader().read(tripDir, (tripNanos, buffer, offset, length) -> {
+            result.frames++;
+            result.tripNanos = tripNanos;
+            if (reference != null) {
+                // First, so a detection both make on one frame matches with no latency
+                reference.onFrame(buffer, offset, length, tripNanos);
+                if (referenceDecisions.newAlertNanos != Long.MIN_VALUE) {
+                    if (pendingReferenceNanos[0] != Long.MIN_VALUE) {
+                        result.missedDetections++;
+                    }
+                    pendingReferenceNanos[0] = referenceDecisions.newAlertNanos;
+                    referenceDecisions.newAlertNanos = Long.MIN_VALUE;
+                }
+            }
+            engine.onFrame(buffer, offset, length, tripNanos);
+            long detectedNanos = decisions.newAlertNanos;
+            if (detectedNanos == Long.MIN_VALUE) {
+                return;
+            }
+            decisions.newAlertNanos = Long.MIN_VALUE;
+            if (pendingReferenceNanos[0] != Long.MIN_VALUE) {
+                long latency = detectedNanos - pendingReferenceNanos[0];
+                if (latency < cooldownNanos) {
+                    result.gateLatencyTotalNanos += latency;
+                    result.gateLatencyMaxNanos = Math.max(result.gateLatencyMaxNanos, latency);
+                } else {
+                    result.missedDetections++;
+                }
+                pendingReferenceNanos[0] = Long.MIN_VALUE;
+            }
+            if (listener != null) {
+                listener.onDetection(detectedNanos, decisions.newAlertProbability);
+            }
+        });
+        result.wallNanos = System.nanoTime() - start;
+
+        result.malformedFrames = decisions.malformed;
+        result.samples = engine.getSamplesReceived();
+        result.droppedSamples = decisions.dropped;
+        result.detections = decisions.modelAlerts;
+        result.firmwareAlerts = decisions.deviceAlerts;
+        if (reference == null) {
+            result.windowsScored = engine.getWindowsScored();
+            result.magnitudesScored = engine.getSamplesScored() - engine.getWindowsScored();
+        } else {
+            // What the model would have scored without the gate, and what it did
+            result.windowsScored = reference.getWindowsScored();
+            result.magnitudesScored = reference.getSamplesScored() - reference.getWindowsScored();
+            result.windowsPassed = engine.getSamplesScored();
+            result.windowsGated = engine.getSamplesGated();
+            result.auditAlerts = engine.getAuditAlerts();
+            result.referenceDetections = referenceDecisions.modelAlerts;
+            if (pendingReferenceNanos[0] != Long.MIN_VALUE) {
+                result.missedDetections++;
+            }
+        }
+        return result;
+    }
+
+    private DetectionEngine newEngine(DecisionSink sink, SampleGate engineGate) {
+        // Inline, so the hold runs on trip time
+        DetectionEngine engine = new DetectionEngine(model, sink, 0, cooldownMillis);
+        engine.setFeatureWindow(windowSize, windowStride);
+        engine.setGate(engineGate);
+        return engine;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.accidentdetection;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A {@link SampleSource} that plays back a trip recorded by {@link TripRecorder} as fast as it
+ * can be read. Frames carry their recorded receive times, in nanoseconds since the trip started,
+ * so time-based engine behaviour such as the alert hold plays out as it did on the road.
+ */
+public class TripSampleSource implements SampleSource {
+
+    private final File tripDir;
+    private final TripReader reader = new TripReader();
+    private boolean done = false;
+
+    public TripSampleSource(File tripDir) {
+        this.tripDir = tripDir;
+    }
+
+    /**
+     * Delivers the whole trip in one call.
+     */
+    @Override
+    public boolean read(FrameListener listener) throws IOException {
+        if (done) {
+            return false;
+        }
+        done = true;
+        reader.read(tripDir, (tripNanos, buffer, offset, length) -> listener.onFrame(buffer, offset, length, tripNanos));
+        return true;
+    }
+
+    public TripReader getReader() {
+        return reader;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.accidentdetection;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AlertDispatcherTest {
+
+    /**
+     * Records what was prepared and sent, like the SMS channel without the radio.
+     */
+    private static class FakeChannel implements AlertDispatcher.Channel {
+        final List<String> sent = new ArrayList<>();
+        int prepared = 0;
+        long sendNanos = 0;
+        RuntimeException failure = null;
+        // When set, prepare waits for it, like a rebuild stuck in binder calls
+        CountDownLatch prepareGate = null;
+        final CountDownLatch preparing = new CountDownLatch(1);
+
+        @Override
+        public AlertDispatcher.Prepared prepare(List<String> recipients, String message) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (prepareGate != null) {
+                preparing.countDown();
+                try {
+                    prepareGate.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            prepared++;
+            List<String> copy = new ArrayList<>(recipients);
+            return () -> {
+                if (sendNanos > 0) {
+                    long end = System.nanoTime() + sendNanos;
+                    while (System.nanoTime() < end) {
+                        Thread.onSpinWait();
+                    }
+                }
+                for (String phone : copy) {
+                    sent.add(phone + ": " + message);
+                }
+                return copy.size();
+            };
+        }
+    }
+
+    private FakeChannel channel;
+    private AlertDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        channel = new FakeChannel();
+        dispatcher = new AlertDispatcher(channel);
+    }
+
+    @Test
+    public void disarmedUntilThereAreRecipients() {
+        dispatcher.setMessage("help");
+        assertFalse(dispatcher.isArmed());
+        assertEquals(AlertDispatcher.NO_RECIPIENTS, dispatcher.getDisarmedReason());
+        assertEquals(-1, dispatcher.fire(System.nanoTime()));
+        assertEquals(1, dispatcher.getNotArmed());
+
+        dispatcher.setRecipients(Arrays.asList("", null, " "));
+        assertFalse(dispatcher.isArmed());
+        assertEquals(0, channel.prepared);
+
+        dispatcher.setRecipients(Arrays.asList("111", "", "222"));
+        assertTrue(dispatcher.isArmed());
+        assertNull(dispatcher.getDisarmedReason());
+        assertEquals(2, dispatcher.fire(System.nanoTime()));
+        assertEquals(Arrays.asList("111: help", "222: help"), channel.sent);
+    }
+
+    @Test
+    public void preparesOnlyWhenSomethingChanged() {
+        dispatcher.setRecipients(Collections.singletonList("111"));
+        dispatcher.setMessage("at 1,2");
+        assertEquals(2, channel.prepared);
+
+        dispatcher.setMessage("at 1,2");
+        dispatcher.setRecipients(Arrays.asList("111", ""));
+        dispatcher.setBlockedReason(null);
+        assertEquals(2, channel.prepared);
+
+        dispatcher.setMessage("at 3,4");
+        assertEquals(3, channel.prepared);
+        assertEquals(3, dispatcher.getPreparations());
+        dispatcher.fire(System.nanoTime());
+        dispatcher.fire(System.nanoTime());
+        assertEquals(Arrays.asList("111: at 3,4", "111: at 3,4"), channel.sent);
+        // Sending does not prepare again
+        assertEquals(3, channel.prepared);
+    }
+
+    @Test
+    public void blockedReasonDisarmsAndFailedRebuildKeepsThePreviousAlert() {
+        dispatcher.setRecipients(Collections.singletonList("111"));
+        dispatcher.setBlockedReason("Location permission required");
+        assertFalse(dispatcher.isArmed());
+        assertEquals("Location permission required", dispatcher.getDisarmedReason());
+        assertEquals(-1, dispatcher.fire(System.nanoTime()));
+
+        dispatcher.setMessage("at 1,2");
+        dispatcher.setBlockedReason(null);
+        assertTrue(dispatcher.isArmed());
+
+        channel.failure = new SecurityException("SMS permission required");
+        dispatcher.setMessage("at 3,4");
+        assertTrue(dispatcher.isArmed());
+        assertNull(dispatcher.getDisarmedReason());
+        assertEquals("SMS permission required", dispatcher.getPrepareError());
+        assertEquals(1, dispatcher.fire(System.nanoTime()));
+        assertEquals(Collections.singletonList("111: at 1,2"), channel.sent);
+
+        channel.failure = null;
+        dispatcher.setMessage("at 5,6");
+        assertNull(dispatcher.getPrepareError());
+    }
+
+    @Test
+    public void failedFirstPreparationDisarms() {
+        channel.failure = new SecurityException("SMS permission required");
+        dispatcher.setRecipients(Collections.singletonList("111"));
+        assertFalse(dispatcher.isArmed());
+        assertEquals("SMS permission required", dispatcher.getDisarmedReason());
+        assertEquals(-1, dispatcher.fire(System.nanoTime()));
+        assertTrue(channel.sent.isEmpty());
+    }
+
+    @Test
+    public void fireDuringARebuildSendsThePreviousAlert() throws Exception {
+        dispatcher.setRecipients(Collections.singletonList("111"));
+        dispatcher.setMessage("at 1,2");
+        channel.prepareGate = new CountDownLatch(1);
+        Thread setter = new Thread(() -> dispatcher.setMessage("at 3,4"));
+        setter.start();
+        try {
+            assertTrue(channel.preparing.await(2, TimeUnit.SECONDS));
+            assertTrue(dispatcher.isArmed());
+            assertEquals(1, dispatcher.fire(System.nanoTime()));
+            assertEquals(Collections.singletonList("111: at 1,2"), channel.sent);
+        } finally {
+            channel.prepareGate.countDown();
+            setter.join(2000);
+        }
+        assertEquals(1, dispatcher.fire(System.nanoTime()));
+        assertEquals(Arrays.asList("111: at 1,2", "111: at 3,4"), channel.sent);
+    }
+
+    @Test
+    public void handoffLatencyRunsFromTheTrigger() {
+        dispatcher.setRecipients(Collections.singletonList("111"));
+        assertEquals(0, dispatcher.getMeanHandoffNanos());
+
+        long earlier = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(20);
+        channel.sendNanos = TimeUnit.MILLISECONDS.toNanos(2);
+        dispatcher.fire(earlier);
+        long first = dispatcher.getLastHandoffNanos();
+        assertTrue(first >= TimeUnit.MILLISECONDS.toNanos(22));
+
+        channel.sendNanos = 0;
+        dispatcher.fire(System.nanoTime());
+        long second = dispatcher.getLastHandoffNanos();
+        assertTrue(second < first);
+        assertEquals(2, dispatcher.getFired());
+        assertEquals(first, dispatcher.getMaxHandoffNanos());
+        assertEquals((first + second) / 2, dispatcher.getMeanHandoffNanos());
+    }
+}
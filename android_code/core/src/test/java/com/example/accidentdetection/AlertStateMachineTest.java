@@ -0,0 +1,212 @@
+package com.example.accidentdetection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AlertStateMachineTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final int THREADS = 8;
+
+    @Test
+    public void walksThroughTheStates() {
+        AlertStateMachine alerts = new AlertStateMachine(30_000);
+        assertEquals(AlertStateMachine.IDLE, alerts.getState());
+        assertFalse(alerts.tryDispatch(0));
+
+        assertTrue(alerts.arm());
+        assertFalse(alerts.arm());
+        assertTrue(alerts.tryDispatch(SECOND));
+        assertEquals(AlertStateMachine.DISPATCHING, alerts.getState());
+        assertFalse(alerts.tryDispatch(2 * SECOND));
+
+        alerts.dispatched(SECOND);
+        assertEquals(AlertStateMachine.COOLDOWN, alerts.getState());
+        assertEquals(10 * SECOND, alerts.getRemainingNanos(21 * SECOND));
+        assertFalse(alerts.tryDispatch(30 * SECOND));
+        assertTrue(alerts.tryDispatch(31 * SECOND));
+        alerts.dispatched(31 * SECOND);
+
+        alerts.reset();
+        assertEquals(AlertStateMachine.ARMED, alerts.getState());
+        assertEquals(0, alerts.getRemainingNanos(32 * SECOND));
+        assertEquals(2, alerts.getDispatches());
+        assertEquals(3, alerts.getSuppressed());
+
+        alerts.disarm();
+        assertFalse(alerts.tryDispatch(100 * SECOND));
+    }
+
+    @Test
+    public void resetDuringDispatchWinsOverDispatched() {
+        AlertStateMachine alerts = new AlertStateMachine(30_000);
+        alerts.arm();
+        assertTrue(alerts.tryDispatch(SECOND));
+        alerts.reset();
+        // The late hand-off must not start a cooldown the user already cancelled
+        alerts.dispatched(SECOND);
+        assertEquals(AlertStateMachine.ARMED, alerts.getState());
+        assertTrue(alerts.tryDispatch(2 * SECOND));
+    }
+
+    @Test
+    public void timesBeforeTheOriginWork() {
+        AlertStateMachine alerts = new AlertStateMachine(1000);
+        alerts.arm();
+        long early = System.nanoTime() - 1000 * SECOND;
+        assertTrue(alerts.tryDispatch(early));
+        alerts.dispatched(early);
+        assertEquals(SECOND / 2, alerts.getRemainingNanos(early + SECOND / 2));
+        assertTrue(alerts.tryDispatch(early + SECOND));
+    }
+
+    @Test
+    public void concurrentBurstsDispatchExactlyOnce() throws Exception {
+        AlertStateMachine alerts = new AlertStateMachine(30_000);
+        alerts.arm();
+        int rounds = 2000;
+        int perThread = 4;
+        AtomicInteger[] winners = new AtomicInteger[rounds];
+        for (int i = 0; i < rounds; i++) {
+            winners[i] = new AtomicInteger();
+        }
+        // The barrier action runs between rounds, while every thread waits: it checks the round
+        // and re-arms for the next
+        int[] round = {0};
+        List<Throwable> failures = new ArrayList<>();
+        CyclicBarrier barrier = new CyclicBarrier(THREADS, () -> {
+            int done = round[0]++;
+            if (done > 0 && winners[done - 1].get() != 1) {
+                failures.add(new AssertionError("round " + (done - 1) + " had " + winners[done - 1] + " winners"));
+            }
+            alerts.reset();
+        });
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int r = 0; r < rounds; r++) {
+                        barrier.await(10, TimeUnit.SECONDS);
+                        for (int i = 0; i < perThread; i++) {
+                            long now = System.nanoTime();
+                            if (alerts.tryDispatch(now)) {
+                                winners[r].incrementAndGet();
+                                alerts.dispatched(now);
+                            }
+                        }
+                    }
+                    barrier.await(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(60_000);
+            assertFalse(thread.isAlive());
+        }
+
+        assertTrue(failures.toString(), failures.isEmpty());
+        assertEquals(rounds, alerts.getDispatches());
+        assertEquals((long) rounds * (THREADS * perThread - 1), alerts.getSuppressed());
+    }
+
+    @Test
+    public void expiredCooldownReopensForExactlyOneCaller() throws Exception {
+        AlertStateMachine alerts = new AlertStateMachine(1000);
+        alerts.arm();
+        for (int round = 0; round < 500; round++) {
+            long at = (round + 1) * 10 * SECOND;
+            assertTrue(alerts.tryDispatch(at - 5 * SECOND));
+            alerts.dispatched(at - 5 * SECOND);
+
+            AtomicInteger winners = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                // Every caller is past the cooldown, at slightly different times
+                long now = at + t;
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (alerts.tryDispatch(now)) {
+                        winners.incrementAndGet();
+                        alerts.dispatched(now);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join(10_000);
+            }
+            assertEquals("round " + round, 1, winners.get());
+        }
+    }
+
+    @Test
+    public void engineSendsOneAlertFromConcurrentSources() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger suppressed = new AtomicInteger();
+        DetectionEngine engine = new DetectionEngine(new ThresholdModel(), new DecisionSink() {
+            @Override
+            public void onAlert(DetectionEngine.Decision decision) {
+                sent.incrementAndGet();
+            }
+
+            @Override
+            public void onAlertSuppressed(DetectionEngine.Decision decision) {
+                suppressed.incrementAndGet();
+            }
+        }, 0, 30_000);
+
+        int perThread = 1000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            boolean device = t % 2 == 0;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    if (device) {
+                        engine.onDeviceAlert(40f, 8f, System.nanoTime());
+                    } else {
+                        engine.trigger(System.nanoTime());
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(30_000);
+        }
+
+        assertEquals(1, sent.get());
+        assertEquals(THREADS * perThread - 1, suppressed.get());
+        assertEquals(1, engine.getAlertsRaised());
+        assertEquals(THREADS * perThread - 1, engine.getAlertsSuppressed());
+        assertTrue(engine.isAlertHeld(System.nanoTime()));
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.accidentdetection;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds {@link BluetoothFrameReader} byte streams chopped up the way RFCOMM delivers them.
+ */
+public class BluetoothFrameReaderTest {
+
+    private static final String STREAM =
+            "ACCEL:1.25 GYRO:3.50 STATUS:OK\r\n" +
+            "ACCEL:22.10 GYRO:160.02 STATUS:ALERT\r\n" +
+            "ALERT:ACCIDENT_DETECTED\r\n" +
+            "TIME:123456\r\n" +
+            "---\r\n";
+
+    private static final String[] EXPECTED = {
+            "ACCEL:1.25 GYRO:3.50 STATUS:OK",
+            "ACCEL:22.10 GYRO:160.02 STATUS:ALERT",
+            "ALERT:ACCIDENT_DETECTED",
+            "TIME:123456",
+            "---"
+    };
+
+    /** Returns at most {@code chunk} bytes per read, like a slow socket. */
+    private static class ChunkedInputStream extends InputStream {
+        private final byte[] data;
+        private final int chunk;
+        private int pos = 0;
+
+        ChunkedInputStream(String text, int chunk) {
+            this(text.getBytes(StandardCharsets.US_ASCII), chunk);
+        }
+
+        ChunkedInputStream(byte[] data, int chunk) {
+            this.data = data;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            return pos < data.length ? data[pos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (pos >= data.length) return -1;
+            int n = Math.min(Math.min(len, chunk), data.length - pos);
+            System.arraycopy(data, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+
+    private static List<String> readAll(BluetoothFrameReader reader) throws IOException {
+        final List<String> frames = new ArrayList<>();
+        BluetoothFrameReader.FrameListener listener = (buffer, offset, length) ->
+                frames.add(new String(buffer, offset, length, StandardCharsets.US_ASCII));
+        while (reader.readFrames(listener)) {
+            // drain
+        }
+        return frames;
+    }
+
+    @Test
+    public void reassemblesFramesForEveryChunkSize() throws IOException {
+        for (int chunk = 1; chunk <= STREAM.length(); chunk++) {
+            BluetoothFrameReader reader = new BluetoothFrameReader(new ChunkedInputStream(STREAM, chunk), 64);
+            List<String> frames = readAll(reader);
+            assertEquals("chunk=" + chunk, EXPECTED.length, frames.size());
+            for (int i = 0; i < EXPECTED.length; i++) {
+                assertEquals("chunk=" + chunk, EXPECTED[i], frames.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void handlesFramesThatWrapAroundTheRing() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("ACCEL:").append(i).append(".00 GYRO:").append(i * 2).append(".00 STATUS:OK\n");
+        }
+        BluetoothFrameReader reader = new BluetoothFrameReader(new ChunkedInputStream(sb.toString(), 7), 64);
+        List<String> frames = readAll(reader);
+
+        assertEquals(200, frames.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals("ACCEL:" + i + ".00 GYRO:" + (i * 2) + ".00 STATUS:OK", frames.get(i));
+        }
+        assertEquals(200, reader.getFramesRead());
+    }
+
+    @Test
+    public void skipsEmptyLines() throws IOException {
+        BluetoothFrameReader reader = new BluetoothFrameReader(new ByteArrayInputStream(
+                "\n\r\nACCEL:1.00 GYRO:2.00 STATUS:OK\n\n".getBytes(StandardCharsets.US_ASCII)));
+        List<String> frames = readAll(reader);
+
+        assertEquals(1, frames.size());
+        assertEquals("ACCEL:1.00 GYRO:2.00 STATUS:OK", frames.get(0));
+    }
+
+    @Test
+    public void dropsOversizedFrameAndResyncs() throws IOException {
+        StringBuilder garbage = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            garbage.append('x');
+        }
+        String text = "ACCEL:1.00 GYRO:2.00 STATUS:OK\n" + garbage + "\nACCEL:3.00 GYRO:4.00 STATUS:OK\n";
+        BluetoothFrameReader reader = new BluetoothFrameReader(new ChunkedInputStream(text, 5), 32);
+        List<String> frames = readAll(reader);
+
+        assertEquals(2, frames.size());
+        assertEquals("ACCEL:1.00 GYRO:2.00 STATUS:OK", frames.get(0));
+        assertEquals("ACCEL:3.00 GYRO:4.00 STATUS:OK", frames.get(1));
+        assertEquals(1, reader.getOversizedFrames());
+    }
+
+    @Test
+    public void keepsPartialTrailingFrameUntilCompleted() throws IOException {
+        BluetoothFrameReader reader = new BluetoothFrameReader(new ByteArrayInputStream(
+                "ACCEL:1.00 GYRO:2.00 STATUS:OK\nACCEL:5.0".getBytes(StandardCharsets.US_ASCII)));
+        List<String> frames = readAll(reader);
+
+        assertEquals(1, frames.size());
+        assertEquals(40, reader.getBytesRead());
+    }
+
+    @Test
+    public void switchesToBinaryFramingAfterNegotiation() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write("ACCEL:1.00 GYRO:2.00 STATUS:OK\r\n".getBytes(StandardCharsets.US_ASCII));
+        stream.write((BinaryProtocol.REPLY_BINARY + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        byte[] frame = new byte[64];
+        for (int seq = 0; seq < 20; seq++) {
+            int length = BinaryProtocol.encodeSample(frame, 0, seq, 1000L + seq, seq, 0f, 9.81f, 0f, 0f, seq, 0);
+            if (seq == 7) {
+                frame[10] ^= 0x40; // corrupt a payload byte; the CRC must catch it
+            }
+            if (seq == 12) {
+                stream.write(new byte[]{0x13, BinaryProtocol.SYNC_0, 0x00}); // line noise
+            }
+            stream.write(frame, 0, length);
+        }
+        byte[] bytes = stream.toByteArray();
+
+        for (int chunk = 1; chunk <= 40; chunk++) {
+            BluetoothFrameReader reader = new BluetoothFrameReader(new ChunkedInputStream(bytes, chunk), 64);
+            TelemetryParser parser = new TelemetryParser();
+            TelemetryFrame decoded = new TelemetryFrame();
+            List<Integer> sequences = new ArrayList<>();
+            int[] textLines = {0};
+            BluetoothFrameReader.FrameListener listener = (buffer, offset, length) -> {
+                int type = parser.parse(buffer, offset, length, decoded);
+                if (type == TelemetryFrame.TYPE_PROTOCOL_ACK) {
+                    reader.setFraming(BluetoothFrameReader.Framing.BINARY);
+                } else if (type == TelemetryFrame.TYPE_SENSOR && decoded.sequence >= 0) {
+                    sequences.add(decoded.sequence);
+                } else {
+                    textLines[0]++;
+                }
+            };
+            while (reader.readFrames(listener)) {
+                // drain
+            }
+
+            assertEquals("chunk=" + chunk, 1, textLines[0]);
+            assertEquals("chunk=" + chunk, 19, sequences.size());
+            assertFalse("chunk=" + chunk, sequences.contains(7));
+            assertEquals("chunk=" + chunk, 19, (int) sequences.get(18));
+            assertEquals("chunk=" + chunk, 1, reader.getCrcErrors());
+            assertEquals("chunk=" + chunk, 1, parser.getDroppedFrames());
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package com.example.accidentdetection;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DetectionEngineTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private static final class RecordingSink implements DecisionSink {
+        final List<DetectionEngine.Decision> alerts = new ArrayList<>();
+        final List<DetectionEngine.Decision> suppressed = new ArrayList<>();
+        final CountDownLatch firstAlert = new CountDownLatch(1);
+        int sampleRateHz = -1;
+        long sensorUpdates;
+        long lostSamples;
+        int malformed;
+
+        @Override
+        public synchronized void onAlert(DetectionEngine.Decision decision) {
+            alerts.add(decision);
+            firstAlert.countDown();
+        }
+
+        @Override
+        public synchronized void onAlertSuppressed(DetectionEngine.Decision decision) {
+            suppressed.add(decision);
+        }
+
+        @Override
+        public void onSensorData(float accel, float gyro) {
+            sensorUpdates++;
+        }
+
+        @Override
+        public void onBinaryTelemetry(int sampleRateHz) {
+            this.sampleRateHz = sampleRateHz;
+        }
+
+        @Override
+        public void onSamplesLost(int count, int sequence) {
+            lostSamples += count;
+        }
+
+        @Override
+        public void onMalformedFrame(int error, byte[] buffer, int offset, int length) {
+            malformed++;
+        }
+    }
+
+    private static void line(DetectionEngine engine, String line, long nanos) {
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+        engine.onFrame(bytes, 0, bytes.length, nanos);
+    }
+
+    private static final float[] NO_AXES = {Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN};
+
+    /** A fused bucket from link 0, as the app hands it to the engine. */
+    private static void fused(DetectionEngine engine, long nanos, float accel, float gyro, float[] axes,
+                              float[] samples, int count) {
+        byte[] frame = new byte[BinaryProtocol.frameLength(BinaryProtocol.MAX_PAYLOAD)];
+        int length = BinaryProtocol.encodeFused(frame, 0, 1, 0, accel, gyro, axes, samples, count);
+        engine.onFrame(frame, 0, length, nanos);
+    }
+
+    @Test
+    public void simulatedCrashStreamRaisesOneModelAlert() throws IOException {
+        byte[] stream = new TelemetrySimulator(500, 10, 5L)
+                .addImpulse(1000, 40, 80f, 300f)
+                .render(3000);
+        RecordingSink sink = new RecordingSink();
+        DetectionEngine engine = new DetectionEngine(new ThresholdModel(), sink, 0, 30_000);
+
+        engine.run(new StreamSampleSource(new ByteArrayInputStream(stream)));
+
+        assertEquals(500, sink.sampleRateHz);
+        assertEquals(150, sink.sensorUpdates);
+        assertEquals(150, engine.getSamplesScored());
+        assertEquals(0, sink.malformed);
+        // Every batch touching the pulse scores high; the hold turns them into one alert
+        assertEquals(1, sink.alerts.size());
+        assertFalse(sink.suppressed.isEmpty());
+        DetectionEngine.Decision alert = sink.alerts.get(0);
+        assertEquals(DetectionEngine.Decision.Cause.MODEL, alert.cause);
+        assertEquals(ThresholdModel.HIGH_RISK, alert.probability, 0f);
+        assertTrue(alert.accel > ThresholdModel.ACCEL_THRESHOLD);
+    }
+
+    @Test
+    public void gateScoresOnlyAroundTheImpulse() throws IOException {
+        byte[] stream = new TelemetrySimulator(500, 10, 5L)
+                .addImpulse(1000, 40, 80f, 300f)
+                .render(3000);
+        RecordingSink sink = new RecordingSink();
+        DetectionEngine engine = new DetectionEngine(new ThresholdModel(), sink, 0, 30_000);
+        // Read far faster than real time, where any hold would outlast the stream
+        SampleGate gate = new SampleGate().holdMillis(0);
+        engine.setGate(gate);
+
+        engine.run(new StreamSampleSource(new ByteArrayInputStream(stream)));
+
+        assertEquals(1, sink.alerts.size());
+        assertEquals(150, engine.getSamplesScored() + engine.getSamplesGated());
+        assertTrue("scored " + engine.getSamplesScored(), engine.getSamplesScored() < 10);
+        assertEquals(150, gate.getOffered());
+        assertEquals(0, engine.getAuditAlerts());
+    }
+
+    @Test
+    public void auditCatchesWhatTheGateMissed() {
+        RecordingSink sink = new RecordingSink();
+        DetectionEngine engine = new DetectionEngine(new ThresholdModel(), sink, 0, 0);
+        // Nothing but the audit gets through
+        engine.setGate(new SampleGate().levels(1000f, 1000f).stepLimit(1e9f).cusum(0.02f, 1000f, 1e9f)
+                .auditIntervalMillis(10_000));
+
+        line(engine, "ACCEL:30.0 GYRO:0.0 STATUS:OK", 0);
+        line(engine, "ACCEL:30.0 GYRO:0.0 STATUS:OK", SECOND);
+        line(engine, "ACCEL:30.0 GYRO:0.0 STATUS:OK", 10 * SECOND);
+
+        assertEquals(2, engine.getSamplesScored());
+        assertEquals(1, engine.getSamplesGated());
+        assertEquals(2, engine.getAuditAlerts());
+        assertEquals(2, sink.alerts.size());
+    }
+
+    @Test
+    public void quietStreamRaisesNothing() throws IOException {
+        RecordingSink sink = new RecordingSink();
+        DetectionEngine engine = new DetectionEngine(new ThresholdModel(), sink, 0, 30_000);
+
+        engine.run(new StreamSampleSource(new ByteArrayInputStream(
+                new TelemetrySimulator(200, 8, 9L).setDropRate(0.1).render(5000))));
+
+        assertTrue(sink.alerts.isEmpty());
+        assertTrue(sink.suppressed.isEmpty());
+        assertTrue(sink.lostSamples > 0);
+        assertEquals(0, engine.getAlertHoldRemainingMillis(0));
+    }
+
+    @Test
+    public void normalHandlingInDegreesPerSecondRaisesNothing() {
+        RecordingSink sink = new RecordingSink();
+        DetectionEngine engine = new DetectionEngine(new ThresholdModel(), sink, 0, 0);
+
+        // What AD.ino sends for a still sensor (gyro bias) and for ordinary cornering
+        line(engine, "ACCEL:9.5 GYRO:20.0 STATUS:OK", 0);
+        line(engine, "ACCEL:9.8 GYRO:2.3 STATUS:OK", SECOND / 10);
+        line(engine, "ACCEL:12.4 GYRO:95.0 STATUS:OK", 2 * SECOND / 10);
+        assertTrue(sink.alerts.isEmpty());
+        assertEquals(3, engine.getSamplesScored());
+
+        // A roll past the firmware's own 150 deg/s threshold
+        line(engine, "ACCEL:9.8 GYRO:210.0 STATUS:OK", 3 * SECOND / 10);
+        assertEquals(1, sink.alerts.size());
+    }
+
+    @Test
+    public void fusedSamplesKeepTheirAxesInTheHistory() {
+        SampleHistory history = new SampleHistory(8);
+        DetectionEngine engine = new DetectionEngine(new ThresholdModel(), new RecordingSink(), 0, 0);
+        engine.setSampleHistory(history);
+
+        fused(engine, SECOND, 3f, 20f, new float[]{1f, 2f, 12f, 20f, 0f, 0f}, null, 0);
+        fused(engine, 2 * SECOND, 1f, 2f, NO_AXES, null, 0);
+
+        long[] times = new long[2];
+        float[] values = new float[2 * SampleHistory.WIDTH];
+        assertEquals(2, history.copy(0, 2, times, values));
+        assertArrayEquals(new float[]{1f, 2f, 12f, 20f, 0f, 0f, 3f, 20f},
+                Arrays.copyOfRange(values, 0, SampleHistory.WIDTH), 1e-4f);
+        assertTrue(Float.isNaN(values[SampleHistory.WIDTH]));
+        assertEquals(1f, values[SampleHistory.WIDTH + SampleHistory.ACCEL], 1e-4f);
+    }
+
+    @Test
+    public void featureWindowScoresTheAxesInG() throws IOException {
+        byte[] stream = new TelemetrySimulator(500, 10, 5L)
+                .addImpulse(1000, 40, 80f, 300f)
+                .render(3000);
+        ThresholdModel threshold = new ThresholdModel();
+        float[] lastWindow = new float[FeatureExtractor.FEATURE_COUNT];
+        int[] magnitudeCalls = new int[1];
+        DetectionModel model = new DetectionModel() {
+            @Override
+            public float predict(float accel, float gyro) {
+                magnitudeCalls[0]++;
+                return threshold.predict(accel, gyro);
+            }
+
+            @Override
+            public float predictFeatures(float[] features) {
+                System.arraycopy(features, 0, lastWindow, 0, FeatureExtractor.FEATURE_COUNT);
+                return threshold.predictFeatures(features);
+            }
+        };
+        RecordingSink sink = new RecordingSink();
+        DetectionEngine engine = new DetectionEngine(model, sink, 0, 30_000);
+        engine.setFeatureWindow(FeatureExtractor.DATASET_WINDOW, 7);
+
+        engine.run(new StreamSampleSource(new ByteArrayInputStream(stream)));
+
+        assertEquals(0, magnitudeCalls[0]);
+        assertEquals(engine.getSamplesScored(), engine.getWindowsScored());
+        // 1500 samples in batches of 10, at most one window per batch
+        assertTrue("windows " + engine.getWindowsScored(),
+                engine.getWindowsScored() > 100 && engine.getWindowsScored() <= 150);
+        assertEquals(1, sink.alerts.size());
+        assertEquals(ThresholdModel.HIGH_RISK, sink.alerts.get(0).probability, 0f);
+        // At rest after the impulse: 1 g on Z, as in the dataset
+        assertEquals(1f, lastWindow[2], 0.05f);
+    }
+
+    @Test
+    public void featureWindowStartsOverAfterAGap() {
+        DetectionEngine engine = new DetectionEngine(new ThresholdModel(), new RecordingSink(), 0, 0);
+        engine.setFeatureWindow(FeatureExtractor.DATASET_WINDOW, 7);
+        float[] rest = {0f, 0f, 9.81f, 0f, 0f, 0f};
+        long nanos = 0;
+
+        for (int i = 0; i < 20; i++) {
+            fused(engine, nanos += SECOND / 50, 0f, 0f, rest, rest, 1);
+        }
+        assertEquals(1, engine.getWindowsScored());
+
+        engine.onGap(nanos, nanos += SECOND);
+        for (int i = 0; i < FeatureExtractor.DATASET_WINDOW + 5; i++) {
+            fused(engine, nanos += SECOND / 50, 0f, 0f, rest, rest, 1);
+        }
+        assertEquals(1, engine.getWindowsScored());
+
+        // Without raw samples only the magnitudes can be scored
+        fused(engine, nanos + SECOND / 50, 0f, 0f, NO_AXES, null, 0);
+        assertEquals(1, engine.getWindowsScored());
+        assertEquals(2, engine.getSamplesScored());
+    }
+
+    @Test
+    public void fusedBucketsWindowTheRawSamplesAndScoreOncePerBucket() {
+        float[] lastWindow = new float[FeatureExtractor.FEATURE_COUNT];
+        ThresholdModel threshold = new ThresholdModel();
+        DetectionModel model = new DetectionModel() {
+            @Override
+            public float predict(float accel, float gyro) {
+                return threshold.predict(accel, gyro);
+            }
+
+            @Override
+            public float predictFeatures(float[] features) {
+                System.arraycopy(features, 0, lastWindow, 0, FeatureExtractor.FEATURE_COUNT);
+                return threshold.predictFeatures(features);
+            }
+        };
+        DetectionEngine engine = new DetectionEngine(model, new RecordingSink(), 0, 0);
+        engine.setFeatureWindow(FeatureExtractor.DATASET_WINDOW, 7);
+        // The bucket peak came from another node; the window must not see it
+        float[] peak = {0f, 0f, 50f, 0f, 0f, 0f};
+        float[] samples = new float[10 * 6];
+        for (int a = 0; a < samples.length; a += 6) {
+            samples[a + 2] = FeatureExtractor.STANDARD_GRAVITY;
+        }
+        long nanos = 0;
+
+        fused(engine, nanos += SECOND / 50, 40f, 0f, peak, samples, 10);
+        assertEquals(0, engine.getWindowsScored());
+        // Samples 14 and 20 land in this bucket; the window at 20 is the one scored
+        fused(engine, nanos += SECOND / 50, 40f, 0f, peak, samples, 10);
+        assertEquals(1, engine.getWindowsScored());
+        assertEquals(1f, lastWindow[2], 1e-3f);
+        fused(engine, nanos += SECOND / 50, 40f, 0f, peak, samples, 10);
+        assertEquals(2, engine.getWindowsScored());
+
+        // A bucket without the window's samples starts it over
+        fused(engine, nanos += SECOND / 50, 1f, 0f, peak, samples, 0);
+        fused(engine, nanos += SECOND / 50, 40f, 0f, peak, samples, 10);
+        assertEquals(2, engine.getWindowsScored());
+        assertEquals(3, engine.getSamplesScored());
+    }
+
+    @Test
+    public void alertIsHeldByFrameTime() {
+        RecordingSink sink = new RecordingSink();
+        DetectionEngine engine = new DetectionEngine(new ThresholdModel(), sink, 0, 30_000);
+
+        line(engine, "ACCEL:30.0 GYRO:0.0 STATUS:OK", 0);
+        line(engine, "ACCEL:30.0 GYRO:0.0 STATUS:OK", SECOND);
+        assertEquals(1, sink.alerts.size());
+        assertEquals(1, sink.suppressed.size());
+        assertTrue(engine.isAlertHeld(SECOND));
+        assertEquals(29_000, engine.getAlertHoldRemainingMillis(SECOND));
+
+        line(engine, "ACCEL:1.0 GYRO:0.0 STATUS:OK", 20 * SECOND);
+        line(engine, "ACCEL:30.0 GYRO:0.0 STATUS:OK", 31 * SECOND);
+        assertEquals(2, sink.alerts.size());
+        assertEquals(31 * SECOND, sink.alerts.get(1).nanos);
+        assertEquals(2, engine.getAlertsRaised());
+        assertEquals(1, engine.getAlertsSuppressed());
+    }
+
+    @Test
+    public void deviceAndRequestedAlertsShareTheHold() {
+        RecordingSink sink = new RecordingSink();
+        DetectionEngine engine = new DetectionEngine(new ThresholdModel(), sink, 0, 30_000);
+
+        line(engine, "ALERT:ACCIDENT_DETECTED", 0);
+        assertEquals(DetectionEngine.Decision.Cause.DEVICE, sink.alerts.get(0).cause);
+        assertTrue(Float.isNaN(sink.alerts.get(0).probability));
+        assertFalse(engine.trigger(SECOND));
+
+        engine.resetAlert();
+        assertFalse(engine.isAlertHeld(SECOND));
+        assertTrue(engine.trigger(2 * SECOND));
+        assertEquals(DetectionEngine.Decision.Cause.REQUESTED, sink.alerts.get(1).cause);
+        line(engine, "ACCEL:30.0 GYRO:0.0 STATUS:OK", 3 * SECOND);
+        assertEquals(2, sink.alerts.size());
+
+        line(engine, "ACCEL:abc GYRO:0.0", 4 * SECOND);
+        assertEquals(1, sink.malformed);
+    }
+
+    @Test
+    public void inferenceWorkerScoresOffTheReadingThread() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        Thread reader = Thread.currentThread();
+        Thread[] alertThread = new Thread[1];
+        DetectionEngine engine = new DetectionEngine(new ThresholdModel(), new DecisionSink() {
+            @Override
+            public void onAlert(DetectionEngine.Decision decision) {
+                alertThread[0] = Thread.currentThread();
+                sink.onAlert(decision);
+            }
+        }, 4, 30_000);
+        engine.start();
+        try {
+            line(engine, "ACCEL:1.0 GYRO:0.0 STATUS:OK", System.nanoTime());
+            line(engine, "ACCEL:30.0 GYRO:0.0 STATUS:OK", System.nanoTime());
+            assertTrue(sink.firstAlert.await(2, TimeUnit.SECONDS));
+        } finally {
+            engine.shutdown(1000);
+        }
+        assertTrue(alertThread[0] != reader);
+        assertEquals(DetectionEngine.Decision.Cause.MODEL, sink.alerts.get(0).cause);
+        assertEquals(2, engine.getSamplesScored());
+        assertTrue(engine.isAlertHeld(System.nanoTime()));
+    }
+
+    @Test
+    public void fusedFramesCarryTheStreamGapAndDeviceAlerts() {
+        SampleHistory history = new SampleHistory(8);
+        RecordingSink sink = new RecordingSink();
+        DetectionEngine engine = new DetectionEngine(new ThresholdModel(), sink, 0, 30_000);
+        engine.setSampleHistory(history);
+        byte[] frame = new byte[BinaryProtocol.frameLength(BinaryProtocol.MAX_PAYLOAD)];
+
+        fused(engine, SECOND, 1f, 1f, NO_AXES, null, 0);
+        int length = BinaryProtocol.encodeFused(frame, 0, 0b11, 2000, 1f, 1f, NO_AXES, null, 0);
+        engine.onFrame(frame, 0, length, 3 * SECOND);
+        assertEquals(1, engine.getGaps());
+        // The gap leaves its row of missing values before the bucket that ended it
+        assertEquals(3, history.getWritten());
+
+        length = BinaryProtocol.encodeAlert(frame, 0, 0, 3001, 40f, 20f);
+        engine.onFrame(frame, 0, length, 3 * SECOND + 1);
+        assertEquals(1, sink.alerts.size());
+        assertEquals(DetectionEngine.Decision.Cause.DEVICE, sink.alerts.get(0).cause);
+        assertEquals(3, engine.getFramesReceived());
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.accidentdetection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * An in-memory {@link Transport}: bytes fed by the test come out of the stream in the same
+ * chunks, as a socket would deliver them, and whatever the hub sends is kept for inspection.
+ *
+ * Bytes fed while connected, or before the first connect, go to that connection; bytes fed
+ * after a close wait for the next one, so a test can script a reconnect.
+ */
+final class FakeTransport implements Transport {
+
+    private static final byte[] END = new byte[0];
+
+    private static final class Session {
+        final LinkedBlockingQueue<byte[]> chunks = new LinkedBlockingQueue<>();
+        volatile boolean closed = false;
+    }
+
+    private final String name;
+    private final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+    // Where feed() goes: the current connection, or the next one once that is closed
+    private Session feeding = new Session();
+    private Session current;
+    private volatile IOException connectFailure;
+    private volatile int failuresLeft;
+    volatile int connects;
+    volatile int closes;
+
+    FakeTransport(String name) {
+        this.name = name;
+    }
+
+    synchronized void feed(byte[] bytes) {
+        feeding.chunks.add(bytes.clone());
+    }
+
+    /**
+     * Ends the stream as if the node went away.
+     */
+    synchronized void end() {
+        feeding.chunks.add(END);
+    }
+
+    void failConnect(IOException failure) {
+        failConnects(Integer.MAX_VALUE, failure);
+    }
+
+    /**
+     * Fails the next {@code times} connects, then connects normally.
+     */
+    void failConnects(int times, IOException failure) {
+        this.connectFailure = failure;
+        this.failuresLeft = times;
+    }
+
+    synchronized byte[] getSent() {
+        return sent.toByteArray();
+    }
+
+    synchronized boolean isClosed() {
+        return current == null || current.closed;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public InputStream connect() throws IOException {
+        connects++;
+        if (failuresLeft > 0) {
+            failuresLeft--;
+            throw connectFailure;
+        }
+        final Session session;
+        synchronized (this) {
+            session = feeding;
+            current = session;
+        }
+        return new InputStream() {
+            private byte[] chunk = new byte[0];
+            private int pos = 0;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                while (pos == chunk.length) {
+                    if (session.closed) {
+                        throw new IOException("closed");
+                    }
+                    try {
+                        chunk = session.chunks.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("interrupted");
+                    }
+                    pos = 0;
+                    if (chunk == END) {
+                        return -1;
+                    }
+                }
+                int n = Math.min(len, chunk.length - pos);
+                System.arraycopy(chunk, pos, b, off, n);
+                pos += n;
+                return n;
+            }
+        };
+    }
+
+    @Override
+    public synchronized void send(byte[] data) throws IOException {
+        if (isClosed()) {
+            throw new IOException("closed");
+        }
+        sent.write(data, 0, data.length);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (current == null || current.closed) {
+            return;
+        }
+        current.closed = true;
+        // Wakes a blocked read
+        current.chunks.add(END);
+        feeding = new Session();
+        closes++;
+    }
+}
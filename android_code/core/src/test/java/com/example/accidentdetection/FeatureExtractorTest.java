@@ -0,0 +1,145 @@
+package com.example.accidentdetection;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FeatureExtractorTest {
+
+    private static int column(String name) {
+        return Arrays.asList(FeatureExtractor.FEATURE_NAMES).indexOf(name);
+    }
+
+    /**
+     * The AccX window behind the first row of dataset/features_14.csv is four raw readings
+     * of 666, 1967, 1322 and 720 counts (1/4096 g); the expected values are copied from that row.
+     */
+    @Test
+    public void matchesFirstDatasetRow() {
+        FeatureExtractor extractor = new FeatureExtractor(4);
+        int[] counts = {666, 1967, 1322, 720};
+        for (int c : counts) {
+            extractor.add(c / 4096f, 0f, 0f, 0f, 0f, 0f);
+        }
+        float[] features = new float[FeatureExtractor.FEATURE_COUNT];
+        extractor.extract(features, 0);
+
+        assertEquals(0.28533935546875, features[column("AccMeanX")], 1e-6);
+        assertEquals(0.022149538000424702, features[column("AccCovX")], 1e-6);
+        assertEquals(0.8675941232473949, features[column("AccSkewX")], 1e-4);
+        assertEquals(-1.164805719977732, features[column("AccKurtX")], 1e-4);
+        assertEquals(1.141357421875, features[column("AccSumX")], 1e-6);
+        assertEquals(0.16259765625, features[column("AccMinX")], 1e-6);
+        assertEquals(0.480224609375, features[column("AccMaxX")], 1e-6);
+        assertEquals(0.02214953800042471, features[column("AccVarX")], 1e-6);
+        assertEquals(0.249267578125, features[column("AccMedianX")], 1e-6);
+        assertEquals(0.1488272085353505, features[column("AccStdX")], 1e-6);
+    }
+
+    @Test
+    public void slidingWindowMatchesFullRecomputation() {
+        int window = 25;
+        FeatureExtractor extractor = new FeatureExtractor(window);
+        Random random = new Random(42);
+        float[][] history = new float[10_000][6];
+        float[] features = new float[FeatureExtractor.FEATURE_COUNT];
+
+        for (int i = 0; i < history.length; i++) {
+            for (int c = 0; c < 6; c++) {
+                // Offset and occasional spikes to stress the running moments
+                history[i][c] = 9.81f * (c == 2 ? 1 : 0) + (float) random.nextGaussian()
+                        + (random.nextInt(200) == 0 ? 40f : 0f);
+            }
+            float[] s = history[i];
+            extractor.add(s[0], s[1], s[2], s[3], s[4], s[5]);
+
+            if (i % 97 == 0 || i == history.length - 1) {
+                extractor.extract(features, 0);
+                int n = Math.min(i + 1, window);
+                for (int c = 0; c < 6; c++) {
+                    double[] values = new double[n];
+                    for (int k = 0; k < n; k++) {
+                        values[k] = history[i - n + 1 + k][c];
+                    }
+                    String prefix = (c < 3 ? "Acc" : "Gyro");
+                    String axis = "XYZ".substring(c % 3, c % 3 + 1);
+                    assertStat(features, prefix + "Mean" + axis, mean(values), i);
+                    assertStat(features, prefix + "Var" + axis, variance(values), i);
+                    assertStat(features, prefix + "Median" + axis, median(values), i);
+                    if (n >= 4) {
+                        assertStat(features, prefix + "Skew" + axis, skew(values), i);
+                        assertStat(features, prefix + "Kurt" + axis, kurt(values), i);
+                    }
+                }
+            }
+        }
+        assertTrue(extractor.isWindowFull());
+    }
+
+    @Test
+    public void resetEmptiesWindow() {
+        FeatureExtractor extractor = new FeatureExtractor(8);
+        for (int i = 0; i < 20; i++) {
+            extractor.add(i, i, i, i, i, i);
+        }
+        extractor.reset();
+        assertEquals(0, extractor.getSampleCount());
+
+        extractor.add(1f, 2f, 3f, 4f, 5f, 6f);
+        float[] features = new float[FeatureExtractor.FEATURE_COUNT];
+        extractor.extract(features, 0);
+        assertEquals(1f, features[column("AccMeanX")], 0f);
+        assertEquals(6f, features[column("GyroMaxZ")], 0f);
+        assertEquals(0f, features[column("GyroStdZ")], 0f);
+    }
+
+    private static void assertStat(float[] features, String name, double expected, int sample) {
+        double tolerance = 1e-4 * Math.max(1.0, Math.abs(expected));
+        assertEquals(name + " at sample " + sample, expected, features[column(name)], tolerance);
+    }
+
+    private static double mean(double[] v) {
+        double s = 0;
+        for (double x : v) s += x;
+        return s / v.length;
+    }
+
+    private static double variance(double[] v) {
+        if (v.length < 2) return 0;
+        double m = mean(v);
+        double s = 0;
+        for (double x : v) s += (x - m) * (x - m);
+        return s / (v.length - 1);
+    }
+
+    private static double median(double[] v) {
+        double[] s = v.clone();
+        Arrays.sort(s);
+        int n = s.length;
+        return n % 2 == 1 ? s[n / 2] : (s[n / 2 - 1] + s[n / 2]) / 2;
+    }
+
+    private static double centralMoment(double[] v, int k) {
+        double m = mean(v);
+        double s = 0;
+        for (double x : v) s += Math.pow(x - m, k);
+        return s / v.length;
+    }
+
+    // pandas Series.skew()
+    private static double skew(double[] v) {
+        int n = v.length;
+        double g1 = centralMoment(v, 3) / Math.pow(centralMoment(v, 2), 1.5);
+        return Math.sqrt((double) n * (n - 1)) / (n - 2) * g1;
+    }
+
+    // pandas Series.kurt()
+    private static double kurt(double[] v) {
+        int n = v.length;
+        double g2 = centralMoment(v, 4) / Math.pow(centralMoment(v, 2), 2) - 3;
+        return ((n + 1) * g2 + 6) * (n - 1) / ((double) (n - 2) * (n - 3));
+    }
+}
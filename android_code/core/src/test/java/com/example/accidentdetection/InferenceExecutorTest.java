@@ -0,0 +1,141 @@
+package com.example.accidentdetection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class InferenceExecutorTest {
+
+    /** Records what the worker saw; blocks on the first sample until released. */
+    private static class RecordingTask implements InferenceExecutor.Task {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Float> values = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> sequences = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void run(long sequence, float[] sample) {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sequences.add(sequence);
+            values.add(sample[0]);
+        }
+    }
+
+    private static void submitRange(InferenceExecutor executor, int from, int to) {
+        float[] sample = new float[2];
+        for (int i = from; i < to; i++) {
+            sample[0] = i;
+            sample[1] = -i;
+            executor.submit(sample);
+        }
+    }
+
+    @Test
+    public void processesSamplesInOrder() throws InterruptedException {
+        RecordingTask task = new RecordingTask();
+        task.release.countDown();
+        InferenceExecutor executor = new InferenceExecutor("test", 64, 2, InferenceExecutor.QueuePolicy.DROP_OLDEST, task);
+        executor.start();
+
+        submitRange(executor, 0, 50);
+        executor.shutdown(5000);
+
+        assertEquals(50, task.values.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals((float) i, task.values.get(i), 0f);
+            assertEquals(i, (long) task.sequences.get(i));
+        }
+        assertEquals(50, executor.getCompleted());
+        assertEquals(0, executor.getDropped());
+    }
+
+    @Test
+    public void dropOldestKeepsMostRecentSamples() throws InterruptedException {
+        RecordingTask task = new RecordingTask();
+        InferenceExecutor executor = new InferenceExecutor("test", 4, 2, InferenceExecutor.QueuePolicy.DROP_OLDEST, task);
+        executor.start();
+
+        submitRange(executor, 0, 1);
+        assertTrue(task.started.await(5, TimeUnit.SECONDS));
+        // Worker is busy with sample 0; 10 more arrive but only 4 fit
+        submitRange(executor, 1, 11);
+        assertEquals(4, executor.getQueueDepth());
+        assertEquals(6, executor.getDropped());
+
+        task.release.countDown();
+        executor.shutdown(5000);
+
+        assertEquals(5, task.values.size());
+        assertEquals(0f, task.values.get(0), 0f);
+        for (int i = 1; i < 5; i++) {
+            assertEquals((float) (6 + i), task.values.get(i), 0f);
+        }
+        assertEquals(11, executor.getSubmitted());
+        assertEquals(4, executor.getMaxQueueDepth());
+    }
+
+    @Test
+    public void coalesceKeepsOnlyNewestSample() throws InterruptedException {
+        RecordingTask task = new RecordingTask();
+        InferenceExecutor executor = new InferenceExecutor("test", 16, 2, InferenceExecutor.QueuePolicy.COALESCE, task);
+        executor.start();
+
+        submitRange(executor, 0, 1);
+        assertTrue(task.started.await(5, TimeUnit.SECONDS));
+        submitRange(executor, 1, 8);
+        assertEquals(1, executor.getQueueDepth());
+
+        task.release.countDown();
+        executor.shutdown(5000);
+
+        assertEquals(2, task.values.size());
+        assertEquals(7f, task.values.get(1), 0f);
+        assertEquals(6, executor.getDropped());
+    }
+
+    @Test
+    public void rejectsSamplesAfterShutdown() {
+        RecordingTask task = new RecordingTask();
+        task.release.countDown();
+        InferenceExecutor executor = new InferenceExecutor("test", 4, 2, InferenceExecutor.QueuePolicy.DROP_OLDEST, task);
+        executor.start();
+        executor.shutdown(5000);
+
+        assertFalse(executor.submit(new float[2]));
+        assertEquals(0, executor.getSubmitted());
+    }
+
+    @Test
+    public void failingTaskIsCountedAndReportedAndTheWorkerCarriesOn() {
+        List<Long> processed = Collections.synchronizedList(new ArrayList<>());
+        List<Long> failed = Collections.synchronizedList(new ArrayList<>());
+        InferenceExecutor executor = new InferenceExecutor("test", 16, 2, InferenceExecutor.QueuePolicy.DROP_OLDEST,
+                (sequence, sample) -> {
+                    if (sample[0] == 2f) {
+                        throw new IllegalStateException("bad sample");
+                    }
+                    processed.add(sequence);
+                });
+        executor.setFailureListener((sequence, e) -> failed.add(sequence));
+        executor.start();
+
+        submitRange(executor, 0, 5);
+        executor.shutdown(5000);
+
+        assertEquals(1, executor.getFailures());
+        assertEquals(Collections.singletonList(2L), failed);
+        assertEquals(4, processed.size());
+        assertEquals(5, executor.getCompleted());
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.accidentdetection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+import static org.junit.Assert.*;
+
+public class JavaPredictorTest {
+
+    // Relative to the core module, where Gradle runs the tests
+    private static final File BUNDLED_MODEL = new File("../app/src/main/assets/driver_behavior_model.onnx");
+    private static final File DATASET = new File("../../dataset/features_14.csv");
+
+    private static final float[] W1 = {0.5f, -1f, 0.25f, 1.5f, 0.75f, -0.5f};
+    private static final float[] C1 = {0.1f, -0.2f};
+    private static final float[] W2 = {0.8f, -1.2f};
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("java-predictor").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                child.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * sigmoid(relu(2 * x W1^T + 0.5 * C1) W2 + 0.3), by hand
+     */
+    private static double reference(float[] x) {
+        double out = 0.3;
+        for (int o = 0; o < 2; o++) {
+            double sum = 0.5 * C1[o];
+            for (int i = 0; i < 3; i++) {
+                sum += 2.0 * W1[o * 3 + i] * x[i];
+            }
+            out += Math.max(0, sum) * W2[o];
+        }
+        return 1 / (1 + Math.exp(-out));
+    }
+
+    @Test
+    public void runsAChainOfLayersWithWeightsInlineAndExternal() throws IOException {
+        JavaPredictor predictor = JavaPredictor.load(writeModel("Sigmoid"));
+        assertEquals(3, predictor.getInputWidth());
+
+        float[][] rows = {{1f, 2f, 3f}, {-1f, 0.5f, 2f}, {0f, 0f, 0f}, {4f, -3f, 1f}};
+        for (float[] row : rows) {
+            assertEquals(reference(row), predictor.predict(row, 0), 1e-6);
+        }
+    }
+
+    @Test
+    public void batchRowsFillTheTrailingColumns() throws IOException {
+        JavaPredictor predictor = JavaPredictor.load(writeModel("Sigmoid"));
+        float[] rows = {2f, 3f, 0.5f, 2f};
+        float[] probabilities = new float[2];
+        predictor.predictBatch(rows, 2, 2, probabilities);
+
+        assertEquals(reference(new float[]{0f, 2f, 3f}), probabilities[0], 1e-6);
+        assertEquals(reference(new float[]{0f, 0.5f, 2f}), probabilities[1], 1e-6);
+    }
+
+    @Test
+    public void unsupportedOperatorFailsTheLoad() throws IOException {
+        File model = writeModel("Softmax");
+        try {
+            JavaPredictor.load(model);
+            fail("loaded a graph with Softmax");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("Softmax"));
+        }
+    }
+
+    @Test
+    public void bundledModelMatchesOnnxRuntimeOnTheDataset() throws IOException, OrtException {
+        FeatureDataset data = FeatureDataset.read(DATASET);
+        JavaPredictor javaPredictor = JavaPredictor.load(BUNDLED_MODEL);
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        try (OrtSession session = env.createSession(BUNDLED_MODEL.getPath(), new OrtSession.SessionOptions());
+             OnnxPredictor onnxPredictor = new OnnxPredictor(env, session)) {
+            assertEquals(onnxPredictor.getInputWidth(), javaPredictor.getInputWidth());
+            ModelEvaluator.Parity parity = ModelEvaluator.compare(new OnnxDetectionModel(onnxPredictor),
+                    new JavaDetectionModel(javaPredictor), data, DetectionEngine.ALERT_THRESHOLD);
+
+            assertEquals(data.rows, parity.rows);
+            assertTrue(parity.toString(), parity.maxDelta < 1e-5);
+            assertEquals(0, parity.flips);
+        }
+    }
+
+    /**
+     * x[1,3] -> Gemm(W1 raw, C1 packed floats, alpha 2, beta 0.5, transB) -> Relu
+     * -> MatMul(W2 in an external file) -> Add(0.3) -> {@code last} -> y
+     */
+    private File writeModel(String last) throws IOException {
+        byte[] external = floatBytes(W2);
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "test.onnx.data"))) {
+            out.write(new byte[8]);
+            out.write(external);
+        }
+
+        ByteArrayOutputStream graph = new ByteArrayOutputStream();
+        message(graph, 1, node("Gemm", new String[]{"x", "w1", "c1"}, "h",
+                floatAttribute("alpha", 2f), floatAttribute("beta", 0.5f), intAttribute("transB", 1)));
+        message(graph, 1, node("Relu", new String[]{"h"}, "r"));
+        message(graph, 1, node("MatMul", new String[]{"r", "w2"}, "m"));
+        message(graph, 1, node("Add", new String[]{"m", "c2"}, "z"));
+        message(graph, 1, node(last, new String[]{"z"}, "y"));
+
+        ByteArrayOutputStream w1 = new ByteArrayOutputStream();
+        varintField(w1, 1, 2);
+        varintField(w1, 1, 3);
+        varintField(w1, 2, 1);
+        string(w1, 8, "w1");
+        bytes(w1, 9, floatBytes(W1));
+        message(graph, 5, w1.toByteArray());
+
+        ByteArrayOutputStream c1 = new ByteArrayOutputStream();
+        varintField(c1, 1, 2);
+        varintField(c1, 2, 1);
+        string(c1, 8, "c1");
+        bytes(c1, 4, floatBytes(C1));
+        message(graph, 5, c1.toByteArray());
+
+        ByteArrayOutputStream w2 = new ByteArrayOutputStream();
+        varintField(w2, 1, 2);
+        varintField(w2, 1, 1);
+        varintField(w2, 2, 1);
+        string(w2, 8, "w2");
+        message(w2, 13, entry("location", "test.onnx.data"));
+        message(w2, 13, entry("offset", "8"));
+        message(w2, 13, entry("length", Integer.toString(external.length)));
+        varintField(w2, 14, 1);
+        message(graph, 5, w2.toByteArray());
+
+        ByteArrayOutputStream c2 = new ByteArrayOutputStream();
+        varintField(c2, 1, 1);
+        varintField(c2, 2, 1);
+        string(c2, 8, "c2");
+        tag(c2, 4, 5);
+        c2.write(floatBytes(new float[]{0.3f}));
+        message(graph, 5, c2.toByteArray());
+
+        message(graph, 11, valueInfo("x", 3));
+        message(graph, 12, valueInfo("y", 1));
+
+        ByteArrayOutputStream model = new ByteArrayOutputStream();
+        varintField(model, 1, 8);
+        message(model, 7, graph.toByteArray());
+        File file = new File(dir, "test.onnx");
+        Files.write(file.toPath(), model.toByteArray());
+        return file;
+    }
+
+    private static byte[] node(String opType, String[] inputs, String output, byte[]... attributes) {
+        ByteArrayOutputStream node = new ByteArrayOutputStream();
+        for (String input : inputs) {
+            string(node, 1, input);
+        }
+        string(node, 2, output);
+        string(node, 4, opType);
+        for (byte[] attribute : attributes) {
+            message(node, 5, attribute);
+        }
+        return node.toByteArray();
+    }
+
+    private static byte[] floatAttribute(String name, float value) {
+        ByteArrayOutputStream attribute = new ByteArrayOutputStream();
+        string(attribute, 1, name);
+        tag(attribute, 2, 5);
+        attribute.write(floatBytes(new float[]{value}), 0, 4);
+        varintField(attribute, 20, 1);
+        return attribute.toByteArray();
+    }
+
+    private static byte[] intAttribute(String name, long value) {
+        ByteArrayOutputStream attribute = new ByteArrayOutputStream();
+        string(attribute, 1, name);
+        varintField(attribute, 3, value);
+        varintField(attribute, 20, 2);
+        return attribute.toByteArray();
+    }
+
+    private static byte[] entry(String key, String value) {
+        ByteArrayOutputStream entry = new ByteArrayOutputStream();
+        string(entry, 1, key);
+        string(entry, 2, value);
+        return entry.toByteArray();
+    }
+
+    /**
+     * ValueInfoProto for a float tensor of shape [batch, width] with a symbolic batch.
+     */
+    private static byte[] valueInfo(String name, int width) {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        string(batch, 2, "N");
+        ByteArrayOutputStream columns = new ByteArrayOutputStream();
+        varintField(columns, 1, width);
+        ByteArrayOutputStream shape = new ByteArrayOutputStream();
+        message(shape, 1, batch.toByteArray());
+        message(shape, 1, columns.toByteArray());
+        ByteArrayOutputStream tensor = new ByteArrayOutputStream();
+        varintField(tensor, 1, 1);
+        message(tensor, 2, shape.toByteArray());
+        ByteArrayOutputStream type = new ByteArrayOutputStream();
+        message(type, 1, tensor.toByteArray());
+        ByteArrayOutputStream info = new ByteArrayOutputStream();
+        string(info, 1, name);
+        message(info, 2, type.toByteArray());
+        return info.toByteArray();
+    }
+
+    private static byte[] floatBytes(float[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : values) {
+            buffer.putFloat(value);
+        }
+        return buffer.array();
+    }
+
+    private static void tag(ByteArrayOutputStream out, int field, int wireType) {
+        varint(out, (long) field << 3 | wireType);
+    }
+
+    private static void varint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void varintField(ByteArrayOutputStream out, int field, long value) {
+        tag(out, field, 0);
+        varint(out, value);
+    }
+
+    private static void bytes(ByteArrayOutputStream out, int field, byte[] value) {
+        tag(out, field, 2);
+        varint(out, value.length);
+        out.write(value, 0, value.length);
+    }
+
+    private static void message(ByteArrayOutputStream out, int field, byte[] value) {
+        bytes(out, field, value);
+    }
+
+    private static void string(ByteArrayOutputStream out, int field, String value) {
+        bytes(out, field, value.getBytes(StandardCharsets.UTF_8));
+    }
+}
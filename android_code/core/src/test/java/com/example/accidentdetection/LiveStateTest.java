@@ -0,0 +1,52 @@
+package com.example.accidentdetection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LiveStateTest {
+
+    @Test
+    public void snapshotCarriesBothValues() {
+        LiveState state = new LiveState();
+        assertEquals(0, state.getVersion());
+
+        state.publish(12.5f, -3.25f);
+        long snapshot = state.snapshot();
+        assertEquals(12.5f, LiveState.accel(snapshot), 0f);
+        assertEquals(-3.25f, LiveState.gyro(snapshot), 0f);
+        assertEquals(1, state.getVersion());
+
+        state.publish(Float.NaN, 0f);
+        assertTrue(Float.isNaN(LiveState.accel(state.snapshot())));
+        state.clear();
+        assertEquals(0f, LiveState.accel(state.snapshot()), 0f);
+        assertEquals(3, state.getVersion());
+    }
+
+    @Test
+    public void readersNeverSeeTornPairs() throws InterruptedException {
+        LiveState state = new LiveState();
+        int updates = 2_000_000;
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= updates; i++) {
+                state.publish(i, -i);
+            }
+        });
+        writer.start();
+
+        long reads = 0;
+        float last = 0f;
+        while (writer.isAlive() || reads == 0) {
+            long snapshot = state.snapshot();
+            float accel = LiveState.accel(snapshot);
+            assertEquals(-accel, LiveState.gyro(snapshot), 0f);
+            assertTrue(accel >= last);
+            last = accel;
+            reads++;
+        }
+        writer.join();
+        assertEquals((float) updates, LiveState.accel(state.snapshot()), 0f);
+        assertEquals(updates, state.getVersion());
+    }
+}
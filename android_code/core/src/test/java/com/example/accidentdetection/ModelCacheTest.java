@@ -0,0 +1,128 @@
+package com.example.accidentdetection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ModelCacheTest {
+
+    private File root;
+    private final Map<String, byte[]> assets = new HashMap<>();
+    private int opens = 0;
+
+    private final ModelCache.AssetSource source = name -> {
+        byte[] data = assets.get(name);
+        if (data == null) {
+            throw new FileNotFoundException(name);
+        }
+        opens++;
+        return new ByteArrayInputStream(data);
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("model-cache").toFile();
+        assets.put("model.onnx", new byte[]{1, 2, 3, 4});
+        assets.put("model.onnx.data", new byte[]{5, 6, 7});
+    }
+
+    @After
+    public void tearDown() {
+        delete(root);
+    }
+
+    @Test
+    public void extractsOnceAndReusesOnLaterStarts() throws IOException {
+        File first = new ModelCache(root, "1-100", source).prepare("model.onnx", "model.onnx.data");
+        assertEquals(2, opens);
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, Files.readAllBytes(first.toPath()));
+        assertTrue(new File(first.getParentFile(), "model.onnx.data").isFile());
+
+        ModelCache warm = new ModelCache(root, "1-100", source);
+        File second = warm.prepare("model.onnx", "model.onnx.data");
+        assertEquals(first, second);
+        assertFalse(warm.wasExtracted());
+        assertEquals(2, opens);
+    }
+
+    @Test
+    public void newVersionReplacesOldCache() throws IOException {
+        File old = new ModelCache(root, "1-100", source).prepare("model.onnx");
+        assets.put("model.onnx", new byte[]{9, 9});
+
+        ModelCache updated = new ModelCache(root, "2-200", source);
+        File current = updated.prepare("model.onnx");
+        assertTrue(updated.wasExtracted());
+        assertArrayEquals(new byte[]{9, 9}, Files.readAllBytes(current.toPath()));
+        assertFalse(old.getParentFile().exists());
+    }
+
+    @Test
+    public void truncatedFileIsExtractedAgain() throws IOException {
+        File model = new ModelCache(root, "1-100", source).prepare("model.onnx");
+        try (FileOutputStream out = new FileOutputStream(model)) {
+            out.write(1);
+        }
+
+        ModelCache cache = new ModelCache(root, "1-100", source);
+        cache.prepare("model.onnx");
+        assertTrue(cache.wasExtracted());
+        assertEquals(4, model.length());
+    }
+
+    @Test
+    public void sameLengthCorruptionIsExtractedAgainOnTheNextStart() throws IOException {
+        File model = new ModelCache(root, "1-100", source).prepare("model.onnx", "model.onnx.data");
+        Files.write(model.toPath(), new byte[]{1, 2, 3, 5});
+
+        ModelCache.forgetVerified();
+        ModelCache cache = new ModelCache(root, "1-100", source);
+        cache.prepare("model.onnx", "model.onnx.data");
+        assertTrue(cache.wasExtracted());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, Files.readAllBytes(model.toPath()));
+
+        // Verified once, a warm start no longer reads the files
+        ModelCache.forgetVerified();
+        new ModelCache(root, "1-100", source).prepare("model.onnx", "model.onnx.data");
+        ModelCache warm = new ModelCache(root, "1-100", source);
+        warm.prepare("model.onnx", "model.onnx.data");
+        assertFalse(warm.wasExtracted());
+    }
+
+    @Test
+    public void missingOptionalAssetIsRemembered() throws IOException {
+        assets.remove("model.onnx.data");
+        new ModelCache(root, "1-100", source).prepare("model.onnx", "model.onnx.data");
+        assertEquals(1, opens);
+
+        ModelCache cache = new ModelCache(root, "1-100", source);
+        cache.prepare("model.onnx", "model.onnx.data");
+        assertFalse(cache.wasExtracted());
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void missingModelFails() throws IOException {
+        new ModelCache(root, "1-100", source).prepare("absent.onnx");
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
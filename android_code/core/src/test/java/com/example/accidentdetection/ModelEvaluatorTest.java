@@ -0,0 +1,134 @@
+package com.example.accidentdetection;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ModelEvaluatorTest {
+
+    private static String header() {
+        return FeatureDataset.LABEL_COLUMN + "," + String.join(",", FeatureExtractor.FEATURE_NAMES) + "\n";
+    }
+
+    /**
+     * A row whose AccMax columns give the threshold rule a peak acceleration of {@code peak} m/s²,
+     * written in g as the dataset holds it.
+     */
+    private static String row(int target, float peak) {
+        StringBuilder line = new StringBuilder().append(target);
+        for (int c = 0; c < FeatureExtractor.FEATURE_COUNT; c++) {
+            line.append(',').append(c == 18 ? Float.toString(peak / FeatureExtractor.STANDARD_GRAVITY) : "0.0");
+        }
+        return line.append('\n').toString();
+    }
+
+    @Test
+    public void parsesNumbersLikeFloatParseFloat() throws IOException {
+        Random random = new Random(3);
+        String[] cells = new String[4 * FeatureExtractor.FEATURE_COUNT];
+        StringBuilder csv = new StringBuilder(header());
+        for (int r = 0; r < 4; r++) {
+            csv.append(r + 1);
+            for (int c = 0; c < FeatureExtractor.FEATURE_COUNT; c++) {
+                String cell;
+                switch (c % 5) {
+                    case 0:
+                        cell = Double.toString(random.nextGaussian());
+                        break;
+                    case 1:
+                        cell = Double.toString(random.nextGaussian() * 1e-7);
+                        break;
+                    case 2:
+                        cell = String.format(Locale.ROOT, "%.17f", random.nextDouble() * 1000);
+                        break;
+                    case 3:
+                        cell = String.format(Locale.ROOT, "%.3E", -random.nextDouble() * 1e12);
+                        break;
+                    default:
+                        cell = Integer.toString(random.nextInt(5000) - 2500);
+                }
+                cells[r * FeatureExtractor.FEATURE_COUNT + c] = cell;
+                csv.append(',').append(cell);
+            }
+            csv.append(r % 2 == 0 ? "\r\n" : "\n");
+        }
+
+        FeatureDataset data = FeatureDataset.parse(csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(4, data.rows);
+        assertArrayEquals(new int[]{1, 2, 3, 4}, Arrays.copyOf(data.labels, 4));
+        for (int i = 0; i < cells.length; i++) {
+            float expected = Float.parseFloat(cells[i]);
+            assertEquals(cells[i], expected, data.features[i], Math.ulp(expected));
+        }
+    }
+
+    @Test
+    public void rejectsUnexpectedColumns() {
+        String csv = header().replace("AccMaxX", "AccMaximumX") + row(1, 0f);
+        try {
+            FeatureDataset.parse(csv.getBytes(StandardCharsets.UTF_8));
+            fail("Renamed column accepted");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("AccMaxX"));
+        }
+    }
+
+    @Test
+    public void reportsConfusionAndRocForThresholdModel() throws IOException {
+        // Two positives above the 20 m/s² rule, one below it; one negative above it
+        String csv = header() + row(4, 30f) + row(4, 25f) + row(4, 5f)
+                + row(1, 1f) + row(2, 2f) + row(3, 40f) + "\n";
+        FeatureDataset data = FeatureDataset.parse(csv.getBytes(StandardCharsets.UTF_8));
+
+        ModelEvaluator.Report report = new ModelEvaluator(new ThresholdModel(), 4)
+                .evaluate(data, new int[]{4}, 0.7f, 1, 3);
+
+        assertEquals(6, report.rows);
+        assertEquals(3, report.positives);
+        assertEquals(2, report.truePositives);
+        assertEquals(1, report.falseNegatives);
+        assertEquals(1, report.falsePositives);
+        assertEquals(2, report.trueNegatives);
+        assertEquals(4.0 / 6, report.accuracy(), 1e-9);
+        assertEquals(2.0 / 3, report.precision(), 1e-9);
+        assertEquals(2.0 / 3, report.recall(), 1e-9);
+        // Pairs: 2x2 positive above negative, 2 high-high ties, 2 low-low ties, 1 low positive under a high negative
+        assertEquals((4 + 0.5 * 2 + 0.5 * 2) / 9.0, report.auc, 1e-9);
+        assertArrayEquals(new int[]{1, 2, 3, 4}, report.targets);
+        assertArrayEquals(new int[]{0, 0, 1, 2}, report.targetFlagged);
+        assertEquals(1.0, report.rocTruePositiveRate[0], 0);
+        assertEquals(0.0, report.rocTruePositiveRate[report.rocThresholds.length - 1], 0);
+        assertTrue(report.repeatable);
+    }
+
+    @Test
+    public void aucMatchesPairCounting() {
+        Random random = new Random(11);
+        int count = 500;
+        float[] scores = new float[count];
+        boolean[] positive = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            positive[i] = random.nextBoolean();
+            // Coarse scores so ties are common
+            scores[i] = Math.round((random.nextFloat() + (positive[i] ? 0.3f : 0f)) * 10) / 10f;
+        }
+        double wins = 0;
+        long pairs = 0;
+        for (int p = 0; p < count; p++) {
+            for (int n = 0; n < count; n++) {
+                if (positive[p] && !positive[n]) {
+                    pairs++;
+                    wins += scores[p] > scores[n] ? 1 : scores[p] == scores[n] ? 0.5 : 0;
+                }
+            }
+        }
+        assertEquals(wins / pairs, ModelEvaluator.auc(scores, positive, count), 1e-12);
+    }
+}
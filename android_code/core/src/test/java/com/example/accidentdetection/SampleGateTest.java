@@ -0,0 +1,102 @@
+package com.example.accidentdetection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SampleGateTest {
+
+    // 50 Hz
+    private static final long STEP = 20_000_000L;
+
+    private static SampleGate quietGate() {
+        return new SampleGate().holdMillis(1000).auditIntervalMillis(0);
+    }
+
+    @Test
+    public void smoothCruiseStaysClosed() {
+        SampleGate gate = quietGate();
+        for (int i = 0; i < 500; i++) {
+            float accel = 0.5f + 0.3f * (float) Math.sin(i / 10.0);
+            assertEquals("sample " + i, SampleGate.CLOSED, gate.offer(i * STEP, accel, 0.1f));
+        }
+        assertEquals(500, gate.getOffered());
+        assertEquals(0, gate.getOpenings());
+        assertEquals(1.0, gate.getSkipRatio(), 0.0);
+    }
+
+    @Test
+    public void ordinaryRotationInDegreesPerSecondStaysClosed() {
+        SampleGate gate = quietGate();
+        // Gyro bias of a still sensor, then cornering, as AD.ino reports them
+        float[] gyro = {2.3f, 20f, 45f, 70f, 45f, 20f};
+        for (int i = 0; i < gyro.length; i++) {
+            assertEquals("sample " + i, SampleGate.CLOSED, gate.offer(i * STEP, 0.5f, gyro[i]));
+        }
+        assertEquals(0, gate.getOpenings());
+    }
+
+    @Test
+    public void levelOpensAndHoldLetsItClose() {
+        SampleGate gate = quietGate().stepLimit(1e9f);
+        gate.offer(0, 0.5f, 0f);
+        assertEquals(SampleGate.OPEN, gate.offer(STEP, 0.5f, 120f));
+        // Stays open for the hold after the trigger, then closes
+        assertEquals(SampleGate.OPEN, gate.offer(STEP + 1_000_000_000L, 0.5f, 0f));
+        assertEquals(SampleGate.CLOSED, gate.offer(STEP + 1_000_000_001L, 0.5f, 0f));
+        assertEquals(1, gate.getOpenings());
+        assertEquals(2, gate.getOpened());
+    }
+
+    @Test
+    public void jerkOpensBeforeTheLevelIsReached() {
+        SampleGate gate = quietGate();
+        gate.offer(0, 0.5f, 0f);
+        // A 6 m/s^2 step, still below the 12 m/s^2 level
+        assertEquals(SampleGate.OPEN, gate.offer(STEP, 6.5f, 0f));
+    }
+
+    @Test
+    public void cusumOpensOnASustainedShift() {
+        SampleGate gate = quietGate().stepLimit(1e9f);
+        long nanos = 0;
+        for (int i = 0; i < 100; i++, nanos += STEP) {
+            assertEquals(SampleGate.CLOSED, gate.offer(nanos, 1f, 0f));
+        }
+        // Braking: a shift well below both the level and the step limit, held
+        int opened = -1;
+        for (int i = 0; i < 10 && opened < 0; i++, nanos += STEP) {
+            if (gate.offer(nanos, 4f, 0f) == SampleGate.OPEN) {
+                opened = i;
+            }
+        }
+        assertTrue("opened after " + opened, opened >= 1 && opened <= 5);
+    }
+
+    @Test
+    public void auditsPassOneSamplePerInterval() {
+        SampleGate gate = new SampleGate().auditIntervalMillis(1000);
+        int audits = 0;
+        for (int i = 0; i < 250; i++) {
+            int pass = gate.offer(i * STEP, 0.5f, 0f);
+            assertTrue(pass != SampleGate.OPEN);
+            if (pass == SampleGate.AUDIT) {
+                audits++;
+            }
+        }
+        // At 0, 1, 2, 3 and 4 seconds
+        assertEquals(5, audits);
+        assertEquals(5, gate.getAudits());
+        assertEquals(0.98, gate.getSkipRatio(), 1e-9);
+    }
+
+    @Test
+    public void resetStartsANewBaseline() {
+        SampleGate gate = quietGate();
+        gate.offer(0, 0.5f, 0f);
+        gate.reset();
+        // Far from the old baseline, but the first sample after a reset has nothing to differ from
+        assertEquals(SampleGate.CLOSED, gate.offer(10 * STEP, 8f, 0f));
+        assertEquals(SampleGate.CLOSED, gate.offer(11 * STEP, 8f, 0f));
+    }
+}
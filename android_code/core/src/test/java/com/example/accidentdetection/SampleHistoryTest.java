@@ -0,0 +1,73 @@
+package com.example.accidentdetection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SampleHistoryTest {
+
+    private static void recordSteps(SampleHistory history, int from, int to) {
+        for (int i = from; i < to; i++) {
+            history.record(i, i, 0f, 0f, 0f, 0f, 0f, i, -i);
+        }
+    }
+
+    @Test
+    public void copiesAcrossTheWrapPoint() {
+        SampleHistory history = new SampleHistory(10);
+        assertEquals(16, history.getCapacity());
+        recordSteps(history, 0, 40);
+
+        long[] times = new long[16];
+        float[] values = new float[16 * SampleHistory.WIDTH];
+        assertEquals(10, history.copy(30, 40, times, values));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(30 + i, times[i]);
+            assertEquals(30 + i, values[i * SampleHistory.WIDTH], 0f);
+            assertEquals(-(30 + i), values[i * SampleHistory.WIDTH + SampleHistory.GYRO], 0f);
+        }
+    }
+
+    @Test
+    public void refusesOverwrittenRanges() {
+        SampleHistory history = new SampleHistory(16);
+        recordSteps(history, 0, 40);
+        long[] times = new long[16];
+        float[] values = new float[16 * SampleHistory.WIDTH];
+
+        assertEquals(25, history.oldestRetained());
+        assertEquals(-1, history.copy(24, 40, times, values));
+        assertEquals(15, history.copy(25, 40, times, values));
+    }
+
+    @Test
+    public void spreadsBatchSamplesBackFromArrival() {
+        SampleHistory history = new SampleHistory(64);
+        TelemetryFrame frame = new TelemetryFrame();
+        frame.type = TelemetryFrame.TYPE_SAMPLE_BATCH;
+        frame.batchCount = 3;
+        frame.batchIntervalMicros = 2000;
+        for (int i = 0; i < 3; i++) {
+            frame.batchAxes[i * 6] = 3f * i;
+            frame.batchAxes[i * 6 + 2] = 9.81f + 4f * i;
+            frame.batchAxes[i * 6 + 5] = 10f;
+        }
+        history.record(frame, 10_000_000L, 9.81f);
+
+        long[] times = new long[3];
+        float[] values = new float[3 * SampleHistory.WIDTH];
+        assertEquals(3, history.copy(0, 3, times, values));
+        assertArrayEquals(new long[]{6_000_000L, 8_000_000L, 10_000_000L}, times);
+        // Sample 1: 3 m/s² on X, 4 m/s² above gravity on Z
+        assertEquals(5f, values[SampleHistory.WIDTH + SampleHistory.ACCEL], 1e-4f);
+        assertEquals(10f, values[SampleHistory.WIDTH + SampleHistory.GYRO], 1e-4f);
+
+        TelemetryFrame text = new TelemetryFrame();
+        text.type = TelemetryFrame.TYPE_SENSOR;
+        text.accel = 1.5f;
+        history.record(text, 12_000_000L, 9.81f);
+        assertEquals(1, history.copy(3, 4, times, values));
+        assertTrue(Float.isNaN(values[0]));
+        assertEquals(1.5f, values[SampleHistory.ACCEL], 0f);
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.accidentdetection;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+public class SensorHubTest {
+
+    private static final long MS = 1_000_000L;
+
+    private static final class RecordingListener implements SensorHub.Listener {
+        final List<float[]> fused = new ArrayList<>();
+        final List<Long> fusedNanos = new ArrayList<>();
+        final List<String> deviceAlerts = new ArrayList<>();
+        final List<String> gaps = new ArrayList<>();
+        int streamGaps;
+        int linksSeen;
+
+        @Override
+        public synchronized void onFusedSample(long nanos, float accel, float gyro, float[] axes, int links,
+                                               float[] samples, int sampleCount) {
+            fused.add(new float[]{accel, gyro, axes[0], axes[1], axes[2], axes[3], axes[4], axes[5]});
+            fusedNanos.add(nanos);
+            linksSeen |= links;
+        }
+
+        @Override
+        public synchronized void onDeviceAlert(SensorHub.Link link, float accel, float gyro, long nanos) {
+            deviceAlerts.add(link.getName());
+        }
+
+        @Override
+        public synchronized void onStreamGap(long lostNanos, long resumedNanos) {
+            assertTrue(resumedNanos > lostNanos);
+            streamGaps++;
+        }
+
+        @Override
+        public synchronized void onGap(SensorHub.Link link, long lostNanos, long resumedNanos) {
+            assertTrue(resumedNanos > lostNanos);
+            gaps.add(link.getName());
+        }
+
+        synchronized float peakAccel() {
+            float peak = 0f;
+            for (float[] sample : fused) {
+                peak = Math.max(peak, sample[0]);
+            }
+            return peak;
+        }
+    }
+
+    private static void awaitClosed(SensorHub hub) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        for (SensorHub.Link link : hub.getLinks()) {
+            while (link.getState() != SensorHub.LinkState.CLOSED) {
+                assertTrue("link " + link.getName() + " did not end", System.nanoTime() < deadline);
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    private static void await(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(what, System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void fusesSeveralNodesAndKeepsPerLinkMetrics() throws InterruptedException {
+        RecordingListener listener = new RecordingListener();
+        SensorHub hub = new SensorHub(20, 200, 500, listener);
+        FakeTransport front = new FakeTransport("front");
+        FakeTransport rear = new FakeTransport("rear");
+        FakeTransport cabin = new FakeTransport("cabin");
+        hub.addLink(front);
+        hub.addLink(rear);
+        SensorHub.Link cabinLink = hub.addLink(cabin);
+        hub.start();
+
+        // Only the rear node feels the impact
+        front.feed(new TelemetrySimulator(500, 10, 1L).render(2000));
+        rear.feed(new TelemetrySimulator(500, 10, 2L).addImpulse(1000, 20, 80f, 300f).render(2000));
+        byte[] cabinStream = new TelemetrySimulator(200, 8, 3L).render(2000);
+        cabin.feed(cabinStream);
+        byte[] alert = new byte[BinaryProtocol.frameLength(BinaryProtocol.ALERT_PAYLOAD)];
+        BinaryProtocol.encodeAlert(alert, 0, 1, 2000, 60f, 200f);
+        cabin.feed(alert);
+        front.end();
+        rear.end();
+        cabin.end();
+        awaitClosed(hub);
+        hub.shutdown(1000);
+
+        assertArrayEquals(BinaryProtocol.commandBytes(500), front.getSent());
+        assertTrue(front.isClosed());
+        assertEquals(0b111, listener.linksSeen);
+        assertEquals(80f, listener.peakAccel(), 3f);
+        for (float[] sample : listener.fused) {
+            // Binary telemetry: every bucket carries raw axes on to the history
+            assertFalse(Float.isNaN(sample[2]));
+        }
+        assertEquals(Arrays.asList("cabin"), listener.deviceAlerts);
+        assertEquals(hub.getFusedSamples(), listener.fused.size());
+        for (int i = 1; i < listener.fusedNanos.size(); i++) {
+            assertTrue(listener.fusedNanos.get(i) > listener.fusedNanos.get(i - 1));
+        }
+
+        assertEquals(200, cabinLink.getSampleRateHz());
+        assertEquals(400, cabinLink.getSamplesReceived());
+        assertEquals(1000, hub.getLinks().get(0).getSamplesReceived());
+        assertEquals(0, cabinLink.getCrcErrors());
+        assertEquals(0, cabinLink.getMalformedFrames());
+        assertNull(cabinLink.getLastError());
+        assertEquals(0, hub.getConnectedCount());
+    }
+
+    @Test
+    public void failedNodeDoesNotStopTheOthers() throws InterruptedException {
+        RecordingListener listener = new RecordingListener();
+        SensorHub hub = new SensorHub(20, 200, 0, listener);
+        FakeTransport good = new FakeTransport("good");
+        FakeTransport bad = new FakeTransport("bad");
+        bad.failConnect(new IOException("host is down"));
+        hub.addLink(good);
+        SensorHub.Link badLink = hub.addLink(bad);
+        hub.start();
+
+        good.feed(new TelemetrySimulator(100, 5, 4L).render(1000));
+        good.end();
+        awaitClosed(hub);
+        hub.shutdown(1000);
+
+        assertEquals("host is down", badLink.getLastError());
+        assertEquals(0, badLink.getFramesReceived());
+        assertArrayEquals(BinaryProtocol.commandBytes(), good.getSent());
+        assertEquals(1, listener.linksSeen);
+        assertTrue(hub.getFusedSamples() > 0);
+    }
+
+    @Test
+    public void clockOffsetTracksTheSmallestDelay() {
+        SensorHub.ClockOffset clock = new SensorHub.ClockOffset();
+        Random random = new Random(11);
+        long offset = 5_000 * MS;
+        long worst = 0;
+        for (int i = 0; i < 1000; i++) {
+            long device = i * 10 * MS;
+            long delay = MS + (long) (random.nextDouble() * 20 * MS);
+            long aligned = clock.align(device, device + offset + delay);
+            if (i >= 100) {
+                worst = Math.max(worst, Math.abs(aligned - (device + offset + MS)));
+            }
+        }
+        // Never later than arrival, and close to the fastest delivery
+        assertTrue("worst " + worst, worst < 2 * MS);
+
+        // The node rebooted: its clock starts over
+        long aligned = clock.align(0, 20_000 * MS + MS);
+        assertEquals(20_000 * MS + MS, aligned);
+    }
+
+    @Test
+    public void fuserWaitsForSlowNodesWithinTheLatencyBound() {
+        List<long[]> out = new ArrayList<>();
+        SampleFuser fuser = new SampleFuser(10 * MS, 50 * MS,
+                (nanos, accel, gyro, axes, links, samples, count) ->
+                        out.add(new long[]{nanos, (long) accel, (long) gyro, links}));
+        fuser.setActive(0, true);
+        fuser.setActive(1, true);
+
+        fuser.add(0, 1 * MS, 3f, 1f);
+        fuser.add(0, 12 * MS, 4f, 1f);
+        // Node 1 has not reported past the first bucket yet
+        assertTrue(out.isEmpty());
+
+        assertTrue(fuser.add(1, 5 * MS, 9f, 2f));
+        assertTrue(out.isEmpty());
+        fuser.add(1, 11 * MS, 2f, 1f);
+        assertEquals(1, out.size());
+        assertArrayEquals(new long[]{10 * MS, 9, 2, 0b11}, out.get(0));
+
+        // Node 1 stalls; node 0 runs ahead until the latency bound releases the next bucket
+        fuser.add(0, 40 * MS, 1f, 1f);
+        assertEquals(1, out.size());
+        fuser.add(0, 70 * MS, 1f, 1f);
+        assertEquals(2, out.size());
+        assertArrayEquals(new long[]{20 * MS, 4, 1, 0b11}, out.get(1));
+
+        // A sample for an emitted bucket is folded into the oldest pending one
+        assertFalse(fuser.add(1, 14 * MS, 50f, 5f));
+        assertEquals(1, fuser.getLateSamples());
+        fuser.setActive(1, false);
+        fuser.flush();
+        assertArrayEquals(new long[]{30 * MS, 50, 5, 0b10}, out.get(2));
+        assertEquals(50 * MS, out.get(3)[0]);
+        assertEquals(80 * MS, out.get(4)[0]);
+        assertEquals(5, fuser.getEmitted());
+    }
+
+    @Test
+    public void supervisedLinkReconnectsAndReportsTheGap() throws InterruptedException {
+        RecordingListener listener = new RecordingListener();
+        SensorHub hub = new SensorHub(20, 200, 500, listener);
+        hub.supervise(5000, 0, 10, 20);
+        FakeTransport node = new FakeTransport("node");
+        SensorHub.Link link = hub.addLink(node);
+        hub.start();
+
+        node.feed(new TelemetrySimulator(500, 10, 5L).render(1000));
+        node.end();
+        await("first session did not end", () -> node.closes == 1);
+        // The node comes back after a failed attempt
+        node.failConnects(1, new IOException("page timeout"));
+        Thread.sleep(30);
+        node.feed(new TelemetrySimulator(500, 10, 6L).addImpulse(500, 20, 80f, 300f).render(1000));
+        await("second session did not deliver", () -> link.getSamplesReceived() == 1000);
+        hub.shutdown(1000);
+
+        assertEquals(SensorHub.LinkState.CLOSED, link.getState());
+        assertEquals(3, node.connects);
+        assertEquals(1, link.getReconnects());
+        assertEquals(Arrays.asList("node"), listener.gaps);
+        assertEquals(1, listener.streamGaps);
+        assertEquals(80f, listener.peakAccel(), 3f);
+        assertEquals(0, link.getSamplesLost());
+        assertEquals(500, link.getSampleRateHz());
+        // Both sessions asked for telemetry
+        byte[] request = BinaryProtocol.commandBytes(500);
+        byte[] twice = new byte[request.length * 2];
+        System.arraycopy(request, 0, twice, 0, request.length);
+        System.arraycopy(request, 0, twice, request.length, request.length);
+        assertArrayEquals(twice, node.getSent());
+        assertTrue(link.getLastRecoveryMillis() >= 30);
+        assertEquals(link.getLastRecoveryMillis(), link.getMaxRecoveryMillis());
+        assertEquals(link.getLastRecoveryMillis(), link.getUnmonitoredMillis(System.nanoTime()));
+        // At least the two backoff sleeps had no socket up
+        assertTrue(hub.getUnmonitoredMillis(System.nanoTime()) >= 15);
+    }
+
+    @Test
+    public void watchdogClosesASilentLinkAndHeartbeatsTheLiveOne() throws InterruptedException {
+        RecordingListener listener = new RecordingListener();
+        SensorHub hub = new SensorHub(20, 200, 0, listener);
+        hub.supervise(150, 20, 10, 20);
+        FakeTransport node = new FakeTransport("node");
+        SensorHub.Link link = hub.addLink(node);
+        hub.start();
+
+        // Delivers, then goes quiet without closing the socket
+        node.feed(new TelemetrySimulator(100, 5, 7L).render(500));
+        await("stall not detected", () -> link.getStalls() == 1);
+        await("did not reconnect", () -> node.connects >= 2);
+        String error = link.getLastError();
+        node.feed(new TelemetrySimulator(100, 5, 8L).render(500));
+        await("no gap reported", () -> link.getReconnects() == 1);
+        hub.shutdown(1000);
+
+        assertEquals("stalled", error);
+        assertEquals(SensorHub.LinkState.CLOSED, link.getState());
+        String sent = new String(node.getSent(), StandardCharsets.US_ASCII);
+        assertTrue(sent, sent.contains(new String(BinaryProtocol.heartbeatBytes(), StandardCharsets.US_ASCII)));
+        assertTrue(link.getLastRecoveryMillis() >= 150);
+    }
+
+    @Test
+    public void backoffDoublesWithEqualJitterUpToTheCap() {
+        assertEquals(250, SensorHub.backoffMillis(0, 500, 30_000, 0.0));
+        assertEquals(499, SensorHub.backoffMillis(0, 500, 30_000, 0.999));
+        assertEquals(2000, SensorHub.backoffMillis(3, 500, 30_000, 0.0));
+        assertEquals(3000, SensorHub.backoffMillis(3, 500, 30_000, 0.5));
+        assertEquals(15_000, SensorHub.backoffMillis(7, 500, 30_000, 0.0));
+        assertEquals(30_000, SensorHub.backoffMillis(7, 500, 30_000, 1.0));
+        // No overflow however long the node stays away
+        for (int attempt = 0; attempt < 200; attempt++) {
+            long delay = SensorHub.backoffMillis(attempt, 500, 30_000, 0.5);
+            assertTrue("attempt " + attempt + ": " + delay, delay >= 250 && delay <= 30_000);
+        }
+    }
+
+    @Test
+    public void fuserCarriesTheAxesOfTheBucketPeak() {
+        List<float[]> out = new ArrayList<>();
+        SampleFuser fuser = new SampleFuser(10 * MS, 0,
+                (nanos, accel, gyro, axes, links, samples, count) -> out.add(axes.clone()));
+        fuser.setActive(0, true);
+        fuser.setActive(1, true);
+
+        fuser.add(0, 1 * MS, 3f, 1f, 1f, 2f, 9.8f, 10f, 0f, 0f);
+        fuser.add(1, 2 * MS, 7f, 1f, 5f, 4f, 12f, 0f, 20f, 0f);
+        fuser.add(0, 3 * MS, 5f, 90f, 3f, 3f, 9.8f, 0f, 0f, 90f);
+        // A text line has the highest accel but no axes to offer
+        fuser.add(1, 4 * MS, 8f, 1f);
+        fuser.add(0, 11 * MS, 1f, 1f);
+        fuser.add(1, 12 * MS, 1f, 1f);
+        assertEquals(1, out.size());
+        assertArrayEquals(new float[]{5f, 4f, 12f, 0f, 20f, 0f}, out.get(0), 0f);
+
+        // Only text lines in the bucket
+        fuser.add(0, 21 * MS, 1f, 1f);
+        fuser.add(1, 22 * MS, 1f, 1f);
+        assertEquals(2, out.size());
+        assertTrue(Float.isNaN(out.get(1)[0]) && Float.isNaN(out.get(1)[5]));
+    }
+
+    @Test
+    public void fuserRestartsAfterEveryNodeDropped() {
+        List<long[]> out = new ArrayList<>();
+        List<long[]> gaps = new ArrayList<>();
+        SampleFuser fuser = new SampleFuser(10 * MS, 50 * MS, new SampleFuser.Output() {
+            @Override
+            public void onFusedSample(long nanos, float accel, float gyro, float[] axes, int links,
+                                      float[] samples, int sampleCount) {
+                out.add(new long[]{nanos, (long) accel});
+            }
+
+            @Override
+            public void onGap(long lostNanos, long resumedNanos) {
+                gaps.add(new long[]{lostNanos, resumedNanos, out.size()});
+            }
+        });
+        fuser.setActive(0, true);
+        fuser.add(0, 1 * MS, 3f, 1f);
+        fuser.add(0, 5 * MS, 4f, 1f);
+        fuser.setActive(0, false);
+        // Nothing is held back across the hole
+        assertEquals(1, out.size());
+        assertTrue(gaps.isEmpty());
+
+        fuser.setActive(0, true);
+        fuser.add(0, 60_001 * MS, 7f, 1f);
+        assertEquals(1, gaps.size());
+        assertArrayEquals(new long[]{5 * MS, 60_001 * MS, 1}, gaps.get(0));
+        fuser.add(0, 60_012 * MS, 1f, 1f);
+        assertArrayEquals(new long[]{60_010 * MS, 7}, out.get(1));
+        assertEquals(0, fuser.getLateSamples());
+    }
+
+    @Test
+    public void fuserCarriesTheFirstNodesRawSamplesForTheWindow() {
+        List<float[]> out = new ArrayList<>();
+        SampleFuser fuser = new SampleFuser(10 * MS, 0,
+                (nanos, accel, gyro, axes, links, samples, count) -> out.add(Arrays.copyOf(samples, count * 6)));
+        fuser.setActive(0, true);
+        fuser.setActive(1, true);
+
+        fuser.add(0, 1 * MS, 3f, 1f, 1f, 0f, 9.8f, 0f, 0f, 0f);
+        // Node 1's peak sets the magnitudes and the history axes, not the window
+        fuser.add(1, 2 * MS, 30f, 1f, 30f, 0f, 9.8f, 0f, 0f, 0f);
+        fuser.add(0, 3 * MS, 4f, 1f, 2f, 0f, 9.8f, 0f, 0f, 0f);
+        fuser.add(0, 11 * MS, 1f, 1f, 3f, 0f, 9.8f, 0f, 0f, 0f);
+        fuser.add(1, 12 * MS, 1f, 1f);
+        assertEquals(1, out.size());
+        assertArrayEquals(new float[]{1f, 0f, 9.8f, 0f, 0f, 0f, 2f, 0f, 9.8f, 0f, 0f, 0f}, out.get(0), 0f);
+
+        // Node 0 goes quiet for a bucket: nothing to continue the window with
+        fuser.add(1, 22 * MS, 1f, 1f);
+        fuser.add(0, 31 * MS, 1f, 1f, 4f, 0f, 9.8f, 0f, 0f, 0f);
+        fuser.add(1, 32 * MS, 1f, 1f);
+        assertEquals(3, out.size());
+        assertArrayEquals(new float[]{3f, 0f, 9.8f, 0f, 0f, 0f}, out.get(1), 0f);
+        assertEquals(0, out.get(2).length);
+
+        // A late sample of node 0 breaks the bucket it is folded into
+        fuser.add(0, 5 * MS, 1f, 1f, 5f, 0f, 9.8f, 0f, 0f, 0f);
+        fuser.add(0, 41 * MS, 1f, 1f, 6f, 0f, 9.8f, 0f, 0f, 0f);
+        fuser.add(1, 42 * MS, 1f, 1f);
+        assertEquals(4, out.size());
+        assertEquals(0, out.get(3).length);
+        assertEquals(1, fuser.getBrokenWindowBuckets());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.accidentdetection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SnapshotRecorderTest {
+
+    private File dir;
+    private final SampleHistory history = new SampleHistory(4096);
+    private final CountDownLatch savedLatch = new CountDownLatch(1);
+    private volatile File savedFile;
+
+    private final SnapshotRecorder.Listener listener = new SnapshotRecorder.Listener() {
+        @Override
+        public void onSnapshotSaved(File file, int samples) {
+            savedFile = file;
+            savedLatch.countDown();
+        }
+
+        @Override
+        public void onSnapshotFailed(IOException e) {
+            fail(e.toString());
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("snapshots").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void savesPreAndPostTriggerWindow() throws Exception {
+        SnapshotRecorder recorder = new SnapshotRecorder(history, dir, 100, 50, 5, listener);
+        recorder.start();
+        long now = System.nanoTime();
+        // 1 kHz of history reaching 300 ms into the past, text-mode samples with no axes
+        for (int i = 300; i > 0; i--) {
+            history.record(now - TimeUnit.MILLISECONDS.toNanos(i), Float.NaN, Float.NaN, Float.NaN,
+                    Float.NaN, Float.NaN, Float.NaN, 1f, 2f);
+        }
+        assertTrue(recorder.trigger("test"));
+        assertFalse("second trigger during a capture", recorder.trigger("again"));
+        // Samples after the trigger, including some beyond the window
+        long triggered = System.nanoTime();
+        for (int i = 0; i < 80; i++) {
+            history.record(triggered + TimeUnit.MILLISECONDS.toNanos(i), 0.5f, 0f, 9.81f, 0f, 0f, 250f, 30f, 250f);
+        }
+
+        assertTrue(savedLatch.await(5, TimeUnit.SECONDS));
+        recorder.shutdown(1000);
+        assertEquals(1, recorder.getSaved());
+
+        CrashSnapshot snapshot;
+        try (InputStream in = new FileInputStream(savedFile)) {
+            snapshot = CrashSnapshot.read(in);
+        }
+        assertEquals("test", snapshot.reason);
+        // Pre-trigger samples are within 100 ms, post-trigger samples within 50 ms
+        assertTrue(snapshot.triggerIndex >= 95 && snapshot.triggerIndex <= 101);
+        int post = snapshot.sampleCount - snapshot.triggerIndex;
+        assertTrue(post >= 45 && post <= 51);
+        assertTrue(snapshot.offsetMicros[0] >= -100_000);
+        assertTrue(snapshot.offsetMicros[snapshot.sampleCount - 1] <= 50_000);
+
+        assertTrue(Float.isNaN(snapshot.value(0, 0)));
+        assertEquals(1f, snapshot.value(0, SampleHistory.ACCEL), 0f);
+        int last = snapshot.sampleCount - 1;
+        assertEquals(9.81f, snapshot.value(last, 2), 1e-4f);
+        assertEquals(250f, snapshot.value(last, 5), 1e-4f);
+        assertFalse(new File(dir, savedFile.getName() + ".tmp").exists());
+    }
+
+    @Test
+    public void shutdownFlushesPendingCaptureAndKeepsNewestFiles() throws Exception {
+        for (long t = 1; t <= 3; t++) {
+            assertTrue(new File(dir, SnapshotRecorder.fileName(t)).createNewFile());
+        }
+        SnapshotRecorder recorder = new SnapshotRecorder(history, dir, 1000, 60_000, 2, listener);
+        recorder.start();
+        history.record(System.nanoTime(), 0f, 0f, 0f, 0f, 0f, 0f, 0f, 0f);
+        assertTrue(recorder.trigger("shutdown"));
+        recorder.shutdown(5000);
+
+        assertTrue(savedLatch.await(0, TimeUnit.SECONDS));
+        String[] names = dir.list();
+        assertNotNull(names);
+        assertEquals(2, names.length);
+        assertTrue(new File(dir, SnapshotRecorder.fileName(3)).exists());
+        assertTrue(savedFile.exists());
+        assertFalse(recorder.trigger("after shutdown"));
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.accidentdetection;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class TelemetryParserTest {
+
+    private final TelemetryParser parser = new TelemetryParser();
+    private final TelemetryFrame frame = new TelemetryFrame();
+
+    private int parse(String line) {
+        // Embed the line in a larger buffer to check offsets are honoured
+        byte[] bytes = ("##" + line + "##").getBytes(StandardCharsets.US_ASCII);
+        return parser.parse(bytes, 2, bytes.length - 4, frame);
+    }
+
+    @Test
+    public void parsesSensorLine() {
+        assertEquals(TelemetryFrame.TYPE_SENSOR, parse("ACCEL:12.34 GYRO:150.02 STATUS:OK"));
+        assertEquals(12.34f, frame.accel, 1e-6f);
+        assertEquals(150.02f, frame.gyro, 1e-6f);
+        assertFalse(frame.statusAlert);
+
+        assertEquals(TelemetryFrame.TYPE_SENSOR, parse("ACCEL:-0.50 GYRO:0 STATUS:ALERT"));
+        assertEquals(-0.5f, frame.accel, 1e-6f);
+        assertEquals(0f, frame.gyro, 0f);
+        assertTrue(frame.statusAlert);
+    }
+
+    @Test
+    public void acceptsFieldsInAnyOrderAndExtraSpaces() {
+        assertEquals(TelemetryFrame.TYPE_SENSOR, parse("  GYRO:2.00   ACCEL:1.00 "));
+        assertEquals(1f, frame.accel, 0f);
+        assertEquals(2f, frame.gyro, 0f);
+    }
+
+    @Test
+    public void parsesAlertBlock() {
+        assertEquals(TelemetryFrame.TYPE_ALERT, parse("ALERT:ACCIDENT_DETECTED"));
+        assertTrue(Float.isNaN(frame.alertAccelTotal));
+        assertEquals(TelemetryFrame.TYPE_ALERT_TIME, parse("TIME:4294967"));
+        assertEquals(4294967L, frame.alertTimeMillis);
+        assertEquals(TelemetryFrame.TYPE_ALERT_ACCEL_TOTAL, parse("ACCEL_TOTAL:25.61"));
+        assertEquals(25.61f, frame.alertAccelTotal, 1e-6f);
+        assertEquals(TelemetryFrame.TYPE_ALERT_GYRO_TOTAL, parse("GYRO_TOTAL:201.00"));
+        assertEquals(201f, frame.alertGyroTotal, 1e-6f);
+        assertEquals(TelemetryFrame.TYPE_ALERT_END, parse("---"));
+    }
+
+    @Test
+    public void rejectsMalformedLines() {
+        frame.accel = 7f;
+        assertEquals(TelemetryParser.RESULT_MALFORMED, parse("ACCEL:nan GYRO:1.00 STATUS:OK"));
+        assertEquals(TelemetryParser.ERROR_BAD_NUMBER, parser.getLastError());
+        assertEquals(7f, frame.accel, 0f);
+
+        assertEquals(TelemetryParser.RESULT_MALFORMED, parse("ACCEL:1.00 STATUS:OK"));
+        assertEquals(TelemetryParser.ERROR_MISSING_FIELD, parser.getLastError());
+
+        assertEquals(TelemetryParser.RESULT_MALFORMED, parse("ACCEL:1.00 GYRO:1.00 STATUS:MAYBE"));
+        assertEquals(TelemetryParser.ERROR_BAD_STATUS, parser.getLastError());
+
+        assertEquals(TelemetryParser.RESULT_MALFORMED, parse("ACCEL:1.0.0 GYRO:1.00"));
+        assertEquals(TelemetryParser.ERROR_BAD_NUMBER, parser.getLastError());
+
+        assertEquals(TelemetryParser.RESULT_MALFORMED, parse("HELLO"));
+        assertEquals(TelemetryParser.ERROR_UNKNOWN_KEY, parser.getLastError());
+
+        assertEquals(TelemetryParser.RESULT_MALFORMED, parse("   "));
+        assertEquals(TelemetryParser.ERROR_EMPTY, parser.getLastError());
+
+        assertEquals(6, parser.getMalformedCount());
+    }
+
+    @Test
+    public void parsesBinarySampleAndCountsSequenceGaps() {
+        byte[] buf = new byte[64];
+        assertEquals(TelemetryFrame.TYPE_PROTOCOL_ACK, parse(BinaryProtocol.REPLY_BINARY));
+
+        int length = BinaryProtocol.encodeSample(buf, 3, 65535, 4_000_000_000L,
+                3f, -4f, 9.81f, 120.5f, -0.3f, 12f, BinaryProtocol.FLAG_ALERT);
+        assertEquals(BinaryProtocol.frameLength(BinaryProtocol.SAMPLE_PAYLOAD), length);
+        assertEquals(TelemetryFrame.TYPE_SENSOR, parser.parse(buf, 3, length, frame));
+        assertEquals(65535, frame.sequence);
+        assertEquals(4_000_000_000L, frame.timestampMillis);
+        assertEquals(-4f, frame.ay, 1e-4f);
+        assertEquals(120.5f, frame.gx, 1e-3f);
+        assertEquals(5f, frame.accel, 1e-3f);
+        assertTrue(frame.statusAlert);
+        assertEquals(0, frame.droppedBefore);
+
+        // Sequence numbers wrap at 16 bits; 0 follows 65535 and 3 means two frames were lost
+        length = BinaryProtocol.encodeSample(buf, 0, 0, 1L, 0f, 0f, 0f, 0f, 0f, 0f, 0);
+        assertEquals(TelemetryFrame.TYPE_SENSOR, parser.parse(buf, 0, length, frame));
+        assertEquals(0, frame.droppedBefore);
+        length = BinaryProtocol.encodeAlert(buf, 0, 3, 99L, 25.61f, 201f);
+        assertEquals(TelemetryFrame.TYPE_ALERT, parser.parse(buf, 0, length, frame));
+        assertEquals(2, frame.droppedBefore);
+        assertEquals(99L, frame.alertTimeMillis);
+        assertEquals(25.61f, frame.alertAccelTotal, 1e-4f);
+        assertEquals(201f, frame.alertGyroTotal, 1e-3f);
+        assertEquals(2, parser.getDroppedFrames());
+
+        buf[2] = 9;
+        assertEquals(TelemetryParser.RESULT_MALFORMED, parser.parse(buf, 0, length, frame));
+        assertEquals(TelemetryParser.ERROR_UNSUPPORTED_VERSION, parser.getLastError());
+    }
+
+    @Test
+    public void parsesFusedBucket() {
+        byte[] buf = new byte[BinaryProtocol.frameLength(BinaryProtocol.MAX_PAYLOAD)];
+        float[] samples = {1f, -2f, 9.81f, 10f, 0f, -5.5f, 2f, -3f, 9.8f, 0f, 0.1f, 0f};
+        int length = BinaryProtocol.encodeFused(buf, 0, 0b101, 1500, 23.4f, 310.2f,
+                new float[]{3f, 4f, 30f, 0f, 300f, 0f}, samples, 2);
+        assertEquals(BinaryProtocol.frameLength(BinaryProtocol.FUSED_HEADER + 2 * BinaryProtocol.BATCH_SAMPLE_SIZE),
+                length);
+        assertEquals(TelemetryFrame.TYPE_FUSED, parser.parse(buf, 0, length, frame));
+        assertEquals(0b101, frame.fusedLinks);
+        assertEquals(1500, frame.fusedGapMillis);
+        assertEquals(23.4f, frame.accel, 1e-4f);
+        assertEquals(310.2f, frame.gyro, 1e-3f);
+        assertEquals(30f, frame.az, 1e-4f);
+        assertEquals(-1, frame.sequence);
+        assertEquals(2, frame.batchCount);
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(samples[i], frame.batchAxes[i], 1e-3f);
+        }
+
+        // Text telemetry only: no axes and no window samples
+        float[] none = {Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN};
+        length = BinaryProtocol.encodeFused(buf, 0, 1, 0, 2f, 1f, none, null, 0);
+        assertEquals(TelemetryFrame.TYPE_FUSED, parser.parse(buf, 0, length, frame));
+        assertTrue(Float.isNaN(frame.ax) && Float.isNaN(frame.gz));
+        assertEquals(0, frame.batchCount);
+        assertEquals(0, frame.fusedGapMillis);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.accidentdetection;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class TelemetrySimulatorTest {
+
+    private static final class Result {
+        int sampleRateHz;
+        long samples;
+        float peakAccel;
+        long peakTimeMillis = -1;
+        long dropped;
+        long crcErrors;
+    }
+
+    private static Result decode(byte[] stream) throws IOException {
+        BluetoothFrameReader reader = new BluetoothFrameReader(new ByteArrayInputStream(stream));
+        TelemetryParser parser = new TelemetryParser();
+        TelemetryFrame frame = new TelemetryFrame();
+        Result result = new Result();
+        BluetoothFrameReader.FrameListener listener = (buffer, offset, length) -> {
+            int type = parser.parse(buffer, offset, length, frame);
+            if (type == TelemetryFrame.TYPE_PROTOCOL_ACK) {
+                result.sampleRateHz = frame.sampleRateHz;
+                reader.setFraming(BluetoothFrameReader.Framing.BINARY);
+            } else if (type == TelemetryFrame.TYPE_SAMPLE_BATCH) {
+                result.samples += frame.batchCount;
+                if (frame.accel > result.peakAccel) {
+                    result.peakAccel = frame.accel;
+                    result.peakTimeMillis = frame.timestampMillis;
+                }
+            }
+        };
+        while (reader.readFrames(listener)) {
+            // drain
+        }
+        result.dropped = parser.getDroppedFrames();
+        result.crcErrors = reader.getCrcErrors();
+        return result;
+    }
+
+    @Test
+    public void impulseSurvivesBatchingAtHighRate() throws IOException {
+        byte[] stream = new TelemetrySimulator(1000, 20, 42L)
+                .addImpulse(1500, 10, 80f, 250f)
+                .render(3000);
+
+        Result result = decode(stream);
+        assertEquals(1000, result.sampleRateHz);
+        assertEquals(3000, result.samples);
+        assertEquals(0, result.dropped);
+        assertEquals(0, result.crcErrors);
+        // A 10 ms pulse covers only a part of one batch; the batch peak must still carry it
+        assertEquals(80f, result.peakAccel, 2f);
+        assertTrue(result.peakTimeMillis >= 1480 && result.peakTimeMillis <= 1510);
+    }
+
+    @Test
+    public void quietStreamStaysBelowThreshold() throws IOException {
+        Result result = decode(new TelemetrySimulator(500, 10, 7L).render(2000));
+        assertEquals(1000, result.samples);
+        assertTrue(result.peakAccel < 1f);
+    }
+
+    @Test
+    public void droppedBatchesAreCountedAsMissingSamples() throws IOException {
+        Result result = decode(new TelemetrySimulator(200, 8, 3L).setDropRate(0.2).render(10_000));
+        assertTrue(result.dropped > 0);
+        assertEquals(0, result.dropped % 8);
+        // Drops at the very end of the stream cannot be seen
+        long expected = 2000;
+        assertTrue(result.samples + result.dropped <= expected);
+        assertTrue(result.samples + result.dropped > expected - 8 * 10);
+    }
+}
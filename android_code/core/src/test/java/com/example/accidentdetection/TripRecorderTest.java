@@ -0,0 +1,314 @@
+package com.example.accidentdetection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TripRecorderTest {
+
+    private static final long START_NANOS = 1_000_000_000L;
+    private static final long BATCH_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    // Stands in for the classifier's threshold fallback: peak of the per-axis window maxima
+    private static final DetectionModel THRESHOLD = new DetectionModel() {
+        @Override
+        public float predict(float accel, float gyro) {
+            return accel > 20f ? 0.8f : 0.1f;
+        }
+
+        @Override
+        public float predictFeatures(float[] features) {
+            return ThresholdModel.peakAccel(features, 0) > 20f ? 0.8f : 0.1f;
+        }
+    };
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("trips").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(root);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * The test appends far faster than telemetry arrives, so wait out a busy writer instead of
+     * counting the frame as dropped.
+     */
+    private static void append(TripRecorder recorder, byte[] buffer, int offset, int length, long nanos) {
+        while (!recorder.append(buffer, offset, length, nanos)) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Splits a simulated stream into frames the way the listener thread sees them and records
+     * each one, 20 ms apart.
+     */
+    private static int record(TripRecorder recorder, byte[] stream) throws IOException {
+        BluetoothFrameReader reader = new BluetoothFrameReader(new ByteArrayInputStream(stream));
+        TelemetryParser parser = new TelemetryParser();
+        TelemetryFrame frame = new TelemetryFrame();
+        int[] frames = {0};
+        BluetoothFrameReader.FrameListener listener = (buffer, offset, length) -> {
+            if (parser.parse(buffer, offset, length, frame) == TelemetryFrame.TYPE_PROTOCOL_ACK) {
+                reader.setFraming(BluetoothFrameReader.Framing.BINARY);
+            }
+            append(recorder, buffer, offset, length, START_NANOS + frames[0] * BATCH_NANOS);
+            frames[0]++;
+        };
+        while (reader.readFrames(listener)) {
+            // drain
+        }
+        return frames[0];
+    }
+
+    @Test
+    public void replaysRecordedTripThroughDetectionPath() throws IOException {
+        byte[] stream = new TelemetrySimulator(500, 10, 11L)
+                .addImpulse(6000, 20, 80f, 200f)
+                .render(10_000);
+        TripRecorder recorder = new TripRecorder(root, 16 * 1024, 1024 * 1024, 4096, 1000);
+        recorder.start();
+        recorder.beginTrip(1_700_000_000_000L, START_NANOS);
+        int frames = record(recorder, stream);
+        recorder.close();
+
+        assertEquals(frames, recorder.getRecordsAppended());
+        assertEquals(0, recorder.getWriteErrors());
+        File[] trips = TripRecorder.listTrips(root);
+        assertEquals(1, trips.length);
+        assertTrue(TripRecorder.listSegments(trips[0]).length > 1);
+
+        List<Long> detections = new ArrayList<>();
+        TripReplay.Result result = new TripReplay(THRESHOLD, 50, 10, 30_000)
+                .replay(trips[0], (tripNanos, probability) -> detections.add(tripNanos));
+        assertEquals(frames, result.frames);
+        assertEquals(5000, result.samples);
+        assertEquals(0, result.malformedFrames);
+        assertEquals(1, detections.size());
+        // The ack is frame 0, then 50 batches per second of trip time
+        long detectedMillis = TimeUnit.NANOSECONDS.toMillis(detections.get(0));
+        assertTrue("detected at " + detectedMillis, detectedMillis >= 6000 && detectedMillis <= 6200);
+    }
+
+    /**
+     * Records ten seconds of two nodes the way the app does: their 500 Hz samples are fused and
+     * each bucket goes to {@code live} as a frame, which its trip recorder logs. The first node
+     * takes a 60 m/s² knock at 6 s.
+     */
+    private static void recordFusedTrip(TripRecorder recorder, DetectionEngine live) {
+        byte[] frame = new byte[BinaryProtocol.frameLength(BinaryProtocol.MAX_PAYLOAD)];
+        SampleFuser fuser = new SampleFuser(BATCH_NANOS, 0, (nanos, accel, gyro, axes, links, samples, count) -> {
+            int length = BinaryProtocol.encodeFused(frame, 0, links, 0, accel, gyro, axes, samples, count);
+            live.onFrame(frame, 0, length, nanos);
+        });
+        fuser.setActive(0, true);
+        fuser.setActive(1, true);
+        live.setTripRecorder(recorder);
+        Random random = new Random(3);
+        for (int i = 0; i < 5000; i++) {
+            long nanos = START_NANOS + i * TimeUnit.MILLISECONDS.toNanos(2);
+            for (int link = 0; link < 2; link++) {
+                float knock = link == 0 && i >= 3000 && i < 3010 ? 60f : 0f;
+                float ax = knock + (float) random.nextGaussian() * 0.2f;
+                float ay = (float) random.nextGaussian() * 0.2f;
+                float az = 9.81f + (float) random.nextGaussian() * 0.2f;
+                float gx = (float) random.nextGaussian() * 2f;
+                float gy = (float) random.nextGaussian() * 2f;
+                float gz = (float) random.nextGaussian() * 2f;
+                float azAdjusted = az - TelemetryParser.DEFAULT_BASELINE_ACCEL_Z;
+                fuser.add(link, nanos, (float) Math.sqrt(ax * ax + ay * ay + azAdjusted * azAdjusted),
+                        (float) Math.sqrt(gx * gx + gy * gy + gz * gz), ax, ay, az, gx, gy, gz);
+            }
+        }
+        fuser.flush();
+    }
+
+    @Test
+    public void fusedTripReplaysAsTheLiveEngineRanIt() throws IOException {
+        // One buffer holds the whole trip, so the engine never finds the writer behind
+        TripRecorder recorder = new TripRecorder(root, 1024 * 1024, 16 * 1024 * 1024, 256 * 1024, 60_000);
+        recorder.start();
+        recorder.beginTrip(1_700_000_000_000L, START_NANOS);
+        List<Long> liveAlerts = new ArrayList<>();
+        DetectionEngine live = new DetectionEngine(THRESHOLD,
+                decision -> liveAlerts.add(decision.nanos - START_NANOS), 0, 30_000);
+        live.setFeatureWindow(50, 10);
+        recordFusedTrip(recorder, live);
+        recorder.close();
+        assertEquals(0, recorder.getRecordsDropped());
+
+        List<Long> detections = new ArrayList<>();
+        TripReplay.Result result = new TripReplay(THRESHOLD, 50, 10, 30_000)
+                .replay(TripRecorder.listTrips(root)[0], (tripNanos, probability) -> detections.add(tripNanos));
+
+        assertEquals(live.getFramesReceived(), result.frames);
+        assertEquals(5000, result.samples);
+        assertEquals(live.getWindowsScored(), result.windowsScored);
+        assertEquals(live.getSamplesScored() - live.getWindowsScored(), result.magnitudesScored);
+        assertEquals(1, liveAlerts.size());
+        assertEquals(liveAlerts, detections);
+        long detectedMillis = TimeUnit.NANOSECONDS.toMillis(detections.get(0));
+        assertTrue("detected at " + detectedMillis, detectedMillis >= 6000 && detectedMillis <= 6100);
+    }
+
+    @Test
+    public void gatedReplayCountsWhatTheLiveGateDid() throws IOException {
+        TripRecorder recorder = new TripRecorder(root, 1024 * 1024, 16 * 1024 * 1024, 256 * 1024, 60_000);
+        recorder.start();
+        recorder.beginTrip(1_700_000_000_000L, START_NANOS);
+        List<Long> liveAlerts = new ArrayList<>();
+        DetectionEngine live = new DetectionEngine(THRESHOLD,
+                decision -> liveAlerts.add(decision.nanos - START_NANOS), 0, 30_000);
+        live.setFeatureWindow(50, 10);
+        SampleGate liveGate = new SampleGate().holdMillis(500);
+        live.setGate(liveGate);
+        recordFusedTrip(recorder, live);
+        recorder.close();
+
+        TripReplay replay = new TripReplay(THRESHOLD, 50, 10, 30_000);
+        SampleGate gate = new SampleGate().holdMillis(500);
+        replay.setGate(gate);
+        List<Long> detections = new ArrayList<>();
+        TripReplay.Result result = replay.replay(TripRecorder.listTrips(root)[0],
+                (tripNanos, probability) -> detections.add(tripNanos));
+
+        assertEquals(liveGate.getOffered(), gate.getOffered());
+        assertEquals(live.getSamplesScored(), result.windowsPassed);
+        assertEquals(live.getSamplesGated(), result.windowsGated);
+        assertEquals(live.getAuditAlerts(), result.auditAlerts);
+        assertEquals(liveAlerts, detections);
+        assertEquals(1, result.referenceDetections);
+        assertEquals(0, result.missedDetections);
+        assertTrue(result.toString(), result.skipRatio() > 0.5);
+
+        // A second replay starts the gate over rather than carrying its state across trips
+        TripReplay.Result again = replay.replay(TripRecorder.listTrips(root)[0], null);
+        assertEquals(result.windowsPassed, again.windowsPassed);
+        assertEquals(result.windowsGated, again.windowsGated);
+    }
+
+    @Test
+    public void gatedReplayReportsSkipRatioAndLatency() throws IOException {
+        byte[] stream = new TelemetrySimulator(500, 10, 11L)
+                .addImpulse(6000, 20, 80f, 200f)
+                .render(10_000);
+        TripRecorder recorder = new TripRecorder(root, 16 * 1024, 1024 * 1024, 4096, 1000);
+        recorder.start();
+        recorder.beginTrip(1_700_000_000_000L, START_NANOS);
+        record(recorder, stream);
+        recorder.close();
+
+        TripReplay replay = new TripReplay(THRESHOLD, 50, 10, 30_000);
+        TripReplay.Result ungated = replay.replay(TripRecorder.listTrips(root)[0], null);
+        assertEquals(-1, ungated.referenceDetections);
+        assertTrue(Double.isNaN(ungated.skipRatio()));
+
+        SampleGate gate = new SampleGate().holdMillis(500);
+        replay.setGate(gate);
+        List<Long> detections = new ArrayList<>();
+        TripReplay.Result result = replay.replay(TripRecorder.listTrips(root)[0],
+                (tripNanos, probability) -> detections.add(tripNanos));
+
+        assertEquals(1, result.referenceDetections);
+        assertEquals(0, result.missedDetections);
+        assertEquals(1, result.detections);
+        assertEquals(1, detections.size());
+        // The window that detects is the one the impulse opened the gate for
+        assertEquals(0, result.gateLatencyMaxNanos);
+        assertEquals(ungated.windowsScored, result.windowsScored);
+        assertTrue(result.toString(), result.skipRatio() > 0.8);
+        // Every due window is either passed or gated
+        assertEquals(ungated.windowsScored + ungated.magnitudesScored, result.windowsPassed + result.windowsGated);
+        // Offered once per batch, as live
+        assertEquals(500, gate.getOffered());
+
+        // A gate that never opens loses the detection and says so
+        replay.setGate(new SampleGate().levels(1000f, 1000f).stepLimit(1000f).cusum(0.02f, 1000f, 1000f)
+                .auditIntervalMillis(0));
+        TripReplay.Result blind = replay.replay(TripRecorder.listTrips(root)[0], null);
+        assertEquals(0, blind.detections);
+        assertEquals(0, blind.windowsPassed);
+        assertEquals(1.0, blind.missRate(), 0.0);
+    }
+
+    @Test
+    public void ignoresTornRecordAtEndOfSegment() throws IOException {
+        TripRecorder recorder = new TripRecorder(root, 64 * 1024, 1024 * 1024, 4096, 1000);
+        recorder.start();
+        recorder.beginTrip(1L, START_NANOS);
+        byte[] line = "ACCEL:1.00 GYRO:2.00 STATUS:OK".getBytes();
+        for (int i = 0; i < 5; i++) {
+            append(recorder, line, 0, line.length, START_NANOS + i * 100_000_000L);
+        }
+        recorder.close();
+
+        File segment = TripRecorder.listSegments(TripRecorder.listTrips(root)[0])[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        TripReader reader = new TripReader();
+        List<Long> times = new ArrayList<>();
+        assertEquals(4, reader.read(segment.getParentFile(), (tripNanos, buffer, offset, length) -> {
+            assertEquals(line.length, length);
+            times.add(tripNanos);
+        }));
+        assertEquals(1, reader.getTruncatedSegments());
+        assertEquals(1L, reader.getTripStartMillis());
+        assertEquals(300_000_000L, (long) times.get(3));
+    }
+
+    @Test
+    public void retentionDeletesOldestSegmentsFirst() throws IOException {
+        byte[] frame = new byte[1000];
+        TripRecorder recorder = new TripRecorder(root, 8 * 1024, 24 * 1024, 2048, 1000);
+        recorder.start();
+        for (int trip = 0; trip < 3; trip++) {
+            recorder.beginTrip(1000L + trip, START_NANOS);
+            for (int i = 0; i < 16; i++) {
+                append(recorder, frame, 0, frame.length, START_NANOS + i * 1_000_000L);
+            }
+            recorder.endTrip();
+        }
+        recorder.close();
+
+        long total = 0;
+        File[] trips = TripRecorder.listTrips(root);
+        for (File trip : trips) {
+            for (File segment : TripRecorder.listSegments(trip)) {
+                total += segment.length();
+            }
+        }
+        assertTrue("total " + total, total <= 24 * 1024);
+        // The first trip went first; the newest one is complete
+        assertFalse(new File(root, "trip-0000000001000").exists());
+        assertEquals(16, new TripReader().read(trips[trips.length - 1], (t, b, o, l) -> { }));
+    }
+}
@@ -0,0 +1,107 @@
+"""
+Builds the INT8 variant of the driver behaviour model and checks it against the original.
+
+    pip install onnx onnxruntime pandas numpy
+    python training/quantize_model.py --install
+
+Weights of the Gemm layers are quantized to INT8 (dynamic quantization: activations stay
+float and are quantized on the fly), which shrinks the model and speeds up CPU inference.
+The quantized graph keeps its weights inline, so it needs no .onnx.data file.
+
+Both models are run on every row of dataset/features_14.csv, fed the same way the
+training notebook fed them (every column except 'label'). The script fails if the
+probabilities drift more than --max-delta or any decision at --threshold flips.
+With --install the result is copied next to the original in the app's assets, where
+AccidentClassifier picks it up in preference to the full-precision model.
+"""
+
+import argparse
+import os
+import shutil
+import sys
+
+import numpy as np
+import onnx
+import onnxruntime as ort
+import pandas as pd
+from onnxruntime.quantization import QuantType, quantize_dynamic
+
+ROOT = os.path.dirname(os.path.dirname(os.path.abspath(__file__)))
+MODEL = os.path.join(ROOT, "models", "driver_behavior_model.onnx")
+QUANTIZED = os.path.join(ROOT, "models", "driver_behavior_model.int8.onnx")
+DATASET = os.path.join(ROOT, "dataset", "features_14.csv")
+ASSETS = os.path.join(ROOT, "android_code", "app", "src", "main", "assets")
+
+
+def quantize(src, dst):
+    # quantize_dynamic needs the external weights loaded into the graph
+    model = onnx.load(src, load_external_data=True)
+    inlined = dst + ".fp32.tmp.onnx"
+    onnx.save(model, inlined)
+    try:
+        quantize_dynamic(inlined, dst, weight_type=QuantType.QInt8, op_types_to_quantize=["Gemm", "MatMul"])
+    finally:
+        os.remove(inlined)
+
+
+def load_rows(path, width):
+    df = pd.read_csv(path)
+    if "label" in df.columns:
+        df = df.drop(columns=["label"])
+    rows = df.values.astype(np.float32)
+    if rows.shape[1] != width:
+        raise ValueError(f"{path} has {rows.shape[1]} columns, model expects {width}")
+    return rows
+
+
+def predict(path, rows):
+    options = ort.SessionOptions()
+    options.intra_op_num_threads = 1
+    session = ort.InferenceSession(path, options, providers=["CPUExecutionProvider"])
+    name = session.get_inputs()[0].name
+    return session.run(None, {name: rows})[0].reshape(-1)
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--model", default=MODEL)
+    parser.add_argument("--output", default=QUANTIZED)
+    parser.add_argument("--dataset", default=DATASET)
+    parser.add_argument("--threshold", type=float, default=0.7, help="decision threshold used by the app")
+    parser.add_argument("--max-delta", type=float, default=0.02, help="largest allowed probability difference")
+    parser.add_argument("--install", action="store_true", help="copy the result into the app's assets")
+    args = parser.parse_args()
+
+    quantize(args.model, args.output)
+
+    width = onnx.load(args.model, load_external_data=False).graph.input[0].type.tensor_type.shape.dim[1].dim_value
+    rows = load_rows(args.dataset, width)
+    full = predict(args.model, rows)
+    quant = predict(args.output, rows)
+
+    delta = np.abs(full - quant)
+    flips = int(np.sum((full >= args.threshold) != (quant >= args.threshold)))
+    original_size = os.path.getsize(args.model)
+    data_file = args.model + ".data"
+    if os.path.exists(data_file):
+        original_size += os.path.getsize(data_file)
+
+    print(f"rows:              {len(rows)}")
+    print(f"size:              {original_size} -> {os.path.getsize(args.output)} bytes")
+    print(f"max |delta p|:     {delta.max():.6f}")
+    print(f"mean |delta p|:    {delta.mean():.6f}")
+    print(f"decision flips:    {flips} at threshold {args.threshold}")
+
+    if delta.max() > args.max_delta or flips > 0:
+        print("Quantized model does not agree with the original; not installing.", file=sys.stderr)
+        return 1
+
+    if args.install:
+        target = os.path.join(ASSETS, os.path.basename(args.output))
+        shutil.copyfile(args.output, target)
+        print(f"installed:         {target}")
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())